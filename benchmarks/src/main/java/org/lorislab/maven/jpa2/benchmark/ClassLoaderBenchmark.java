@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.benchmark;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.lorislab.maven.jpa2.generator.SchemaGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of the class loader construction of the
+ * {@link SchemaGenerator}. The class loader is created for the dependency
+ * archives and the synthetic model, the first entity is loaded and
+ * the class loader is closed.
+ *
+ * @author Andrej Petras
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderBenchmark {
+
+    /**
+     * The number of the dependency archives before the model classes.
+     */
+    @Param({"10", "100"})
+    public int classpathSize;
+
+    /**
+     * The synthetic model.
+     */
+    private SyntheticModel model;
+
+    /**
+     * The classpath.
+     */
+    private List<URL> urls;
+
+    /**
+     * Creates the synthetic model and the classpath.
+     *
+     * @throws Exception if the setup fails.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        model = SyntheticModel.create(10);
+        urls = new ArrayList<>();
+        Path lib = Files.createDirectories(model.getOutput().resolve("lib"));
+        for (int i = 0; i < classpathSize; i++) {
+            Path jar = lib.resolve("dependency-" + i + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new JarEntry("dependency/" + i + "/resource.txt"));
+                out.write(Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            urls.add(jar.toUri().toURL());
+        }
+        urls.add(model.getClasses().toUri().toURL());
+    }
+
+    /**
+     * Deletes the synthetic model.
+     *
+     * @throws IOException if the model could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        model.delete();
+    }
+
+    /**
+     * Creates the class loader, loads the first entity and closes the class
+     * loader.
+     *
+     * @return the loaded entity class.
+     * @throws Exception if the entity could not be loaded.
+     */
+    @Benchmark
+    public Class<?> createClassLoader() throws Exception {
+        try (URLClassLoader cl = SchemaGenerator.createClassLoader(urls, ClassLoaderBenchmark.class.getClassLoader())) {
+            return cl.loadClass(model.getFirstEntity());
+        }
+    }
+}
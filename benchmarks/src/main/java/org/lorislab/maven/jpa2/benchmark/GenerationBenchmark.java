@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.benchmark;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.lorislab.maven.jpa2.generator.GenerationJob;
+import org.lorislab.maven.jpa2.generator.SchemaGenerator;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The end-to-end benchmark of the schema generation. The schema scripts of
+ * the synthetic model are generated for the target database with the same
+ * generator properties as the {@link org.lorislab.maven.jpa2.SchemaGeneratorMojo}.
+ * Each invocation creates the new class loader of the model like the
+ * separate build.
+ *
+ * @author Andrej Petras
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GenerationBenchmark {
+
+    /**
+     * The counter of the in-memory databases.
+     */
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    /**
+     * The number of entities of the synthetic model.
+     */
+    @Param({"10", "100", "1000"})
+    public int entities;
+
+    /**
+     * The target database: {@code name[:major[:minor]]}.
+     */
+    @Param({"HSQL Database Engine", "Oracle:12:1", "PostgreSQL:9:4"})
+    public String database;
+
+    /**
+     * The offline generation flag.
+     */
+    @Param({"false", "true"})
+    public boolean offline;
+
+    /**
+     * The synthetic model.
+     */
+    private SyntheticModel model;
+
+    /**
+     * The schema generator.
+     */
+    private SchemaGenerator generator;
+
+    /**
+     * Creates the synthetic model.
+     *
+     * @throws IOException if the model could not be created.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        model = SyntheticModel.create(entities);
+        Files.createDirectories(model.getOutput());
+        generator = new SchemaGenerator(offline, "drop-and-create", ";");
+    }
+
+    /**
+     * Deletes the synthetic model.
+     *
+     * @throws IOException if the model could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        model.delete();
+    }
+
+    /**
+     * Generates the drop and create scripts of the synthetic model.
+     *
+     * @return the size of the create script.
+     * @throws IOException if the class loader could not be closed.
+     */
+    @Benchmark
+    public long generateSchema() throws IOException {
+        Path dropFile = model.getOutput().resolve("drop.sql");
+        Path createFile = model.getOutput().resolve("create.sql");
+        Files.deleteIfExists(dropFile);
+        Files.deleteIfExists(createFile);
+
+        String[] items = database.split(":");
+        String name = items[0];
+        String major = items.length > 1 ? items[1] : null;
+        String minor = items.length > 2 ? items[2] : null;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.transactionType", "RESOURCE_LOCAL");
+        properties.put("javax.persistence.jtaDataSource", null);
+        properties.put("javax.persistence.nonJtaDataSource", null);
+        properties.put("javax.persistence.validation.mode", "NONE");
+        properties.put("javax.persistence.jdbc.driver", "org.hsqldb.jdbcDriver");
+        properties.put("javax.persistence.jdbc.url", "jdbc:hsqldb:mem:benchmark" + DATABASE_COUNTER.incrementAndGet());
+        properties.put("javax.persistence.jdbc.user", "");
+        properties.put("javax.persistence.jdbc.password", "");
+        properties.put("javax.persistence.database-product-name", name);
+        properties.put("javax.persistence.database-major-version", major);
+        properties.put("javax.persistence.database-minor-version", minor);
+        properties.put("javax.persistence.schema-generation.scripts.action", "drop-and-create");
+        properties.put("javax.persistence.schema-generation.scripts.drop-target", dropFile.toString());
+        properties.put("javax.persistence.schema-generation.scripts.create-target", createFile.toString());
+        properties.put("hibernate.hbm2ddl.delimiter", ";");
+        if (offline) {
+            properties = HibernateBootstrap.createOfflineProperties(properties, name, major, minor);
+        }
+
+        GenerationJob job = new GenerationJob(SyntheticModel.UNIT, database, model.getOutput(), dropFile, createFile, properties);
+        try (URLClassLoader cl = SchemaGenerator.createClassLoader(Collections.singletonList(model.getClasses().toUri().toURL()), GenerationBenchmark.class.getClassLoader())) {
+            generator.generate(job, cl);
+        }
+        return Files.size(createFile);
+    }
+}
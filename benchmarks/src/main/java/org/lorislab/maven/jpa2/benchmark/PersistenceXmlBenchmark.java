@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import org.lorislab.maven.jpa2.persistence.PersistenceModel21;
+import org.lorislab.maven.jpa2.persistence.jpa21.Persistence;
+import org.lorislab.maven.jpa2.util.XMLUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of the persistence.xml parsing for the synthetic models of
+ * the different sizes and number of persistence units. The JAXB model is
+ * loaded by the cached JAXB context of the plugin and by the new JAXB
+ * context of the first load in the JVM.
+ *
+ * @author Andrej Petras
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceXmlBenchmark {
+
+    /**
+     * The number of entities of the synthetic model.
+     */
+    @Param({"10", "100", "1000"})
+    public int entities;
+
+    /**
+     * The number of persistence units of the synthetic model.
+     */
+    @Param({"1", "10", "100"})
+    public int units;
+
+    /**
+     * The synthetic model.
+     */
+    private SyntheticModel model;
+
+    /**
+     * Creates the synthetic model.
+     *
+     * @throws IOException if the model could not be created.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        model = SyntheticModel.create(entities, units);
+    }
+
+    /**
+     * Deletes the synthetic model.
+     *
+     * @throws IOException if the model could not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        model.delete();
+    }
+
+    /**
+     * Reads the version of the persistence.xml.
+     *
+     * @return the version.
+     */
+    @Benchmark
+    public String getXMLVersion() {
+        return XMLUtil.getXMLVersion(model.getPersistenceXml());
+    }
+
+    /**
+     * Loads the JAXB model of the persistence.xml by the cached JAXB context
+     * and the pooled unmarshaller.
+     *
+     * @return the JAXB model.
+     */
+    @Benchmark
+    public Persistence loadObject() {
+        return XMLUtil.loadObject(model.getPersistenceXml(), Persistence.class);
+    }
+
+    /**
+     * Loads the JAXB model of the persistence.xml by the new JAXB context
+     * like the first load without the cache.
+     *
+     * @return the JAXB model.
+     * @throws Exception if the model could not be loaded.
+     */
+    @Benchmark
+    public Persistence loadObjectCold() throws Exception {
+        JAXBContext context = JAXBContext.newInstance(Persistence.class);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(model.getPersistenceXml()))) {
+            return (Persistence) context.createUnmarshaller().unmarshal(in);
+        }
+    }
+
+    /**
+     * Loads the persistence.xml and lists the persistence units.
+     *
+     * @return the persistence units.
+     */
+    @Benchmark
+    public List<String> getPersistenceUnits() {
+        PersistenceModel21 result = new PersistenceModel21();
+        result.loadPersistence(model.getPersistenceXml());
+        return result.getPersistenceUnits();
+    }
+}
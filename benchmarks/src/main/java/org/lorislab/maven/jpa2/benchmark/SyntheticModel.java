@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * The synthetic entity model of the benchmarks. The entity sources are
+ * generated and compiled to the classes directory with the
+ * {@code META-INF/persistence.xml} of the persistence unit {@link #UNIT}.
+ * Each entity has the basic attributes, the version, the embedded address and
+ * the many-to-one association to the previous entity. The model with more
+ * persistence units lists the entities round-robin in the units
+ * {@link #UNIT}, {@code benchmark1}, {@code benchmark2}, ... and is used only
+ * for the persistence.xml benchmarks, the associations cross the units.
+ *
+ * @author Andrej Petras
+ */
+public final class SyntheticModel {
+
+    /**
+     * The persistence unit of the model.
+     */
+    public static final String UNIT = "benchmark";
+
+    /**
+     * The package of the model.
+     */
+    private static final String PACKAGE = "org.lorislab.benchmark.model";
+
+    /**
+     * The model directory.
+     */
+    private final Path directory;
+
+    /**
+     * The number of entities.
+     */
+    private final int entities;
+
+    /**
+     * The number of persistence units.
+     */
+    private final int units;
+
+    /**
+     * The constructor.
+     *
+     * @param directory the model directory.
+     * @param entities the number of entities.
+     * @param units the number of persistence units.
+     */
+    private SyntheticModel(Path directory, int entities, int units) {
+        this.directory = directory;
+        this.entities = entities;
+        this.units = units;
+    }
+
+    /**
+     * Creates and compiles the synthetic model with one persistence unit in
+     * the temporary directory.
+     *
+     * @param entities the number of entities.
+     * @return the synthetic model.
+     * @throws IOException if the model could not be written.
+     */
+    public static SyntheticModel create(int entities) throws IOException {
+        return create(entities, 1);
+    }
+
+    /**
+     * Creates and compiles the synthetic model in the temporary directory.
+     *
+     * @param entities the number of entities.
+     * @param units the number of persistence units.
+     * @return the synthetic model.
+     * @throws IOException if the model could not be written.
+     */
+    public static SyntheticModel create(int entities, int units) throws IOException {
+        SyntheticModel result = new SyntheticModel(Files.createTempDirectory("jpa2-benchmark-" + entities + "-" + units + "-"), entities, units);
+        result.generate();
+        return result;
+    }
+
+    /**
+     * Gets the classes directory of the model.
+     *
+     * @return the classes directory.
+     */
+    public Path getClasses() {
+        return directory.resolve("classes");
+    }
+
+    /**
+     * Gets the persistence.xml of the model.
+     *
+     * @return the persistence.xml of the model.
+     */
+    public Path getPersistenceXml() {
+        return getClasses().resolve("META-INF/persistence.xml");
+    }
+
+    /**
+     * Gets the output directory of the generated scripts.
+     *
+     * @return the output directory.
+     */
+    public Path getOutput() {
+        return directory.resolve("output");
+    }
+
+    /**
+     * Gets the first entity class name.
+     *
+     * @return the first entity class name.
+     */
+    public String getFirstEntity() {
+        return PACKAGE + ".Entity0";
+    }
+
+    /**
+     * Deletes the model directory.
+     *
+     * @throws IOException if the model directory could not be deleted.
+     */
+    public void delete() throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Generates the sources, the persistence.xml and compiles the model.
+     *
+     * @throws IOException if the model could not be written.
+     */
+    private void generate() throws IOException {
+        Path sources = directory.resolve("src").resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(sources);
+        Files.createDirectories(getClasses().resolve("META-INF"));
+
+        List<String> files = new ArrayList<>();
+        files.add(write(sources.resolve("Address.java"), createAddress()));
+        for (int i = 0; i < entities; i++) {
+            files.add(write(sources.resolve("Entity" + i + ".java"), createEntity(i)));
+        }
+        write(getPersistenceXml(), createPersistenceXml());
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The benchmarks require the JDK to compile the synthetic model.");
+        }
+        List<String> args = new ArrayList<>(Arrays.asList("-nowarn", "-proc:none",
+                "-cp", System.getProperty("java.class.path"),
+                "-d", getClasses().toString()));
+        args.addAll(files);
+        int result = compiler.run(null, null, null, args.toArray(new String[args.size()]));
+        if (result != 0) {
+            throw new IllegalStateException("Error compiling the synthetic model " + directory);
+        }
+    }
+
+    /**
+     * Creates the source of the embeddable address.
+     *
+     * @return the source of the address.
+     */
+    private static String createAddress() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("import javax.persistence.*;\n\n");
+        sb.append("@Embeddable\n");
+        sb.append("public class Address {\n");
+        sb.append("    @Column(length = 120) private String street;\n");
+        sb.append("    @Column(length = 60) private String city;\n");
+        sb.append("    @Column(length = 10) private String zip;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Creates the source of the entity.
+     *
+     * @param index the index of the entity.
+     * @return the source of the entity.
+     */
+    private static String createEntity(int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("import java.math.BigDecimal;\n");
+        sb.append("import java.util.Date;\n");
+        sb.append("import javax.persistence.*;\n\n");
+        sb.append("@Entity\n");
+        sb.append("@Table(name = \"ENTITY_").append(index).append("\", indexes = @Index(columnList = \"NAME\"))\n");
+        sb.append("public class Entity").append(index).append(" {\n");
+        sb.append("    @Id @GeneratedValue(strategy = GenerationType.AUTO) private Long id;\n");
+        sb.append("    @Version private Integer version;\n");
+        sb.append("    @Column(name = \"NAME\", length = 100, nullable = false) private String name;\n");
+        sb.append("    @Column(precision = 19, scale = 4) private BigDecimal amount;\n");
+        sb.append("    @Temporal(TemporalType.TIMESTAMP) private Date created;\n");
+        sb.append("    @Lob private String description;\n");
+        sb.append("    @Embedded private Address address;\n");
+        if (index > 0) {
+            sb.append("    @ManyToOne(fetch = FetchType.LAZY) private Entity").append(index - 1).append(" parent;\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Creates the persistence.xml of the model.
+     *
+     * @return the persistence.xml.
+     */
+    private String createPersistenceXml() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<persistence version=\"2.1\" xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\"");
+        sb.append(" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+        sb.append(" xsi:schemaLocation=\"http://xmlns.jcp.org/xml/ns/persistence http://xmlns.jcp.org/xml/ns/persistence/persistence_2_1.xsd\">\n");
+        for (int unit = 0; unit < units; unit++) {
+            sb.append("  <persistence-unit name=\"").append(unit == 0 ? UNIT : UNIT + unit).append("\" transaction-type=\"RESOURCE_LOCAL\">\n");
+            sb.append("    <provider>org.hibernate.jpa.HibernatePersistenceProvider</provider>\n");
+            sb.append("    <class>").append(PACKAGE).append(".Address</class>\n");
+            for (int i = unit; i < entities; i = i + units) {
+                sb.append("    <class>").append(PACKAGE).append(".Entity").append(i).append("</class>\n");
+            }
+            sb.append("    <exclude-unlisted-classes>true</exclude-unlisted-classes>\n");
+            sb.append("  </persistence-unit>\n");
+        }
+        sb.append("</persistence>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the content to the file.
+     *
+     * @param file the file.
+     * @param content the content.
+     * @return the file path.
+     * @throws IOException if the file could not be written.
+     */
+    private static String write(Path file, String content) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        return file.toString();
+    }
+}
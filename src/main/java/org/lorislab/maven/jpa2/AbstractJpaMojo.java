@@ -0,0 +1,501 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.lorislab.maven.jpa2.generator.SchemaGenerator;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.persistence.PersistenceStreamModel;
+import org.lorislab.maven.jpa2.util.Fingerprint;
+
+/**
+ * The base of the goals which work with the persistence units of the project.
+ * The base resolves the persistence units of the persistence.xml in the build
+ * output directory and creates the class loader of the project classpath.
+ *
+ * @author Andrej Petras
+ */
+public abstract class AbstractJpaMojo extends AbstractMojo {
+
+    /**
+     * The MAVEN project.
+     */
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    /**
+     * The persistence unit.
+     */
+    @Parameter
+    private String persistenceUnit;
+
+    /**
+     * Generate the scripts for all persistence units in the persistence.xml.
+     * The scripts of each persistence unit are generated in the sub-directory
+     * of the output directory with the name of the persistence unit.
+     * Default: false
+     *
+     * <outputTargetDir>/<persistenceUnit>/<databaseProductName-databaseMajorVersion.databaseMinorVersion>/<dropTargetFile>
+     */
+    @Parameter(defaultValue = "false")
+    private boolean allPersistenceUnits;
+
+    /**
+     * Cache the project class loader and the parsed persistence.xml in the
+     * MAVEN session. The executions with the same classpath and
+     * persistence.xml reuse the loaded classes. The cache is released at the
+     * end of the session by the lifecycle participant, the cache requires
+     * the plugin declared with {@code <extensions>true</extensions>} and is
+     * disabled without it. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean sessionCache;
+
+    /**
+     * The MAVEN session.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * The descriptor of the plugin.
+     */
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor plugin;
+
+    /**
+     * The session cache is enabled for the execution or {@code null} if not
+     * resolved yet.
+     */
+    private Boolean sessionCacheEnabled;
+
+    /**
+     * The hash of the persistence.xml content.
+     */
+    private String persistenceHash;
+
+    /**
+     * The persistence model.
+     */
+    private PersistenceStreamModel persistenceModel;
+
+    /**
+     * Gets the MAVEN project.
+     *
+     * @return the MAVEN project.
+     */
+    protected MavenProject getProject() {
+        return project;
+    }
+
+    /**
+     * Returns {@code true} if all persistence units are used.
+     *
+     * @return the all persistence units flag.
+     */
+    protected boolean isAllPersistenceUnits() {
+        return allPersistenceUnits;
+    }
+
+    /**
+     * Gets the session cache of the MAVEN session.
+     *
+     * @return the session cache or {@code null} if the session cache is
+     * disabled.
+     */
+    protected SessionCache getSessionCache() {
+        if (sessionCacheEnabled == null) {
+            sessionCacheEnabled = sessionCache && session != null;
+            if (sessionCacheEnabled && !isExtension()) {
+                getLog().warn("The session cache requires the plugin declared with <extensions>true</extensions>."
+                        + " The cache is disabled, the class loaders are closed after the execution.");
+                sessionCacheEnabled = false;
+            }
+        }
+        return sessionCacheEnabled ? SessionCache.get(session) : null;
+    }
+
+    /**
+     * Returns {@code true} if the plugin is declared with
+     * {@code <extensions>true</extensions>} in the project. Only the
+     * extension registers the lifecycle participant which closes the cached
+     * class loaders at the end of the session.
+     *
+     * @return {@code true} if the plugin is the build extension.
+     */
+    private boolean isExtension() {
+        if (plugin == null) {
+            return false;
+        }
+        Plugin tmp = project.getPlugin(plugin.getPluginLookupKey());
+        return tmp != null && tmp.isExtensions();
+    }
+
+    /**
+     * Creates the properties of the offline Hibernate bootstrap of the
+     * persistence unit. The persistence unit is bootstrapped without any
+     * JDBC connection and data source.
+     *
+     * @param databaseProductName the database product name.
+     * @param databaseMajorVersion the database major version.
+     * @param databaseMinorVersion the database minor version.
+     * @return the offline properties.
+     * @throws MojoExecutionException if the dialect could not be resolved.
+     */
+    protected Map<String, Object> createOfflineProperties(String databaseProductName, String databaseMajorVersion, String databaseMinorVersion) throws MojoExecutionException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.transactionType", "RESOURCE_LOCAL");
+        properties.put("javax.persistence.jtaDataSource", null);
+        properties.put("javax.persistence.nonJtaDataSource", null);
+        properties.put("javax.persistence.validation.mode", "NONE");
+        try {
+            return HibernateBootstrap.createOfflineProperties(properties, databaseProductName, databaseMajorVersion, databaseMinorVersion);
+        } catch (RuntimeException ex) {
+            throw new MojoExecutionException("Error creating the offline configuration for the database " + databaseProductName, ex);
+        }
+    }
+
+    /**
+     * Executes the task with the offline Hibernate bootstrap of the
+     * persistence unit. The class loader of the classpath is set as the
+     * thread context class loader during the task and closed after the task.
+     *
+     * @param <T> the result type.
+     * @param unit the persistence unit.
+     * @param properties the offline properties.
+     * @param urls the classpath.
+     * @param task the task.
+     * @return the result of the task.
+     * @throws MojoExecutionException if the bootstrap or the task fails.
+     */
+    protected <T> T bootstrap(String unit, Map<String, Object> properties, List<URL> urls, BootstrapTask<T> task) throws MojoExecutionException {
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader oldClassLoader = currentThread.getContextClassLoader();
+        final ClassLoader cl = getClassLoader(urls, oldClassLoader);
+        currentThread.setContextClassLoader(cl);
+        try {
+            HibernateBootstrap bootstrap = new HibernateBootstrap(unit, properties, cl);
+            try {
+                return task.execute(bootstrap);
+            } finally {
+                bootstrap.close();
+            }
+        } catch (RuntimeException ex) {
+            throw new MojoExecutionException("Error in the offline bootstrap of the persistence unit " + unit, ex);
+        } finally {
+            currentThread.setContextClassLoader(oldClassLoader);
+            closeClassLoader(cl);
+        }
+    }
+
+    /**
+     * Gets the list of the persistence units for the execution.
+     *
+     * @return the list of the persistence units.
+     * @throws MojoExecutionException if the persistence units could not be
+     * resolved.
+     */
+    protected List<String> getPersistentUnits() throws MojoExecutionException {
+        List<String> result = new ArrayList<>();
+        if (persistenceUnit != null && !persistenceUnit.isEmpty()) {
+            result.add(persistenceUnit);
+            return result;
+        }
+
+        PersistenceStreamModel model = getPersistenceModel();
+        List<String> units = model.getPersistenceUnits();
+        if (units == null || units.isEmpty()) {
+            throw new MojoExecutionException("Missing the persistence units in the persistence.xml");
+        }
+
+        if (units.size() > 1 && !allPersistenceUnits) {
+            throw new MojoExecutionException("Find more persistence units please use the 'persistenceUnit' or 'allPersistenceUnits' attribute.");
+        }
+
+        result.addAll(units);
+        return result;
+    }
+
+    /**
+     * Gets the persistence.xml file in the build output directory.
+     *
+     * @return the persistence.xml file.
+     */
+    protected Path getPersistenceFile() {
+        // build directory: target
+        Path buildClassDir = Paths.get(project.getBuild().getOutputDirectory());
+        return buildClassDir.resolve("META-INF").resolve("persistence.xml");
+    }
+
+    /**
+     * Gets the hash of the persistence.xml content.
+     *
+     * @return the hash of the persistence.xml content.
+     */
+    protected String getPersistenceHash() {
+        if (persistenceHash == null) {
+            persistenceHash = String.valueOf(Fingerprint.hash(getPersistenceFile()));
+        }
+        return persistenceHash;
+    }
+
+    /**
+     * Gets the persistence model of the persistence.xml in the build output
+     * directory. The model is loaded in one pass and cached in the MAVEN
+     * session.
+     *
+     * @return the persistence model.
+     * @throws MojoExecutionException if the persistence.xml could not be
+     * loaded.
+     */
+    protected PersistenceStreamModel getPersistenceModel() throws MojoExecutionException {
+        if (persistenceModel != null) {
+            return persistenceModel;
+        }
+
+        Path persistenceFile = getPersistenceFile();
+        if (!Files.isRegularFile(persistenceFile)) {
+            throw new MojoExecutionException("Missing the persistence.xml " + persistenceFile);
+        }
+
+        PersistenceStreamModel model = null;
+        SessionCache cache = getSessionCache();
+        if (cache != null) {
+            model = cache.getModel(getPersistenceHash());
+        }
+
+        if (model == null) {
+            model = new PersistenceStreamModel();
+            try {
+                model.loadPersistence(persistenceFile);
+            } catch (RuntimeException ex) {
+                throw new MojoExecutionException("Error reading the persistence.xml " + persistenceFile, ex);
+            }
+            getLog().info("Version of the persistence.xml : " + persistenceFile.toString() + " version: " + model.getVersion());
+            if (cache != null) {
+                model = cache.putModel(getPersistenceHash(), model);
+            }
+        } else {
+            getLog().debug("Reuse the cached persistence.xml : " + persistenceFile.toString());
+        }
+        persistenceModel = model;
+        return model;
+    }
+
+    /**
+     * Closes the class loader created by the {@link #getClassLoader(java.util.List, java.lang.ClassLoader)}.
+     *
+     * @param cl the class loader.
+     */
+    protected void closeClassLoader(ClassLoader cl) {
+        if (cl instanceof URLClassLoader && cl != this.getClass().getClassLoader()) {
+            try {
+                ((URLClassLoader) cl).close();
+            } catch (IOException ex) {
+                getLog().debug("Error closing the class loader.", ex);
+            }
+        }
+    }
+
+    /**
+     * Creates the class loader of the classpath.
+     *
+     * @param urls the classpath.
+     * @param delegate the parent class loader.
+     * @return the class loader.
+     */
+    protected ClassLoader getClassLoader(final List<URL> urls, final ClassLoader delegate) {
+        if (urls.isEmpty()) {
+            return this.getClass().getClassLoader();
+        }
+        return SchemaGenerator.createClassLoader(urls, delegate);
+    }
+
+    /**
+     * Gets the archive or the classes directory of the plugin and the
+     * Hibernate archives of the plugin classpath.
+     *
+     * @return the list of the plugin files.
+     * @throws MojoExecutionException if the location of the plugin could not
+     * be resolved.
+     */
+    protected List<Path> getPluginFiles() throws MojoExecutionException {
+        List<Path> result = new ArrayList<>();
+        CodeSource source = AbstractJpaMojo.class.getProtectionDomain().getCodeSource();
+        if (source != null && source.getLocation() != null) {
+            try {
+                result.add(Paths.get(source.getLocation().toURI()));
+            } catch (URISyntaxException | RuntimeException ex) {
+                throw new MojoExecutionException("Error resolving the location of the plugin " + source.getLocation(), ex);
+            }
+        }
+        if (plugin != null && plugin.getArtifacts() != null) {
+            for (Artifact artifact : plugin.getArtifacts()) {
+                if (artifact.getGroupId().startsWith("org.hibernate") && artifact.getFile() != null) {
+                    result.add(artifact.getFile().toPath());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the classpath of the project. The classpath contains the compile
+     * and runtime classpath elements, the build output directory and the not
+     * test dependencies. The duplicate and the missing entries are removed
+     * and the order of the first occurrence is kept.
+     *
+     * @return the classpath.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<URL> getClasspath() {
+        try {
+            final Set<Path> classpath = new LinkedHashSet<>();
+            addClasspath(classpath, project.getCompileClasspathElements());
+            addClasspath(classpath, project.getRuntimeClasspathElements());
+            addClasspath(classpath, project.getBuild().getOutputDirectory());
+
+            Set<Artifact> artifacts = this.project.getDependencyArtifacts();
+            if (artifacts != null) {
+                for (Artifact artifact : artifacts) {
+                    if (!Artifact.SCOPE_TEST.equalsIgnoreCase(artifact.getScope()) && artifact.getFile() != null) {
+                        addClasspath(classpath, artifact.getFile().getPath());
+                    }
+                }
+            }
+
+            final List<URL> urls = new ArrayList<>(classpath.size());
+            for (Path path : classpath) {
+                URL url = path.toUri().toURL();
+                getLog().debug("Classpath: " + url);
+                urls.add(url);
+            }
+            return urls;
+        } catch (final Exception e) {
+            getLog().debug("Couldn't get the classloader.", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds the existing classpath elements to the classpath.
+     *
+     * @param classpath the classpath.
+     * @param elements the classpath elements.
+     */
+    private void addClasspath(Set<Path> classpath, List<String> elements) {
+        if (elements != null) {
+            for (String element : elements) {
+                addClasspath(classpath, element);
+            }
+        }
+    }
+
+    /**
+     * Adds the existing classpath element to the classpath.
+     *
+     * @param classpath the classpath.
+     * @param element the classpath element.
+     */
+    private void addClasspath(Set<Path> classpath, String element) {
+        Path path = Paths.get(element).toAbsolutePath().normalize();
+        if (Files.exists(path)) {
+            classpath.add(path);
+        } else {
+            getLog().debug("Skip the missing classpath element: " + path);
+        }
+    }
+
+    /**
+     * Resolves the jar-file entry of the persistence unit. The entry is the
+     * URL, the path relative to the root of the persistence unit or the file
+     * name of the archive on the classpath.
+     *
+     * @param jarFile the jar-file entry.
+     * @param root the root of the persistence unit.
+     * @param urls the classpath.
+     * @return the archive or {@code null} if the entry could not be
+     * resolved.
+     */
+    protected Path resolveJarFile(String jarFile, Path root, List<URL> urls) {
+        try {
+            Path path = Paths.get(new URL(jarFile).toURI());
+            if (Files.exists(path)) {
+                return path;
+            }
+        } catch (MalformedURLException ex) {
+            // the jar-file is not URL
+        } catch (Exception ex) {
+            getLog().debug("Not valid jar-file URL " + jarFile, ex);
+        }
+        Path path = root.resolve(jarFile).normalize();
+        if (Files.exists(path)) {
+            return path;
+        }
+        String name = Paths.get(jarFile).getFileName().toString();
+        for (URL url : urls) {
+            try {
+                Path tmp = Paths.get(url.toURI());
+                if (tmp.getFileName() != null && name.equals(tmp.getFileName().toString())) {
+                    return tmp;
+                }
+            } catch (Exception ex) {
+                getLog().debug("Not valid classpath URL " + url, ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The task executed with the offline Hibernate bootstrap of the
+     * persistence unit.
+     *
+     * @param <T> the result type.
+     */
+    protected interface BootstrapTask<T> {
+
+        /**
+         * Executes the task.
+         *
+         * @param bootstrap the Hibernate bootstrap of the persistence unit.
+         * @return the result of the task.
+         * @throws MojoExecutionException if the task fails.
+         */
+        T execute(HibernateBootstrap bootstrap) throws MojoExecutionException;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+/**
+ * The target database of the schema generation.
+ *
+ * @author Andrej Petras
+ */
+public class Database {
+
+    /**
+     * The database product name.
+     */
+    private String name;
+
+    /**
+     * The database major version.
+     */
+    private String majorVersion;
+
+    /**
+     * The database minor version.
+     */
+    private String minorVersion;
+
+    /**
+     * The default constructor.
+     */
+    public Database() {
+        // empty constructor
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param name the database product name.
+     * @param majorVersion the database major version.
+     * @param minorVersion the database minor version.
+     */
+    public Database(String name, String majorVersion, String minorVersion) {
+        this.name = name;
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+    }
+
+    /**
+     * Gets the database product name.
+     *
+     * @return the database product name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the database product name.
+     *
+     * @param name the database product name.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the database major version.
+     *
+     * @return the database major version.
+     */
+    public String getMajorVersion() {
+        return majorVersion;
+    }
+
+    /**
+     * Sets the database major version.
+     *
+     * @param majorVersion the database major version.
+     */
+    public void setMajorVersion(String majorVersion) {
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * Gets the database minor version.
+     *
+     * @return the database minor version.
+     */
+    public String getMinorVersion() {
+        return minorVersion;
+    }
+
+    /**
+     * Sets the database minor version.
+     *
+     * @param minorVersion the database minor version.
+     */
+    public void setMinorVersion(String minorVersion) {
+        this.minorVersion = minorVersion;
+    }
+
+    /**
+     * Gets the output directory name of the database.
+     * <databaseProductName-databaseMajorVersion.databaseMinorVersion>
+     *
+     * @return the output directory name.
+     */
+    public String getDirectoryName() {
+        String vf = name.toLowerCase();
+        if (majorVersion != null && !majorVersion.isEmpty()) {
+            vf = vf + "-" + majorVersion;
+            if (minorVersion != null && !minorVersion.isEmpty()) {
+                vf = vf + "." + minorVersion;
+            }
+        }
+        return vf;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return getDirectoryName();
+    }
+}
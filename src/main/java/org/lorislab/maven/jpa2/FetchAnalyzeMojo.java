@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.lorislab.maven.jpa2.hibernate.FetchAnalyzer;
+import org.lorislab.maven.jpa2.hibernate.FetchAnalyzer.Finding;
+import org.lorislab.maven.jpa2.hibernate.FetchAnalyzer.Severity;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The JPA2 fetch strategy analysis. The mapping metadata of the persistence
+ * units is built offline and the eager associations, the lazy associations
+ * without the batch fetching and the bidirectional associations without the
+ * mappedBy are reported. The Hibernate provider is required.
+ *
+ * @author Andrej Petras
+ */
+@Mojo(name = "analyze", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true, requiresProject = true)
+public class FetchAnalyzeMojo extends AbstractJpaMojo {
+
+    /**
+     * The database product name of the offline bootstrap. The mapping
+     * metadata does not depend on the database. Default: HSQL Database Engine
+     */
+    @Parameter(defaultValue = "HSQL Database Engine")
+    private String databaseProductName;
+
+    /**
+     * The severities of the rules. The rules are eager-collection,
+     * multiple-eager-collections, eager-to-one, missing-mapped-by,
+     * collection-without-batch and entity-without-batch. The severities are
+     * off, info, warning and error.
+     * <pre>
+     * &lt;rules&gt;
+     *   &lt;eager-to-one&gt;error&lt;/eager-to-one&gt;
+     *   &lt;entity-without-batch&gt;off&lt;/entity-without-batch&gt;
+     * &lt;/rules&gt;
+     * </pre>
+     */
+    @Parameter
+    private Map<String, String> rules;
+
+    /**
+     * The minimal severity of the findings which fail the build. Default:
+     * error
+     */
+    @Parameter(property = "jpa2.analyze.failOnSeverity", defaultValue = "error")
+    private String failOnSeverity;
+
+    /**
+     * The maximum number of the findings with the fail severity which do not
+     * fail the build. Default: 0
+     */
+    @Parameter(property = "jpa2.analyze.maxFindings", defaultValue = "0")
+    private int maxFindings;
+
+    /**
+     * The analysis report file.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpa2-analyze.json")
+    private String reportFile;
+
+    /**
+     * Skip the execution. Default: false
+     */
+    @Parameter(property = "jpa2.analyze.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skip the fetch strategy analysis.");
+            return;
+        }
+        final FetchAnalyzer analyzer;
+        final Severity failSeverity;
+        try {
+            analyzer = new FetchAnalyzer(rules);
+            failSeverity = Severity.parse(failOnSeverity);
+        } catch (IllegalArgumentException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+
+        List<String> units = getPersistentUnits();
+        Map<String, Object> properties = createOfflineProperties(databaseProductName, null, null);
+        List<URL> urls = getClasspath();
+
+        Map<String, List<Finding>> findings = new LinkedHashMap<>();
+        for (String unit : units) {
+            findings.put(unit, bootstrap(unit, properties, urls, new BootstrapTask<List<Finding>>() {
+                @Override
+                public List<Finding> execute(HibernateBootstrap bootstrap) {
+                    return analyzer.analyze(bootstrap.getMetadata());
+                }
+            }));
+        }
+
+        Map<Severity, Integer> counts = new EnumMap<>(Severity.class);
+        for (Map.Entry<String, List<Finding>> entry : findings.entrySet()) {
+            for (Finding finding : entry.getValue()) {
+                log(entry.getKey(), finding);
+                Integer count = counts.get(finding.getSeverity());
+                counts.put(finding.getSeverity(), count == null ? 1 : count + 1);
+            }
+        }
+        writeReport(Paths.get(reportFile), findings);
+        getLog().info("Fetch strategy analysis: " + counts.toString().toLowerCase(Locale.ENGLISH) + ", report " + reportFile);
+
+        int failures = 0;
+        for (Map.Entry<Severity, Integer> count : counts.entrySet()) {
+            if (failSeverity != Severity.OFF && count.getKey().compareTo(failSeverity) >= 0) {
+                failures += count.getValue();
+            }
+        }
+        if (failures > maxFindings) {
+            throw new MojoFailureException("The fetch strategy analysis found " + failures + " findings with the severity "
+                    + failOnSeverity + " or higher, the maximum is " + maxFindings + ".");
+        }
+    }
+
+    /**
+     * Logs the finding with the log level of the severity.
+     *
+     * @param unit the persistence unit.
+     * @param finding the finding.
+     */
+    private void log(String unit, Finding finding) {
+        String message = unit + " " + finding;
+        switch (finding.getSeverity()) {
+            case ERROR:
+                getLog().error(message);
+                break;
+            case WARNING:
+                getLog().warn(message);
+                break;
+            default:
+                getLog().info(message);
+        }
+    }
+
+    /**
+     * Writes the analysis report.
+     *
+     * @param file the report file.
+     * @param findings the findings by the persistence unit.
+     */
+    private void writeReport(Path file, Map<String, List<Finding>> findings) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                json.beginObject();
+                json.name("findings").beginArray();
+                for (Map.Entry<String, List<Finding>> entry : findings.entrySet()) {
+                    for (Finding finding : entry.getValue()) {
+                        json.beginObject();
+                        json.property("persistenceUnit", entry.getKey());
+                        json.property("rule", finding.getRule());
+                        json.property("severity", finding.getSeverity().name().toLowerCase(Locale.ENGLISH));
+                        json.property("entity", finding.getEntity());
+                        json.property("property", finding.getProperty());
+                        json.property("message", finding.getMessage());
+                        json.endObject();
+                    }
+                }
+                json.endArray();
+                json.endObject();
+            }
+        } catch (IOException ex) {
+            getLog().warn("Error writing the analysis report " + file, ex);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.lorislab.maven.jpa2.index.EntityIndex;
+import org.lorislab.maven.jpa2.index.EntityIndexEntry;
+import org.lorislab.maven.jpa2.persistence.PersistenceModel21;
+import org.lorislab.maven.jpa2.persistence.jpa21.Persistence;
+import org.lorislab.maven.jpa2.persistence.jpa21.PersistenceUnitCachingType;
+import org.lorislab.maven.jpa2.persistence.jpa21.PersistenceUnitValidationModeType;
+import org.lorislab.maven.jpa2.util.Fingerprint;
+import org.lorislab.maven.jpa2.util.XMLUtil;
+
+/**
+ * The JPA2 persistence.xml optimizer. The managed classes of the persistence
+ * units are computed by the entity index at the build time and the
+ * persistence.xml with the explicit class list and the
+ * exclude-unlisted-classes is written to the build output. The persistence
+ * provider does not scan the classpath at the runtime. The JPA 2.1
+ * persistence.xml is required.
+ *
+ * @author Andrej Petras
+ */
+@Mojo(name = "optimize", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true, requiresProject = true)
+public class PersistenceOptimizeMojo extends AbstractJpaMojo {
+
+    /**
+     * The work directory of the optimizer in the build directory.
+     */
+    static final String WORK_DIR = "jpa2-persistence";
+
+    /**
+     * The copy of the original persistence.xml.
+     */
+    static final String ORIGINAL_FILE = "persistence.xml";
+
+    /**
+     * The hash of the optimized persistence.xml.
+     */
+    static final String HASH_FILE = "persistence.hash";
+
+    /**
+     * The optimized persistence.xml. Default: the persistence.xml in the
+     * build output directory.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}/META-INF/persistence.xml")
+    private String outputFile;
+
+    /**
+     * The validation mode of the optimized persistence units: AUTO, CALLBACK
+     * or NONE. The mode NONE skips the bootstrap of the bean validation.
+     * Default: the mode of the persistence.xml
+     */
+    @Parameter(property = "jpa2.optimize.validationMode")
+    private String validationMode;
+
+    /**
+     * The shared cache mode of the optimized persistence units: ALL, NONE,
+     * ENABLE_SELECTIVE, DISABLE_SELECTIVE or UNSPECIFIED. Default: the mode
+     * of the persistence.xml
+     */
+    @Parameter(property = "jpa2.optimize.sharedCacheMode")
+    private String sharedCacheMode;
+
+    /**
+     * Skip the execution. Default: false
+     */
+    @Parameter(property = "jpa2.optimize.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skip the persistence.xml optimization.");
+            return;
+        }
+        PersistenceUnitValidationModeType validation = null;
+        PersistenceUnitCachingType caching = null;
+        try {
+            if (validationMode != null && !validationMode.isEmpty()) {
+                validation = PersistenceUnitValidationModeType.fromValue(validationMode);
+            }
+            if (sharedCacheMode != null && !sharedCacheMode.isEmpty()) {
+                caching = PersistenceUnitCachingType.fromValue(sharedCacheMode);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new MojoExecutionException("Not valid validation mode " + validationMode + " or shared cache mode " + sharedCacheMode, ex);
+        }
+
+        List<String> units = getPersistentUnits();
+        String version = getPersistenceModel().getVersion();
+        if (!new PersistenceModel21().getVersion().equals(version)) {
+            throw new MojoExecutionException("The persistence.xml optimizer requires the persistence.xml version "
+                    + new PersistenceModel21().getVersion() + ", found version " + version);
+        }
+
+        Path output = Paths.get(outputFile);
+        Path original = getOriginalFile(output);
+        Persistence persistence;
+        try {
+            persistence = XMLUtil.loadObject(original, Persistence.class);
+        } catch (RuntimeException ex) {
+            throw new MojoExecutionException("Error loading the persistence.xml " + original, ex);
+        }
+
+        Path root = Paths.get(getProject().getBuild().getOutputDirectory());
+        List<URL> urls = getClasspath();
+        for (Persistence.PersistenceUnit unit : persistence.getPersistenceUnit()) {
+            if (units.contains(unit.getName())) {
+                optimize(unit, root, urls);
+                if (validation != null) {
+                    unit.setValidationMode(validation);
+                }
+                if (caching != null) {
+                    unit.setSharedCacheMode(caching);
+                }
+            }
+        }
+
+        try {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            XMLUtil.saveObject(output, persistence);
+        } catch (IOException | RuntimeException ex) {
+            throw new MojoExecutionException("Error writing the optimized persistence.xml " + output, ex);
+        }
+        if (output.equals(getPersistenceFile())) {
+            try {
+                Files.write(getWorkDirectory().resolve(HASH_FILE), Fingerprint.hash(output).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                throw new MojoExecutionException("Error writing the hash of the optimized persistence.xml", ex);
+            }
+        }
+        getLog().info("Optimized persistence.xml: " + output);
+    }
+
+    /**
+     * Writes the managed classes of the entity index to the persistence unit
+     * and disables the scanning of the unlisted classes. The classes of the
+     * root are indexed only if the unlisted classes are not excluded. The
+     * jar-file entries without the mapping files are replaced by the classes
+     * of the archives.
+     *
+     * @param unit the persistence unit.
+     * @param root the root of the persistence unit.
+     * @param urls the classpath.
+     * @throws MojoExecutionException if the creation of the index fails.
+     */
+    private void optimize(Persistence.PersistenceUnit unit, Path root, List<URL> urls) throws MojoExecutionException {
+        boolean excludeUnlisted = Boolean.TRUE.equals(unit.isExcludeUnlistedClasses());
+        List<Path> archives = new ArrayList<>();
+        Set<Path> mappingArchives = new HashSet<>();
+        List<String> jarFiles = new ArrayList<>();
+        for (String jarFile : unit.getJarFile()) {
+            Path archive = resolveJarFile(jarFile, root, urls);
+            if (archive == null) {
+                getLog().warn("Could not resolve the jar-file " + jarFile + " of the persistence unit " + unit.getName());
+                jarFiles.add(jarFile);
+            } else {
+                archives.add(archive);
+            }
+        }
+
+        EntityIndex index;
+        try {
+            index = EntityIndex.create(root, archives);
+        } catch (RuntimeException ex) {
+            throw new MojoExecutionException("Error creating the entity index of the persistence unit " + unit.getName(), ex);
+        }
+
+        Set<String> classes = new LinkedHashSet<>(unit.getClazz());
+        for (EntityIndexEntry entry : index.getEntries()) {
+            if (entry.getCategory() == EntityIndexEntry.Category.MAPPING_FILE) {
+                if (!entry.isRoot()) {
+                    mappingArchives.add(entry.getArchive());
+                }
+            } else if (!entry.isRoot() || !excludeUnlisted) {
+                classes.add(entry.getName());
+            }
+        }
+
+        Iterator<String> jarFile = unit.getJarFile().iterator();
+        while (jarFile.hasNext()) {
+            String name = jarFile.next();
+            if (!jarFiles.contains(name) && !mappingArchives.contains(resolveJarFile(name, root, urls))) {
+                jarFile.remove();
+            }
+        }
+
+        unit.getClazz().clear();
+        unit.getClazz().addAll(classes);
+        unit.setExcludeUnlistedClasses(Boolean.TRUE);
+        getLog().info("Persistence unit " + unit.getName() + " : " + classes.size() + " classes, "
+                + unit.getJarFile().size() + " jar-files with the mapping files");
+    }
+
+    /**
+     * Gets the original persistence.xml. The persistence.xml in the build
+     * output directory is copied to the work directory. The optimized
+     * persistence.xml of the previous build, which was not replaced by the
+     * resources of the project, is replaced by the copy of the original.
+     *
+     * @param output the optimized persistence.xml.
+     * @return the original persistence.xml.
+     * @throws MojoExecutionException if the copy of the original fails.
+     */
+    private Path getOriginalFile(Path output) throws MojoExecutionException {
+        Path source = getPersistenceFile();
+        if (!output.equals(source)) {
+            return source;
+        }
+        Path dir = getWorkDirectory();
+        Path original = dir.resolve(ORIGINAL_FILE);
+        Path hash = dir.resolve(HASH_FILE);
+        try {
+            if (Files.isRegularFile(original) && Files.isRegularFile(hash)
+                    && new String(Files.readAllBytes(hash), StandardCharsets.UTF_8).equals(getPersistenceHash())) {
+                getLog().debug("Reuse the original persistence.xml " + original);
+                return original;
+            }
+            Files.createDirectories(dir);
+            Files.copy(source, original, StandardCopyOption.REPLACE_EXISTING);
+            return original;
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error copying the original persistence.xml " + source, ex);
+        }
+    }
+
+    /**
+     * Gets the work directory of the optimizer.
+     *
+     * @return the work directory.
+     */
+    private Path getWorkDirectory() {
+        return Paths.get(getProject().getBuild().getDirectory()).resolve(WORK_DIR);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.hibernate.QueryCompiler;
+import org.lorislab.maven.jpa2.hibernate.QueryCompiler.CompiledQuery;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The JPA2 named query compilation. The session factory of the persistence
+ * units is built offline and every named query is translated to the SQL of
+ * the database. The SQL of the queries is written to the report and the
+ * invalid queries fail the build, the startup check of the named queries
+ * could be disabled in the runtime. The Hibernate provider is required.
+ *
+ * @author Andrej Petras
+ */
+@Mojo(name = "compile-queries", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true, requiresProject = true)
+public class QueryCompileMojo extends AbstractJpaMojo {
+
+    /**
+     * The report file name.
+     */
+    static final String REPORT_FILE = "named-queries.json";
+
+    /**
+     * The database product name of the SQL translation. Default: HSQL
+     * Database Engine
+     */
+    @Parameter(defaultValue = "HSQL Database Engine")
+    private String databaseProductName;
+
+    /**
+     * The database major version of the SQL translation.
+     */
+    @Parameter
+    private String databaseMajorVersion;
+
+    /**
+     * The database minor version of the SQL translation.
+     */
+    @Parameter
+    private String databaseMinorVersion;
+
+    /**
+     * The report directory. The report is written to
+     * &lt;reportDirectory&gt;/&lt;persistenceUnit&gt;/&lt;databaseProductName-databaseMajorVersion.databaseMinorVersion&gt;/named-queries.json
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpa2-queries")
+    private String reportDirectory;
+
+    /**
+     * Fail the build on the invalid named queries. Default: true
+     */
+    @Parameter(property = "jpa2.queries.fail", defaultValue = "true")
+    private boolean fail;
+
+    /**
+     * Skip the execution. Default: false
+     */
+    @Parameter(property = "jpa2.queries.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skip the named query compilation.");
+            return;
+        }
+
+        List<String> units = getPersistentUnits();
+        Map<String, Object> properties = QueryCompiler.createProperties(createOfflineProperties(databaseProductName, databaseMajorVersion, databaseMinorVersion));
+        List<URL> urls = getClasspath();
+        String directory = new Database(databaseProductName, databaseMajorVersion, databaseMinorVersion).getDirectoryName();
+
+        int invalid = 0;
+        for (String unit : units) {
+            List<CompiledQuery> queries = bootstrap(unit, properties, urls, new BootstrapTask<List<CompiledQuery>>() {
+                @Override
+                public List<CompiledQuery> execute(HibernateBootstrap bootstrap) {
+                    try (QueryCompiler compiler = new QueryCompiler(bootstrap)) {
+                        return compiler.compile();
+                    }
+                }
+            });
+
+            int count = 0;
+            for (CompiledQuery query : queries) {
+                if (!query.isValid()) {
+                    getLog().error(unit + " invalid named query " + query.getName() + ": " + query.getError());
+                    count++;
+                }
+            }
+            Path file = Paths.get(reportDirectory, unit, directory, REPORT_FILE);
+            writeReport(file, unit, queries);
+            getLog().info("Named queries of the persistence unit " + unit + ": " + queries.size() + " queries, "
+                    + count + " invalid, report " + file);
+            invalid += count;
+        }
+
+        if (invalid > 0 && fail) {
+            throw new MojoFailureException("The named query compilation found " + invalid + " invalid queries.");
+        }
+    }
+
+    /**
+     * Writes the report of the named queries.
+     *
+     * @param file the report file.
+     * @param unit the persistence unit.
+     * @param queries the compiled queries.
+     */
+    private void writeReport(Path file, String unit, List<CompiledQuery> queries) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                json.beginObject();
+                json.property("persistenceUnit", unit);
+                json.property("database", databaseProductName);
+                json.name("queries").beginArray();
+                for (CompiledQuery query : queries) {
+                    json.beginObject();
+                    json.property("name", query.getName());
+                    json.property("native", query.isNativeQuery());
+                    json.property("query", query.getQuery());
+                    json.name("sql").beginArray();
+                    for (String sql : query.getSql()) {
+                        json.value(sql);
+                    }
+                    json.endArray();
+                    json.property("error", query.getError());
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+            }
+        } catch (IOException ex) {
+            getLog().warn("Error writing the named query report " + file, ex);
+        }
+    }
+}
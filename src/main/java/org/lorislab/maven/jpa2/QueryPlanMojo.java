@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.lorislab.maven.jpa2.ddl.PlanExplainer;
+import org.lorislab.maven.jpa2.ddl.QueryPlans;
+import org.lorislab.maven.jpa2.ddl.QueryPlans.Change;
+import org.lorislab.maven.jpa2.ddl.QueryPlans.ChangeType;
+import org.lorislab.maven.jpa2.ddl.ScriptExecutor;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.hibernate.OfflineSchemaExport;
+import org.lorislab.maven.jpa2.hibernate.QueryCompiler;
+import org.lorislab.maven.jpa2.hibernate.QueryCompiler.CompiledQuery;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The JPA2 query plan baseline. The schema of the persistence units is
+ * generated for the HSQLDB dialect and created in the embedded in-memory
+ * database, the named queries are translated to SQL and explained by the
+ * database. The plans are compared with the baseline plans of the previous
+ * build and the new full scans and the changed plans are reported. The
+ * Hibernate provider is required.
+ *
+ * @author Andrej Petras
+ */
+@Mojo(name = "explain", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true, requiresProject = true)
+public class QueryPlanMojo extends AbstractJpaMojo {
+
+    /**
+     * The database product name of the embedded database.
+     */
+    private static final String DATABASE = "HSQL Database Engine";
+
+    /**
+     * The SQL delimiter of the create script.
+     */
+    private static final String DELIMITER = ";";
+
+    /**
+     * The create script file name.
+     */
+    static final String CREATE_FILE = "create.sql";
+
+    /**
+     * The report file name.
+     */
+    static final String REPORT_FILE = "query-plans.json";
+
+    /**
+     * The plan file name suffix.
+     */
+    static final String PLAN_SUFFIX = ".plans";
+
+    /**
+     * The directory of the baseline files. The baseline of the persistence
+     * unit is the file &lt;baselineDirectory&gt;/&lt;persistenceUnit&gt;.plans
+     */
+    @Parameter(property = "jpa2.explain.baselineDirectory", defaultValue = "${project.basedir}/src/jpa2/query-plans")
+    private String baselineDirectory;
+
+    /**
+     * The report directory. The create script, the report and the current
+     * plans are written to the directory &lt;reportDirectory&gt;/&lt;persistenceUnit&gt;
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpa2-query-plans")
+    private String reportDirectory;
+
+    /**
+     * Write the current plans to the baseline file. The missing baseline is
+     * always written. Default: false
+     */
+    @Parameter(property = "jpa2.explain.updateBaseline", defaultValue = "false")
+    private boolean updateBaseline;
+
+    /**
+     * Fail the build on the new full scans. Default: true
+     */
+    @Parameter(property = "jpa2.explain.failOnFullScan", defaultValue = "true")
+    private boolean failOnFullScan;
+
+    /**
+     * Fail the build on the changed plans. Default: false
+     */
+    @Parameter(property = "jpa2.explain.failOnPlanChange", defaultValue = "false")
+    private boolean failOnPlanChange;
+
+    /**
+     * Skip the execution. Default: false
+     */
+    @Parameter(property = "jpa2.explain.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skip the query plan baseline.");
+            return;
+        }
+
+        List<String> units = getPersistentUnits();
+        Map<String, Object> properties = QueryCompiler.createProperties(createOfflineProperties(DATABASE, null, null));
+        List<URL> urls = getClasspath();
+
+        int failures = 0;
+        for (final String unit : units) {
+            final Path dir = Paths.get(reportDirectory, unit);
+            QueryPlans plans = bootstrap(unit, properties, urls, new BootstrapTask<QueryPlans>() {
+                @Override
+                public QueryPlans execute(HibernateBootstrap bootstrap) throws MojoExecutionException {
+                    return explain(unit, bootstrap, dir);
+                }
+            });
+            failures += compare(unit, plans, dir);
+        }
+
+        if (failures > 0) {
+            throw new MojoFailureException("The query plan baseline found " + failures
+                    + " new full scans or changed plans. Update the baseline by -Djpa2.explain.updateBaseline=true.");
+        }
+    }
+
+    /**
+     * Explains the named queries of the persistence unit in the embedded
+     * database.
+     *
+     * @param unit the persistence unit.
+     * @param bootstrap the Hibernate bootstrap.
+     * @param dir the report directory of the persistence unit.
+     * @return the query plans.
+     * @throws MojoExecutionException if the schema could not be created.
+     */
+    private QueryPlans explain(String unit, HibernateBootstrap bootstrap, Path dir) throws MojoExecutionException {
+        Path createFile = dir.resolve(CREATE_FILE);
+        OfflineSchemaExport.export(bootstrap, "create", null, createFile, DELIMITER);
+
+        List<CompiledQuery> queries;
+        try (QueryCompiler compiler = new QueryCompiler(bootstrap)) {
+            queries = compiler.compile();
+        }
+
+        QueryPlans result = new QueryPlans();
+        Path reportFile = dir.resolve(REPORT_FILE);
+        try (PlanExplainer explainer = new PlanExplainer();
+                JsonWriter json = new JsonWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+            explainer.createSchema(ScriptExecutor.load(createFile, DELIMITER));
+
+            json.beginObject();
+            json.property("persistenceUnit", unit);
+            json.name("queries").beginArray();
+            for (CompiledQuery query : queries) {
+                if (!query.isValid()) {
+                    getLog().warn(unit + " skip the invalid named query " + query.getName() + ": " + query.getError());
+                    continue;
+                }
+                List<String> sqls = query.getSql();
+                for (int i = 0; i < sqls.size(); i++) {
+                    String sql = query.isNativeQuery() ? PlanExplainer.jdbcParameters(sqls.get(i)) : sqls.get(i);
+                    json.beginObject();
+                    json.property("name", query.getName());
+                    json.property("native", query.isNativeQuery());
+                    json.property("sql", sql);
+                    try {
+                        List<String> explain = explainer.explain(sql);
+                        String plan = QueryPlans.summarize(explain);
+                        json.property("key", result.put(query.getName(), i, plan));
+                        json.property("plan", plan);
+                        json.property("fullScans", QueryPlans.getFullScans(plan));
+                        json.name("explain").beginArray();
+                        for (String line : explain) {
+                            json.value(line);
+                        }
+                        json.endArray();
+                    } catch (SQLException ex) {
+                        getLog().warn(unit + " error explaining the named query " + query.getName() + ": " + ex.getMessage());
+                        json.property("error", ex.getMessage());
+                    }
+                    json.endObject();
+                }
+            }
+            json.endArray();
+            json.endObject();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error writing the query plan report " + reportFile, ex);
+        } catch (SQLException ex) {
+            throw new MojoExecutionException("Error creating the schema of the persistence unit " + unit + " in the embedded database", ex);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the query plans with the baseline. The missing baseline is
+     * written.
+     *
+     * @param unit the persistence unit.
+     * @param plans the query plans.
+     * @param dir the report directory of the persistence unit.
+     * @return the number of the changes which fail the build.
+     * @throws MojoExecutionException if the plans could not be written or
+     * the baseline could not be read.
+     */
+    private int compare(String unit, QueryPlans plans, Path dir) throws MojoExecutionException {
+        Path baselineFile = Paths.get(baselineDirectory, unit + PLAN_SUFFIX);
+        String comment = "JPA2 query plans of the persistence unit " + unit;
+        try {
+            plans.write(dir.resolve(unit + PLAN_SUFFIX), comment);
+            if (updateBaseline || !Files.isRegularFile(baselineFile)) {
+                plans.write(baselineFile, comment);
+                getLog().info("Query plan baseline of the persistence unit " + unit + ": " + plans.getPlans().size()
+                        + " plans written to " + baselineFile);
+                return 0;
+            }
+
+            int failures = 0;
+            List<Change> changes = plans.compare(QueryPlans.load(baselineFile));
+            for (Change change : changes) {
+                String message = unit + " " + change;
+                if (change.getType() == ChangeType.NEW_FULL_SCAN && failOnFullScan
+                        || change.getType() == ChangeType.CHANGED && failOnPlanChange) {
+                    getLog().error(message);
+                    failures++;
+                } else if (change.getType() == ChangeType.REMOVED) {
+                    getLog().info(message);
+                } else {
+                    getLog().warn(message);
+                }
+            }
+            getLog().info("Query plans of the persistence unit " + unit + ": " + plans.getPlans().size() + " plans, "
+                    + changes.size() + " changes against the baseline " + baselineFile);
+            return failures;
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error comparing the query plans with the baseline " + baselineFile, ex);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.lorislab.maven.jpa2.ddl.SchemaPlan;
+import org.lorislab.maven.jpa2.ddl.ScriptExecutor;
+import org.lorislab.maven.jpa2.ddl.StatementReader;
+import org.lorislab.maven.jpa2.ddl.StatementTiming;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The JPA2 apply generated schema. The generated drop and create scripts are
+ * executed by JDBC. The independent tables of the script plan are executed
+ * in parallel on the connection pool and the statements of one table are
+ * executed in batches.
+ *
+ * @author Andrej Petras
+ */
+@Mojo(name = "apply", threadSafe = true, requiresProject = true)
+public class SchemaApplyMojo extends AbstractMojo {
+
+    /**
+     * The apply report file name.
+     */
+    public static final String REPORT_FILE = "apply-report.json";
+
+    /**
+     * The number of the slowest statements in the log.
+     */
+    private static final int SLOWEST = 5;
+
+    /**
+     * The JDBC URL of the target database.
+     */
+    @Parameter(property = "jpa2.apply.url", required = true)
+    private String url;
+
+    /**
+     * The database user.
+     */
+    @Parameter(property = "jpa2.apply.user")
+    private String user;
+
+    /**
+     * The database password.
+     */
+    @Parameter(property = "jpa2.apply.password")
+    private String password;
+
+    /**
+     * The JDBC driver class. The driver has to be on the plugin classpath,
+     * the HSQLDB driver is the plugin dependency.
+     */
+    @Parameter(property = "jpa2.apply.driver")
+    private String driver;
+
+    /**
+     * The directory of the scripts. Default: the directory of the generate
+     * goal
+     * <outputDirectory>/<persistenceUnit>/<databaseProductName-databaseMajorVersion.databaseMinorVersion>
+     */
+    @Parameter(property = "jpa2.apply.scriptDirectory")
+    private String scriptDirectory;
+
+    /**
+     * The output directory of the generate goal. Default:
+     * ${project.build.directory}/generated-schema
+     */
+    @Parameter(property = "jpa2.apply.outputDirectory", defaultValue = "${project.build.directory}/generated-schema")
+    private String outputDirectory;
+
+    /**
+     * The persistence unit of the scripts generated for all persistence
+     * units.
+     */
+    @Parameter(property = "jpa2.apply.persistenceUnit")
+    private String persistenceUnit;
+
+    /**
+     * The database product name of the scripts. Default: HSQL Database
+     * Engine
+     */
+    @Parameter(property = "jpa2.apply.databaseProductName", defaultValue = "HSQL Database Engine")
+    private String databaseProductName;
+
+    /**
+     * The database major version of the scripts.
+     */
+    @Parameter(property = "jpa2.apply.databaseMajorVersion")
+    private String databaseMajorVersion;
+
+    /**
+     * The database minor version of the scripts.
+     */
+    @Parameter(property = "jpa2.apply.databaseMinorVersion")
+    private String databaseMinorVersion;
+
+    /**
+     * The scripts are in the output directory of the database product name
+     * like the generated scripts with the {@code databaseProductDir}.
+     * Default: true
+     */
+    @Parameter(defaultValue = "true")
+    private boolean databaseProductDir;
+
+    /**
+     * The drop script file. Default drop.sql
+     */
+    @Parameter(defaultValue = "drop.sql")
+    private String dropTargetFile;
+
+    /**
+     * The create script file. Default create.sql
+     */
+    @Parameter(defaultValue = "create.sql")
+    private String createTargetFile;
+
+    /**
+     * Execute the drop script before the create script. The errors of the
+     * drop script are logged and ignored. Default: false
+     */
+    @Parameter(property = "jpa2.apply.drop", defaultValue = "false")
+    private boolean drop;
+
+    /**
+     * The SQL delimiter. Default ;
+     * 
+     * The scripts without any line ending with the delimiter are applied
+     * with one statement per line, as written by the generation without the
+     * {@code offline} flag.
+     */
+    @Parameter(defaultValue = ";")
+    private String delimiter;
+
+    /**
+     * The number of the connections and threads. Default: 4
+     */
+    @Parameter(property = "jpa2.apply.threads", defaultValue = "4")
+    private int threads;
+
+    /**
+     * The maximum number of the statements in one JDBC batch. The statements
+     * of the batch share the execution time in the report. Default: 20
+     */
+    @Parameter(property = "jpa2.apply.batchSize", defaultValue = "20")
+    private int batchSize;
+
+    /**
+     * Continue on the statement error. Default: false
+     */
+    @Parameter(property = "jpa2.apply.continueOnError", defaultValue = "false")
+    private boolean continueOnError;
+
+    /**
+     * Skip the execution. Default: false
+     */
+    @Parameter(property = "jpa2.apply.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skip the apply of the schema scripts.");
+            return;
+        }
+        Path dir = getScriptDirectory();
+        Path createFile = dir.resolve(createTargetFile);
+        Path dropFile = dir.resolve(dropTargetFile);
+        if (!Files.isRegularFile(createFile) && !(drop && Files.isRegularFile(dropFile))) {
+            throw new MojoExecutionException("Missing the schema script " + createFile);
+        }
+
+        List<StatementTiming> timings = new ArrayList<>();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            SchemaPlan create = null;
+            String createDelimiter = null;
+            if (Files.isRegularFile(createFile)) {
+                createDelimiter = StatementReader.resolveDelimiter(createFile, Charset.defaultCharset(), delimiter);
+                create = SchemaPlan.create(createFile, createDelimiter);
+            }
+            for (int i = 0; i < Math.max(1, threads); i++) {
+                connections.add(createConnection());
+            }
+            if (drop && Files.isRegularFile(dropFile)) {
+                // the objects of the drop script may not exist
+                ScriptExecutor executor = new ScriptExecutor(connections, batchSize, true);
+                String dropDelimiter = StatementReader.resolveDelimiter(dropFile, Charset.defaultCharset(), delimiter);
+                timings.addAll(apply(executor, SchemaPlan.drop(dropFile, dropDelimiter, create), dropFile, dropDelimiter));
+            }
+            if (create != null) {
+                ScriptExecutor executor = new ScriptExecutor(connections, batchSize, continueOnError);
+                timings.addAll(apply(executor, create, createFile, createDelimiter));
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error reading the schema scripts.", ex);
+        } catch (SQLException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            for (Connection connection : connections) {
+                close(connection);
+            }
+            writeReport(dir.resolve(REPORT_FILE), timings);
+        }
+    }
+
+    /**
+     * Gets the directory of the scripts. The default directory is the output
+     * directory of the generate goal.
+     *
+     * @return the directory of the scripts.
+     */
+    private Path getScriptDirectory() {
+        if (scriptDirectory != null && !scriptDirectory.isEmpty()) {
+            return Paths.get(scriptDirectory);
+        }
+        Path result = Paths.get(outputDirectory);
+        if (persistenceUnit != null && !persistenceUnit.isEmpty()) {
+            result = result.resolve(persistenceUnit);
+        }
+        if (databaseProductDir) {
+            result = result.resolve(new Database(databaseProductName, databaseMajorVersion, databaseMinorVersion).getDirectoryName());
+        }
+        return result;
+    }
+
+    /**
+     * Applies the script.
+     *
+     * @param executor the script executor.
+     * @param plan the plan of the script.
+     * @param script the script file.
+     * @param scriptDelimiter the SQL delimiter of the script.
+     * @return the execution times of the statements.
+     * @throws IOException if the script could not be read.
+     * @throws SQLException if the statement failed.
+     */
+    private List<StatementTiming> apply(ScriptExecutor executor, SchemaPlan plan, Path script, String scriptDelimiter) throws IOException, SQLException {
+        List<String> statements = ScriptExecutor.load(script, scriptDelimiter);
+        getLog().info("Apply " + script + " : " + statements.size() + " statements in " + plan.getLevels().size() + " levels");
+        long start = System.nanoTime();
+        List<StatementTiming> result = executor.execute(plan, statements);
+        long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int errors = 0;
+        for (StatementTiming timing : result) {
+            if (timing.getError() != null) {
+                errors++;
+                getLog().warn("Statement " + timing.getStatement() + " of the " + timing.getScript() + " failed: " + timing.getError());
+            }
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Statement " + timing.getStatement() + " level " + timing.getLevel() + " group " + timing.getGroup()
+                        + " : " + TimeUnit.NANOSECONDS.toMicros(timing.getTime()) + " us (batch " + timing.getBatchSize() + ")");
+            }
+        }
+        getLog().info("Applied " + script.getFileName() + " in " + time + " ms, " + result.size() + " statements, " + errors + " errors");
+
+        List<StatementTiming> slowest = new ArrayList<>(result);
+        Collections.sort(slowest, new Comparator<StatementTiming>() {
+            @Override
+            public int compare(StatementTiming o1, StatementTiming o2) {
+                return Long.compare(o2.getTime(), o1.getTime());
+            }
+        });
+        for (int i = 0; i < SLOWEST && i < slowest.size(); i++) {
+            StatementTiming timing = slowest.get(i);
+            getLog().info("  statement " + timing.getStatement() + " (" + timing.getGroup() + ") "
+                    + TimeUnit.NANOSECONDS.toMillis(timing.getTime()) + " ms" + (timing.getBatchSize() > 1 ? " in batch of " + timing.getBatchSize() : ""));
+        }
+        return result;
+    }
+
+    /**
+     * Creates the database connection.
+     *
+     * @return the database connection.
+     * @throws SQLException if the connection could not be created.
+     * @throws MojoExecutionException if the JDBC driver is not on the plugin
+     * classpath.
+     */
+    private Connection createConnection() throws SQLException, MojoExecutionException {
+        if (driver != null && !driver.isEmpty()) {
+            try {
+                Class.forName(driver, true, getClass().getClassLoader());
+            } catch (ClassNotFoundException ex) {
+                throw new MojoExecutionException("The JDBC driver " + driver + " is not on the plugin classpath.", ex);
+            }
+        }
+        Connection result = DriverManager.getConnection(url, user, password);
+        result.setAutoCommit(true);
+        return result;
+    }
+
+    /**
+     * Closes the database connection.
+     *
+     * @param connection the database connection.
+     */
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            getLog().debug("Error closing the connection", ex);
+        }
+    }
+
+    /**
+     * Writes the apply report with the execution times of the statements.
+     *
+     * @param file the report file.
+     * @param timings the execution times of the statements.
+     */
+    private void writeReport(Path file, List<StatementTiming> timings) {
+        if (timings.isEmpty()) {
+            return;
+        }
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("url", url);
+            json.name("statements").beginArray();
+            for (StatementTiming timing : timings) {
+                json.beginObject();
+                json.property("script", timing.getScript());
+                json.property("statement", timing.getStatement());
+                json.property("level", timing.getLevel());
+                json.property("group", timing.getGroup());
+                json.property("timeNanos", timing.getTime());
+                json.property("batchSize", timing.getBatchSize());
+                json.property("error", timing.getError());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            getLog().debug("Apply report: " + file);
+        } catch (IOException ex) {
+            getLog().warn("Error writing the apply report " + file, ex);
+        }
+    }
+}
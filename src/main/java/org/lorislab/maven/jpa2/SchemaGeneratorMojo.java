@@ -15,19 +15,26 @@
  */
 package org.lorislab.maven.jpa2;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import javax.persistence.Persistence;
-import org.apache.maven.artifact.Artifact;
-import org.apache.maven.plugin.AbstractMojo;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Execute;
@@ -35,10 +42,30 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.project.MavenProject;
-import org.lorislab.maven.jpa2.persistence.PersistenceModel;
-import org.lorislab.maven.jpa2.persistence.PersistenceModel21;
-import org.lorislab.maven.jpa2.util.XMLUtil;
+import org.lorislab.maven.jpa2.ddl.RowFootprint;
+import org.lorislab.maven.jpa2.ddl.SchemaPlan;
+import org.lorislab.maven.jpa2.ddl.ScriptExecutor;
+import org.lorislab.maven.jpa2.ddl.ScriptPipeline;
+import org.lorislab.maven.jpa2.ddl.ScriptStage;
+import org.lorislab.maven.jpa2.ddl.StatementReader;
+import org.lorislab.maven.jpa2.ddl.TableSplitter;
+import org.lorislab.maven.jpa2.generator.ForkedGenerator;
+import org.lorislab.maven.jpa2.generator.ForkedGeneratorLauncher;
+import org.lorislab.maven.jpa2.generator.GeneratorDaemonClient;
+import org.lorislab.maven.jpa2.generator.GenerationJob;
+import org.lorislab.maven.jpa2.generator.SchemaGenerator;
+import org.lorislab.maven.jpa2.hibernate.GeneratorAudit;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.hibernate.IndexAdvisor;
+import org.lorislab.maven.jpa2.hibernate.IndexScanner;
+import org.lorislab.maven.jpa2.index.ClasspathPruner;
+import org.lorislab.maven.jpa2.index.EntityIndex;
+import org.lorislab.maven.jpa2.persistence.PersistenceUnitDefinition;
+import org.lorislab.maven.jpa2.report.FootprintLimits;
+import org.lorislab.maven.jpa2.report.GenerationBudget;
+import org.lorislab.maven.jpa2.report.GenerationPhase;
+import org.lorislab.maven.jpa2.report.GenerationReport;
+import org.lorislab.maven.jpa2.util.Fingerprint;
 
 /**
  * The JPA2 generated schema.
@@ -48,37 +75,43 @@ import org.lorislab.maven.jpa2.util.XMLUtil;
 @Mojo(name = "generate", inheritByDefault = false, requiresDependencyResolution = ResolutionScope.COMPILE,
         threadSafe = true, requiresProject = true)
 @Execute(goal = "generate", phase = LifecyclePhase.PREPARE_PACKAGE)
-public class SchemaGeneratorMojo extends AbstractMojo {
+public class SchemaGeneratorMojo extends AbstractJpaMojo {
 
     /**
-     * The persistence modifier.
+     * The state file of the last generation.
      */
-    private static final Map<String, PersistenceModel> MODIFIER = new HashMap<>();
+    private static final String STATE_FILE = ".jpa2-generate.state";
 
     /**
-     * Persistence version.
+     * The state file fingerprint key.
      */
-    static {
-        PersistenceModel21 p21 = new PersistenceModel21();
-        MODIFIER.put(p21.getVersion(), p21);
-    }
+    private static final String STATE_FINGERPRINT = "fingerprint";
 
     /**
-     * The MAVEN project.
+     * The entity index directory in the build directory.
      */
-    @Parameter(defaultValue = "${project}", required = true, readonly = true)
-    private MavenProject project;
+    private static final String INDEX_DIR = "jpa2-entity-index";
 
     /**
-     * The persistence unit.
+     * The argument file directory of the forked generator in the build
+     * directory.
      */
-    @Parameter
-    private String persistenceUnit;
+    private static final String FORK_DIR = "jpa2-fork";
+
+    /**
+     * The in-memory database name prefix.
+     */
+    private static final String DATABASE_NAME = "jpa2db";
+
+    /**
+     * The in-memory database counter.
+     */
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
 
     /**
      * The database product name;
      */
-    @Parameter(required = true)
+    @Parameter
     private String databaseProductName;
 
     /**
@@ -119,6 +152,11 @@ public class SchemaGeneratorMojo extends AbstractMojo {
 
     /**
      * The SQL delimiter. Default ;
+     * 
+     * The JPA schema generation without the {@code offline} flag writes one
+     * statement per line without the delimiter. The pipeline, the split
+     * tables, the schema plan and the row footprint read and write these
+     * scripts with one statement per line.
      */
     @Parameter(defaultValue = ";")
     private String delimiter;
@@ -134,33 +172,543 @@ public class SchemaGeneratorMojo extends AbstractMojo {
      */
     @Parameter(defaultValue = "true")
     private boolean databaseProductDir;
-    
+
+    /**
+     * Skip the generation if the entity classes, mapping files and the
+     * configuration did not change since the last generation. Default: true
+     */
+    @Parameter(defaultValue = "true")
+    private boolean incremental;
+
+    /**
+     * The list of the target databases. The scripts for all databases are
+     * generated in one execution with the shared class loader.
+     * <pre>
+     * &lt;databases&gt;
+     *   &lt;database&gt;
+     *     &lt;name&gt;Oracle&lt;/name&gt;
+     *     &lt;majorVersion&gt;12&lt;/majorVersion&gt;
+     *     &lt;minorVersion&gt;1&lt;/minorVersion&gt;
+     *   &lt;/database&gt;
+     * &lt;/databases&gt;
+     * </pre>
+     */
+    @Parameter
+    private List<Database> databases;
+
+    /**
+     * The maximum number of the parallel generation threads. Default: 0 (the
+     * number of available processors)
+     */
+    @Parameter(defaultValue = "0")
+    private int threads;
+
+    /**
+     * Generate the scripts offline without any JDBC connection. The
+     * Hibernate dialect is resolved from the database product name and
+     * version and the scripts are written by the Hibernate schema export
+     * directly from the metadata. The Hibernate provider is required.
+     * Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean offline;
+
+    /**
+     * Create the entity index of the persistence unit from the class files
+     * of the build output directory and the jar files of the persistence
+     * unit. The index is written to the
+     * {@code <build>/jpa2-entity-index/<persistenceUnit>.index} file and
+     * the Hibernate scanning of the classpath is replaced by the index. The
+     * Hibernate provider is required. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean entityIndex;
+
+    /**
+     * Remove the archives without any JPA relevant content from the class
+     * loader of the persistence unit. The archives with the persistence.xml,
+     * the mapping files, the persistence provider or the classes referenced
+     * by the managed classes are kept. The classes mapped only in the XML
+     * mapping files have to be in the build output directory or listed in
+     * the persistence.xml. The persistence provider has to be the plugin
+     * dependency. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean pruneClasspath;
+
+    /**
+     * Run the generation in the forked JVM. The generation of each
+     * persistence unit runs in its own JVM with the configured heap size and
+     * JVM arguments. The log messages of the forked JVM are written to the
+     * MAVEN log. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean fork;
+
+    /**
+     * The maximum heap size of the forked JVM, for example {@code 2g}.
+     */
+    @Parameter
+    private String forkMaxHeap;
+
+    /**
+     * The additional arguments of the forked JVM, for example
+     * {@code -XX:+UseG1GC -XX:MaxMetaspaceSize=512m}.
+     */
+    @Parameter
+    private String forkJvmArgs;
+
+    /**
+     * The java executable of the forked JVM. Default: ${java.home}/bin/java
+     */
+    @Parameter(defaultValue = "${java.home}/bin/java")
+    private String forkJavaExecutable;
+
+    /**
+     * Run the generation in the warm generator daemon. The daemon is started
+     * with the fork JVM options on the first request and reused by the next
+     * modules and builds until the idle timeout. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean daemon;
+
+    /**
+     * The idle timeout of the generator daemon in seconds. Default: 600
+     */
+    @Parameter(defaultValue = "600")
+    private int daemonIdleTimeout;
+
+    /**
+     * The response timeout of the generator daemon in seconds. The
+     * generation fails if the daemon does not write the next log message or
+     * the result in the timeout. Default: 600
+     */
+    @Parameter(defaultValue = "600")
+    private int daemonResponseTimeout;
+
+    /**
+     * The directory of the generator daemon files. Default:
+     * ${user.home}/.m2/jpa2-daemon
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/jpa2-daemon")
+    private String daemonDirectory;
+
+    /**
+     * Write the generation report {@code generation-report.json} with the
+     * time, the allocated bytes and the loaded classes of the generation
+     * phases to the output target directory. Default: true
+     */
+    @Parameter(defaultValue = "true")
+    private boolean generationReport;
+
+    /**
+     * The performance budget of the generation. The total time, the
+     * bootstrap time, the peak heap and the loaded classes are checked after
+     * the generation against the maximum values and against the baseline
+     * file.
+     * <pre>
+     * &lt;budget&gt;
+     *   &lt;maxTotalTime&gt;30000&lt;/maxTotalTime&gt;
+     *   &lt;maxBootstrapTime&gt;20000&lt;/maxBootstrapTime&gt;
+     *   &lt;maxPeakHeap&gt;512&lt;/maxPeakHeap&gt;
+     *   &lt;maxLoadedClasses&gt;20000&lt;/maxLoadedClasses&gt;
+     *   &lt;baselineFile&gt;src/build/jpa2-baseline.properties&lt;/baselineFile&gt;
+     *   &lt;tolerance&gt;20&lt;/tolerance&gt;
+     *   &lt;fail&gt;true&lt;/fail&gt;
+     * &lt;/budget&gt;
+     * </pre>
+     */
+    @Parameter
+    private GenerationBudget budget;
+
+    /**
+     * Overwrite the baseline file of the budget with the measured values.
+     * Default: false
+     */
+    @Parameter(property = "jpa2.updateBaseline", defaultValue = "false")
+    private boolean updateBaseline;
+
+    /**
+     * The statement pipeline of the generated scripts. The stages process
+     * every statement of the drop and create scripts in the configured
+     * order.
+     * <pre>
+     * &lt;pipeline&gt;
+     *   &lt;stage&gt;
+     *     &lt;type&gt;filter&lt;/type&gt;
+     *     &lt;pattern&gt;^drop sequence&lt;/pattern&gt;
+     *   &lt;/stage&gt;
+     *   &lt;stage&gt;
+     *     &lt;type&gt;split&lt;/type&gt;
+     *     &lt;pattern&gt;^alter table .* foreign key&lt;/pattern&gt;
+     *     &lt;file&gt;constraints.sql&lt;/file&gt;
+     *   &lt;/stage&gt;
+     * &lt;/pipeline&gt;
+     * </pre>
+     */
+    @Parameter
+    private List<ScriptStage> pipeline;
+
+    /**
+     * Split the generated scripts per table. The {@code create.sql} script
+     * is split to the {@code create} directory with one file per table, its
+     * indexes and owned sequences in the {@code tables} directory, the
+     * {@code sequences.sql}, {@code constraints.sql} and {@code other.sql}
+     * files and the {@code manifest.txt} which lists the files in the
+     * dependency order. The same applies to the {@code drop.sql} script.
+     * Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean splitTables;
+
+    /**
+     * Write the parallel execution plan of the scripts. The plan
+     * {@code create-plan.json} lists the topological levels of the foreign
+     * key dependency graph, the statement groups of one level are
+     * independent. The foreign keys of the cycles are deferred to the level
+     * after all tables. The same applies to the {@code drop.sql} script.
+     * Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean schemaPlan;
+
+    /**
+     * Write the missing indexes of the foreign key columns, the join table
+     * columns and the order columns to the {@code indexes.sql} script and the
+     * {@code index-advisor.json} report in the output directory. The columns
+     * are covered by the primary key, an index or an unique key with the
+     * same leading columns. The advisor requires the offline generation.
+     * Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean indexAdvisor;
+
+    /**
+     * Audit the identifier generators and the JDBC batching of the entities.
+     * The identity generators, the sequences and the tables without the
+     * pooled optimizer and the disabled JDBC batching are reported in the
+     * {@code generator-audit.json}. The sequences with the increment of the
+     * pooled optimizer and the cache clause of the dialect are written to the
+     * {@code pooled-sequences.sql} in the output directory. The audit requires
+     * the offline generation. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean generatorAudit;
+
+    /**
+     * Write the estimated row footprint of the create script to the
+     * {@code row-footprint.json} in the output directory. The minimal, the
+     * average and the maximal row width of every table are estimated from the
+     * column types of the target database. The large object columns, the
+     * oversized columns and the string columns with the default length 255
+     * are flagged. Default: false
+     */
+    @Parameter(defaultValue = "false")
+    private boolean rowFootprint;
+
+    /**
+     * The limits of the row footprint of every persistence unit and database.
+     * <pre>
+     * &lt;footprintLimits&gt;
+     *   &lt;maxColumnWidth&gt;2000&lt;/maxColumnWidth&gt;
+     *   &lt;maxRowWidth&gt;8000&lt;/maxRowWidth&gt;
+     *   &lt;maxAverageRowWidth&gt;2000&lt;/maxAverageRowWidth&gt;
+     *   &lt;maxLobColumns&gt;2&lt;/maxLobColumns&gt;
+     *   &lt;maxOversizedColumns&gt;0&lt;/maxOversizedColumns&gt;
+     *   &lt;maxDefaultLengthColumns&gt;10&lt;/maxDefaultLengthColumns&gt;
+     *   &lt;fail&gt;true&lt;/fail&gt;
+     * &lt;/footprintLimits&gt;
+     * </pre>
+     */
+    @Parameter
+    private FootprintLimits footprintLimits;
+
+    /**
+     * The generation report of the execution.
+     */
+    private GenerationReport report;
+
+    /**
+     * The violations of the row footprint limits.
+     */
+    private final List<String> footprintViolations = Collections.synchronizedList(new ArrayList<String>());
+
     /**
      * {@inheritDoc }
      */
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        report = new GenerationReport();
+        try {
+            generate();
+        } finally {
+            report.stop();
+            getLog().info(report.getSummary());
+            if (generationReport) {
+                writeReport();
+            }
+        }
+        checkFootprint();
+        checkBudget();
+    }
 
-        String persistentUnit = getPersistentUnit();
+    /**
+     * Generates the schema scripts of the persistence units for the target
+     * databases.
+     *
+     * @throws MojoExecutionException if the generation fails.
+     */
+    private void generate() throws MojoExecutionException {
+        if (indexAdvisor && !offline) {
+            throw new MojoExecutionException("The index advisor requires the offline generation. Set the 'offline' attribute to true.");
+        }
+        if (generatorAudit && !offline) {
+            throw new MojoExecutionException("The generator audit requires the offline generation. Set the 'offline' attribute to true.");
+        }
 
-        Path buildDir = Paths.get(project.getBuild().getDirectory());
-        Path outputDir = buildDir.resolve(outputTargetDir);
-        
-        if (databaseProductDir) {
-            String vf = databaseProductName.toLowerCase();
-            if (databaseMajorVersion != null && !databaseMajorVersion.isEmpty()) {
-                vf = vf + "-" + databaseMajorVersion;
-                if (databaseMinorVersion != null && !databaseMinorVersion.isEmpty()) {
-                    vf = vf + "." + databaseMinorVersion;
+        final List<String> units;
+        GenerationPhase persistencePhase = report.start(GenerationReport.PERSISTENCE, null, null);
+        try {
+            units = getPersistentUnits();
+        } finally {
+            persistencePhase.stop();
+        }
+        final List<Database> items = getDatabases();
+
+        final List<URL> urls;
+        final String classpathFingerprint;
+        GenerationPhase classpathPhase = report.start(GenerationReport.CLASSPATH, null, null);
+        try {
+            urls = getClasspath();
+            classpathFingerprint = incremental ? createFingerprint(urls) : null;
+        } finally {
+            classpathPhase.stop();
+        }
+
+        // the up to date check before the entity index and the class loaders
+        final Map<String, List<GenerationJob>> unitJobs = new LinkedHashMap<>();
+        for (String unit : units) {
+            List<GenerationJob> jobs = new ArrayList<>();
+            for (Database database : items) {
+                GenerationJob job = createJob(unit, database, classpathFingerprint);
+                if (job != null) {
+                    jobs.add(job);
                 }
             }
-            outputDir = outputDir.resolve(vf);
+            if (!jobs.isEmpty()) {
+                unitJobs.put(unit, jobs);
+            }
+        }
+        if (unitJobs.isEmpty()) {
+            return;
+        }
+
+        final ClassLoader delegate = Thread.currentThread().getContextClassLoader();
+        final SessionCache cache = getSessionCache();
+        final List<ClassLoader> classLoaders = new ArrayList<>();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<GenerationJob>> entry : unitJobs.entrySet()) {
+                final String unit = entry.getKey();
+                final List<GenerationJob> jobs = entry.getValue();
+                final EntityIndex index;
+                final List<URL> unitUrls;
+                if (entityIndex || pruneClasspath) {
+                    GenerationPhase indexPhase = report.start(GenerationReport.INDEX, unit, null);
+                    try {
+                        index = createEntityIndex(unit, urls);
+                        unitUrls = pruneClasspath ? pruneClasspath(unit, urls, index, delegate) : urls;
+                    } finally {
+                        indexPhase.stop();
+                    }
+                } else {
+                    index = null;
+                    unitUrls = urls;
+                }
+                if (entityIndex) {
+                    for (GenerationJob job : jobs) {
+                        setEntityIndex(job, index);
+                    }
+                }
+                if (isForked()) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            fork(unit, jobs, unitUrls);
+                            return null;
+                        }
+                    });
+                    continue;
+                }
+                // isolated class loader for each persistence unit
+                final ClassLoader cl;
+                GenerationPhase classLoaderPhase = report.start(GenerationReport.CLASS_LOADER, unit, null);
+                try {
+                    if (cache != null) {
+                        String key = new Fingerprint()
+                                .add("classpath", unitUrls)
+                                .add("persistence", getPersistenceHash())
+                                .add("persistenceUnit", unit)
+                                .add("delegate", System.identityHashCode(delegate))
+                                .build();
+                        ClassLoader tmp = cache.getClassLoader(key);
+                        if (tmp == null) {
+                            tmp = cache.putClassLoader(key, getClassLoader(unitUrls, delegate));
+                        } else {
+                            getLog().debug("Reuse the cached class loader for the persistence unit " + unit);
+                        }
+                        cl = tmp;
+                    } else {
+                        cl = getClassLoader(unitUrls, delegate);
+                        classLoaders.add(cl);
+                    }
+                } finally {
+                    classLoaderPhase.stop();
+                }
+                for (final GenerationJob job : jobs) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            generate(job, cl);
+                            return null;
+                        }
+                    });
+                }
+            }
+            execute(tasks);
+        } finally {
+            for (ClassLoader cl : classLoaders) {
+                closeClassLoader(cl);
+            }
+        }
+    }
+
+    /**
+     * Executes the generation tasks. The single task is executed in the
+     * current thread, more tasks are executed in the thread pool.
+     *
+     * @param tasks the list of the generation tasks.
+     * @throws MojoExecutionException if one of the generation tasks failed.
+     */
+    private void execute(List<Callable<Void>> tasks) throws MojoExecutionException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (MojoExecutionException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new MojoExecutionException("Error generating the schema.", ex);
+            }
+            return;
+        }
+
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        size = Math.max(1, Math.min(size, tasks.size()));
+        getLog().info("Generate the schema in " + tasks.size() + " tasks with " + size + " threads.");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(size);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            waitFor(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for all generation tasks.
+     *
+     * @param futures the list of the generation tasks.
+     * @throws MojoExecutionException if one of the generation tasks failed.
+     */
+    private void waitFor(List<Future<Void>> futures) throws MojoExecutionException {
+        MojoExecutionException error = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("The schema generation was interrupted.", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                getLog().error(cause.getMessage(), cause);
+                if (error == null) {
+                    if (cause instanceof MojoExecutionException) {
+                        error = (MojoExecutionException) cause;
+                    } else {
+                        error = new MojoExecutionException("Error generating the schema.", cause);
+                    }
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Gets the list of the target databases.
+     *
+     * @return the list of the target databases.
+     * @throws MojoExecutionException if the configuration is not valid.
+     */
+    private List<Database> getDatabases() throws MojoExecutionException {
+        List<Database> result = new ArrayList<>();
+        if (databaseProductName != null && !databaseProductName.isEmpty()) {
+            result.add(new Database(databaseProductName, databaseMajorVersion, databaseMinorVersion));
+        }
+        if (databases != null) {
+            for (Database database : databases) {
+                if (database.getName() == null || database.getName().isEmpty()) {
+                    throw new MojoExecutionException("Missing the database name in the 'databases' attribute.");
+                }
+                result.add(database);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new MojoExecutionException("Missing the 'databaseProductName' or 'databases' attribute.");
+        }
+        if (result.size() > 1 && !databaseProductDir) {
+            throw new MojoExecutionException("The 'databaseProductDir' attribute is required for more databases.");
+        }
+        return result;
+    }
+
+    /**
+     * Creates the generation job of the persistence unit for the database.
+     * The up to date check runs before the offline configuration, so the
+     * persistence provider classes are not loaded for the up to date
+     * scripts.
+     *
+     * @param persistentUnit the persistence unit.
+     * @param database the target database.
+     * @param classpathFingerprint the fingerprint of the classpath.
+     * @return the generation job or {@code null} if the schema scripts are up
+     * to date.
+     * @throws MojoExecutionException if the configuration is not valid.
+     */
+    private GenerationJob createJob(String persistentUnit, Database database, String classpathFingerprint) throws MojoExecutionException {
+        Path buildDir = Paths.get(getProject().getBuild().getDirectory());
+        Path outputDir = buildDir.resolve(outputTargetDir);
+
+        if (isAllPersistenceUnits()) {
+            outputDir = outputDir.resolve(persistentUnit);
+        }
+
+        if (databaseProductDir) {
+            outputDir = outputDir.resolve(database.getDirectoryName());
         }
         
         Path dropFile = outputDir.resolve(dropTargetFile);
         Path createFile = outputDir.resolve(createTargetFile);
 
-        Map properties = new HashMap();
+        Map<String, Object> properties = new HashMap<>();
 
         properties.put("javax.persistence.transactionType", "RESOURCE_LOCAL");
         properties.put("javax.persistence.jtaDataSource", null);
@@ -168,13 +716,13 @@ public class SchemaGeneratorMojo extends AbstractMojo {
         properties.put("javax.persistence.validation.mode", "NONE");
 
         properties.put("javax.persistence.jdbc.driver", "org.hsqldb.jdbcDriver");
-        properties.put("javax.persistence.jdbc.url", "jdbc:hsqldb:mem:testdb");
+        properties.put("javax.persistence.jdbc.url", "jdbc:hsqldb:mem:" + DATABASE_NAME + DATABASE_COUNTER.incrementAndGet());
         properties.put("javax.persistence.jdbc.user", "");
         properties.put("javax.persistence.jdbc.password", "");
 
-        properties.put("javax.persistence.database-product-name", databaseProductName);
-        properties.put("javax.persistence.database-major-version", databaseMajorVersion);
-        properties.put("javax.persistence.database-minor-version", databaseMinorVersion);
+        properties.put("javax.persistence.database-product-name", database.getName());
+        properties.put("javax.persistence.database-major-version", database.getMajorVersion());
+        properties.put("javax.persistence.database-minor-version", database.getMinorVersion());
 
         properties.put("javax.persistence.schema-generation.scripts.action", scriptAction);
         properties.put("javax.persistence.schema-generation.scripts.drop-target", dropFile.toString());
@@ -183,75 +731,581 @@ public class SchemaGeneratorMojo extends AbstractMojo {
         // hibernate delimiter
         properties.put("hibernate.hbm2ddl.delimiter", delimiter);
 
-        final Thread currentThread = Thread.currentThread();
-        final ClassLoader oldClassLoader = currentThread.getContextClassLoader();
+        Path stateFile = outputDir.resolve(STATE_FILE);
+        List<Path> scripts = getScripts(dropFile, createFile);
+        String fingerprint = null;
+        if (incremental) {
+            fingerprint = createFingerprint(classpathFingerprint, persistentUnit, properties);
+            if (isUpToDate(stateFile, fingerprint, scripts)) {
+                getLog().info("The schema scripts are up to date: " + outputDir);
+                return null;
+            }
+        }
+
+        if (offline) {
+            try {
+                properties = HibernateBootstrap.createOfflineProperties(properties, database.getName(), database.getMajorVersion(), database.getMinorVersion());
+            } catch (RuntimeException ex) {
+                throw new MojoExecutionException("Error creating the offline configuration for the database " + database, ex);
+            }
+        }
 
-        final ClassLoader cl = getClassLoader(oldClassLoader);
-        currentThread.setContextClassLoader(cl);
-        Persistence.generateSchema(persistentUnit, properties);
-        currentThread.setContextClassLoader(oldClassLoader);
+        GenerationJob job = new GenerationJob(persistentUnit, database.toString(), outputDir, dropFile, createFile, properties);
+        job.setFingerprint(fingerprint);
+        return job;
     }
 
-    private String getPersistentUnit() throws MojoExecutionException {
-        if (persistenceUnit == null || persistenceUnit.isEmpty()) {
+    /**
+     * Sets the Hibernate scanner of the entity index to the generation job.
+     * The forked generator reads the written entity index file.
+     *
+     * @param job the generation job.
+     * @param index the entity index.
+     */
+    private void setEntityIndex(GenerationJob job, EntityIndex index) {
+        if (isForked()) {
+            job.getProperties().put(ForkedGenerator.ENTITY_INDEX, getEntityIndexFile(job.getPersistenceUnit()).toString());
+            job.getProperties().put(ForkedGenerator.ENTITY_INDEX_ROOT, index.getRoot().toString());
+        } else {
+            job.getProperties().put(IndexScanner.SCANNER, new IndexScanner(index));
+        }
+    }
 
-            // build directory: target
-            Path buildClassDir = Paths.get(project.getBuild().getOutputDirectory());
+    /**
+     * Generates the schema scripts of the job in the MAVEN JVM.
+     *
+     * @param job the generation job.
+     * @param cl the class loader of the project.
+     * @throws MojoExecutionException if the processing of the scripts fails.
+     */
+    private void generate(GenerationJob job, ClassLoader cl) throws MojoExecutionException {
+        getLog().info("Generate the schema for the " + job + " to " + job.getOutputDir());
+        createGenerator().generate(job, cl, report);
+        logIndexes(job);
+        logGenerators(job);
+        processScripts(job);
+        saveState(job);
+    }
 
-            Path persistenceFile = buildClassDir.resolve("META-INF\\persistence.xml");
+    /**
+     * Generates the schema scripts of the persistence unit in the forked JVM.
+     *
+     * @param unit the persistence unit.
+     * @param jobs the generation jobs of the persistence unit.
+     * @param urls the classpath of the persistence unit.
+     * @throws MojoExecutionException if the generation fails.
+     */
+    private void fork(String unit, List<GenerationJob> jobs, List<URL> urls) throws MojoExecutionException {
+        long peakHeap;
+        GenerationPhase forkPhase = report.start(GenerationReport.FORK, unit, null);
+        try {
+            if (daemon) {
+                getLog().info("Generate the schema in the generator daemon for the persistence unit " + unit);
+                GeneratorDaemonClient client = new GeneratorDaemonClient(getLog(), forkJavaExecutable, forkMaxHeap, forkJvmArgs,
+                        Paths.get(daemonDirectory), daemonIdleTimeout, daemonResponseTimeout);
+                peakHeap = client.execute(createGenerator(), urls, jobs);
+            } else {
+                getLog().info("Fork the generator JVM for the persistence unit " + unit);
+                Path argumentFile = Paths.get(getProject().getBuild().getDirectory()).resolve(FORK_DIR).resolve(unit + ".properties");
+                ForkedGeneratorLauncher launcher = new ForkedGeneratorLauncher(getLog(), forkJavaExecutable, forkMaxHeap, forkJvmArgs);
+                peakHeap = launcher.execute(argumentFile, createGenerator(), urls, jobs);
+            }
+        } finally {
+            forkPhase.stop();
+        }
+        report.addForkedPeakHeap(peakHeap);
+        if (peakHeap >= 0) {
+            getLog().info("Peak heap usage of the " + (daemon ? "generator daemon" : "forked generator") + " for the persistence unit " + unit + " : " + (peakHeap / (1024 * 1024)) + " MB");
+        }
+        for (GenerationJob job : jobs) {
+            logIndexes(job);
+            logGenerators(job);
+            processScripts(job);
+            saveState(job);
+        }
+    }
 
-            String version = XMLUtil.getXMLVersion(persistenceFile);
-            getLog().info("Version of the persistence.xml : " + persistenceFile.toString() + " version: " + version);
+    /**
+     * Logs the number of the missing indexes written by the index advisor.
+     *
+     * @param job the generation job.
+     * @throws MojoExecutionException if the index script could not be read.
+     */
+    private void logIndexes(GenerationJob job) throws MojoExecutionException {
+        Path file = job.getOutputDir().resolve(IndexAdvisor.SCRIPT_FILE);
+        if (!indexAdvisor || !offline || !Files.isRegularFile(file)) {
+            return;
+        }
+        int count;
+        try {
+            count = ScriptExecutor.load(file, delimiter).size();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error reading the index script " + file, ex);
+        }
+        if (count > 0) {
+            getLog().warn("The " + job + " has " + count + " missing foreign key indexes, see " + file);
+        } else {
+            getLog().info("The foreign keys of the " + job + " are covered by the indexes.");
+        }
+    }
 
-            final PersistenceModel model = MODIFIER.get(version);
-            if (model == null) {
-                throw new MojoExecutionException("Missing the persistence.xml modifier for the version: " + version);
-            }
+    /**
+     * Logs the report of the identifier generator audit.
+     *
+     * @param job the generation job.
+     */
+    private void logGenerators(GenerationJob job) {
+        Path file = job.getOutputDir().resolve(GeneratorAudit.REPORT_FILE);
+        if (generatorAudit && offline && Files.isRegularFile(file)) {
+            getLog().info("The identifier generator audit of the " + job + ": " + file);
+        }
+    }
 
-            model.loadPersistence(persistenceFile);
-            List<String> units = model.getPersistenceUnits();
-            if (units == null) {
-                throw new MojoExecutionException("Missing the persistence units in the persistence.xml");
+    /**
+     * Processes the generated scripts of the job by the statement pipeline,
+     * splits the scripts per table and writes the execution plans.
+     *
+     * @param job the generation job.
+     * @throws MojoExecutionException if the processing fails.
+     */
+    private void processScripts(GenerationJob job) throws MojoExecutionException {
+        boolean hasPipeline = pipeline != null && !pipeline.isEmpty();
+        if (!hasPipeline && !splitTables && !schemaPlan && !rowFootprint) {
+            return;
+        }
+        GenerationPhase pipelinePhase = report.start(GenerationReport.PIPELINE, job.getPersistenceUnit(), job.getDatabase());
+        try {
+            List<Path> scripts = getScripts(job.getDropFile(), job.getCreateFile());
+            if (hasPipeline) {
+                ScriptPipeline tmp = ScriptPipeline.create(pipeline, getScriptDelimiter());
+                for (Path script : scripts) {
+                    for (Path file : tmp.process(script)) {
+                        getLog().debug("Pipeline script: " + file);
+                    }
+                }
+            }
+            if (splitTables) {
+                TableSplitter splitter = new TableSplitter(getScriptDelimiter());
+                if (scripts.contains(job.getCreateFile())) {
+                    getLog().debug("Split script manifest: " + splitter.split(job.getCreateFile(), false));
+                }
+                if (scripts.contains(job.getDropFile())) {
+                    getLog().debug("Split script manifest: " + splitter.split(job.getDropFile(), true));
+                }
+            }
+            if (schemaPlan) {
+                writePlans(job, scripts);
+            }
+            if (rowFootprint && scripts.contains(job.getCreateFile()) && Files.isRegularFile(job.getCreateFile())) {
+                writeFootprint(job);
             }
+        } catch (IOException | RuntimeException ex) {
+            throw new MojoExecutionException("Error processing the scripts of the " + job + ".", ex);
+        } finally {
+            pipelinePhase.stop();
+        }
+    }
 
-            if (units.size() > 1) {
-                throw new MojoExecutionException("Find more persistence units please use the 'persistenceUnit' attribute.");
+    /**
+     * Writes the parallel execution plans of the scripts.
+     *
+     * @param job the generation job.
+     * @param scripts the generated scripts.
+     * @throws IOException if the plans could not be written.
+     */
+    private void writePlans(GenerationJob job, List<Path> scripts) throws IOException {
+        SchemaPlan create = null;
+        if (scripts.contains(job.getCreateFile()) && Files.isRegularFile(job.getCreateFile())) {
+            create = SchemaPlan.create(job.getCreateFile(), getScriptDelimiter());
+            create.write(SchemaPlan.getFile(job.getCreateFile()));
+            for (List<String> cycle : create.getCycles()) {
+                getLog().warn("The foreign keys of the tables " + cycle + " of the " + job + " are in a cycle, the constraints are deferred.");
             }
+            getLog().debug("Create script plan of the " + job + ": " + create.getLevels().size() + " levels.");
+        }
+        if (scripts.contains(job.getDropFile()) && Files.isRegularFile(job.getDropFile())) {
+            SchemaPlan drop = SchemaPlan.drop(job.getDropFile(), getScriptDelimiter(), create);
+            drop.write(SchemaPlan.getFile(job.getDropFile()));
+            getLog().debug("Drop script plan of the " + job + ": " + drop.getLevels().size() + " levels.");
+        }
+    }
 
-            persistenceUnit = units.get(0);
+    /**
+     * Writes the row footprint of the create script and checks the limits.
+     *
+     * @param job the generation job.
+     * @throws IOException if the footprint could not be written.
+     */
+    private void writeFootprint(GenerationJob job) throws IOException {
+        FootprintLimits limits = footprintLimits == null ? new FootprintLimits() : footprintLimits;
+        RowFootprint footprint = RowFootprint.create(job.getCreateFile(), getScriptDelimiter(), limits.getMaxColumnWidth());
+        footprint.write(job.getOutputDir().resolve(RowFootprint.FILE_NAME));
+        getLog().info("Row footprint of the " + job + ": " + footprint.getTables().size() + " tables, maximal row width "
+                + footprint.getMaxRowWidth() + " bytes, " + footprint.getColumns(RowFootprint.LOB) + " LOB columns, "
+                + footprint.getColumns(RowFootprint.OVERSIZED) + " oversized columns, "
+                + footprint.getColumns(RowFootprint.DEFAULT_LENGTH) + " default length columns");
+        footprintViolations.addAll(limits.check(job.toString(), footprint));
+    }
+
+    /**
+     * Checks the violations of the row footprint limits.
+     *
+     * @throws MojoFailureException if the limits are exceeded and the build
+     * should fail.
+     */
+    private void checkFootprint() throws MojoFailureException {
+        if (footprintViolations.isEmpty()) {
+            return;
+        }
+        boolean fail = footprintLimits != null && footprintLimits.isFail();
+        for (String violation : footprintViolations) {
+            if (fail) {
+                getLog().error(violation);
+            } else {
+                getLog().warn(violation);
+            }
+        }
+        if (fail) {
+            throw new MojoFailureException("The generated schema exceeds the row footprint limits: " + footprintViolations);
         }
-        return persistenceUnit;
     }
 
-    @SuppressWarnings("unchecked")
-    private ClassLoader getClassLoader(final ClassLoader delegate) {
+    /**
+     * Writes the generation report to the output target directory.
+     */
+    private void writeReport() {
+        Path file = Paths.get(getProject().getBuild().getDirectory()).resolve(outputTargetDir).resolve(GenerationReport.FILE_NAME);
         try {
-            final List<String> classpathElements = new ArrayList<>();
-            classpathElements.addAll(project.getCompileClasspathElements());
-            classpathElements.addAll(project.getRuntimeClasspathElements());
-            classpathElements.add(project.getBuild().getOutputDirectory());
-
-            final List<URL> urls = new ArrayList<>();
-            for (int i = 0; i < classpathElements.size(); ++i) {
-                URL url = new File(classpathElements.get(i)).toURI().toURL();
-                getLog().debug("Classpath: " + url);
-                urls.add(url);
+            report.write(file, getProject().getGroupId() + ":" + getProject().getArtifactId());
+            getLog().debug("Generation report: " + file);
+        } catch (IOException ex) {
+            getLog().warn("Error writing the generation report " + file, ex);
+        }
+    }
+
+    /**
+     * Checks the generation report against the budget and the baseline. The
+     * missing baseline file is created. The budget is not checked if no
+     * schema was generated. The peak heap and the loaded classes are not
+     * checked if another generation was running in the same JVM.
+     *
+     * @throws MojoFailureException if the budget is exceeded.
+     * @throws MojoExecutionException if the baseline file could not be read
+     * or written.
+     */
+    private void checkBudget() throws MojoExecutionException, MojoFailureException {
+        if (budget == null) {
+            return;
+        }
+        if (!report.isGenerated()) {
+            getLog().debug("No schema generated, the budget is not checked.");
+            return;
+        }
+        if (!report.isScoped()) {
+            getLog().warn("Another schema generation was running in the same JVM, the peak heap and the loaded classes are not checked by the budget.");
+        }
+        Path file = null;
+        Properties baseline = null;
+        if (budget.getBaselineFile() != null) {
+            file = getProject().getBasedir().toPath().resolve(budget.getBaselineFile());
+            try {
+                if (!updateBaseline) {
+                    baseline = GenerationBudget.loadBaseline(file);
+                }
+                if (baseline == null) {
+                    GenerationBudget.saveBaseline(file, report);
+                    if (updateBaseline) {
+                        getLog().warn("The generation baseline " + file + " is updated with the measured values " + GenerationBudget.getValues(report) + ".");
+                    } else {
+                        getLog().warn("The generation baseline " + file + " does not exist, the new baseline is written with the measured values "
+                                + GenerationBudget.getValues(report) + ". Commit the file to check the next builds against it.");
+                    }
+                }
+            } catch (IOException ex) {
+                throw new MojoExecutionException("Error processing the generation baseline " + file, ex);
+            }
+        }
+
+        List<String> violations = budget.check(report, baseline);
+        if (violations.isEmpty()) {
+            return;
+        }
+        for (String violation : violations) {
+            if (budget.isFail()) {
+                getLog().error(violation);
+            } else {
+                getLog().warn(violation);
             }
+        }
+        if (budget.isFail()) {
+            throw new MojoFailureException("The schema generation exceeds the performance budget: " + violations);
+        }
+    }
+
+    /**
+     * Checks if the generation runs outside of the MAVEN JVM.
+     *
+     * @return {@code true} if the generation runs in the forked JVM or in the
+     * generator daemon.
+     */
+    private boolean isForked() {
+        return fork || daemon;
+    }
+
+    /**
+     * Gets the delimiter of the generated scripts. The JPA schema generation
+     * ignores the Hibernate delimiter and writes one statement per line.
+     *
+     * @return the SQL delimiter or the line delimiter.
+     */
+    private String getScriptDelimiter() {
+        if (offline) {
+            return delimiter;
+        }
+        return StatementReader.LINE_DELIMITER;
+    }
+
+    /**
+     * Creates the schema generator.
+     *
+     * @return the schema generator.
+     */
+    private SchemaGenerator createGenerator() {
+        return new SchemaGenerator(offline, scriptAction, delimiter, indexAdvisor, generatorAudit);
+    }
+
+    /**
+     * Saves the state of the generation job for the incremental generation.
+     *
+     * @param job the generation job.
+     */
+    private void saveState(GenerationJob job) {
+        if (incremental) {
+            saveState(job.getOutputDir().resolve(STATE_FILE), job.getFingerprint(), getScripts(job.getDropFile(), job.getCreateFile()));
+        }
+    }
+
+    /**
+     * Gets the script files created by the script action.
+     *
+     * @param dropFile the drop script file.
+     * @param createFile the create script file.
+     * @return the list of script files.
+     */
+    private List<Path> getScripts(Path dropFile, Path createFile) {
+        List<Path> result = new ArrayList<>();
+        if ("drop".equals(scriptAction) || "drop-and-create".equals(scriptAction)) {
+            result.add(dropFile);
+        }
+        if ("create".equals(scriptAction) || "drop-and-create".equals(scriptAction)) {
+            result.add(createFile);
+        }
+        return result;
+    }
 
-            Set<Artifact> artifacts = this.project.getDependencyArtifacts();
-            for (Artifact artifact : artifacts) {
-                if (!Artifact.SCOPE_TEST.equalsIgnoreCase(artifact.getScope())) {
-                    URL url = artifact.getFile().toURI().toURL();
-                    urls.add(url);
-                    getLog().debug("Classpath: " + url);
+    /**
+     * Creates the fingerprint of the classpath. The fingerprint contains the
+     * content of the build output directory (entity classes and mapping
+     * files), the stamp of the dependencies and the stamp of the plugin and
+     * the Hibernate archives of the plugin.
+     *
+     * @param urls the classpath.
+     * @return the fingerprint.
+     * @throws MojoExecutionException if the creation of the fingerprint
+     * fails.
+     */
+    private String createFingerprint(List<URL> urls) throws MojoExecutionException {
+        Fingerprint result = new Fingerprint();
+        Path output = Paths.get(getProject().getBuild().getOutputDirectory()).toAbsolutePath();
+        try {
+            for (URL url : urls) {
+                Path path = Paths.get(url.toURI()).toAbsolutePath();
+                if (output.equals(path)) {
+                    result.addContent(path);
+                } else {
+                    result.addStamp(path);
                 }
             }
+            for (Path path : getPluginFiles()) {
+                result.addStamp(path);
+            }
+        } catch (Exception ex) {
+            throw new MojoExecutionException("Error creating the fingerprint of the classpath.", ex);
+        }
+        return result.build();
+    }
+
+    /**
+     * Creates the fingerprint of the generation input. The fingerprint
+     * contains the fingerprint of the classpath, the persistence unit and all
+     * generator properties. The offline dialect is resolved by the Hibernate
+     * archives of the classpath fingerprint.
+     *
+     * @param classpathFingerprint the fingerprint of the classpath.
+     * @param persistentUnit the persistence unit.
+     * @param properties the generator properties.
+     * @return the fingerprint.
+     */
+    private String createFingerprint(String classpathFingerprint, String persistentUnit, Map<String, Object> properties) {
+        Map<String, Object> tmp = new HashMap<>(properties);
+        // the in-memory database name is unique for each generation
+        tmp.remove("javax.persistence.jdbc.url");
+        return new Fingerprint()
+                .add("version", getClass().getPackage().getImplementationVersion())
+                .add("classpath", classpathFingerprint)
+                .add("persistenceUnit", persistentUnit)
+                .add("offline", offline)
+                .add("pipeline", pipeline == null ? null : pipeline.toString())
+                .add("splitTables", splitTables)
+                .add("schemaPlan", schemaPlan)
+                .add("indexAdvisor", indexAdvisor)
+                .add("generatorAudit", generatorAudit)
+                .add("rowFootprint", rowFootprint)
+                .add("footprintLimits", footprintLimits == null ? null : footprintLimits.toString())
+                .add(tmp)
+                .build();
+    }
 
-            URL tmp[] = urls.toArray(new URL[urls.size()]);
-            return new URLClassLoader(tmp, delegate);
-        } catch (final Exception e) {
-            getLog().debug("Couldn't get the classloader.");
-            return this.getClass().getClassLoader();
+    /**
+     * Returns {@code true} if the state file contains the fingerprint and the
+     * scripts were not changed since the last generation.
+     *
+     * @param stateFile the state file.
+     * @param fingerprint the fingerprint.
+     * @param scripts the list of the script files.
+     * @return {@code true} if the schema scripts are up to date.
+     */
+    private boolean isUpToDate(Path stateFile, String fingerprint, List<Path> scripts) {
+        if (!Files.isRegularFile(stateFile)) {
+            return false;
+        }
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        } catch (IOException ex) {
+            getLog().debug("Error reading the state file " + stateFile, ex);
+            return false;
+        }
+        if (!fingerprint.equals(state.getProperty(STATE_FINGERPRINT))) {
+            return false;
+        }
+        for (Path script : scripts) {
+            String hash = Fingerprint.hash(script);
+            if (hash == null || !hash.equals(state.getProperty(script.getFileName().toString()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the fingerprint and the hash of the scripts to the state file.
+     *
+     * @param stateFile the state file.
+     * @param fingerprint the fingerprint.
+     * @param scripts the list of the script files.
+     */
+    private void saveState(Path stateFile, String fingerprint, List<Path> scripts) {
+        Properties state = new Properties();
+        state.setProperty(STATE_FINGERPRINT, fingerprint);
+        for (Path script : scripts) {
+            String hash = Fingerprint.hash(script);
+            if (hash != null) {
+                state.setProperty(script.getFileName().toString(), hash);
+            }
+        }
+        try {
+            Files.createDirectories(stateFile.getParent());
+            try (OutputStream out = Files.newOutputStream(stateFile)) {
+                state.store(out, "jpa2-maven-plugin generate state");
+            }
+        } catch (IOException ex) {
+            getLog().warn("Error writing the state file " + stateFile, ex);
+        }
+    }
+
+    /**
+     * Creates the entity index of the persistence unit. The index is written
+     * to the build directory if the entity index is enabled.
+     *
+     * @param unit the persistence unit.
+     * @param urls the classpath.
+     * @return the entity index.
+     * @throws MojoExecutionException if the creation of the index fails.
+     */
+    private EntityIndex createEntityIndex(String unit, List<URL> urls) throws MojoExecutionException {
+        Path root = Paths.get(getProject().getBuild().getOutputDirectory());
+        List<Path> archives = new ArrayList<>();
+        PersistenceUnitDefinition definition = getPersistenceModel().getPersistenceUnit(unit);
+        if (definition == null) {
+            throw new MojoExecutionException("Missing the persistence unit " + unit + " in the persistence.xml");
+        }
+        for (String jarFile : definition.getJarFiles()) {
+            Path archive = resolveJarFile(jarFile, root, urls);
+            if (archive == null) {
+                getLog().warn("Could not resolve the jar-file " + jarFile + " of the persistence unit " + unit);
+            } else {
+                archives.add(archive);
+            }
+        }
+        try {
+            EntityIndex result = EntityIndex.create(root, archives);
+            if (entityIndex) {
+                result.save(getEntityIndexFile(unit));
+                getLog().info("Entity index of the persistence unit " + unit + " : " + result.getClassNames().size() + " classes");
+            }
+            return result;
+        } catch (RuntimeException ex) {
+            throw new MojoExecutionException("Error creating the entity index of the persistence unit " + unit, ex);
+        }
+    }
+
+    /**
+     * Gets the entity index file of the persistence unit.
+     *
+     * @param unit the persistence unit.
+     * @return the entity index file.
+     */
+    private Path getEntityIndexFile(String unit) {
+        return Paths.get(getProject().getBuild().getDirectory()).resolve(INDEX_DIR).resolve(unit + ".index");
+    }
+
+    /**
+     * Prunes the classpath of the persistence unit.
+     *
+     * @param unit the persistence unit.
+     * @param urls the classpath.
+     * @param index the entity index of the persistence unit.
+     * @param delegate the parent class loader.
+     * @return the pruned classpath.
+     * @throws MojoExecutionException if the pruning fails.
+     */
+    private List<URL> pruneClasspath(String unit, List<URL> urls, EntityIndex index, ClassLoader delegate) throws MojoExecutionException {
+        if (delegate.getResource(ClasspathPruner.PROVIDER_SERVICE) == null) {
+            getLog().warn("The persistence provider is not the plugin dependency. The classpath is not pruned.");
+            return urls;
+        }
+        PersistenceUnitDefinition definition = getPersistenceModel().getPersistenceUnit(unit);
+        List<String> classNames = new ArrayList<>(index.getClassNames());
+        classNames.addAll(definition.getClasses());
+        try {
+            List<Path> classpath = new ArrayList<>();
+            for (URL url : urls) {
+                classpath.add(Paths.get(url.toURI()));
+            }
+            List<Path> paths = ClasspathPruner.prune(classpath, index.getArchives(), definition.getMappingFiles(), classNames);
+            List<URL> result = new ArrayList<>();
+            for (Path path : classpath) {
+                if (paths.contains(path)) {
+                    result.add(path.toUri().toURL());
+                } else {
+                    getLog().debug("Pruned classpath: " + path);
+                }
+            }
+            getLog().info("Classpath of the persistence unit " + unit + " : " + result.size() + " of " + urls.size() + " entries");
+            return result;
+        } catch (Exception ex) {
+            throw new MojoExecutionException("Error pruning the classpath of the persistence unit " + unit, ex);
         }
     }
 }
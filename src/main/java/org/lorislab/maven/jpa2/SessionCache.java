@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+import org.lorislab.maven.jpa2.persistence.PersistenceStreamModel;
+
+/**
+ * The MAVEN session cache of the project class loaders and the parsed
+ * persistence models. The cache is stored in the session data and is closed
+ * by the {@link SessionCacheLifecycleParticipant} at the end of the session.
+ *
+ * @author Andrej Petras
+ */
+public final class SessionCache implements Closeable {
+
+    /**
+     * The session data key.
+     */
+    static final String KEY = SessionCache.class.getName();
+
+    /**
+     * The class loaders.
+     */
+    private final ConcurrentMap<String, ClassLoader> classLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * The persistence models.
+     */
+    private final ConcurrentMap<String, PersistenceStreamModel> models = new ConcurrentHashMap<>();
+
+    /**
+     * The default constructor.
+     */
+    private SessionCache() {
+        // empty constructor
+    }
+
+    /**
+     * Gets the cache for the MAVEN session.
+     *
+     * @param session the MAVEN session.
+     * @return the session cache.
+     */
+    public static SessionCache get(MavenSession session) {
+        SessionData data = session.getRepositorySession().getData();
+        Object result = data.get(KEY);
+        while (!(result instanceof SessionCache)) {
+            SessionCache cache = new SessionCache();
+            if (data.set(KEY, result, cache)) {
+                result = cache;
+            } else {
+                result = data.get(KEY);
+            }
+        }
+        return (SessionCache) result;
+    }
+
+    /**
+     * Gets the class loader from the cache.
+     *
+     * @param key the class loader key.
+     * @return the class loader or {@code null} if the cache does not contain
+     * the class loader.
+     */
+    public ClassLoader getClassLoader(String key) {
+        return classLoaders.get(key);
+    }
+
+    /**
+     * Puts the class loader to the cache. If the cache already contains the
+     * class loader for the key the new class loader is closed and the cached
+     * one is returned.
+     *
+     * @param key the class loader key.
+     * @param cl the class loader.
+     * @return the cached class loader.
+     */
+    public ClassLoader putClassLoader(String key, ClassLoader cl) {
+        ClassLoader result = classLoaders.putIfAbsent(key, cl);
+        if (result == null) {
+            return cl;
+        }
+        close(cl);
+        return result;
+    }
+
+    /**
+     * Gets the persistence model from the cache.
+     *
+     * @param key the persistence model key.
+     * @return the persistence model or {@code null} if the cache does not
+     * contain the persistence model.
+     */
+    public PersistenceStreamModel getModel(String key) {
+        return models.get(key);
+    }
+
+    /**
+     * Puts the persistence model to the cache.
+     *
+     * @param key the persistence model key.
+     * @param model the persistence model.
+     * @return the cached persistence model.
+     */
+    public PersistenceStreamModel putModel(String key, PersistenceStreamModel model) {
+        PersistenceStreamModel result = models.putIfAbsent(key, model);
+        return result == null ? model : result;
+    }
+
+    /**
+     * Closes all cached class loaders and clears the cache.
+     */
+    @Override
+    public void close() {
+        for (ClassLoader cl : classLoaders.values()) {
+            close(cl);
+        }
+        classLoaders.clear();
+        models.clear();
+    }
+
+    /**
+     * Closes the class loader.
+     *
+     * @param cl the class loader.
+     */
+    private static void close(ClassLoader cl) {
+        if (cl instanceof URLClassLoader) {
+            try {
+                ((URLClassLoader) cl).close();
+            } catch (IOException ex) {
+                // ignore the error, the class loader will be released by the garbage collector
+            }
+        }
+    }
+}
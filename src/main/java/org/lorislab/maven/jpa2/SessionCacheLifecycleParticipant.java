@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * The lifecycle participant which releases the {@link SessionCache} at the
+ * end of the MAVEN session. The participant is active only for the plugin
+ * declared with the {@code <extensions>true</extensions>}.
+ *
+ * @author Andrej Petras
+ */
+public class SessionCacheLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException {
+        Object cache = session.getRepositorySession().getData().get(SessionCache.KEY);
+        // the extension realm could load the different cache class
+        if (cache instanceof Closeable) {
+            try {
+                ((Closeable) cache).close();
+            } catch (IOException ex) {
+                throw new MavenExecutionException("Error closing the JPA2 session cache.", ex);
+            }
+        }
+        session.getRepositorySession().getData().set(SessionCache.KEY, null);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.regex.Pattern;
+
+/**
+ * The annotate stage adds the comment line before the statements matching
+ * the pattern. The placeholders {@code {script}} and {@code {index}} in the
+ * comment are replaced with the script file name and the index of the
+ * statement.
+ *
+ * @author Andrej Petras
+ */
+public class AnnotateStage implements StatementStage {
+
+    /**
+     * The pattern of the annotated statements or {@code null} for all
+     * statements.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The comment.
+     */
+    private final String comment;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern the pattern of the annotated statements or {@code null}
+     * for all statements.
+     * @param comment the comment.
+     */
+    public AnnotateStage(Pattern pattern, String comment) {
+        this.pattern = pattern;
+        this.comment = comment;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean process(Statement statement, StatementSink sink) {
+        if (pattern == null || pattern.matcher(statement.getSql()).find()) {
+            statement.getComments().add(comment
+                    .replace("{script}", statement.getScript())
+                    .replace("{index}", Long.toString(statement.getIndex())));
+        }
+        return true;
+    }
+}
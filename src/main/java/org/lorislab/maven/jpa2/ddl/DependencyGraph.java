@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependency graph of the tables. The node depends on the tables
+ * referenced by its foreign keys. The table names are compared case
+ * insensitive, the first added name of the table is returned.
+ *
+ * @author Andrej Petras
+ */
+public class DependencyGraph {
+
+    /**
+     * The nodes and their dependencies by the normalized name.
+     */
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+    /**
+     * The node names by the normalized name.
+     */
+    private final Map<String, String> names = new LinkedHashMap<>();
+
+    /**
+     * Adds the node.
+     *
+     * @param name the node name.
+     */
+    public void addNode(String name) {
+        String key = key(name);
+        if (!names.containsKey(key)) {
+            names.put(key, name);
+            dependencies.put(key, new LinkedHashSet<String>());
+        }
+    }
+
+    /**
+     * Adds the dependency of the node. The missing nodes are added. The self
+     * reference is ignored.
+     *
+     * @param name the node name.
+     * @param dependency the name of the node the node depends on.
+     */
+    public void addDependency(String name, String dependency) {
+        addNode(name);
+        addNode(dependency);
+        String key = key(name);
+        String dep = key(dependency);
+        if (!key.equals(dep)) {
+            dependencies.get(key).add(dep);
+        }
+    }
+
+    /**
+     * Removes the dependency of the node.
+     *
+     * @param name the node name.
+     * @param dependency the name of the node the node depends on.
+     */
+    public void removeDependency(String name, String dependency) {
+        Set<String> tmp = dependencies.get(key(name));
+        if (tmp != null) {
+            tmp.remove(key(dependency));
+        }
+    }
+
+    /**
+     * Checks if the graph contains the node.
+     *
+     * @param name the node name.
+     * @return {@code true} if the graph contains the node.
+     */
+    public boolean contains(String name) {
+        return names.containsKey(key(name));
+    }
+
+    /**
+     * Gets the node names in the order of the addition.
+     *
+     * @return the node names.
+     */
+    public List<String> getNodes() {
+        return new ArrayList<>(names.values());
+    }
+
+    /**
+     * Gets the dependencies of the node.
+     *
+     * @param name the node name.
+     * @return the names of the nodes the node depends on.
+     */
+    public List<String> getDependencies(String name) {
+        List<String> result = new ArrayList<>();
+        Set<String> tmp = dependencies.get(key(name));
+        if (tmp != null) {
+            for (String dep : tmp) {
+                result.add(names.get(dep));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the nodes in the dependency order. The node is after all nodes it
+     * depends on. The nodes of the cycles and the nodes which depend on them
+     * are added at the end in the order of the addition.
+     *
+     * @return the node names in the dependency order.
+     */
+    public List<String> getOrder() {
+        List<String> result = new ArrayList<>();
+        for (List<String> level : getLevels()) {
+            result.addAll(level);
+        }
+        Set<String> done = new HashSet<>();
+        for (String name : result) {
+            done.add(key(name));
+        }
+        for (Map.Entry<String, String> e : names.entrySet()) {
+            if (!done.contains(e.getKey())) {
+                result.add(e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the topological levels of the nodes. The nodes of the level depend
+     * only on the nodes of the previous levels and are independent of each
+     * other. The nodes of the cycles and the nodes which depend on them are
+     * not in any level.
+     *
+     * @return the levels of the node names.
+     */
+    public List<List<String>> getLevels() {
+        Map<String, Integer> count = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Map.Entry<String, Set<String>> e : dependencies.entrySet()) {
+            count.put(e.getKey(), e.getValue().size());
+            for (String dep : e.getValue()) {
+                List<String> tmp = dependents.get(dep);
+                if (tmp == null) {
+                    tmp = new ArrayList<>();
+                    dependents.put(dep, tmp);
+                }
+                tmp.add(e.getKey());
+            }
+        }
+        List<List<String>> result = new ArrayList<>();
+        List<String> level = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : count.entrySet()) {
+            if (e.getValue() == 0) {
+                level.add(e.getKey());
+            }
+        }
+        while (!level.isEmpty()) {
+            sort(level);
+            List<String> next = new ArrayList<>();
+            List<String> tmp = new ArrayList<>();
+            for (String key : level) {
+                tmp.add(names.get(key));
+                List<String> deps = dependents.get(key);
+                if (deps != null) {
+                    for (String dep : deps) {
+                        int value = count.get(dep) - 1;
+                        count.put(dep, value);
+                        if (value == 0) {
+                            next.add(dep);
+                        }
+                    }
+                }
+            }
+            result.add(tmp);
+            level = next;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the cycles of the graph. The cycle is the strongly connected
+     * component with more than one node. The self reference is not a cycle.
+     *
+     * @return the list of the cycles with the node names.
+     */
+    public List<List<String>> getCycles() {
+        Tarjan tarjan = new Tarjan();
+        for (String key : dependencies.keySet()) {
+            if (!tarjan.index.containsKey(key)) {
+                tarjan.visit(key);
+            }
+        }
+        List<List<String>> result = new ArrayList<>();
+        for (List<String> component : tarjan.components) {
+            if (component.size() > 1) {
+                sort(component);
+                List<String> tmp = new ArrayList<>();
+                for (String key : component) {
+                    tmp.add(names.get(key));
+                }
+                result.add(tmp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the normalized names in the order of the addition.
+     *
+     * @param keys the normalized names.
+     */
+    private void sort(List<String> keys) {
+        final Map<String, Integer> order = new HashMap<>();
+        int i = 0;
+        for (String key : names.keySet()) {
+            order.put(key, i++);
+        }
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Integer.compare(order.get(o1), order.get(o2));
+            }
+        });
+    }
+
+    /**
+     * The Tarjan algorithm of the strongly connected components.
+     */
+    private class Tarjan {
+
+        /**
+         * The index of the visited nodes.
+         */
+        private final Map<String, Integer> index = new HashMap<>();
+
+        /**
+         * The low link of the visited nodes.
+         */
+        private final Map<String, Integer> low = new HashMap<>();
+
+        /**
+         * The stack of the nodes.
+         */
+        private final Deque<String> stack = new ArrayDeque<>();
+
+        /**
+         * The nodes on the stack.
+         */
+        private final Set<String> onStack = new HashSet<>();
+
+        /**
+         * The strongly connected components.
+         */
+        private final List<List<String>> components = new ArrayList<>();
+
+        /**
+         * Visits the node.
+         *
+         * @param key the normalized node name.
+         */
+        private void visit(String key) {
+            int i = index.size();
+            index.put(key, i);
+            low.put(key, i);
+            stack.push(key);
+            onStack.add(key);
+            for (String dep : dependencies.get(key)) {
+                if (!index.containsKey(dep)) {
+                    visit(dep);
+                    low.put(key, Math.min(low.get(key), low.get(dep)));
+                } else if (onStack.contains(dep)) {
+                    low.put(key, Math.min(low.get(key), index.get(dep)));
+                }
+            }
+            if (low.get(key).equals(index.get(key))) {
+                List<String> component = new ArrayList<>();
+                String node;
+                do {
+                    node = stack.pop();
+                    onStack.remove(node);
+                    component.add(node);
+                } while (!node.equals(key));
+                components.add(component);
+            }
+        }
+    }
+
+    /**
+     * Normalizes the node name.
+     *
+     * @param name the node name.
+     * @return the normalized name.
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+}
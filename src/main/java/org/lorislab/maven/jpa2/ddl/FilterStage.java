@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.regex.Pattern;
+
+/**
+ * The filter stage removes the statements matching the pattern from the
+ * script.
+ *
+ * @author Andrej Petras
+ */
+public class FilterStage implements StatementStage {
+
+    /**
+     * The pattern of the removed statements.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern the pattern of the removed statements.
+     */
+    public FilterStage(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean process(Statement statement, StatementSink sink) {
+        return !pattern.matcher(statement.getSql()).find();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The explainer of the query plans in the embedded HSQLDB database. The
+ * schema is created in the private in-memory database and the plans of the
+ * queries are read by the {@code EXPLAIN PLAN FOR} statement. The database is
+ * shut down on close.
+ *
+ * @author Andrej Petras
+ */
+public class PlanExplainer implements Closeable {
+
+    /**
+     * The JDBC URL prefix of the in-memory database.
+     */
+    private static final String URL = "jdbc:hsqldb:mem:jpa2-explain-";
+
+    /**
+     * The named parameter or the JPA positional parameter of the native
+     * query.
+     */
+    private static final Pattern PARAMETER = Pattern.compile("(?<![:\\w]):\\w+|\\?\\d+");
+
+    /**
+     * The database connection.
+     */
+    private final Connection connection;
+
+    /**
+     * The constructor.
+     *
+     * @throws SQLException if the database could not be created.
+     */
+    public PlanExplainer() throws SQLException {
+        connection = DriverManager.getConnection(URL + UUID.randomUUID(), "SA", "");
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Creates the schema.
+     *
+     * @param statements the statements of the create script.
+     * @throws SQLException if the statement failed.
+     */
+    public void createSchema(List<String> statements) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            for (String sql : statements) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Explains the query.
+     *
+     * @param sql the SQL query.
+     * @return the lines of the query plan.
+     * @throws SQLException if the query could not be explained.
+     */
+    public List<String> explain(String sql) throws SQLException {
+        List<String> result = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("EXPLAIN PLAN FOR " + sql)) {
+            while (rs.next()) {
+                result.add(rs.getString(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the named and the JPA positional parameters of the native
+     * query by the JDBC parameters.
+     *
+     * @param sql the native query.
+     * @return the SQL query with the JDBC parameters.
+     */
+    public static String jdbcParameters(String sql) {
+        Matcher m = PARAMETER.matcher(sql);
+        return m.replaceAll("?");
+    }
+
+    /**
+     * Shuts down the database.
+     */
+    @Override
+    public void close() {
+        try {
+            try (Statement st = connection.createStatement()) {
+                st.execute("SHUTDOWN");
+            }
+            connection.close();
+        } catch (SQLException ex) {
+            throw new RuntimeException("Error closing the embedded database", ex);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The plans of the named queries. The plan of the query is the summary of
+ * the HSQLDB query plan: the tables in the join order with the access type
+ * and the index. The generated suffixes of the system index names are
+ * removed, the plans are stable between the builds. The plans are stored in
+ * the baseline file with one query per line and compared with the plans of
+ * the previous baseline.
+ *
+ * @author Andrej Petras
+ */
+public class QueryPlans {
+
+    /**
+     * The change type.
+     */
+    public enum ChangeType {
+
+        /**
+         * The plan of the query contains more full scans than the baseline
+         * plan or the new query contains the full scan.
+         */
+        NEW_FULL_SCAN,
+
+        /**
+         * The plan of the query is changed.
+         */
+        CHANGED,
+
+        /**
+         * The query is removed.
+         */
+        REMOVED;
+    }
+
+    /**
+     * The full scan access of the table.
+     */
+    private static final String FULL_SCAN = "FULL SCAN";
+
+    /**
+     * The table of the range variable.
+     */
+    private static final String TABLE = "table=";
+
+    /**
+     * The access type of the range variable.
+     */
+    private static final String ACCESS = "access=";
+
+    /**
+     * The index of the range variable.
+     */
+    private static final String INDEX = "index=";
+
+    /**
+     * The baseline separator of the query name and the plan.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * The plans by the query key.
+     */
+    private final Map<String, String> plans = new TreeMap<>();
+
+    /**
+     * Adds the plan of the query statement. The key of the first statement
+     * is the query name, the next statements of the polymorphic query are
+     * numbered.
+     *
+     * @param name the query name.
+     * @param index the statement index of the query.
+     * @param plan the plan summary.
+     * @return the query key.
+     */
+    public String put(String name, int index, String plan) {
+        String key = index == 0 ? name : name + "#" + index;
+        plans.put(key, plan);
+        return key;
+    }
+
+    /**
+     * Gets the plans by the query key.
+     *
+     * @return the plans by the query key.
+     */
+    public Map<String, String> getPlans() {
+        return Collections.unmodifiableMap(plans);
+    }
+
+    /**
+     * Creates the summary of the HSQLDB query plan.
+     *
+     * @param explain the lines of the HSQLDB query plan.
+     * @return the plan summary.
+     */
+    public static String summarize(List<String> explain) {
+        StringBuilder sb = new StringBuilder();
+        String access = null;
+        String index = null;
+        for (String line : explain) {
+            String tmp = line.trim();
+            if (tmp.startsWith(TABLE)) {
+                append(sb, access, index);
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(tmp.substring(TABLE.length()));
+                access = null;
+                index = null;
+            } else if (tmp.startsWith(ACCESS)) {
+                access = tmp.substring(ACCESS.length());
+            } else if (index == null && tmp.contains(INDEX)) {
+                index = tmp.substring(tmp.indexOf(INDEX) + INDEX.length()).replaceAll("(_\\d+)+$", "");
+            }
+        }
+        append(sb, access, index);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the access type and the index of the table to the summary.
+     *
+     * @param sb the summary.
+     * @param access the access type or {@code null}.
+     * @param index the index or {@code null}.
+     */
+    private static void append(StringBuilder sb, String access, String index) {
+        if (sb.length() == 0) {
+            return;
+        }
+        sb.append('(').append(access == null ? "" : access);
+        if (index != null && !FULL_SCAN.equals(access)) {
+            sb.append(' ').append(index);
+        }
+        sb.append(')');
+    }
+
+    /**
+     * Gets the number of the full scans of the plan.
+     *
+     * @param plan the plan summary.
+     * @return the number of the full scans.
+     */
+    public static int getFullScans(String plan) {
+        int result = 0;
+        int index = plan.indexOf(FULL_SCAN);
+        while (index >= 0) {
+            result++;
+            index = plan.indexOf(FULL_SCAN, index + FULL_SCAN.length());
+        }
+        return result;
+    }
+
+    /**
+     * Compares the plans with the baseline plans.
+     *
+     * @param baseline the baseline plans.
+     * @return the list of the changes.
+     */
+    public List<Change> compare(QueryPlans baseline) {
+        List<Change> result = new ArrayList<>();
+        for (Map.Entry<String, String> entry : plans.entrySet()) {
+            String old = baseline.plans.get(entry.getKey());
+            String plan = entry.getValue();
+            if (old == null) {
+                if (getFullScans(plan) > 0) {
+                    result.add(new Change(ChangeType.NEW_FULL_SCAN, entry.getKey(), null, plan));
+                }
+            } else if (!old.equals(plan)) {
+                ChangeType type = getFullScans(plan) > getFullScans(old) ? ChangeType.NEW_FULL_SCAN : ChangeType.CHANGED;
+                result.add(new Change(type, entry.getKey(), old, plan));
+            }
+        }
+        for (Map.Entry<String, String> entry : baseline.plans.entrySet()) {
+            if (!plans.containsKey(entry.getKey())) {
+                result.add(new Change(ChangeType.REMOVED, entry.getKey(), entry.getValue(), null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the plans from the baseline file.
+     *
+     * @param file the baseline file.
+     * @return the plans.
+     * @throws IOException if the file could not be read.
+     */
+    public static QueryPlans load(Path file) throws IOException {
+        QueryPlans result = new QueryPlans();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.indexOf(SEPARATOR);
+                if (line.startsWith("#") || index < 0) {
+                    continue;
+                }
+                result.plans.put(line.substring(0, index), line.substring(index + 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the plans to the baseline file.
+     *
+     * @param file the baseline file.
+     * @param comment the comment of the first line.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path file, String comment) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# ");
+            writer.write(comment);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : plans.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write(SEPARATOR);
+                writer.write(entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * The change of the query plan.
+     */
+    public static class Change {
+
+        /**
+         * The change type.
+         */
+        private final ChangeType type;
+
+        /**
+         * The query key.
+         */
+        private final String query;
+
+        /**
+         * The baseline plan or {@code null}.
+         */
+        private final String baseline;
+
+        /**
+         * The current plan or {@code null}.
+         */
+        private final String plan;
+
+        /**
+         * The constructor.
+         *
+         * @param type the change type.
+         * @param query the query key.
+         * @param baseline the baseline plan or {@code null}.
+         * @param plan the current plan or {@code null}.
+         */
+        Change(ChangeType type, String query, String baseline, String plan) {
+            this.type = type;
+            this.query = query;
+            this.baseline = baseline;
+            this.plan = plan;
+        }
+
+        /**
+         * Gets the change type.
+         *
+         * @return the change type.
+         */
+        public ChangeType getType() {
+            return type;
+        }
+
+        /**
+         * Gets the query key.
+         *
+         * @return the query key.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Gets the baseline plan.
+         *
+         * @return the baseline plan or {@code null}.
+         */
+        public String getBaseline() {
+            return baseline;
+        }
+
+        /**
+         * Gets the current plan.
+         *
+         * @return the current plan or {@code null}.
+         */
+        public String getPlan() {
+            return plan;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public String toString() {
+            switch (type) {
+                case REMOVED:
+                    return "removed query " + query;
+                case NEW_FULL_SCAN:
+                    return "new full scan of the query " + query + ": " + plan + (baseline == null ? "" : ", baseline " + baseline);
+                default:
+                    return "changed plan of the query " + query + ": " + plan + ", baseline " + baseline;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.regex.Pattern;
+
+/**
+ * The rewrite stage replaces every match of the pattern in the statement
+ * with the replacement. The replacement can refer to the groups of the
+ * pattern, for example {@code $1}.
+ *
+ * @author Andrej Petras
+ */
+public class RewriteStage implements StatementStage {
+
+    /**
+     * The pattern.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The replacement.
+     */
+    private final String replacement;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern the pattern.
+     * @param replacement the replacement.
+     */
+    public RewriteStage(Pattern pattern, String replacement) {
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean process(Statement statement, StatementSink sink) {
+        statement.setSql(pattern.matcher(statement.getSql()).replaceAll(replacement));
+        return true;
+    }
+}
@@ -0,0 +1,765 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The estimated storage footprint of the rows of the create script. The
+ * column definitions of the create table statements are parsed and the
+ * minimal, the average and the maximal width of every column is estimated
+ * from the SQL type written by the dialect. The widths are the bytes of the
+ * column data without the row and column headers of the database, the
+ * characters are estimated as one byte. The variable length columns are
+ * estimated half full, the large objects by the size of the locator.
+ *
+ * @author Andrej Petras
+ */
+public class RowFootprint {
+
+    /**
+     * The footprint report file name.
+     */
+    public static final String FILE_NAME = "row-footprint.json";
+
+    /**
+     * The large object column flag.
+     */
+    public static final String LOB = "lob";
+
+    /**
+     * The oversized column flag.
+     */
+    public static final String OVERSIZED = "oversized";
+
+    /**
+     * The column with the default length flag.
+     */
+    public static final String DEFAULT_LENGTH = "default-length";
+
+    /**
+     * The default length of the string columns.
+     */
+    private static final int DEFAULT_COLUMN_LENGTH = 255;
+
+    /**
+     * The estimated size of the large object locator in the row.
+     */
+    private static final int LOB_LOCATOR = 40;
+
+    /**
+     * The width of the unknown types.
+     */
+    private static final int UNKNOWN = 8;
+
+    /**
+     * The large object types.
+     */
+    private static final Set<String> LOBS = new HashSet<>(Arrays.asList("clob", "nclob", "blob", "text", "ntext", "bytea",
+            "tinytext", "mediumtext", "longtext", "tinyblob", "mediumblob", "longblob", "long", "long raw", "longvarchar",
+            "longvarbinary", "image", "oid", "xml", "json", "jsonb", "binary large object", "character large object"));
+
+    /**
+     * The variable length types.
+     */
+    private static final Set<String> VARYING = new HashSet<>(Arrays.asList("varchar", "varchar2", "nvarchar", "nvarchar2",
+            "character varying", "char varying", "national character varying", "varbinary", "binary varying", "raw",
+            "varchar_ignorecase", "bit varying", "varbit"));
+
+    /**
+     * The fixed length character types.
+     */
+    private static final Set<String> FIXED = new HashSet<>(Arrays.asList("char", "nchar", "character", "national character",
+            "binary", "bit"));
+
+    /**
+     * The numeric types.
+     */
+    private static final Set<String> NUMERIC = new HashSet<>(Arrays.asList("number", "numeric", "decimal", "dec"));
+
+    /**
+     * The keywords after the column type.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("not", "null", "default", "generated", "identity",
+            "primary", "unique", "check", "references", "constraint", "auto_increment", "collate", "comment", "as"));
+
+    /**
+     * The table constraint keywords.
+     */
+    private static final Set<String> CONSTRAINTS = new HashSet<>(Arrays.asList("primary", "unique", "constraint", "foreign",
+            "check", "index", "key"));
+
+    /**
+     * The script file name.
+     */
+    private final String script;
+
+    /**
+     * The width of the oversized columns.
+     */
+    private final int maxColumnWidth;
+
+    /**
+     * The tables of the script.
+     */
+    private final List<TableFootprint> tables = new ArrayList<>();
+
+    /**
+     * The constructor.
+     *
+     * @param script the script file name.
+     * @param maxColumnWidth the maximal width of the not oversized column.
+     */
+    private RowFootprint(String script, int maxColumnWidth) {
+        this.script = script;
+        this.maxColumnWidth = maxColumnWidth;
+    }
+
+    /**
+     * Estimates the footprint of the tables of the create script.
+     *
+     * @param file the create script.
+     * @param delimiter the SQL delimiter.
+     * @param maxColumnWidth the maximal width of the not oversized column.
+     * @return the footprint of the create script.
+     * @throws IOException if the script could not be read.
+     */
+    public static RowFootprint create(Path file, String delimiter, int maxColumnWidth) throws IOException {
+        RowFootprint result = new RowFootprint(file.getFileName().toString(), maxColumnWidth);
+        try (StatementReader reader = new StatementReader(file, Charset.defaultCharset(), delimiter)) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                StatementInfo info = StatementInfo.parse(statement.getSql());
+                if (info.getType() == StatementInfo.Type.CREATE_TABLE) {
+                    result.tables.add(result.parse(info.getTable(), statement.getSql()));
+                }
+                statement = reader.next();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the script file name.
+     *
+     * @return the script file name.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the tables of the script.
+     *
+     * @return the tables of the script.
+     */
+    public List<TableFootprint> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * Gets the number of the columns with the flag.
+     *
+     * @param flag the column flag.
+     * @return the number of the columns with the flag.
+     */
+    public int getColumns(String flag) {
+        int result = 0;
+        for (TableFootprint table : tables) {
+            for (ColumnFootprint column : table.columns) {
+                if (column.flags.contains(flag)) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the maximal row width of the tables.
+     *
+     * @return the maximal row width of the tables.
+     */
+    public long getMaxRowWidth() {
+        long result = 0;
+        for (TableFootprint table : tables) {
+            result = Math.max(result, table.getMaxWidth());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the maximal average row width of the tables.
+     *
+     * @return the maximal average row width of the tables.
+     */
+    public long getMaxAverageRowWidth() {
+        long result = 0;
+        for (TableFootprint table : tables) {
+            result = Math.max(result, table.getAverageWidth());
+        }
+        return result;
+    }
+
+    /**
+     * Writes the footprint report.
+     *
+     * @param file the report file.
+     * @throws IOException if the report could not be written.
+     */
+    public void write(Path file) throws IOException {
+        long min = 0;
+        long avg = 0;
+        long max = 0;
+        int columns = 0;
+        for (TableFootprint table : tables) {
+            min += table.getMinWidth();
+            avg += table.getAverageWidth();
+            max += table.getMaxWidth();
+            columns += table.columns.size();
+        }
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("script", script);
+            json.name("totals").beginObject();
+            json.property("tables", tables.size());
+            json.property("columns", columns);
+            json.property("minWidth", min);
+            json.property("averageWidth", avg);
+            json.property("maxWidth", max);
+            json.property("maxRowWidth", getMaxRowWidth());
+            json.property("lobColumns", getColumns(LOB));
+            json.property("oversizedColumns", getColumns(OVERSIZED));
+            json.property("defaultLengthColumns", getColumns(DEFAULT_LENGTH));
+            json.endObject();
+            json.name("tables").beginArray();
+            for (TableFootprint table : tables) {
+                json.beginObject();
+                json.property("name", table.name);
+                json.property("minWidth", table.getMinWidth());
+                json.property("averageWidth", table.getAverageWidth());
+                json.property("maxWidth", table.getMaxWidth());
+                json.name("columns").beginArray();
+                for (ColumnFootprint column : table.columns) {
+                    json.beginObject();
+                    json.property("name", column.name);
+                    json.property("type", column.type);
+                    json.property("minWidth", column.min);
+                    json.property("averageWidth", column.avg);
+                    json.property("maxWidth", column.max);
+                    json.name("flags").beginArray();
+                    for (String flag : column.flags) {
+                        json.value(flag);
+                    }
+                    json.endArray();
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Parses the column definitions of the create table statement.
+     *
+     * @param name the table name.
+     * @param sql the create table statement.
+     * @return the footprint of the table.
+     */
+    private TableFootprint parse(String name, String sql) {
+        TableFootprint result = new TableFootprint(name);
+        int start = sql.indexOf('(');
+        int end = sql.lastIndexOf(')');
+        if (start < 0 || end <= start) {
+            return result;
+        }
+        List<String> items = split(sql.substring(start + 1, end));
+        Set<String> primaryKey = new HashSet<>();
+        for (String item : items) {
+            String tmp = item.toLowerCase(Locale.ENGLISH);
+            int index = tmp.indexOf("primary key");
+            int open = index < 0 ? -1 : tmp.indexOf('(', index);
+            int close = tmp.lastIndexOf(')');
+            if (open > 0 && close > open && CONSTRAINTS.contains(firstWord(tmp))) {
+                for (String column : item.substring(open + 1, close).split(",")) {
+                    primaryKey.add(unquote(column.trim()).toLowerCase(Locale.ENGLISH));
+                }
+            }
+        }
+        for (String item : items) {
+            if (item.isEmpty() || CONSTRAINTS.contains(firstWord(item.toLowerCase(Locale.ENGLISH)))) {
+                continue;
+            }
+            result.columns.add(column(item, primaryKey));
+        }
+        return result;
+    }
+
+    /**
+     * Creates the footprint of the column definition.
+     *
+     * @param item the column definition.
+     * @param primaryKey the primary key columns.
+     * @return the footprint of the column.
+     */
+    private ColumnFootprint column(String item, Set<String> primaryKey) {
+        List<String> tokens = tokens(item);
+        String name = unquote(tokens.get(0));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < tokens.size() && !KEYWORDS.contains(tokens.get(i).toLowerCase(Locale.ENGLISH)); i++) {
+            if (sb.length() > 0 && !tokens.get(i).startsWith("(")) {
+                sb.append(' ');
+            }
+            sb.append(tokens.get(i));
+        }
+        String type = sb.toString();
+        String lower = item.toLowerCase(Locale.ENGLISH);
+        boolean nullable = !lower.contains("not null") && !lower.contains("primary key")
+                && !primaryKey.contains(name.toLowerCase(Locale.ENGLISH));
+
+        ColumnFootprint result = new ColumnFootprint(name, type);
+        String tmp = type.toLowerCase(Locale.ENGLISH);
+        int index = tmp.indexOf('(');
+        String base = (index < 0 ? tmp : tmp.substring(0, index)).trim();
+        int close = tmp.indexOf(')', index + 1);
+        List<Integer> args = arguments(index < 0 || close < 0 ? "" : tmp.substring(index + 1, close));
+        if (LOBS.contains(base) || tmp.contains("(max)")) {
+            result.flags.add(LOB);
+            result.set(0, LOB_LOCATOR, LOB_LOCATOR);
+        } else if (VARYING.contains(base)) {
+            int length = args.isEmpty() ? 1 : args.get(0);
+            int width = base.startsWith("n") ? 2 * length : length;
+            result.set(0, width / 2, width);
+            if (length == DEFAULT_COLUMN_LENGTH && !base.contains("bin") && !base.contains("raw") && !base.contains("bit")) {
+                result.flags.add(DEFAULT_LENGTH);
+            }
+        } else if (FIXED.contains(base)) {
+            int length = args.isEmpty() ? 1 : args.get(0);
+            int width = base.startsWith("n") ? 2 * length : length;
+            if ("bit".equals(base)) {
+                width = (length + 7) / 8;
+            }
+            result.set(width, width, width);
+        } else if (NUMERIC.contains(base)) {
+            int width = args.isEmpty() ? 22 : (args.get(0) + 1) / 2 + 1;
+            result.set(width, width, width);
+        } else {
+            int width = width(base, args);
+            result.set(width, width, width);
+        }
+        if (nullable) {
+            result.min = 0;
+        }
+        if (result.max > maxColumnWidth && !result.flags.contains(LOB)) {
+            result.flags.add(OVERSIZED);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the width of the fixed width type.
+     *
+     * @param base the type name without the arguments.
+     * @param args the type arguments.
+     * @return the width of the type.
+     */
+    private static int width(String base, List<Integer> args) {
+        switch (base) {
+            case "tinyint":
+            case "boolean":
+            case "bool":
+                return 1;
+            case "smallint":
+            case "int2":
+                return 2;
+            case "integer":
+            case "int":
+            case "int4":
+            case "real":
+            case "float4":
+            case "binary_float":
+            case "date":
+                return 4;
+            case "bigint":
+            case "int8":
+            case "double":
+            case "double precision":
+            case "float8":
+            case "binary_double":
+            case "time":
+            case "timestamp":
+            case "datetime":
+            case "datetime2":
+                return 8;
+            case "float":
+                return !args.isEmpty() && args.get(0) <= 24 ? 4 : 8;
+            case "timestamp with time zone":
+            case "timestamp with local time zone":
+            case "datetimeoffset":
+                return 12;
+            case "uuid":
+            case "uniqueidentifier":
+                return 16;
+            default:
+                if (base.startsWith("timestamp")) {
+                    return 8;
+                }
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Splits the text by the commas outside of the parentheses.
+     *
+     * @param value the text.
+     * @return the trimmed parts of the text.
+     */
+    private static List<String> split(String value) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                result.add(value.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        result.add(value.substring(start).trim());
+        return result;
+    }
+
+    /**
+     * Splits the column definition to the tokens. The type arguments in the
+     * parentheses are one token.
+     *
+     * @param value the column definition.
+     * @return the tokens.
+     */
+    private static List<String> tokens(String value) {
+        List<String> result = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '`' || c == '[') {
+                quote = c == '[' ? ']' : c;
+                sb.append(c);
+            } else if (c == '(') {
+                if (depth == 0 && sb.length() > 0) {
+                    result.add(sb.toString());
+                    sb.setLength(0);
+                }
+                depth++;
+                sb.append(c);
+            } else if (c == ')') {
+                depth--;
+                sb.append(c);
+                if (depth == 0) {
+                    result.add(sb.toString());
+                    sb.setLength(0);
+                }
+            } else if (Character.isWhitespace(c) && depth == 0) {
+                if (sb.length() > 0) {
+                    result.add(sb.toString());
+                    sb.setLength(0);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        if (sb.length() > 0) {
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Parses the numeric arguments of the type.
+     *
+     * @param value the arguments without the parentheses.
+     * @return the numeric arguments.
+     */
+    private static List<Integer> arguments(String value) {
+        List<Integer> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            String tmp = item.trim();
+            int index = tmp.indexOf(' ');
+            if (index > 0) {
+                // varchar2(255 char)
+                tmp = tmp.substring(0, index);
+            }
+            try {
+                result.add(Integer.parseInt(tmp));
+            } catch (NumberFormatException ex) {
+                // max or the not numeric argument
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the first word of the text.
+     *
+     * @param value the text.
+     * @return the first word.
+     */
+    private static String firstWord(String value) {
+        int index = 0;
+        while (index < value.length() && Character.isLetter(value.charAt(index))) {
+            index++;
+        }
+        return value.substring(0, index);
+    }
+
+    /**
+     * Removes the quotes of the identifier.
+     *
+     * @param value the quoted identifier.
+     * @return the identifier without the quotes.
+     */
+    private static String unquote(String value) {
+        return value.replace("\"", "").replace("`", "").replace("[", "").replace("]", "");
+    }
+
+    /**
+     * The footprint of the table.
+     */
+    public static class TableFootprint {
+
+        /**
+         * The table name.
+         */
+        private final String name;
+
+        /**
+         * The columns of the table.
+         */
+        private final List<ColumnFootprint> columns = new ArrayList<>();
+
+        /**
+         * The constructor.
+         *
+         * @param name the table name.
+         */
+        TableFootprint(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets the table name.
+         *
+         * @return the table name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the columns of the table.
+         *
+         * @return the columns of the table.
+         */
+        public List<ColumnFootprint> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        /**
+         * Gets the minimal row width.
+         *
+         * @return the minimal row width.
+         */
+        public long getMinWidth() {
+            long result = 0;
+            for (ColumnFootprint column : columns) {
+                result += column.min;
+            }
+            return result;
+        }
+
+        /**
+         * Gets the average row width.
+         *
+         * @return the average row width.
+         */
+        public long getAverageWidth() {
+            long result = 0;
+            for (ColumnFootprint column : columns) {
+                result += column.avg;
+            }
+            return result;
+        }
+
+        /**
+         * Gets the maximal row width.
+         *
+         * @return the maximal row width.
+         */
+        public long getMaxWidth() {
+            long result = 0;
+            for (ColumnFootprint column : columns) {
+                result += column.max;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The footprint of the column.
+     */
+    public static class ColumnFootprint {
+
+        /**
+         * The column name.
+         */
+        private final String name;
+
+        /**
+         * The SQL type.
+         */
+        private final String type;
+
+        /**
+         * The minimal width.
+         */
+        private int min;
+
+        /**
+         * The average width.
+         */
+        private int avg;
+
+        /**
+         * The maximal width.
+         */
+        private int max;
+
+        /**
+         * The flags of the column.
+         */
+        private final List<String> flags = new ArrayList<>();
+
+        /**
+         * The constructor.
+         *
+         * @param name the column name.
+         * @param type the SQL type.
+         */
+        ColumnFootprint(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Sets the widths of the column.
+         *
+         * @param min the minimal width.
+         * @param avg the average width.
+         * @param max the maximal width.
+         */
+        private void set(int min, int avg, int max) {
+            this.min = min;
+            this.avg = avg;
+            this.max = max;
+        }
+
+        /**
+         * Gets the column name.
+         *
+         * @return the column name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the SQL type.
+         *
+         * @return the SQL type.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the minimal width.
+         *
+         * @return the minimal width.
+         */
+        public int getMinWidth() {
+            return min;
+        }
+
+        /**
+         * Gets the average width.
+         *
+         * @return the average width.
+         */
+        public int getAverageWidth() {
+            return avg;
+        }
+
+        /**
+         * Gets the maximal width.
+         *
+         * @return the maximal width.
+         */
+        public int getMaxWidth() {
+            return max;
+        }
+
+        /**
+         * Gets the flags of the column: lob, oversized and default-length.
+         *
+         * @return the flags of the column.
+         */
+        public List<String> getFlags() {
+            return Collections.unmodifiableList(flags);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The parallel execution plan of the schema script. The statements of the
+ * script are grouped by the table or the sequence and the groups are
+ * assigned to the topological levels of the foreign key dependency graph.
+ * The groups of the level are independent of each other and can be
+ * executed in parallel, the statements of the group are executed in the
+ * script order. The foreign keys of the cycles are deferred to the last
+ * level after all tables. The plan contains the statement numbers of the
+ * script, the script is never held in the memory.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaPlan {
+
+    /**
+     * The table group type.
+     */
+    public static final String TABLE = "table";
+
+    /**
+     * The sequence group type.
+     */
+    public static final String SEQUENCE = "sequence";
+
+    /**
+     * The constraint group type.
+     */
+    public static final String CONSTRAINT = "constraint";
+
+    /**
+     * The other statements group type.
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * The plan file suffix.
+     */
+    public static final String FILE_SUFFIX = "-plan.json";
+
+    /**
+     * The script file name.
+     */
+    private final String script;
+
+    /**
+     * The dependency graph of the tables.
+     */
+    private final DependencyGraph graph;
+
+    /**
+     * The levels.
+     */
+    private final List<Level> levels = new ArrayList<>();
+
+    /**
+     * The cycles of the tables.
+     */
+    private final List<List<String>> cycles = new ArrayList<>();
+
+    /**
+     * The number of the statements.
+     */
+    private long statements;
+
+    /**
+     * The constructor.
+     *
+     * @param script the script file name.
+     * @param graph the dependency graph of the tables.
+     */
+    private SchemaPlan(String script, DependencyGraph graph) {
+        this.script = script;
+        this.graph = graph;
+    }
+
+    /**
+     * Creates the plan of the create script.
+     *
+     * @param script the create script.
+     * @param delimiter the SQL delimiter.
+     * @return the plan of the script.
+     * @throws IOException if the script could not be read.
+     */
+    public static SchemaPlan create(Path script, String delimiter) throws IOException {
+        SchemaPlan result = new SchemaPlan(script.getFileName().toString(), new DependencyGraph());
+        Map<String, Group> tables = new LinkedHashMap<>();
+        List<Group> sequences = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        List<StatementInfo> infos = new ArrayList<>();
+        Group other = new Group(OTHER, OTHER);
+
+        try (StatementReader reader = new StatementReader(script, Charset.defaultCharset(), delimiter)) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                result.statements = statement.getIndex();
+                StatementInfo info = StatementInfo.parse(statement.getSql());
+                switch (info.getType()) {
+                    case CREATE_TABLE:
+                        result.graph.addNode(info.getTable());
+                        table(tables, info.getTable()).statements.add(statement.getIndex());
+                        break;
+                    case CREATE_SEQUENCE:
+                        Group sequence = new Group(info.getName(), SEQUENCE);
+                        sequence.statements.add(statement.getIndex());
+                        sequences.add(sequence);
+                        break;
+                    case FOREIGN_KEY:
+                        result.graph.addDependency(info.getTable(), info.getReferencedTable());
+                        keys.add(statement.getIndex());
+                        infos.add(info);
+                        break;
+                    case OTHER:
+                        other.statements.add(statement.getIndex());
+                        break;
+                    default:
+                        Group group = tables.get(key(info.getTable()));
+                        if (group == null) {
+                            other.statements.add(statement.getIndex());
+                        } else {
+                            group.statements.add(statement.getIndex());
+                        }
+                }
+                statement = reader.next();
+            }
+        }
+
+        // the foreign keys of the cycles are deferred
+        result.cycles.addAll(result.graph.getCycles());
+        Map<String, Integer> cycle = new LinkedHashMap<>();
+        for (int i = 0; i < result.cycles.size(); i++) {
+            for (String table : result.cycles.get(i)) {
+                cycle.put(key(table), i);
+            }
+        }
+        Level deferred = new Level(true);
+        for (int i = 0; i < keys.size(); i++) {
+            StatementInfo info = infos.get(i);
+            Integer from = cycle.get(key(info.getTable()));
+            Integer to = cycle.get(key(info.getReferencedTable()));
+            Group group = tables.get(key(info.getTable()));
+            boolean self = key(info.getTable()).equals(key(info.getReferencedTable()));
+            if (group != null && (self || from == null || !from.equals(to))) {
+                group.statements.add(keys.get(i));
+            } else {
+                result.graph.removeDependency(info.getTable(), info.getReferencedTable());
+                Group constraint = new Group(info.getName() == null ? info.getTable() : info.getName(), CONSTRAINT);
+                constraint.statements.add(keys.get(i));
+                deferred.groups.add(constraint);
+            }
+        }
+
+        List<List<String>> tmp = result.graph.getLevels();
+        for (int i = 0; i < tmp.size(); i++) {
+            Level level = new Level(false);
+            if (i == 0) {
+                level.groups.addAll(sequences);
+            }
+            for (String table : tmp.get(i)) {
+                Group group = tables.get(key(table));
+                if (group != null) {
+                    Collections.sort(group.statements);
+                    level.groups.add(group);
+                }
+            }
+            result.add(level);
+        }
+        if (tmp.isEmpty() && !sequences.isEmpty()) {
+            Level level = new Level(false);
+            level.groups.addAll(sequences);
+            result.add(level);
+        }
+        result.add(deferred);
+        if (!other.statements.isEmpty()) {
+            Level level = new Level(false);
+            level.groups.add(other);
+            result.add(level);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the plan of the drop script. The tables are dropped in the
+     * reverse levels of the plan of the create script after all foreign
+     * keys, the sequences are dropped at the end.
+     *
+     * @param script the drop script.
+     * @param delimiter the SQL delimiter.
+     * @param create the plan of the create script or {@code null}.
+     * @return the plan of the script.
+     * @throws IOException if the script could not be read.
+     */
+    public static SchemaPlan drop(Path script, String delimiter, SchemaPlan create) throws IOException {
+        DependencyGraph graph = create == null ? new DependencyGraph() : create.graph;
+        SchemaPlan result = new SchemaPlan(script.getFileName().toString(), graph);
+        if (create != null) {
+            result.cycles.addAll(create.cycles);
+        }
+        Map<String, Group> tables = new LinkedHashMap<>();
+        Level constraints = new Level(false);
+        Level sequences = new Level(false);
+        Group other = new Group(OTHER, OTHER);
+
+        try (StatementReader reader = new StatementReader(script, Charset.defaultCharset(), delimiter)) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                result.statements = statement.getIndex();
+                StatementInfo info = StatementInfo.parse(statement.getSql());
+                switch (info.getType()) {
+                    case DROP_CONSTRAINT:
+                        Group constraint = new Group(info.getName(), CONSTRAINT);
+                        constraint.statements.add(statement.getIndex());
+                        constraints.groups.add(constraint);
+                        break;
+                    case DROP_TABLE:
+                        table(tables, info.getTable()).statements.add(statement.getIndex());
+                        break;
+                    case DROP_SEQUENCE:
+                        Group sequence = new Group(info.getName(), SEQUENCE);
+                        sequence.statements.add(statement.getIndex());
+                        sequences.groups.add(sequence);
+                        break;
+                    default:
+                        other.statements.add(statement.getIndex());
+                }
+                statement = reader.next();
+            }
+        }
+
+        result.add(constraints);
+        List<List<String>> tmp = graph.getLevels();
+        Collections.reverse(tmp);
+        Set<String> done = new HashSet<>();
+        for (List<String> names : tmp) {
+            Level level = new Level(false);
+            for (String table : names) {
+                Group group = tables.get(key(table));
+                if (group != null) {
+                    level.groups.add(group);
+                    done.add(key(table));
+                }
+            }
+            result.add(level);
+        }
+        // the tables of the cycles or missing in the create plan
+        Level rest = new Level(false);
+        for (Map.Entry<String, Group> e : tables.entrySet()) {
+            if (!done.contains(e.getKey())) {
+                rest.groups.add(e.getValue());
+            }
+        }
+        result.add(rest);
+        result.add(sequences);
+        if (!other.statements.isEmpty()) {
+            Level level = new Level(false);
+            level.groups.add(other);
+            result.add(level);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the script file name.
+     *
+     * @return the script file name.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the number of the statements of the script.
+     *
+     * @return the number of the statements.
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Gets the levels of the plan.
+     *
+     * @return the levels.
+     */
+    public List<Level> getLevels() {
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * Gets the cycles of the tables. The foreign keys of the cycles are
+     * deferred.
+     *
+     * @return the cycles of the table names.
+     */
+    public List<List<String>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    /**
+     * Gets the dependency graph of the tables.
+     *
+     * @return the dependency graph.
+     */
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Writes the plan as JSON.
+     *
+     * @param file the plan file.
+     * @throws IOException if the plan could not be written.
+     */
+    public void write(Path file) throws IOException {
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("script", script);
+            json.property("statements", statements);
+            json.name("levels").beginArray();
+            for (Level level : levels) {
+                json.beginObject();
+                json.property("deferred", level.deferred);
+                json.name("groups").beginArray();
+                for (Group group : level.groups) {
+                    json.beginObject();
+                    json.property("name", group.name);
+                    json.property("type", group.type);
+                    json.name("statements").beginArray();
+                    for (Long index : group.statements) {
+                        json.value(index);
+                    }
+                    json.endArray();
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.name("cycles").beginArray();
+            for (List<String> cycle : cycles) {
+                json.beginArray();
+                for (String table : cycle) {
+                    json.value(table);
+                }
+                json.endArray();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Gets the plan file of the script.
+     *
+     * @param script the script file.
+     * @return the plan file, for example {@code create-plan.json}.
+     */
+    public static Path getFile(Path script) {
+        String name = script.getFileName().toString();
+        int index = name.lastIndexOf('.');
+        return script.resolveSibling((index > 0 ? name.substring(0, index) : name) + FILE_SUFFIX);
+    }
+
+    /**
+     * Adds the not empty level.
+     *
+     * @param level the level.
+     */
+    private void add(Level level) {
+        if (!level.groups.isEmpty()) {
+            levels.add(level);
+        }
+    }
+
+    /**
+     * Gets or creates the table group.
+     *
+     * @param tables the table groups by the normalized name.
+     * @param table the table name.
+     * @return the table group.
+     */
+    private static Group table(Map<String, Group> tables, String table) {
+        Group result = tables.get(key(table));
+        if (result == null) {
+            result = new Group(table, TABLE);
+            tables.put(key(table), result);
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes the table name.
+     *
+     * @param name the table name.
+     * @return the normalized name.
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The level of the plan. The groups of the level are independent.
+     */
+    public static class Level {
+
+        /**
+         * The deferred constraints level.
+         */
+        private final boolean deferred;
+
+        /**
+         * The groups.
+         */
+        private final List<Group> groups = new ArrayList<>();
+
+        /**
+         * The constructor.
+         *
+         * @param deferred the deferred constraints level.
+         */
+        Level(boolean deferred) {
+            this.deferred = deferred;
+        }
+
+        /**
+         * Checks if the level contains the deferred constraints of the
+         * cycles.
+         *
+         * @return {@code true} for the deferred constraints level.
+         */
+        public boolean isDeferred() {
+            return deferred;
+        }
+
+        /**
+         * Gets the groups of the level.
+         *
+         * @return the groups.
+         */
+        public List<Group> getGroups() {
+            return Collections.unmodifiableList(groups);
+        }
+    }
+
+    /**
+     * The group of the statements executed in the script order.
+     */
+    public static class Group {
+
+        /**
+         * The group name: the table, sequence or constraint name.
+         */
+        private final String name;
+
+        /**
+         * The group type.
+         */
+        private final String type;
+
+        /**
+         * The statement numbers of the script.
+         */
+        private final List<Long> statements = new ArrayList<>();
+
+        /**
+         * The constructor.
+         *
+         * @param name the group name.
+         * @param type the group type.
+         */
+        Group(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Gets the group name: the table, sequence or constraint name.
+         *
+         * @return the group name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the group type.
+         *
+         * @return the group type.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the statement numbers of the script starting with 1.
+         *
+         * @return the statement numbers.
+         */
+        public List<Long> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The JDBC executor of the schema scripts. The levels of the
+ * {@link SchemaPlan} are executed in order, the groups of one level are
+ * executed in parallel on the connections of the pool. The statements of
+ * the group are executed in the script order in batches.
+ *
+ * @author Andrej Petras
+ */
+public class ScriptExecutor {
+
+    /**
+     * The connection pool.
+     */
+    private final BlockingQueue<Connection> pool;
+
+    /**
+     * The number of the threads.
+     */
+    private final int threads;
+
+    /**
+     * The maximum batch size.
+     */
+    private final int batchSize;
+
+    /**
+     * Continue on the statement error.
+     */
+    private final boolean continueOnError;
+
+    /**
+     * The constructor.
+     *
+     * @param connections the connections of the pool.
+     * @param batchSize the maximum batch size.
+     * @param continueOnError {@code true} to continue on the statement
+     * error.
+     */
+    public ScriptExecutor(List<Connection> connections, int batchSize, boolean continueOnError) {
+        this.pool = new ArrayBlockingQueue<>(connections.size(), false, connections);
+        this.threads = connections.size();
+        this.batchSize = Math.max(1, batchSize);
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * Loads the statements of the script.
+     *
+     * @param script the script file.
+     * @param delimiter the SQL delimiter.
+     * @return the SQL statements in the script order.
+     * @throws IOException if the script could not be read.
+     */
+    public static List<String> load(Path script, String delimiter) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (StatementReader reader = new StatementReader(script, Charset.defaultCharset(), delimiter)) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                result.add(statement.getSql());
+                statement = reader.next();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executes the script by the plan.
+     *
+     * @param plan the plan of the script.
+     * @param statements the SQL statements of the script.
+     * @return the execution times of the statements in the script order.
+     * @throws SQLException if the statement failed and the execution does
+     * not continue on the error.
+     */
+    public List<StatementTiming> execute(SchemaPlan plan, final List<String> statements) throws SQLException {
+        final String script = plan.getScript();
+        final List<StatementTiming> result = Collections.synchronizedList(new ArrayList<StatementTiming>());
+        List<SchemaPlan.Level> levels = plan.getLevels();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < levels.size(); i++) {
+                final int level = i;
+                List<Future<Void>> futures = new ArrayList<>();
+                for (final SchemaPlan.Group group : levels.get(i).getGroups()) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            Connection connection = pool.take();
+                            try {
+                                execute(connection, script, level, group, statements, result);
+                            } finally {
+                                pool.add(connection);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                waitFor(futures);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        List<StatementTiming> tmp = new ArrayList<>(result);
+        Collections.sort(tmp, new Comparator<StatementTiming>() {
+            @Override
+            public int compare(StatementTiming o1, StatementTiming o2) {
+                return Long.compare(o1.getStatement(), o2.getStatement());
+            }
+        });
+        return tmp;
+    }
+
+    /**
+     * Executes the statements of the group in batches.
+     *
+     * @param connection the connection.
+     * @param script the script file name.
+     * @param level the level of the plan.
+     * @param group the group.
+     * @param statements the SQL statements of the script.
+     * @param result the execution times.
+     * @throws SQLException if the statement failed and the execution does
+     * not continue on the error.
+     */
+    private void execute(Connection connection, String script, int level, SchemaPlan.Group group, List<String> statements, List<StatementTiming> result) throws SQLException {
+        List<Long> indexes = group.getStatements();
+        boolean batch = batchSize > 1 && connection.getMetaData().supportsBatchUpdates();
+        int size = batch ? batchSize : 1;
+        for (int start = 0; start < indexes.size(); start = start + size) {
+            List<Long> tmp = indexes.subList(start, Math.min(indexes.size(), start + size));
+            try (java.sql.Statement stmt = connection.createStatement()) {
+                if (tmp.size() == 1) {
+                    execute(stmt, script, level, group, tmp.get(0), statements, result);
+                } else {
+                    executeBatch(stmt, script, level, group, tmp, statements, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes the single statement.
+     *
+     * @param stmt the JDBC statement.
+     * @param script the script file name.
+     * @param level the level of the plan.
+     * @param group the group.
+     * @param index the statement number.
+     * @param statements the SQL statements of the script.
+     * @param result the execution times.
+     * @throws SQLException if the statement failed and the execution does
+     * not continue on the error.
+     */
+    private void execute(java.sql.Statement stmt, String script, int level, SchemaPlan.Group group, long index, List<String> statements, List<StatementTiming> result) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            stmt.execute(statements.get((int) index - 1));
+            result.add(new StatementTiming(script, index, level, group.getName(), System.nanoTime() - start, 1, null));
+        } catch (SQLException ex) {
+            result.add(new StatementTiming(script, index, level, group.getName(), System.nanoTime() - start, 1, ex.getMessage()));
+            if (!continueOnError) {
+                throw new SQLException("Error executing the statement " + index + " of the " + script + ": " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Executes the statements in one batch. The statements not executed
+     * after the failed statement of the batch are executed one by one if
+     * the execution continues on the error.
+     *
+     * @param stmt the JDBC statement.
+     * @param script the script file name.
+     * @param level the level of the plan.
+     * @param group the group.
+     * @param indexes the statement numbers.
+     * @param statements the SQL statements of the script.
+     * @param result the execution times.
+     * @throws SQLException if the statement failed and the execution does
+     * not continue on the error.
+     */
+    private void executeBatch(java.sql.Statement stmt, String script, int level, SchemaPlan.Group group, List<Long> indexes, List<String> statements, List<StatementTiming> result) throws SQLException {
+        for (Long index : indexes) {
+            stmt.addBatch(statements.get(index.intValue() - 1));
+        }
+        long start = System.nanoTime();
+        int[] counts;
+        String error = null;
+        SQLException exception = null;
+        try {
+            counts = stmt.executeBatch();
+        } catch (BatchUpdateException ex) {
+            counts = ex.getUpdateCounts() == null ? new int[0] : ex.getUpdateCounts();
+            error = ex.getMessage();
+            exception = ex;
+        }
+        long time = System.nanoTime() - start;
+        int size = indexes.size();
+        for (int i = 0; i < size && i < counts.length; i++) {
+            boolean failed = counts[i] == java.sql.Statement.EXECUTE_FAILED;
+            result.add(new StatementTiming(script, indexes.get(i), level, group.getName(), time, size, failed ? error : null));
+        }
+        if (exception == null) {
+            return;
+        }
+        if (counts.length < size) {
+            // the driver stopped at the failed statement
+            result.add(new StatementTiming(script, indexes.get(counts.length), level, group.getName(), time, size, error));
+        }
+        if (!continueOnError) {
+            throw new SQLException("Error executing the batch of the " + script + " group " + group.getName() + ": " + error, exception);
+        }
+        stmt.clearBatch();
+        for (int i = counts.length + 1; i < size; i++) {
+            execute(stmt, script, level, group, indexes.get(i), statements, result);
+        }
+    }
+
+    /**
+     * Waits for the groups of the level.
+     *
+     * @param futures the tasks of the groups.
+     * @throws SQLException if one of the groups failed.
+     */
+    private static void waitFor(List<Future<Void>> futures) throws SQLException {
+        SQLException error = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("The execution of the script was interrupted.", ex);
+            } catch (ExecutionException ex) {
+                if (error == null) {
+                    Throwable cause = ex.getCause();
+                    error = cause instanceof SQLException ? (SQLException) cause : new SQLException(cause.getMessage(), cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
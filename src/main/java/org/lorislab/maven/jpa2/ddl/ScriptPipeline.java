@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statement pipeline of the schema script. The script is read one
+ * statement at a time, every statement is processed by the stages and the
+ * remaining statements are written to the temporary file which replaces the
+ * script. The script is never held in the memory. The scripts are written
+ * by Hibernate in the default charset, the pipeline uses the same charset.
+ *
+ * @author Andrej Petras
+ */
+public class ScriptPipeline {
+
+    /**
+     * The stages.
+     */
+    private final List<StatementStage> stages;
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The script charset.
+     */
+    private final Charset charset = Charset.defaultCharset();
+
+    /**
+     * The constructor.
+     *
+     * @param stages the stages.
+     * @param delimiter the SQL delimiter.
+     */
+    public ScriptPipeline(List<StatementStage> stages, String delimiter) {
+        this.stages = stages;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Creates the pipeline with the new instances of the configured stages.
+     *
+     * @param stages the configuration of the stages.
+     * @param delimiter the SQL delimiter.
+     * @return the pipeline.
+     * @throws RuntimeException if the configuration is not valid.
+     */
+    public static ScriptPipeline create(List<ScriptStage> stages, String delimiter) {
+        List<StatementStage> tmp = new ArrayList<>();
+        for (ScriptStage stage : stages) {
+            tmp.add(stage.createStage());
+        }
+        return new ScriptPipeline(tmp, delimiter);
+    }
+
+    /**
+     * Processes the script. The missing script is ignored.
+     *
+     * @param script the script file.
+     * @return the list of the written files.
+     * @throws IOException if the processing fails.
+     */
+    public List<Path> process(Path script) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isRegularFile(script)) {
+            return result;
+        }
+        final Path dir = script.toAbsolutePath().getParent();
+        final StatementWriters writers = new StatementWriters(charset, delimiter);
+        Path tmp = script.resolveSibling(script.getFileName() + ".tmp");
+        try {
+            try (StatementReader reader = new StatementReader(script, charset, delimiter);
+                    StatementWriter writer = new StatementWriter(tmp, charset, delimiter);
+                    StatementWriters out = writers) {
+                StatementSink sink = new StatementSink() {
+                    @Override
+                    public void write(String file, Statement statement) throws IOException {
+                        out.write(dir.resolve(file), statement);
+                    }
+                };
+                Statement statement = reader.next();
+                while (statement != null) {
+                    if (process(statement, sink)) {
+                        writer.write(statement);
+                    }
+                    statement = reader.next();
+                }
+            }
+            Files.move(tmp, script, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        result.add(script);
+        result.addAll(writers.getFiles());
+        return result;
+    }
+
+    /**
+     * Processes the statement by the stages.
+     *
+     * @param statement the statement.
+     * @param sink the sink of the other files.
+     * @return {@code true} if the statement remains in the script.
+     * @throws IOException if the processing fails.
+     */
+    private boolean process(Statement statement, StatementSink sink) throws IOException {
+        for (StatementStage stage : stages) {
+            if (!stage.process(statement, sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.regex.Pattern;
+
+/**
+ * The configuration of the script pipeline stage. The type of the stage is
+ * {@code filter}, {@code rewrite}, {@code annotate}, {@code split} or the
+ * class name of the {@link StatementStage} implementation. The pattern is
+ * the case insensitive regular expression found in the statement.
+ *
+ * @author Andrej Petras
+ */
+public class ScriptStage {
+
+    /**
+     * The filter stage type.
+     */
+    public static final String FILTER = "filter";
+
+    /**
+     * The rewrite stage type.
+     */
+    public static final String REWRITE = "rewrite";
+
+    /**
+     * The annotate stage type.
+     */
+    public static final String ANNOTATE = "annotate";
+
+    /**
+     * The split stage type.
+     */
+    public static final String SPLIT = "split";
+
+    /**
+     * The stage type.
+     */
+    private String type;
+
+    /**
+     * The pattern.
+     */
+    private String pattern;
+
+    /**
+     * The replacement of the rewrite stage.
+     */
+    private String replacement;
+
+    /**
+     * The comment of the annotate stage.
+     */
+    private String comment;
+
+    /**
+     * The file name of the split stage.
+     */
+    private String file;
+
+    /**
+     * Gets the stage type.
+     *
+     * @return the stage type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Sets the stage type.
+     *
+     * @param type the stage type.
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Gets the pattern.
+     *
+     * @return the pattern.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Sets the pattern.
+     *
+     * @param pattern the pattern.
+     */
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Gets the replacement of the rewrite stage.
+     *
+     * @return the replacement.
+     */
+    public String getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * Sets the replacement of the rewrite stage.
+     *
+     * @param replacement the replacement.
+     */
+    public void setReplacement(String replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * Gets the comment of the annotate stage.
+     *
+     * @return the comment.
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * Sets the comment of the annotate stage.
+     *
+     * @param comment the comment.
+     */
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+
+    /**
+     * Gets the file name of the split stage.
+     *
+     * @return the file name.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the file name of the split stage.
+     *
+     * @param file the file name.
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates the new instance of the stage.
+     *
+     * @return the new instance of the stage.
+     * @throws RuntimeException if the configuration is not valid.
+     */
+    public StatementStage createStage() {
+        if (type == null || type.isEmpty()) {
+            throw new RuntimeException("Missing the type of the pipeline stage.");
+        }
+        switch (type) {
+            case FILTER:
+                return new FilterStage(compile(true));
+            case REWRITE:
+                return new RewriteStage(compile(true), replacement == null ? "" : replacement);
+            case ANNOTATE:
+                if (comment == null) {
+                    throw new RuntimeException("Missing the comment of the annotate pipeline stage.");
+                }
+                return new AnnotateStage(compile(false), comment);
+            case SPLIT:
+                if (file == null || file.isEmpty()) {
+                    throw new RuntimeException("Missing the file of the split pipeline stage.");
+                }
+                return new SplitStage(compile(true), file);
+            default:
+                try {
+                    Class<?> clazz = Class.forName(type, true, ScriptStage.class.getClassLoader());
+                    return (StatementStage) clazz.newInstance();
+                } catch (Exception ex) {
+                    throw new RuntimeException("Error creating the pipeline stage " + type, ex);
+                }
+        }
+    }
+
+    /**
+     * Compiles the pattern.
+     *
+     * @param required the pattern is required.
+     * @return the compiled pattern or {@code null}.
+     */
+    private Pattern compile(boolean required) {
+        if (pattern == null || pattern.isEmpty()) {
+            if (required) {
+                throw new RuntimeException("Missing the pattern of the " + type + " pipeline stage.");
+            }
+            return null;
+        }
+        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return type + "[pattern=" + pattern + ", replacement=" + replacement + ", comment=" + comment + ", file=" + file + "]";
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * The split stage moves the statements matching the pattern to the other
+ * file. The file name is prefixed with the script name, for example the
+ * file {@code constraints.sql} of the {@code create.sql} script is
+ * {@code create-constraints.sql}.
+ *
+ * @author Andrej Petras
+ */
+public class SplitStage implements StatementStage {
+
+    /**
+     * The pattern of the moved statements.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The file name.
+     */
+    private final String file;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern the pattern of the moved statements.
+     * @param file the file name.
+     */
+    public SplitStage(Pattern pattern, String file) {
+        this.pattern = pattern;
+        this.file = file;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean process(Statement statement, StatementSink sink) throws IOException {
+        if (!pattern.matcher(statement.getSql()).find()) {
+            return true;
+        }
+        sink.write(getFileName(statement.getScript(), file), statement);
+        return false;
+    }
+
+    /**
+     * Gets the file name of the split file of the script.
+     *
+     * @param script the script file name.
+     * @param file the file name.
+     * @return the file name prefixed with the script name.
+     */
+    public static String getFileName(String script, String file) {
+        int index = script.lastIndexOf('.');
+        return (index > 0 ? script.substring(0, index) : script) + "-" + file;
+    }
+}
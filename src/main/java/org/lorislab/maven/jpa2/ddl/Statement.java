@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SQL statement of the schema script. The statement contains the SQL
+ * text without the delimiter and the comment lines written before the
+ * statement.
+ *
+ * @author Andrej Petras
+ */
+public class Statement {
+
+    /**
+     * The script file name.
+     */
+    private final String script;
+
+    /**
+     * The index of the statement in the script starting with 1.
+     */
+    private final long index;
+
+    /**
+     * The comment lines without the comment prefix.
+     */
+    private final List<String> comments = new ArrayList<>();
+
+    /**
+     * The SQL text without the delimiter.
+     */
+    private String sql;
+
+    /**
+     * The constructor.
+     *
+     * @param script the script file name.
+     * @param index the index of the statement in the script.
+     * @param sql the SQL text without the delimiter.
+     */
+    public Statement(String script, long index, String sql) {
+        this.script = script;
+        this.index = index;
+        this.sql = sql;
+    }
+
+    /**
+     * Gets the script file name.
+     *
+     * @return the script file name.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the index of the statement in the script starting with 1.
+     *
+     * @return the index of the statement.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the comment lines without the comment prefix.
+     *
+     * @return the modifiable list of the comment lines.
+     */
+    public List<String> getComments() {
+        return comments;
+    }
+
+    /**
+     * Gets the SQL text without the delimiter.
+     *
+     * @return the SQL text.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Sets the SQL text without the delimiter.
+     *
+     * @param sql the SQL text.
+     */
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
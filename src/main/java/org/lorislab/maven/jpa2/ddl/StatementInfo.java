@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The information about the DDL statement generated by Hibernate. The
+ * statement type and the table, the referenced table and the sequence names
+ * are parsed from the SQL text by the regular expressions of the generated
+ * statements.
+ *
+ * @author Andrej Petras
+ */
+public class StatementInfo {
+
+    /**
+     * The statement type.
+     */
+    public enum Type {
+
+        /**
+         * The create table statement.
+         */
+        CREATE_TABLE,
+
+        /**
+         * The create index statement.
+         */
+        CREATE_INDEX,
+
+        /**
+         * The create sequence statement.
+         */
+        CREATE_SEQUENCE,
+
+        /**
+         * The add foreign key statement.
+         */
+        FOREIGN_KEY,
+
+        /**
+         * The other alter table statement.
+         */
+        ALTER_TABLE,
+
+        /**
+         * The drop constraint statement.
+         */
+        DROP_CONSTRAINT,
+
+        /**
+         * The drop table statement.
+         */
+        DROP_TABLE,
+
+        /**
+         * The drop sequence statement.
+         */
+        DROP_SEQUENCE,
+
+        /**
+         * The comment on the table or column.
+         */
+        COMMENT,
+
+        /**
+         * The other statement.
+         */
+        OTHER;
+    }
+
+    /**
+     * The name pattern.
+     */
+    private static final String NAME = "((?:[\\w$#]+|\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\])(?:\\.(?:[\\w$#]+|\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\]))*)";
+
+    /**
+     * The create table pattern.
+     */
+    private static final Pattern CREATE_TABLE = compile("^create\\s+(?:(?:global\\s+|local\\s+)?(?:temporary|cached|memory|column)\\s+)?table\\s+(?:if\\s+not\\s+exists\\s+)?" + NAME);
+
+    /**
+     * The create index pattern.
+     */
+    private static final Pattern CREATE_INDEX = compile("^create\\s+(?:unique\\s+)?(?:clustered\\s+|nonclustered\\s+)?index\\s+" + NAME + "\\s+on\\s+" + NAME);
+
+    /**
+     * The create sequence pattern.
+     */
+    private static final Pattern CREATE_SEQUENCE = compile("^create\\s+sequence\\s+(?:if\\s+not\\s+exists\\s+)?" + NAME);
+
+    /**
+     * The alter table pattern.
+     */
+    private static final Pattern ALTER_TABLE = compile("^alter\\s+table\\s+(?:if\\s+exists\\s+)?(?:only\\s+)?" + NAME);
+
+    /**
+     * The foreign key pattern.
+     */
+    private static final Pattern FOREIGN_KEY = compile("\\bforeign\\s+key\\s*\\(([^)]*)\\)\\s*references\\s+" + NAME + "(?:\\s*\\(([^)]*)\\))?");
+
+    /**
+     * The drop constraint pattern.
+     */
+    private static final Pattern DROP_CONSTRAINT = compile("\\bdrop\\s+(?:constraint|foreign\\s+key)\\s+(?:if\\s+exists\\s+)?" + NAME);
+
+    /**
+     * The add constraint pattern.
+     */
+    private static final Pattern ADD_CONSTRAINT = compile("\\badd\\s+constraint\\s+" + NAME);
+
+    /**
+     * The drop table pattern.
+     */
+    private static final Pattern DROP_TABLE = compile("^drop\\s+table\\s+(?:if\\s+exists\\s+)?" + NAME);
+
+    /**
+     * The drop sequence pattern.
+     */
+    private static final Pattern DROP_SEQUENCE = compile("^drop\\s+sequence\\s+(?:if\\s+exists\\s+)?" + NAME);
+
+    /**
+     * The comment pattern.
+     */
+    private static final Pattern COMMENT = compile("^comment\\s+on\\s+(table|column)\\s+" + NAME);
+
+    /**
+     * The statement type.
+     */
+    private final Type type;
+
+    /**
+     * The table name or {@code null}.
+     */
+    private final String table;
+
+    /**
+     * The object name: the index, sequence or constraint name or
+     * {@code null}.
+     */
+    private final String name;
+
+    /**
+     * The referenced table name of the foreign key or {@code null}.
+     */
+    private final String referencedTable;
+
+    /**
+     * The comma separated columns of the foreign key or {@code null}.
+     */
+    private final String columns;
+
+    /**
+     * The constructor.
+     *
+     * @param type the statement type.
+     * @param table the table name or {@code null}.
+     * @param name the object name or {@code null}.
+     * @param referencedTable the referenced table or {@code null}.
+     * @param columns the columns of the foreign key or {@code null}.
+     */
+    private StatementInfo(Type type, String table, String name, String referencedTable, String columns) {
+        this.type = type;
+        this.table = table;
+        this.name = name;
+        this.referencedTable = referencedTable;
+        this.columns = columns;
+    }
+
+    /**
+     * Parses the statement.
+     *
+     * @param sql the SQL text.
+     * @return the statement information.
+     */
+    public static StatementInfo parse(String sql) {
+        String tmp = sql.trim();
+        Matcher m = CREATE_TABLE.matcher(tmp);
+        if (m.find()) {
+            return new StatementInfo(Type.CREATE_TABLE, unquote(m.group(1)), null, null, null);
+        }
+        m = CREATE_INDEX.matcher(tmp);
+        if (m.find()) {
+            return new StatementInfo(Type.CREATE_INDEX, unquote(m.group(2)), unquote(m.group(1)), null, null);
+        }
+        m = CREATE_SEQUENCE.matcher(tmp);
+        if (m.find()) {
+            return new StatementInfo(Type.CREATE_SEQUENCE, null, unquote(m.group(1)), null, null);
+        }
+        m = ALTER_TABLE.matcher(tmp);
+        if (m.find()) {
+            String table = unquote(m.group(1));
+            Matcher fk = FOREIGN_KEY.matcher(tmp);
+            if (fk.find()) {
+                Matcher constraint = ADD_CONSTRAINT.matcher(tmp);
+                String name = constraint.find() ? unquote(constraint.group(1)) : null;
+                return new StatementInfo(Type.FOREIGN_KEY, table, name, unquote(fk.group(2)), columns(fk.group(1)));
+            }
+            Matcher drop = DROP_CONSTRAINT.matcher(tmp);
+            if (drop.find()) {
+                return new StatementInfo(Type.DROP_CONSTRAINT, table, unquote(drop.group(1)), null, null);
+            }
+            return new StatementInfo(Type.ALTER_TABLE, table, null, null, null);
+        }
+        m = DROP_TABLE.matcher(tmp);
+        if (m.find()) {
+            return new StatementInfo(Type.DROP_TABLE, unquote(m.group(1)), null, null, null);
+        }
+        m = DROP_SEQUENCE.matcher(tmp);
+        if (m.find()) {
+            return new StatementInfo(Type.DROP_SEQUENCE, null, unquote(m.group(1)), null, null);
+        }
+        m = COMMENT.matcher(tmp);
+        if (m.find()) {
+            String table = unquote(m.group(2));
+            if ("column".equalsIgnoreCase(m.group(1))) {
+                int index = table.lastIndexOf('.');
+                table = index > 0 ? table.substring(0, index) : table;
+            }
+            return new StatementInfo(Type.COMMENT, table, null, null, null);
+        }
+        return new StatementInfo(Type.OTHER, null, null, null, null);
+    }
+
+    /**
+     * Gets the statement type.
+     *
+     * @return the statement type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the table name.
+     *
+     * @return the table name or {@code null}.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the object name: the index, sequence or constraint name.
+     *
+     * @return the object name or {@code null}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the referenced table of the foreign key.
+     *
+     * @return the referenced table or {@code null}.
+     */
+    public String getReferencedTable() {
+        return referencedTable;
+    }
+
+    /**
+     * Gets the comma separated columns of the foreign key.
+     *
+     * @return the columns or {@code null}.
+     */
+    public String getColumns() {
+        return columns;
+    }
+
+    /**
+     * Compiles the case insensitive pattern.
+     *
+     * @param regex the regular expression.
+     * @return the compiled pattern.
+     */
+    private static Pattern compile(String regex) {
+        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    /**
+     * Removes the quotes of the name parts.
+     *
+     * @param value the quoted name.
+     * @return the name without the quotes.
+     */
+    private static String unquote(String value) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '`' && c != '[' && c != ']') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Normalizes the column list.
+     *
+     * @param value the column list.
+     * @return the comma separated columns without the quotes and spaces.
+     */
+    private static String columns(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : value.split(",")) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(unquote(column.trim()));
+        }
+        return sb.toString();
+    }
+}
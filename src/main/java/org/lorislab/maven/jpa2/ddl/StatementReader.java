@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The streaming reader of the SQL statements of the schema script. The
+ * script is read by the file channel in the fixed size buffer and only the
+ * current statement is held in the memory. The delimiter in the string
+ * literals, the quoted identifiers and the comments does not end the
+ * statement. The line comments before the statement are returned as the
+ * statement comments. The scripts with one statement per line without the
+ * delimiter are read with the {@link #LINE_DELIMITER}.
+ *
+ * @author Andrej Petras
+ */
+public class StatementReader implements Closeable {
+
+    /**
+     * The delimiter of the scripts with one statement per line. Hibernate
+     * writes the scripts of the JPA schema generation without the configured
+     * delimiter.
+     */
+    public static final String LINE_DELIMITER = "\n";
+
+    /**
+     * The buffer size.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The script file name.
+     */
+    private final String script;
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The charset decoder.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * The byte buffer.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * The char buffer.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * The end of the file channel.
+     */
+    private boolean eof;
+
+    /**
+     * The decoder is flushed, all characters of the script are decoded.
+     */
+    private boolean flushed;
+
+    /**
+     * The number of the read statements.
+     */
+    private long count;
+
+    /**
+     * The constructor.
+     *
+     * @param file the script file.
+     * @param charset the script charset.
+     * @param delimiter the SQL delimiter.
+     * @throws IOException if the script could not be opened.
+     * @throws IllegalArgumentException if the delimiter is empty.
+     */
+    public StatementReader(Path file, Charset charset, String delimiter) throws IOException {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("The SQL delimiter of the script " + file + " is empty.");
+        }
+        this.script = file.getFileName().toString();
+        this.delimiter = delimiter;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    /**
+     * Reads the next statement.
+     *
+     * @return the next statement or {@code null} at the end of the script.
+     * @throws IOException if the script could not be read.
+     */
+    public Statement next() throws IOException {
+        List<String> comments = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        char quote = 0;
+        boolean lineComment = false;
+        boolean blockComment = false;
+        int commentStart = -1;
+        char last = 0;
+        char lastDelimiter = delimiter.charAt(delimiter.length() - 1);
+
+        while (chars.hasRemaining() || fill()) {
+            char c = chars.get();
+            sb.append(c);
+            if (lineComment) {
+                if (c == '\n') {
+                    lineComment = false;
+                    if (isBlank(sb, commentStart)) {
+                        // the comment line before the statement
+                        comments.add(sb.substring(commentStart + 2).trim());
+                        sb.setLength(0);
+                    }
+                }
+            } else if (blockComment) {
+                if (last == '*' && c == '/') {
+                    blockComment = false;
+                    c = 0;
+                }
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (last == '-' && c == '-') {
+                lineComment = true;
+                commentStart = sb.length() - 2;
+            } else if (last == '/' && c == '*') {
+                blockComment = true;
+                c = 0;
+            } else if (c == lastDelimiter && endsWith(sb, delimiter)) {
+                String sql = sb.substring(0, sb.length() - delimiter.length()).trim();
+                sb.setLength(0);
+                if (!sql.isEmpty()) {
+                    return create(sql, comments);
+                }
+            }
+            last = c;
+        }
+
+        if (lineComment && isBlank(sb, commentStart)) {
+            comments.add(sb.substring(commentStart + 2).trim());
+            sb.setLength(0);
+        }
+        String sql = sb.toString().trim();
+        if (!sql.isEmpty()) {
+            return create(sql, comments);
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the delimiter of the script. The script without any line
+     * ending with the delimiter is the script with one statement per line.
+     *
+     * @param file the script file.
+     * @param charset the script charset.
+     * @param delimiter the SQL delimiter.
+     * @return the delimiter or the {@link #LINE_DELIMITER}.
+     * @throws IOException if the script could not be read.
+     */
+    public static String resolveDelimiter(Path file, Charset charset, String delimiter) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().endsWith(delimiter)) {
+                    return delimiter;
+                }
+            }
+        }
+        return LINE_DELIMITER;
+    }
+
+    /**
+     * Closes the file channel.
+     *
+     * @throws IOException if the closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Creates the statement.
+     *
+     * @param sql the SQL text.
+     * @param comments the comment lines.
+     * @return the statement.
+     */
+    private Statement create(String sql, List<String> comments) {
+        count++;
+        Statement result = new Statement(script, count, sql);
+        result.getComments().addAll(comments);
+        return result;
+    }
+
+    /**
+     * Fills the char buffer from the file channel.
+     *
+     * @return {@code true} if the char buffer has remaining characters.
+     * @throws IOException if the script could not be read.
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (!flushed && chars.position() == 0) {
+            if (!eof && channel.read(bytes) < 0) {
+                eof = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, eof);
+            bytes.compact();
+            // the decoder is flushed once after the last bytes are decoded
+            if (eof && result.isUnderflow() && decoder.flush(chars).isUnderflow()) {
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    /**
+     * Checks if the text before the index contains only whitespace.
+     *
+     * @param sb the text.
+     * @param index the end index.
+     * @return {@code true} if the text before the index is blank.
+     */
+    private static boolean isBlank(StringBuilder sb, int index) {
+        for (int i = 0; i < index; i++) {
+            if (!Character.isWhitespace(sb.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the text ends with the suffix.
+     *
+     * @param sb the text.
+     * @param suffix the suffix.
+     * @return {@code true} if the text ends with the suffix.
+     */
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+
+/**
+ * The sink of the other script files of the pipeline. The files are created
+ * in the directory of the script on the first statement.
+ *
+ * @author Andrej Petras
+ */
+public interface StatementSink {
+
+    /**
+     * Writes the statement to the other script file.
+     *
+     * @param file the file name relative to the directory of the script.
+     * @param statement the statement.
+     * @throws IOException if the writing fails.
+     */
+    void write(String file, Statement statement) throws IOException;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+
+/**
+ * The stage of the script pipeline. The stage processes one statement at a
+ * time. The custom stage implementation needs the public default
+ * constructor, a new instance is created for every script.
+ *
+ * @author Andrej Petras
+ */
+public interface StatementStage {
+
+    /**
+     * Processes the statement. The stage can modify the statement, write the
+     * statement to the other file of the sink or remove the statement from
+     * the script.
+     *
+     * @param statement the statement.
+     * @param sink the sink of the other files of the script.
+     * @return {@code true} to pass the statement to the next stage,
+     * {@code false} to remove the statement from the script.
+     * @throws IOException if the processing fails.
+     */
+    boolean process(Statement statement, StatementSink sink) throws IOException;
+}
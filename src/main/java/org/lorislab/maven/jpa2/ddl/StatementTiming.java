@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+/**
+ * The execution time of the statement. The statements of one batch share
+ * the execution time of the batch.
+ *
+ * @author Andrej Petras
+ */
+public class StatementTiming {
+
+    /**
+     * The script file name.
+     */
+    private final String script;
+
+    /**
+     * The statement number in the script.
+     */
+    private final long statement;
+
+    /**
+     * The level of the plan.
+     */
+    private final int level;
+
+    /**
+     * The group name.
+     */
+    private final String group;
+
+    /**
+     * The execution time in nanoseconds.
+     */
+    private final long time;
+
+    /**
+     * The size of the batch of the statement.
+     */
+    private final int batchSize;
+
+    /**
+     * The error message or {@code null}.
+     */
+    private final String error;
+
+    /**
+     * The constructor.
+     *
+     * @param script the script file name.
+     * @param statement the statement number in the script.
+     * @param level the level of the plan.
+     * @param group the group name.
+     * @param time the execution time in nanoseconds.
+     * @param batchSize the size of the batch of the statement.
+     * @param error the error message or {@code null}.
+     */
+    public StatementTiming(String script, long statement, int level, String group, long time, int batchSize, String error) {
+        this.script = script;
+        this.statement = statement;
+        this.level = level;
+        this.group = group;
+        this.time = time;
+        this.batchSize = batchSize;
+        this.error = error;
+    }
+
+    /**
+     * Gets the script file name.
+     *
+     * @return the script file name.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the statement number in the script.
+     *
+     * @return the statement number.
+     */
+    public long getStatement() {
+        return statement;
+    }
+
+    /**
+     * Gets the level of the plan.
+     *
+     * @return the level of the plan.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the group name.
+     *
+     * @return the group name.
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the execution time in nanoseconds. The statements of the batch
+     * have the execution time of the batch.
+     *
+     * @return the execution time in nanoseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the size of the batch of the statement.
+     *
+     * @return the size of the batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the error message.
+     *
+     * @return the error message or {@code null} if the statement was
+     * executed.
+     */
+    public String getError() {
+        return error;
+    }
+}
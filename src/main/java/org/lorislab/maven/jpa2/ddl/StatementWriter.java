@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The writer of the SQL statements. Every statement is written with the
+ * comment lines, the delimiter and the line separator. The statements of the
+ * scripts with the {@link StatementReader#LINE_DELIMITER} are written only
+ * with the line separator.
+ *
+ * @author Andrej Petras
+ */
+public class StatementWriter implements Closeable {
+
+    /**
+     * The output writer.
+     */
+    private final BufferedWriter writer;
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The number of the written statements.
+     */
+    private long count;
+
+    /**
+     * The constructor.
+     *
+     * @param file the output file.
+     * @param charset the output charset.
+     * @param delimiter the SQL delimiter.
+     * @throws IOException if the output file could not be created.
+     */
+    public StatementWriter(Path file, Charset charset, String delimiter) throws IOException {
+        this(file, charset, delimiter, false);
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param file the output file.
+     * @param charset the output charset.
+     * @param delimiter the SQL delimiter.
+     * @param append {@code true} to append the statements to the existing
+     * file.
+     * @throws IOException if the output file could not be opened.
+     */
+    public StatementWriter(Path file, Charset charset, String delimiter, boolean append) throws IOException {
+        if (append) {
+            this.writer = Files.newBufferedWriter(file, charset, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            this.writer = Files.newBufferedWriter(file, charset);
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes the statement.
+     *
+     * @param statement the statement.
+     * @throws IOException if the writing fails.
+     */
+    public void write(Statement statement) throws IOException {
+        for (String comment : statement.getComments()) {
+            writer.write("-- ");
+            writer.write(comment);
+            writer.newLine();
+        }
+        writer.write(statement.getSql());
+        if (!StatementReader.LINE_DELIMITER.equals(delimiter)) {
+            writer.write(delimiter);
+        }
+        writer.newLine();
+        count++;
+    }
+
+    /**
+     * Gets the number of the written statements.
+     *
+     * @return the number of the written statements.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Flushes and closes the output writer.
+     *
+     * @throws IOException if the closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
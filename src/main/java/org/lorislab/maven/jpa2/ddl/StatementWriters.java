@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The pool of the statement writers of many files. The number of the open
+ * files is limited, the least recently used writer is closed and the file is
+ * opened again in the append mode. The file is truncated by the first
+ * statement.
+ *
+ * @author Andrej Petras
+ */
+public class StatementWriters implements Closeable {
+
+    /**
+     * The maximum number of the open files.
+     */
+    private static final int MAX_OPEN = 32;
+
+    /**
+     * The script charset.
+     */
+    private final Charset charset;
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The open writers in the access order.
+     */
+    private final LinkedHashMap<Path, StatementWriter> writers = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The written files in the order of the first statement.
+     */
+    private final Map<Path, Long> files = new LinkedHashMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param charset the script charset.
+     * @param delimiter the SQL delimiter.
+     */
+    public StatementWriters(Charset charset, String delimiter) {
+        this.charset = charset;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes the statement to the file.
+     *
+     * @param file the file.
+     * @param statement the statement.
+     * @throws IOException if the writing fails.
+     */
+    public void write(Path file, Statement statement) throws IOException {
+        StatementWriter writer = writers.get(file);
+        if (writer == null) {
+            if (writers.size() >= MAX_OPEN) {
+                Map.Entry<Path, StatementWriter> eldest = writers.entrySet().iterator().next();
+                writers.remove(eldest.getKey());
+                eldest.getValue().close();
+            }
+            boolean append = files.containsKey(file);
+            if (!append) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            writer = new StatementWriter(file, charset, delimiter, append);
+            writers.put(file, writer);
+        }
+        writer.write(statement);
+        Long count = files.get(file);
+        files.put(file, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Gets the written files in the order of the first statement.
+     *
+     * @return the written files.
+     */
+    public List<Path> getFiles() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    /**
+     * Gets the number of the statements written to the file.
+     *
+     * @param file the file.
+     * @return the number of the statements.
+     */
+    public long getCount(Path file) {
+        Long count = files.get(file);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Closes the open writers.
+     *
+     * @throws IOException if the closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        Set<Path> tmp = new HashSet<>(writers.keySet());
+        for (Path file : tmp) {
+            try {
+                writers.remove(file).close();
+            } catch (IOException ex) {
+                if (error == null) {
+                    error = ex;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
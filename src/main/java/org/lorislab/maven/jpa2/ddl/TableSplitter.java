@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The splitter of the schema script to the independently applicable files.
+ * The script {@code create.sql} is split to the directory {@code create}
+ * with the file {@code tables/<table>.sql} for every table with its
+ * indexes, comments and owned sequences, the file {@code sequences.sql} of
+ * the shared sequences, the file {@code constraints.sql} of the foreign keys
+ * and the file {@code other.sql} of the other statements. The manifest
+ * {@code manifest.txt} lists the files in the dependency order. The script
+ * is read twice by the {@link StatementReader}, the first pass collects the
+ * tables and the foreign keys.
+ * <p>
+ * The sequence is owned by the table if the sequence name is the table name
+ * with the prefix {@code seq_} or with the suffix {@code _seq},
+ * {@code _sequence} or {@code _id_seq}.
+ *
+ * @author Andrej Petras
+ */
+public class TableSplitter {
+
+    /**
+     * The manifest file name.
+     */
+    public static final String MANIFEST = "manifest.txt";
+
+    /**
+     * The tables directory name.
+     */
+    public static final String TABLES = "tables";
+
+    /**
+     * The sequences file name.
+     */
+    public static final String SEQUENCES = "sequences.sql";
+
+    /**
+     * The constraints file name.
+     */
+    public static final String CONSTRAINTS = "constraints.sql";
+
+    /**
+     * The other statements file name.
+     */
+    public static final String OTHER = "other.sql";
+
+    /**
+     * The owned sequence suffixes.
+     */
+    private static final String[] SEQUENCE_SUFFIXES = {"_id_seq", "_sequence", "_seq"};
+
+    /**
+     * The owned sequence prefix.
+     */
+    private static final String SEQUENCE_PREFIX = "seq_";
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The script charset.
+     */
+    private final Charset charset = Charset.defaultCharset();
+
+    /**
+     * The dependency graph of the tables.
+     */
+    private final DependencyGraph graph = new DependencyGraph();
+
+    /**
+     * The constructor.
+     *
+     * @param delimiter the SQL delimiter.
+     */
+    public TableSplitter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Gets the dependency graph of the tables of the scanned scripts.
+     *
+     * @return the dependency graph.
+     */
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Scans the tables and the foreign keys of the script to the dependency
+     * graph. The missing script is ignored.
+     *
+     * @param script the script file.
+     * @throws IOException if the script could not be read.
+     */
+    public void scan(Path script) throws IOException {
+        if (!Files.isRegularFile(script)) {
+            return;
+        }
+        try (StatementReader reader = new StatementReader(script, charset, delimiter)) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                StatementInfo info = StatementInfo.parse(statement.getSql());
+                switch (info.getType()) {
+                    case CREATE_TABLE:
+                    case DROP_TABLE:
+                        graph.addNode(info.getTable());
+                        break;
+                    case FOREIGN_KEY:
+                        graph.addDependency(info.getTable(), info.getReferencedTable());
+                        break;
+                    default:
+                }
+                statement = reader.next();
+            }
+        }
+    }
+
+    /**
+     * Splits the script to the directory with the name of the script. The
+     * scripts of the tables are ordered by the dependency graph, the graph
+     * should contain the tables of the create script before the drop script
+     * is split.
+     *
+     * @param script the script file.
+     * @param drop {@code true} for the drop script.
+     * @return the manifest file or {@code null} for the missing script.
+     * @throws IOException if the splitting fails.
+     */
+    public Path split(Path script, boolean drop) throws IOException {
+        if (!Files.isRegularFile(script)) {
+            return null;
+        }
+        scan(script);
+        String name = script.getFileName().toString();
+        int index = name.lastIndexOf('.');
+        Path dir = script.toAbsolutePath().resolveSibling(index > 0 ? name.substring(0, index) : name + ".split");
+        clean(dir);
+
+        Map<String, Path> tables = new LinkedHashMap<>();
+        for (String table : graph.getNodes()) {
+            tables.put(key(table), dir.resolve(TABLES).resolve(table + ".sql"));
+        }
+
+        StatementWriters writers = new StatementWriters(charset, delimiter);
+        try (StatementReader reader = new StatementReader(script, charset, delimiter); StatementWriters out = writers) {
+            Statement statement = reader.next();
+            while (statement != null) {
+                out.write(getFile(dir, tables, StatementInfo.parse(statement.getSql())), statement);
+                statement = reader.next();
+            }
+        }
+
+        List<Path> order = new ArrayList<>();
+        List<Path> tmp = new ArrayList<>();
+        for (String table : graph.getOrder()) {
+            tmp.add(tables.get(key(table)));
+        }
+        if (drop) {
+            Collections.reverse(tmp);
+            order.add(dir.resolve(CONSTRAINTS));
+            order.addAll(tmp);
+            order.add(dir.resolve(SEQUENCES));
+        } else {
+            order.add(dir.resolve(SEQUENCES));
+            order.addAll(tmp);
+            order.add(dir.resolve(CONSTRAINTS));
+        }
+        order.add(dir.resolve(OTHER));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + name + " split in the dependency order");
+        for (Path file : order) {
+            if (writers.getCount(file) > 0) {
+                lines.add(dir.relativize(file).toString().replace('\\', '/'));
+            }
+        }
+        Path manifest = dir.resolve(MANIFEST);
+        Files.write(manifest, lines, StandardCharsets.UTF_8);
+        return manifest;
+    }
+
+    /**
+     * Gets the file of the statement.
+     *
+     * @param dir the split directory.
+     * @param tables the table files by the normalized table name.
+     * @param info the statement information.
+     * @return the file of the statement.
+     */
+    private Path getFile(Path dir, Map<String, Path> tables, StatementInfo info) {
+        switch (info.getType()) {
+            case FOREIGN_KEY:
+            case DROP_CONSTRAINT:
+                return dir.resolve(CONSTRAINTS);
+            case CREATE_SEQUENCE:
+            case DROP_SEQUENCE:
+                Path owner = tables.get(getOwner(info.getName()));
+                return owner != null ? owner : dir.resolve(SEQUENCES);
+            case OTHER:
+                return dir.resolve(OTHER);
+            default:
+                Path table = tables.get(key(info.getTable()));
+                return table != null ? table : dir.resolve(OTHER);
+        }
+    }
+
+    /**
+     * Gets the normalized name of the owner table of the sequence.
+     *
+     * @param sequence the sequence name.
+     * @return the normalized name of the owner table.
+     */
+    private static String getOwner(String sequence) {
+        String name = key(sequence);
+        for (String suffix : SEQUENCE_SUFFIXES) {
+            if (name.endsWith(suffix) && name.length() > suffix.length()) {
+                return name.substring(0, name.length() - suffix.length());
+            }
+        }
+        if (name.startsWith(SEQUENCE_PREFIX) && name.length() > SEQUENCE_PREFIX.length()) {
+            return name.substring(SEQUENCE_PREFIX.length());
+        }
+        return name;
+    }
+
+    /**
+     * Deletes the files of the previous split.
+     *
+     * @param dir the split directory.
+     * @throws IOException if the deletion fails.
+     */
+    private static void clean(Path dir) throws IOException {
+        Path tables = dir.resolve(TABLES);
+        if (Files.isDirectory(tables)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(tables, "*.sql")) {
+                for (Path file : stream) {
+                    Files.delete(file);
+                }
+            }
+        }
+        for (String file : new String[]{MANIFEST, SEQUENCES, CONSTRAINTS, OTHER}) {
+            Files.deleteIfExists(dir.resolve(file));
+        }
+    }
+
+    /**
+     * Normalizes the table name.
+     *
+     * @param name the table name.
+     * @return the normalized name.
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.lorislab.maven.jpa2.hibernate.IndexScanner;
+import org.lorislab.maven.jpa2.index.EntityIndex;
+import org.lorislab.maven.jpa2.report.GenerationReport;
+
+/**
+ * The forked generator. The main class of the generator JVM started by the
+ * {@link ForkedGeneratorLauncher}. The classpath of the project and the
+ * generation jobs are read from the argument file. The log messages are
+ * written to the standard output with the level prefix and streamed back to
+ * the MAVEN log. The {@link GeneratorDaemon} runs the same jobs and writes the
+ * log messages of the request to the client socket.
+ *
+ * @author Andrej Petras
+ */
+public final class ForkedGenerator {
+
+    /**
+     * The error log prefix.
+     */
+    public static final String ERROR = "[ERROR] ";
+
+    /**
+     * The warning log prefix.
+     */
+    public static final String WARN = "[WARN] ";
+
+    /**
+     * The info log prefix.
+     */
+    public static final String INFO = "[INFO] ";
+
+    /**
+     * The debug log prefix.
+     */
+    public static final String DEBUG = "[DEBUG] ";
+
+    /**
+     * The peak heap usage prefix.
+     */
+    public static final String PEAK_HEAP = "[PEAK_HEAP] ";
+
+    /**
+     * The generator property of the entity index file. The index file is
+     * loaded in the generator JVM and replaced by the {@link IndexScanner}.
+     */
+    public static final String ENTITY_INDEX = "jpa2.entity-index";
+
+    /**
+     * The generator property of the root of the entity index.
+     */
+    public static final String ENTITY_INDEX_ROOT = "jpa2.entity-index.root";
+
+    /**
+     * The offline argument.
+     */
+    private static final String ARG_OFFLINE = "offline";
+
+    /**
+     * The script action argument.
+     */
+    private static final String ARG_SCRIPT_ACTION = "scriptAction";
+
+    /**
+     * The delimiter argument.
+     */
+    private static final String ARG_DELIMITER = "delimiter";
+
+    /**
+     * The index advisor argument.
+     */
+    private static final String ARG_INDEX_ADVISOR = "indexAdvisor";
+
+    /**
+     * The generator audit argument.
+     */
+    private static final String ARG_GENERATOR_AUDIT = "generatorAudit";
+
+    /**
+     * The classpath argument prefix.
+     */
+    private static final String ARG_CLASSPATH = "classpath.";
+
+    /**
+     * The number of jobs argument.
+     */
+    private static final String ARG_JOBS = "jobs";
+
+    /**
+     * The job argument prefix.
+     */
+    private static final String ARG_JOB = "job.";
+
+    /**
+     * The exit code prefix of the daemon request.
+     */
+    public static final String EXIT = "[EXIT] ";
+
+    /**
+     * The output stream of the log messages of the current thread.
+     */
+    private static final ThreadLocal<PrintStream> OUTPUT = new ThreadLocal<>();
+
+    /**
+     * The default constructor.
+     */
+    private ForkedGenerator() {
+        // empty constructor
+    }
+
+    /**
+     * The main method of the generator JVM.
+     *
+     * @param args the path of the argument file.
+     */
+    public static void main(String[] args) {
+        int result = 0;
+        try {
+            if (args.length != 1) {
+                throw new IllegalArgumentException("Missing the argument file.");
+            }
+            initLogging();
+            Properties arguments = new Properties();
+            try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+                arguments.load(in);
+            }
+            run(arguments);
+        } catch (Throwable ex) {
+            // the stack trace lines are logged as the errors of the MAVEN build
+            log(ERROR, getStackTrace(ex));
+            result = 1;
+        }
+        PrintStream out = getOutput();
+        out.println(PEAK_HEAP + GenerationReport.getHeapPeakUsage());
+        out.flush();
+        System.exit(result);
+    }
+
+    /**
+     * Runs the generation jobs of the arguments.
+     *
+     * @param arguments the arguments created by the
+     * {@link #createArguments(org.lorislab.maven.jpa2.generator.SchemaGenerator, java.util.List, java.util.List)}.
+     * @throws IOException if the class loader of the project could not be
+     * closed.
+     */
+    static void run(Properties arguments) throws IOException {
+        SchemaGenerator generator = new SchemaGenerator(Boolean.parseBoolean(arguments.getProperty(ARG_OFFLINE)),
+                arguments.getProperty(ARG_SCRIPT_ACTION), arguments.getProperty(ARG_DELIMITER),
+                Boolean.parseBoolean(arguments.getProperty(ARG_INDEX_ADVISOR)),
+                Boolean.parseBoolean(arguments.getProperty(ARG_GENERATOR_AUDIT)));
+
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; arguments.containsKey(ARG_CLASSPATH + i); i++) {
+            urls.add(new URL(arguments.getProperty(ARG_CLASSPATH + i)));
+        }
+
+        try (URLClassLoader cl = SchemaGenerator.createClassLoader(urls, ForkedGenerator.class.getClassLoader())) {
+            int size = Integer.parseInt(arguments.getProperty(ARG_JOBS, "0"));
+            for (int i = 0; i < size; i++) {
+                GenerationJob job = readJob(arguments, ARG_JOB + i + ".");
+                log(INFO, "Generate the schema for the " + job + " to " + job.getOutputDir());
+                generator.generate(job, cl);
+            }
+        }
+    }
+
+    /**
+     * Writes the argument file of the generator JVM.
+     *
+     * @param file the argument file.
+     * @param generator the schema generator.
+     * @param classpath the classpath of the project.
+     * @param jobs the generation jobs.
+     * @throws IOException if the argument file could not be written.
+     */
+    public static void writeArguments(Path file, SchemaGenerator generator, List<URL> classpath, List<GenerationJob> jobs) throws IOException {
+        Properties arguments = createArguments(generator, classpath, jobs);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            arguments.store(out, "jpa2-maven-plugin forked generator");
+        }
+    }
+
+    /**
+     * Creates the arguments of the generator JVM.
+     *
+     * @param generator the schema generator.
+     * @param classpath the classpath of the project.
+     * @param jobs the generation jobs.
+     * @return the arguments.
+     */
+    public static Properties createArguments(SchemaGenerator generator, List<URL> classpath, List<GenerationJob> jobs) {
+        Properties arguments = new Properties();
+        arguments.setProperty(ARG_OFFLINE, Boolean.toString(generator.isOffline()));
+        arguments.setProperty(ARG_SCRIPT_ACTION, generator.getScriptAction());
+        arguments.setProperty(ARG_DELIMITER, generator.getDelimiter());
+        arguments.setProperty(ARG_INDEX_ADVISOR, Boolean.toString(generator.isIndexAdvisor()));
+        arguments.setProperty(ARG_GENERATOR_AUDIT, Boolean.toString(generator.isGeneratorAudit()));
+        for (int i = 0; i < classpath.size(); i++) {
+            arguments.setProperty(ARG_CLASSPATH + i, classpath.get(i).toString());
+        }
+        arguments.setProperty(ARG_JOBS, Integer.toString(jobs.size()));
+        for (int i = 0; i < jobs.size(); i++) {
+            writeJob(arguments, ARG_JOB + i + ".", jobs.get(i));
+        }
+        return arguments;
+    }
+
+    /**
+     * Writes the generation job to the arguments.
+     *
+     * @param arguments the arguments.
+     * @param prefix the job prefix.
+     * @param job the generation job.
+     */
+    private static void writeJob(Properties arguments, String prefix, GenerationJob job) {
+        arguments.setProperty(prefix + "unit", job.getPersistenceUnit());
+        arguments.setProperty(prefix + "database", job.getDatabase());
+        arguments.setProperty(prefix + "outputDir", job.getOutputDir().toString());
+        arguments.setProperty(prefix + "dropFile", job.getDropFile().toString());
+        arguments.setProperty(prefix + "createFile", job.getCreateFile().toString());
+        for (Map.Entry<String, Object> e : job.getProperties().entrySet()) {
+            if (e.getValue() == null) {
+                arguments.setProperty(prefix + "null." + e.getKey(), "");
+            } else {
+                arguments.setProperty(prefix + "property." + e.getKey(), String.valueOf(e.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Reads the generation job from the arguments.
+     *
+     * @param arguments the arguments.
+     * @param prefix the job prefix.
+     * @return the generation job.
+     */
+    private static GenerationJob readJob(Properties arguments, String prefix) {
+        Map<String, Object> properties = new HashMap<>();
+        for (String key : arguments.stringPropertyNames()) {
+            if (key.startsWith(prefix + "property.")) {
+                properties.put(key.substring(prefix.length() + 9), arguments.getProperty(key));
+            } else if (key.startsWith(prefix + "null.")) {
+                properties.put(key.substring(prefix.length() + 5), null);
+            }
+        }
+        Object index = properties.remove(ENTITY_INDEX);
+        Object root = properties.remove(ENTITY_INDEX_ROOT);
+        if (index != null) {
+            properties.put(IndexScanner.SCANNER, new IndexScanner(EntityIndex.load(Paths.get((String) root), Paths.get((String) index))));
+        }
+        return new GenerationJob(arguments.getProperty(prefix + "unit"), arguments.getProperty(prefix + "database"),
+                Paths.get(arguments.getProperty(prefix + "outputDir")), Paths.get(arguments.getProperty(prefix + "dropFile")),
+                Paths.get(arguments.getProperty(prefix + "createFile")), properties);
+    }
+
+    /**
+     * Redirects the java logging to the log messages of the standard output.
+     */
+    static void initLogging() {
+        LogManager.getLogManager().reset();
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.INFO);
+        root.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (!isLoggable(record)) {
+                    return;
+                }
+                String prefix = DEBUG;
+                int level = record.getLevel().intValue();
+                if (level >= Level.SEVERE.intValue()) {
+                    prefix = ERROR;
+                } else if (level >= Level.WARNING.intValue()) {
+                    prefix = WARN;
+                } else if (level >= Level.INFO.intValue()) {
+                    prefix = INFO;
+                }
+                String message = record.getMessage();
+                if (record.getParameters() != null && message != null && message.contains("{0")) {
+                    message = MessageFormat.format(message, record.getParameters());
+                }
+                log(prefix, record.getLoggerName() + " " + message);
+            }
+
+            @Override
+            public void flush() {
+                getOutput().flush();
+            }
+
+            @Override
+            public void close() {
+                getOutput().flush();
+            }
+        });
+    }
+
+    /**
+     * Sets the output stream of the log messages of the current thread.
+     *
+     * @param out the output stream or {@code null} for the standard output.
+     */
+    static void setOutput(PrintStream out) {
+        if (out == null) {
+            OUTPUT.remove();
+        } else {
+            OUTPUT.set(out);
+        }
+    }
+
+    /**
+     * Gets the output stream of the log messages of the current thread.
+     *
+     * @return the output stream of the log messages.
+     */
+    private static PrintStream getOutput() {
+        PrintStream result = OUTPUT.get();
+        return result == null ? System.out : result;
+    }
+
+    /**
+     * Gets the stack trace of the exception.
+     *
+     * @param ex the exception.
+     * @return the stack trace.
+     */
+    static String getStackTrace(Throwable ex) {
+        StringWriter result = new StringWriter();
+        ex.printStackTrace(new PrintWriter(result));
+        return result.toString();
+    }
+
+    /**
+     * Writes the log message to the output stream of the current thread.
+     *
+     * @param prefix the level prefix.
+     * @param message the log message.
+     */
+    static void log(String prefix, String message) {
+        PrintStream out = getOutput();
+        synchronized (out) {
+            for (String line : message.split("\r?\n")) {
+                out.println(prefix + line);
+            }
+            out.flush();
+        }
+    }
+}
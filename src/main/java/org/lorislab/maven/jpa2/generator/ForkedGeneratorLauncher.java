@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The launcher of the forked generator JVM. The generation jobs are written
+ * to the argument file, the {@link ForkedGenerator} is started in the child
+ * JVM and the log messages of the child JVM are streamed to the MAVEN log.
+ *
+ * @author Andrej Petras
+ */
+public class ForkedGeneratorLauncher {
+
+    /**
+     * The MAVEN log.
+     */
+    private final Log log;
+
+    /**
+     * The java executable.
+     */
+    private final String javaExecutable;
+
+    /**
+     * The maximum heap size of the child JVM.
+     */
+    private final String maxHeap;
+
+    /**
+     * The additional JVM arguments of the child JVM.
+     */
+    private final String jvmArgs;
+
+    /**
+     * The constructor.
+     *
+     * @param log the MAVEN log.
+     * @param javaExecutable the java executable.
+     * @param maxHeap the maximum heap size, for example {@code 2g}.
+     * @param jvmArgs the additional JVM arguments, for example the garbage
+     * collector options.
+     */
+    public ForkedGeneratorLauncher(Log log, String javaExecutable, String maxHeap, String jvmArgs) {
+        this.log = log;
+        this.javaExecutable = javaExecutable;
+        this.maxHeap = maxHeap;
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Runs the generation jobs in the child JVM.
+     *
+     * @param argumentFile the argument file.
+     * @param generator the schema generator.
+     * @param classpath the classpath of the project.
+     * @param jobs the generation jobs.
+     * @return the peak heap usage of the child JVM in bytes or {@code -1} if
+     * the child JVM did not report the peak heap usage.
+     * @throws MojoExecutionException if the generation fails.
+     */
+    public long execute(Path argumentFile, SchemaGenerator generator, List<URL> classpath, List<GenerationJob> jobs) throws MojoExecutionException {
+        try {
+            ForkedGenerator.writeArguments(argumentFile, generator, classpath, jobs);
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error writing the argument file " + argumentFile, ex);
+        }
+
+        List<String> command = createCommand(ForkedGenerator.class, argumentFile.toAbsolutePath().toString());
+        log.debug("Fork the generator JVM: " + command);
+
+        final AtomicLong peakHeap = new AtomicLong(-1);
+        try {
+            Process process = new ProcessBuilder(command).start();
+            process.getOutputStream().close();
+            Thread out = stream(process.getInputStream(), false, peakHeap);
+            Thread err = stream(process.getErrorStream(), true, peakHeap);
+            int exitCode = process.waitFor();
+            out.join();
+            err.join();
+            if (exitCode != 0) {
+                throw new MojoExecutionException("The forked generator failed with the exit code " + exitCode);
+            }
+            return peakHeap.get();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error starting the forked generator " + javaExecutable, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("The forked generator was interrupted.", ex);
+        } finally {
+            try {
+                Files.deleteIfExists(argumentFile);
+            } catch (IOException ex) {
+                log.debug("Error deleting the argument file " + argumentFile, ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the MAVEN log.
+     *
+     * @return the MAVEN log.
+     */
+    protected Log getLog() {
+        return log;
+    }
+
+    /**
+     * Gets the java executable.
+     *
+     * @return the java executable.
+     */
+    protected String getJavaExecutable() {
+        return javaExecutable;
+    }
+
+    /**
+     * Creates the command of the child JVM.
+     *
+     * @param mainClass the main class of the child JVM.
+     * @param args the arguments of the main class.
+     * @return the command of the child JVM.
+     * @throws MojoExecutionException if the classpath of the plugin could
+     * not be resolved.
+     */
+    protected List<String> createCommand(Class<?> mainClass, String... args) throws MojoExecutionException {
+        List<String> result = new ArrayList<>();
+        result.add(javaExecutable);
+        if (maxHeap != null && !maxHeap.trim().isEmpty()) {
+            result.add("-Xmx" + maxHeap.trim());
+        }
+        if (jvmArgs != null) {
+            for (String arg : jvmArgs.trim().split("\\s+")) {
+                if (!arg.isEmpty()) {
+                    result.add(arg);
+                }
+            }
+        }
+        result.add("-cp");
+        result.add(getPluginClasspath());
+        result.add(mainClass.getName());
+        result.addAll(Arrays.asList(args));
+        return result;
+    }
+
+    /**
+     * Gets the classpath of the plugin for the child JVM.
+     *
+     * @return the classpath of the plugin.
+     * @throws MojoExecutionException if the classpath of the plugin could
+     * not be resolved.
+     */
+    protected String getPluginClasspath() throws MojoExecutionException {
+        ClassLoader cl = ForkedGenerator.class.getClassLoader();
+        if (!(cl instanceof URLClassLoader)) {
+            throw new MojoExecutionException("Could not resolve the classpath of the plugin for the forked generator.");
+        }
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (URL url : ((URLClassLoader) cl).getURLs()) {
+                if (sb.length() > 0) {
+                    sb.append(File.pathSeparatorChar);
+                }
+                sb.append(Paths.get(url.toURI()).toString());
+            }
+        } catch (Exception ex) {
+            throw new MojoExecutionException("Could not resolve the classpath of the plugin for the forked generator.", ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Streams the output of the child JVM to the MAVEN log.
+     *
+     * @param input the output of the child JVM.
+     * @param error {@code true} for the error output.
+     * @param peakHeap the peak heap usage reported by the child JVM.
+     * @return the started stream thread.
+     */
+    private Thread stream(final InputStream input, final boolean error, final AtomicLong peakHeap) {
+        Thread result = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charset.defaultCharset()))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (error) {
+                            log.warn(line);
+                        } else {
+                            log(line, peakHeap);
+                        }
+                    }
+                } catch (IOException ex) {
+                    log.debug("Error reading the output of the forked generator.", ex);
+                }
+            }
+        }, "jpa2-fork-" + (error ? "err" : "out"));
+        result.setDaemon(true);
+        result.start();
+        return result;
+    }
+
+    /**
+     * Writes the line of the child JVM to the MAVEN log.
+     *
+     * @param line the line of the child JVM.
+     * @param peakHeap the peak heap usage reported by the child JVM.
+     */
+    protected void log(String line, AtomicLong peakHeap) {
+        if (line.startsWith(ForkedGenerator.ERROR)) {
+            log.error(line.substring(ForkedGenerator.ERROR.length()));
+        } else if (line.startsWith(ForkedGenerator.WARN)) {
+            log.warn(line.substring(ForkedGenerator.WARN.length()));
+        } else if (line.startsWith(ForkedGenerator.INFO)) {
+            log.info(line.substring(ForkedGenerator.INFO.length()));
+        } else if (line.startsWith(ForkedGenerator.DEBUG)) {
+            log.debug(line.substring(ForkedGenerator.DEBUG.length()));
+        } else if (line.startsWith(ForkedGenerator.PEAK_HEAP)) {
+            try {
+                peakHeap.set(Long.parseLong(line.substring(ForkedGenerator.PEAK_HEAP.length()).trim()));
+            } catch (NumberFormatException ex) {
+                log.debug("Not valid peak heap usage: " + line);
+            }
+        } else {
+            log.info(line);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The schema generation job of the persistence unit for one target database.
+ *
+ * @author Andrej Petras
+ */
+public class GenerationJob {
+
+    /**
+     * The persistence unit.
+     */
+    private final String persistenceUnit;
+
+    /**
+     * The target database.
+     */
+    private final String database;
+
+    /**
+     * The output directory.
+     */
+    private final Path outputDir;
+
+    /**
+     * The drop script file.
+     */
+    private final Path dropFile;
+
+    /**
+     * The create script file.
+     */
+    private final Path createFile;
+
+    /**
+     * The generator properties.
+     */
+    private final Map<String, Object> properties;
+
+    /**
+     * The fingerprint of the generation input.
+     */
+    private String fingerprint;
+
+    /**
+     * The constructor.
+     *
+     * @param persistenceUnit the persistence unit.
+     * @param database the target database.
+     * @param outputDir the output directory.
+     * @param dropFile the drop script file.
+     * @param createFile the create script file.
+     * @param properties the generator properties.
+     */
+    public GenerationJob(String persistenceUnit, String database, Path outputDir, Path dropFile, Path createFile, Map<String, Object> properties) {
+        this.persistenceUnit = persistenceUnit;
+        this.database = database;
+        this.outputDir = outputDir;
+        this.dropFile = dropFile;
+        this.createFile = createFile;
+        this.properties = properties;
+    }
+
+    /**
+     * Gets the persistence unit.
+     *
+     * @return the persistence unit.
+     */
+    public String getPersistenceUnit() {
+        return persistenceUnit;
+    }
+
+    /**
+     * Gets the target database.
+     *
+     * @return the target database.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * Gets the output directory.
+     *
+     * @return the output directory.
+     */
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * Gets the drop script file.
+     *
+     * @return the drop script file.
+     */
+    public Path getDropFile() {
+        return dropFile;
+    }
+
+    /**
+     * Gets the create script file.
+     *
+     * @return the create script file.
+     */
+    public Path getCreateFile() {
+        return createFile;
+    }
+
+    /**
+     * Gets the generator properties.
+     *
+     * @return the generator properties.
+     */
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Gets the fingerprint of the generation input.
+     *
+     * @return the fingerprint or {@code null} if the generation is not
+     * incremental.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Sets the fingerprint of the generation input.
+     *
+     * @param fingerprint the fingerprint.
+     */
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return "persistence unit " + persistenceUnit + " and database " + database;
+    }
+}
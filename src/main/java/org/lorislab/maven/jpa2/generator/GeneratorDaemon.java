@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.lorislab.maven.jpa2.report.GenerationReport;
+
+/**
+ * The generator daemon. The long-lived generator JVM started by the
+ * {@link GeneratorDaemonClient} keeps the persistence provider classes loaded
+ * and compiled between the generation requests. The daemon listens on the
+ * loopback interface, the port and the access token are written to the daemon
+ * file. The daemon stops after the idle timeout.
+ *
+ * @author Andrej Petras
+ */
+public final class GeneratorDaemon {
+
+    /**
+     * The port property of the daemon file.
+     */
+    static final String PORT = "port";
+
+    /**
+     * The token property of the daemon file.
+     */
+    static final String TOKEN = "token";
+
+    /**
+     * The maximum size of the request.
+     */
+    static final int MAX_REQUEST_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The accept timeout of the server socket in milliseconds.
+     */
+    private static final int ACCEPT_TIMEOUT = 1000;
+
+    /**
+     * The classes loaded at the daemon start.
+     */
+    private static final String[] WARM_UP_CLASSES = {
+        "javax.persistence.Persistence",
+        "org.hibernate.jpa.HibernatePersistenceProvider",
+        "org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl",
+        "org.hibernate.boot.MetadataSources",
+        "org.hibernate.cfg.AnnotationBinder",
+        "org.hibernate.tool.hbm2ddl.SchemaExport",
+        "org.hibernate.tool.schema.internal.SchemaCreatorImpl",
+        "org.hibernate.engine.jdbc.dialect.internal.StandardDialectResolver"
+    };
+
+    /**
+     * The daemon file.
+     */
+    private final Path file;
+
+    /**
+     * The idle timeout in milliseconds.
+     */
+    private final long idleTimeout;
+
+    /**
+     * The access token.
+     */
+    private final String token;
+
+    /**
+     * The number of the running requests.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * The time of the last activity.
+     */
+    private final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * The number of the running generations.
+     */
+    private int running;
+
+    /**
+     * The constructor.
+     *
+     * @param file the daemon file.
+     * @param idleTimeout the idle timeout in milliseconds.
+     */
+    private GeneratorDaemon(Path file, long idleTimeout) {
+        this.file = file;
+        this.idleTimeout = idleTimeout;
+        this.token = createToken();
+    }
+
+    /**
+     * The main method of the generator daemon.
+     *
+     * @param args the daemon file and the idle timeout in seconds.
+     */
+    public static void main(String[] args) {
+        int result = 0;
+        try {
+            if (args.length != 2) {
+                throw new IllegalArgumentException("Missing the daemon file and the idle timeout.");
+            }
+            ForkedGenerator.initLogging();
+            new GeneratorDaemon(Paths.get(args[0]), Long.parseLong(args[1]) * 1000L).run();
+        } catch (Throwable ex) {
+            ForkedGenerator.log(ForkedGenerator.ERROR, ForkedGenerator.getStackTrace(ex));
+            result = 1;
+        }
+        System.exit(result);
+    }
+
+    /**
+     * Runs the daemon until the idle timeout.
+     *
+     * @throws IOException if the daemon could not be started.
+     */
+    private void run() throws IOException {
+        warmUp();
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT);
+            writeDaemonFile(server.getLocalPort());
+            ForkedGenerator.log(ForkedGenerator.INFO, "The generator daemon is listening on the port " + server.getLocalPort());
+            try {
+                while (active.get() > 0 || System.currentTimeMillis() - lastActivity.get() < idleTimeout) {
+                    try {
+                        final Socket socket = server.accept();
+                        active.incrementAndGet();
+                        lastActivity.set(System.currentTimeMillis());
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                handle(socket);
+                            }
+                        }, "jpa2-daemon-request");
+                        thread.setDaemon(true);
+                        thread.start();
+                    } catch (SocketTimeoutException ex) {
+                        // check the idle timeout
+                    }
+                }
+            } finally {
+                deleteDaemonFile();
+            }
+        }
+        ForkedGenerator.log(ForkedGenerator.INFO, "The generator daemon stopped after the idle timeout.");
+    }
+
+    /**
+     * Handles the generation request. The log messages of the request are
+     * written to the client socket and the last line contains the exit code.
+     *
+     * @param socket the client socket.
+     */
+    private void handle(Socket socket) {
+        try (Socket client = socket) {
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            if (!token.equals(in.readUTF())) {
+                return;
+            }
+            int size = in.readInt();
+            if (size < 0 || size > MAX_REQUEST_SIZE) {
+                return;
+            }
+            byte[] data = new byte[size];
+            in.readFully(data);
+            Properties arguments = new Properties();
+            try (InputStream tmp = new ByteArrayInputStream(data)) {
+                arguments.load(tmp);
+            }
+
+            PrintStream out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8.name());
+            int result = 0;
+            long peakHeap;
+            ForkedGenerator.setOutput(out);
+            startRequest();
+            try {
+                ForkedGenerator.run(arguments);
+            } catch (Throwable ex) {
+                ForkedGenerator.log(ForkedGenerator.ERROR, String.valueOf(ex.getMessage()));
+                ForkedGenerator.log(ForkedGenerator.DEBUG, ForkedGenerator.getStackTrace(ex));
+                result = 1;
+            } finally {
+                peakHeap = stopRequest();
+                ForkedGenerator.setOutput(null);
+            }
+            out.println(ForkedGenerator.PEAK_HEAP + peakHeap);
+            out.println(ForkedGenerator.EXIT + result);
+            out.flush();
+        } catch (EOFException ex) {
+            // the connection check of the client
+        } catch (IOException ex) {
+            ForkedGenerator.log(ForkedGenerator.WARN, "Error handling the generation request: " + ex.getMessage());
+        } finally {
+            lastActivity.set(System.currentTimeMillis());
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts the generation request. The peak heap usage is reset if no
+     * other request is running, the peak of the concurrent requests covers
+     * all of them.
+     */
+    private synchronized void startRequest() {
+        if (running == 0) {
+            GenerationReport.resetHeapPeakUsage();
+        }
+        running++;
+    }
+
+    /**
+     * Stops the generation request.
+     *
+     * @return the peak heap usage since the start of the request in bytes.
+     */
+    private synchronized long stopRequest() {
+        running--;
+        return GenerationReport.getHeapPeakUsage();
+    }
+
+    /**
+     * Loads and initializes the persistence provider classes.
+     */
+    private static void warmUp() {
+        ClassLoader cl = GeneratorDaemon.class.getClassLoader();
+        for (String name : WARM_UP_CLASSES) {
+            try {
+                Class.forName(name, true, cl);
+            } catch (Throwable ex) {
+                ForkedGenerator.log(ForkedGenerator.DEBUG, "Could not load the class " + name);
+            }
+        }
+    }
+
+    /**
+     * Writes the port and the access token to the daemon file. The file is
+     * created readable only by the owner if the file system supports it.
+     *
+     * @param port the port of the daemon.
+     * @throws IOException if the daemon file could not be written.
+     */
+    private void writeDaemonFile(int port) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT, Integer.toString(port));
+        properties.setProperty(TOKEN, token);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            // the token is never readable by the other users
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException ex) {
+            // not posix file system
+            Files.createFile(tmp);
+        }
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            properties.store(out, "jpa2-maven-plugin generator daemon");
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the daemon file if the file belongs to this daemon.
+     */
+    private void deleteDaemonFile() {
+        Properties properties = new Properties();
+        try {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            if (token.equals(properties.getProperty(TOKEN))) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            // the daemon file was already deleted or replaced
+        }
+    }
+
+    /**
+     * Creates the random access token.
+     *
+     * @return the access token.
+     */
+    private static String createToken() {
+        byte[] data = new byte[32];
+        new SecureRandom().nextBytes(data);
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.lorislab.maven.jpa2.util.Fingerprint;
+
+/**
+ * The client of the {@link GeneratorDaemon}. The client connects to the
+ * running daemon of the same plugin classpath and JVM options or starts a new
+ * daemon. The generation jobs are sent to the daemon and the log messages of
+ * the daemon are streamed to the MAVEN log.
+ *
+ * @author Andrej Petras
+ */
+public class GeneratorDaemonClient extends ForkedGeneratorLauncher {
+
+    /**
+     * The start timeout of the daemon in milliseconds.
+     */
+    private static final long START_TIMEOUT = 60000L;
+
+    /**
+     * The connect timeout in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    /**
+     * The daemon directory.
+     */
+    private final Path directory;
+
+    /**
+     * The idle timeout of the daemon in seconds.
+     */
+    private final int idleTimeout;
+
+    /**
+     * The response timeout of the daemon in seconds.
+     */
+    private final int responseTimeout;
+
+    /**
+     * The key of the daemon.
+     */
+    private final String key;
+
+    /**
+     * The constructor.
+     *
+     * @param log the MAVEN log.
+     * @param javaExecutable the java executable.
+     * @param maxHeap the maximum heap size of the daemon.
+     * @param jvmArgs the additional JVM arguments of the daemon.
+     * @param directory the daemon directory.
+     * @param idleTimeout the idle timeout of the daemon in seconds.
+     * @param responseTimeout the maximum time in seconds between two log
+     * messages of the daemon.
+     * @throws MojoExecutionException if the classpath of the plugin could
+     * not be resolved.
+     */
+    public GeneratorDaemonClient(Log log, String javaExecutable, String maxHeap, String jvmArgs, Path directory, int idleTimeout, int responseTimeout) throws MojoExecutionException {
+        super(log, javaExecutable, maxHeap, jvmArgs);
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+        this.responseTimeout = responseTimeout;
+        this.key = new Fingerprint()
+                .add("classpath", getPluginClasspath())
+                .add("java", javaExecutable)
+                .add("maxHeap", maxHeap)
+                .add("jvmArgs", jvmArgs)
+                .build();
+    }
+
+    /**
+     * Runs the generation jobs in the generator daemon. The request is sent
+     * once more to a new daemon if the connection fails before the first
+     * response of the daemon, for example when the daemon stopped after the
+     * idle timeout.
+     *
+     * @param generator the schema generator.
+     * @param classpath the classpath of the project.
+     * @param jobs the generation jobs.
+     * @return the peak heap usage of the daemon in bytes or {@code -1} if the
+     * daemon did not report the peak heap usage.
+     * @throws MojoExecutionException if the generation fails.
+     */
+    public long execute(SchemaGenerator generator, List<URL> classpath, List<GenerationJob> jobs) throws MojoExecutionException {
+        byte[] request;
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ForkedGenerator.createArguments(generator, classpath, jobs).store(out, null);
+            request = out.toByteArray();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Error creating the generator daemon request.", ex);
+        }
+
+        final AtomicLong peakHeap = new AtomicLong(-1);
+        Properties daemon = getDaemon();
+        Integer exitCode = send(daemon, request, peakHeap);
+        if (exitCode == null) {
+            getLog().info("The generator daemon " + getDaemonFile() + " is not running, start a new generator daemon.");
+            deleteDaemonFile(daemon);
+            daemon = getDaemon();
+            exitCode = send(daemon, request, peakHeap);
+            if (exitCode == null) {
+                throw new MojoExecutionException("Could not send the generation request to the generator daemon. See the log file " + getLogFile());
+            }
+        }
+        if (exitCode != 0) {
+            throw new MojoExecutionException("The generator daemon failed with the exit code " + exitCode);
+        }
+        return peakHeap.get();
+    }
+
+    /**
+     * Sends the generation request to the daemon and streams the log
+     * messages of the daemon to the MAVEN log.
+     *
+     * @param daemon the daemon properties.
+     * @param request the generation request.
+     * @param peakHeap the peak heap usage reported by the daemon.
+     * @return the exit code or {@code null} if the connection failed before
+     * the first response of the daemon.
+     * @throws MojoExecutionException if the connection fails or times out
+     * after the first response of the daemon.
+     */
+    private Integer send(Properties daemon, byte[] request, AtomicLong peakHeap) throws MojoExecutionException {
+        boolean response = false;
+        Integer exitCode = null;
+        try (Socket socket = connect(daemon)) {
+            if (socket == null) {
+                return null;
+            }
+            socket.setSoTimeout(responseTimeout * 1000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(daemon.getProperty(GeneratorDaemon.TOKEN));
+            out.writeInt(request.length);
+            out.write(request);
+            out.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                response = true;
+                if (line.startsWith(ForkedGenerator.EXIT)) {
+                    exitCode = Integer.valueOf(line.substring(ForkedGenerator.EXIT.length()).trim());
+                } else {
+                    log(line, peakHeap);
+                }
+            }
+        } catch (SocketTimeoutException ex) {
+            // the hanging daemon is not reused by the next requests
+            deleteDaemonFile(daemon);
+            throw new MojoExecutionException("The generator daemon did not respond in " + responseTimeout + " seconds. See the log file " + getLogFile(), ex);
+        } catch (IOException ex) {
+            if (!response) {
+                getLog().debug("Error sending the generation request to the generator daemon.", ex);
+                return null;
+            }
+            throw new MojoExecutionException("Error executing the generation request in the generator daemon. See the log file " + getLogFile(), ex);
+        } catch (NumberFormatException ex) {
+            throw new MojoExecutionException("Error executing the generation request in the generator daemon.", ex);
+        }
+        if (!response) {
+            return null;
+        }
+        if (exitCode == null) {
+            throw new MojoExecutionException("The generator daemon closed the connection without the exit code. See the log file " + getLogFile());
+        }
+        return exitCode;
+    }
+
+    /**
+     * Gets the running daemon or starts a new daemon. The start of the daemon
+     * is guarded by the file lock for the parallel MAVEN builds.
+     *
+     * @return the daemon properties.
+     * @throws MojoExecutionException if the daemon could not be started.
+     */
+    private Properties getDaemon() throws MojoExecutionException {
+        Properties result = findDaemon();
+        if (result != null) {
+            getLog().debug("Reuse the generator daemon " + getDaemonFile());
+            return result;
+        }
+        synchronized (GeneratorDaemonClient.class) {
+            try {
+                Files.createDirectories(directory);
+                try (FileChannel channel = FileChannel.open(directory.resolve(key + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    FileLock lock = channel.lock();
+                    try {
+                        result = findDaemon();
+                        if (result == null) {
+                            result = startDaemon();
+                        }
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new MojoExecutionException("Error starting the generator daemon in the directory " + directory, ex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the running daemon. The stale daemon file is deleted.
+     *
+     * @return the daemon properties or {@code null} if no daemon is running.
+     */
+    private Properties findDaemon() {
+        Properties result = readDaemonFile();
+        if (result == null) {
+            return null;
+        }
+        try (Socket socket = connect(result)) {
+            if (socket != null) {
+                return result;
+            }
+        } catch (IOException ex) {
+            getLog().debug("Error connecting to the generator daemon.", ex);
+        }
+        deleteDaemonFile(result);
+        return null;
+    }
+
+    /**
+     * Deletes the daemon file if the file still belongs to the daemon. The
+     * daemon file of the new daemon started by a parallel build is kept.
+     *
+     * @param daemon the daemon properties.
+     */
+    private void deleteDaemonFile(Properties daemon) {
+        Properties current = readDaemonFile();
+        if (current == null || !current.getProperty(GeneratorDaemon.TOKEN).equals(daemon.getProperty(GeneratorDaemon.TOKEN))) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(getDaemonFile());
+        } catch (IOException ex) {
+            getLog().debug("Error deleting the daemon file " + getDaemonFile(), ex);
+        }
+    }
+
+    /**
+     * Starts the daemon and waits for the daemon file.
+     *
+     * @return the daemon properties.
+     * @throws IOException if the daemon could not be started.
+     * @throws MojoExecutionException if the daemon could not be started.
+     */
+    private Properties startDaemon() throws IOException, MojoExecutionException {
+        List<String> command = createCommand(GeneratorDaemon.class, getDaemonFile().toAbsolutePath().toString(), Integer.toString(idleTimeout));
+        getLog().info("Start the generator daemon with the idle timeout " + idleTimeout + " seconds.");
+        getLog().debug("Generator daemon command: " + command);
+        Path logFile = getLogFile();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        process.getOutputStream().close();
+
+        long end = System.currentTimeMillis() + START_TIMEOUT;
+        while (System.currentTimeMillis() < end) {
+            Properties result = readDaemonFile();
+            if (result != null) {
+                return result;
+            }
+            if (!process.isAlive()) {
+                throw new MojoExecutionException("The generator daemon failed with the exit code " + process.exitValue() + ". See the log file " + logFile);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("The start of the generator daemon was interrupted.", ex);
+            }
+        }
+        process.destroy();
+        throw new MojoExecutionException("The generator daemon did not start in " + (START_TIMEOUT / 1000) + " seconds. See the log file " + logFile);
+    }
+
+    /**
+     * Reads the daemon file.
+     *
+     * @return the daemon properties or {@code null} if the daemon file does
+     * not exist or is not valid.
+     */
+    private Properties readDaemonFile() {
+        Path file = getDaemonFile();
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            result.load(in);
+        } catch (IOException ex) {
+            getLog().debug("Error reading the daemon file " + file, ex);
+            return null;
+        }
+        if (result.getProperty(GeneratorDaemon.PORT) == null || result.getProperty(GeneratorDaemon.TOKEN) == null) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Connects to the daemon.
+     *
+     * @param daemon the daemon properties.
+     * @return the connected socket or {@code null} if the daemon is not
+     * running.
+     */
+    private Socket connect(Properties daemon) {
+        Socket result = new Socket();
+        try {
+            int port = Integer.parseInt(daemon.getProperty(GeneratorDaemon.PORT));
+            result.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            try {
+                result.close();
+            } catch (IOException e) {
+                getLog().debug("Error closing the socket.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Gets the daemon file.
+     *
+     * @return the daemon file.
+     */
+    private Path getDaemonFile() {
+        return directory.resolve(key + ".properties");
+    }
+
+    /**
+     * Gets the log file of the daemon.
+     *
+     * @return the log file.
+     */
+    private Path getLogFile() {
+        return directory.resolve(key + ".log");
+    }
+}
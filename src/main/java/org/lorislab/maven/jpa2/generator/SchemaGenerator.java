@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.generator;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import javax.persistence.Persistence;
+import org.lorislab.maven.jpa2.hibernate.GeneratorAudit;
+import org.lorislab.maven.jpa2.hibernate.HibernateBootstrap;
+import org.lorislab.maven.jpa2.hibernate.IndexAdvisor;
+import org.lorislab.maven.jpa2.hibernate.OfflineSchemaExport;
+import org.lorislab.maven.jpa2.report.GenerationPhase;
+import org.lorislab.maven.jpa2.report.GenerationReport;
+
+/**
+ * The schema generator. The generator is used by the MAVEN plugin and by the
+ * forked generator JVM.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaGenerator {
+
+    /**
+     * The offline generation flag.
+     */
+    private final boolean offline;
+
+    /**
+     * The script action.
+     */
+    private final String scriptAction;
+
+    /**
+     * The SQL delimiter.
+     */
+    private final String delimiter;
+
+    /**
+     * The index advisor flag.
+     */
+    private final boolean indexAdvisor;
+
+    /**
+     * The identifier generator audit flag.
+     */
+    private final boolean generatorAudit;
+
+    /**
+     * The constructor.
+     *
+     * @param offline the offline generation flag.
+     * @param scriptAction the script action.
+     * @param delimiter the SQL delimiter.
+     */
+    public SchemaGenerator(boolean offline, String scriptAction, String delimiter) {
+        this(offline, scriptAction, delimiter, false, false);
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param offline the offline generation flag.
+     * @param scriptAction the script action.
+     * @param delimiter the SQL delimiter.
+     * @param indexAdvisor the index advisor flag. The advisor is executed
+     * only by the offline generation.
+     * @param generatorAudit the identifier generator audit flag. The audit
+     * is executed only by the offline generation.
+     */
+    public SchemaGenerator(boolean offline, String scriptAction, String delimiter, boolean indexAdvisor, boolean generatorAudit) {
+        this.offline = offline;
+        this.scriptAction = scriptAction;
+        this.delimiter = delimiter;
+        this.indexAdvisor = indexAdvisor;
+        this.generatorAudit = generatorAudit;
+    }
+
+    /**
+     * Gets the offline generation flag.
+     *
+     * @return the offline generation flag.
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Gets the script action.
+     *
+     * @return the script action.
+     */
+    public String getScriptAction() {
+        return scriptAction;
+    }
+
+    /**
+     * Gets the SQL delimiter.
+     *
+     * @return the SQL delimiter.
+     */
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Gets the index advisor flag.
+     *
+     * @return the index advisor flag.
+     */
+    public boolean isIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    /**
+     * Gets the identifier generator audit flag.
+     *
+     * @return the identifier generator audit flag.
+     */
+    public boolean isGeneratorAudit() {
+        return generatorAudit;
+    }
+
+    /**
+     * Creates the class loader of the project classpath. The caller closes
+     * the class loader after the generation.
+     *
+     * @param classpath the project classpath.
+     * @param parent the parent class loader.
+     * @return the class loader.
+     */
+    public static URLClassLoader createClassLoader(List<URL> classpath, ClassLoader parent) {
+        return new URLClassLoader(classpath.toArray(new URL[classpath.size()]), parent);
+    }
+
+    /**
+     * Generates the schema scripts of the job. The class loader is set as the
+     * thread context class loader during the generation.
+     *
+     * @param job the generation job.
+     * @param cl the class loader of the project.
+     */
+    public void generate(GenerationJob job, ClassLoader cl) {
+        generate(job, cl, null);
+    }
+
+    /**
+     * Generates the schema scripts of the job and measures the generation
+     * phases. The offline generation is measured in the bootstrap, metadata
+     * and scripts phases, the JPA schema generation in one phase. The index
+     * advisor writes the missing indexes and the generator audit writes the
+     * pooled sequences to the output directory of the job.
+     *
+     * @param job the generation job.
+     * @param cl the class loader of the project.
+     * @param report the generation report or {@code null}.
+     */
+    public void generate(GenerationJob job, ClassLoader cl, GenerationReport report) {
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader oldClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(cl);
+        try {
+            if (offline) {
+                HibernateBootstrap bootstrap;
+                GenerationPhase bootstrapPhase = start(report, GenerationReport.BOOTSTRAP, job);
+                try {
+                    bootstrap = new HibernateBootstrap(job.getPersistenceUnit(), job.getProperties(), cl);
+                } finally {
+                    stop(bootstrapPhase);
+                }
+                try {
+                    GenerationPhase metadataPhase = start(report, GenerationReport.METADATA, job);
+                    try {
+                        bootstrap.getMetadata();
+                    } finally {
+                        stop(metadataPhase);
+                    }
+                    GenerationPhase scriptsPhase = start(report, GenerationReport.SCRIPTS, job);
+                    try {
+                        OfflineSchemaExport.export(bootstrap, scriptAction, job.getDropFile(), job.getCreateFile(), delimiter);
+                    } finally {
+                        stop(scriptsPhase);
+                    }
+                    if (indexAdvisor) {
+                        GenerationPhase advisorPhase = start(report, GenerationReport.ADVISOR, job);
+                        try {
+                            new IndexAdvisor(bootstrap).write(job.getOutputDir(), delimiter);
+                        } catch (IOException ex) {
+                            throw new RuntimeException("Error writing the index advisor files of the persistence unit " + job.getPersistenceUnit(), ex);
+                        } finally {
+                            stop(advisorPhase);
+                        }
+                    }
+                    if (generatorAudit) {
+                        GenerationPhase auditPhase = start(report, GenerationReport.AUDIT, job);
+                        try {
+                            new GeneratorAudit(bootstrap).write(job.getOutputDir(), delimiter);
+                        } catch (IOException ex) {
+                            throw new RuntimeException("Error writing the generator audit files of the persistence unit " + job.getPersistenceUnit(), ex);
+                        } finally {
+                            stop(auditPhase);
+                        }
+                    }
+                } finally {
+                    bootstrap.close();
+                }
+            } else {
+                GenerationPhase phase = start(report, GenerationReport.GENERATION, job);
+                try {
+                    Persistence.generateSchema(job.getPersistenceUnit(), job.getProperties());
+                } finally {
+                    stop(phase);
+                }
+            }
+        } finally {
+            currentThread.setContextClassLoader(oldClassLoader);
+        }
+    }
+
+    /**
+     * Starts the phase of the generation job.
+     *
+     * @param report the generation report or {@code null}.
+     * @param name the phase name.
+     * @param job the generation job.
+     * @return the started phase or {@code null} if the report is
+     * {@code null}.
+     */
+    private static GenerationPhase start(GenerationReport report, String name, GenerationJob job) {
+        if (report == null) {
+            return null;
+        }
+        return report.start(name, job.getPersistenceUnit(), job.getDatabase());
+    }
+
+    /**
+     * Stops the phase of the generation job.
+     *
+     * @param phase the started phase or {@code null}.
+     */
+    private static void stop(GenerationPhase phase) {
+        if (phase != null) {
+            phase.stop();
+        }
+    }
+}
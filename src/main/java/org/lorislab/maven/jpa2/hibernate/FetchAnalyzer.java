@@ -0,0 +1,464 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.hibernate.FetchMode;
+import org.hibernate.boot.Metadata;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.Component;
+import org.hibernate.mapping.ManyToOne;
+import org.hibernate.mapping.OneToMany;
+import org.hibernate.mapping.OneToOne;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.mapping.ToOne;
+import org.hibernate.mapping.Value;
+
+/**
+ * The analyzer of the fetch strategy of the persistence unit. The analyzer
+ * walks the mapping metadata of the entities and reports the associations
+ * which cause the N+1 selects or the large joins on the hot paths. Every
+ * rule has the default severity which can be changed or the rule can be
+ * switched off.
+ *
+ * @author Andrej Petras
+ */
+public class FetchAnalyzer {
+
+    /**
+     * The eager collection rule.
+     */
+    public static final String EAGER_COLLECTION = "eager-collection";
+
+    /**
+     * The eager to-one association rule.
+     */
+    public static final String EAGER_TO_ONE = "eager-to-one";
+
+    /**
+     * The multiple eager collections of the entity rule.
+     */
+    public static final String MULTIPLE_EAGER_COLLECTIONS = "multiple-eager-collections";
+
+    /**
+     * The lazy collection without the batch fetching rule.
+     */
+    public static final String COLLECTION_WITHOUT_BATCH = "collection-without-batch";
+
+    /**
+     * The lazy to-one target entity without the batch fetching rule.
+     */
+    public static final String ENTITY_WITHOUT_BATCH = "entity-without-batch";
+
+    /**
+     * The bidirectional association without the mappedBy rule.
+     */
+    public static final String MISSING_MAPPED_BY = "missing-mapped-by";
+
+    /**
+     * The rules and the default severities.
+     */
+    private static final Map<String, Severity> RULES = new LinkedHashMap<>();
+
+    static {
+        RULES.put(EAGER_COLLECTION, Severity.ERROR);
+        RULES.put(MULTIPLE_EAGER_COLLECTIONS, Severity.ERROR);
+        RULES.put(EAGER_TO_ONE, Severity.WARNING);
+        RULES.put(MISSING_MAPPED_BY, Severity.WARNING);
+        RULES.put(COLLECTION_WITHOUT_BATCH, Severity.WARNING);
+        RULES.put(ENTITY_WITHOUT_BATCH, Severity.INFO);
+    }
+
+    /**
+     * The severity of the finding.
+     */
+    public enum Severity {
+
+        /**
+         * The rule is switched off.
+         */
+        OFF,
+
+        /**
+         * The information.
+         */
+        INFO,
+
+        /**
+         * The warning.
+         */
+        WARNING,
+
+        /**
+         * The error.
+         */
+        ERROR;
+
+        /**
+         * Parses the severity name.
+         *
+         * @param value the severity name.
+         * @return the severity.
+         */
+        public static Severity parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Not supported severity " + value + ", use one of " + Arrays.toString(values()), ex);
+            }
+        }
+    }
+
+    /**
+     * The severities of the rules.
+     */
+    private final Map<String, Severity> severities = new HashMap<>(RULES);
+
+    /**
+     * The constructor.
+     *
+     * @param rules the severity names by the rule name or {@code null} for
+     * the default severities.
+     */
+    public FetchAnalyzer(Map<String, String> rules) {
+        if (rules != null) {
+            for (Map.Entry<String, String> rule : rules.entrySet()) {
+                if (!RULES.containsKey(rule.getKey())) {
+                    throw new IllegalArgumentException("Not supported rule " + rule.getKey() + ", use one of " + RULES.keySet());
+                }
+                severities.put(rule.getKey(), Severity.parse(rule.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Gets the rule names.
+     *
+     * @return the rule names.
+     */
+    public static Set<String> getRules() {
+        return Collections.unmodifiableSet(RULES.keySet());
+    }
+
+    /**
+     * Analyzes the entities of the metadata.
+     *
+     * @param metadata the mapping metadata.
+     * @return the list of the findings.
+     */
+    public List<Finding> analyze(Metadata metadata) {
+        List<Finding> result = new ArrayList<>();
+        List<Association> associations = new ArrayList<>();
+        Set<String> lazyTargets = new TreeSet<>();
+        for (PersistentClass entity : metadata.getEntityBindings()) {
+            List<String> eager = new ArrayList<>();
+            analyze(result, associations, lazyTargets, eager, entity.getEntityName(), "", entity.getDeclaredPropertyIterator());
+            if (eager.size() > 1) {
+                add(result, MULTIPLE_EAGER_COLLECTIONS, entity.getEntityName(), null,
+                        "The eager collections " + eager + " are joined in one select, the result is the cartesian product of the collections.");
+            }
+        }
+        for (String name : lazyTargets) {
+            PersistentClass entity = metadata.getEntityBinding(name);
+            if (entity != null && entity.getBatchSize() <= 1) {
+                add(result, ENTITY_WITHOUT_BATCH, name, null,
+                        "The lazy references to the entity are loaded one by one, add @BatchSize to the entity.");
+            }
+        }
+        checkMappedBy(result, associations);
+        return result;
+    }
+
+    /**
+     * Analyzes the properties of the entity or the embedded component.
+     *
+     * @param result the list of the findings.
+     * @param associations the owning associations.
+     * @param lazyTargets the target entities of the lazy to-one associations.
+     * @param eager the eager collections of the entity.
+     * @param entity the entity name.
+     * @param prefix the property path prefix.
+     * @param it the property iterator.
+     */
+    private void analyze(List<Finding> result, List<Association> associations, Set<String> lazyTargets, List<String> eager,
+            String entity, String prefix, Iterator<?> it) {
+        while (it.hasNext()) {
+            Property property = (Property) it.next();
+            String path = prefix + property.getName();
+            Value value = property.getValue();
+            if (value instanceof Component) {
+                analyze(result, associations, lazyTargets, eager, entity, path + ".", ((Component) value).getPropertyIterator());
+            } else if (value instanceof Collection) {
+                Collection collection = (Collection) value;
+                String target = getTarget(collection.getElement());
+                if (!collection.isLazy()) {
+                    eager.add(path);
+                    add(result, EAGER_COLLECTION, entity, path,
+                            "The collection is loaded with every " + entity + ", use FetchType.LAZY and the fetch join or the entity graph in the queries.");
+                } else if (collection.getBatchSize() <= 1 && !collection.isSubselectLoadable() && collection.getFetchMode() != FetchMode.JOIN) {
+                    add(result, COLLECTION_WITHOUT_BATCH, entity, path,
+                            "The lazy collection is loaded by one select for every " + entity + ", add @BatchSize or @Fetch(FetchMode.SUBSELECT).");
+                }
+                if (target != null && !collection.isInverse()) {
+                    associations.add(new Association(entity, path, target, true));
+                }
+            } else if (value instanceof ToOne) {
+                ToOne toOne = (ToOne) value;
+                String target = toOne.getReferencedEntityName();
+                if (!toOne.isLazy()) {
+                    add(result, EAGER_TO_ONE, entity, path,
+                            "The reference to " + target + " is loaded with every " + entity + ", use FetchType.LAZY.");
+                } else if (target != null) {
+                    lazyTargets.add(target);
+                }
+                if (target != null && isOwning(toOne)) {
+                    associations.add(new Association(entity, path, target, false));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the owning associations of the entity pairs. The collection and
+     * the association in the opposite direction which are both owning sides
+     * are the bidirectional association without the mappedBy. Such
+     * association is mapped twice, by the join table or twice written foreign
+     * key.
+     *
+     * @param result the list of the findings.
+     * @param associations the owning associations.
+     */
+    private void checkMappedBy(List<Finding> result, List<Association> associations) {
+        Set<String> reported = new HashSet<>();
+        for (Association collection : associations) {
+            if (!collection.collection) {
+                continue;
+            }
+            for (Association other : associations) {
+                if (other == collection || !other.entity.equals(collection.target) || !other.target.equals(collection.entity)) {
+                    continue;
+                }
+                String key = collection.entity + "." + collection.path + "|" + other.entity + "." + other.path;
+                String reverse = other.entity + "." + other.path + "|" + collection.entity + "." + collection.path;
+                if (reported.add(key) && !reported.contains(reverse)) {
+                    add(result, MISSING_MAPPED_BY, collection.entity, collection.path,
+                            "The association and " + other.entity + "." + other.path + " are both owning sides, add mappedBy to the inverse side.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the finding if the rule is not switched off.
+     *
+     * @param result the list of the findings.
+     * @param rule the rule name.
+     * @param entity the entity name.
+     * @param property the property path or {@code null}.
+     * @param message the message.
+     */
+    private void add(List<Finding> result, String rule, String entity, String property, String message) {
+        Severity severity = severities.get(rule);
+        if (severity != Severity.OFF) {
+            result.add(new Finding(rule, severity, entity, property, message));
+        }
+    }
+
+    /**
+     * Gets the target entity of the collection element.
+     *
+     * @param element the collection element.
+     * @return the target entity name or {@code null} for the element
+     * collection.
+     */
+    private static String getTarget(Value element) {
+        if (element instanceof OneToMany) {
+            return ((OneToMany) element).getReferencedEntityName();
+        }
+        if (element instanceof ManyToOne) {
+            return ((ManyToOne) element).getReferencedEntityName();
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the to-one association is the owning side with the foreign
+     * key.
+     *
+     * @param value the to-one association.
+     * @return {@code true} for the owning side.
+     */
+    private static boolean isOwning(ToOne value) {
+        if (value instanceof OneToOne) {
+            return ((OneToOne) value).isConstrained();
+        }
+        return true;
+    }
+
+    /**
+     * The owning side of the association.
+     */
+    private static class Association {
+
+        /**
+         * The entity name.
+         */
+        private final String entity;
+
+        /**
+         * The property path.
+         */
+        private final String path;
+
+        /**
+         * The target entity name.
+         */
+        private final String target;
+
+        /**
+         * The collection flag.
+         */
+        private final boolean collection;
+
+        /**
+         * The constructor.
+         *
+         * @param entity the entity name.
+         * @param path the property path.
+         * @param target the target entity name.
+         * @param collection the collection flag.
+         */
+        Association(String entity, String path, String target, boolean collection) {
+            this.entity = entity;
+            this.path = path;
+            this.target = target;
+            this.collection = collection;
+        }
+    }
+
+    /**
+     * The finding of the analyzer.
+     */
+    public static class Finding {
+
+        /**
+         * The rule name.
+         */
+        private final String rule;
+
+        /**
+         * The severity.
+         */
+        private final Severity severity;
+
+        /**
+         * The entity name.
+         */
+        private final String entity;
+
+        /**
+         * The property path or {@code null}.
+         */
+        private final String property;
+
+        /**
+         * The message.
+         */
+        private final String message;
+
+        /**
+         * The constructor.
+         *
+         * @param rule the rule name.
+         * @param severity the severity.
+         * @param entity the entity name.
+         * @param property the property path or {@code null}.
+         * @param message the message.
+         */
+        Finding(String rule, Severity severity, String entity, String property, String message) {
+            this.rule = rule;
+            this.severity = severity;
+            this.entity = entity;
+            this.property = property;
+            this.message = message;
+        }
+
+        /**
+         * Gets the rule name.
+         *
+         * @return the rule name.
+         */
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * Gets the severity.
+         *
+         * @return the severity.
+         */
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        /**
+         * Gets the entity name.
+         *
+         * @return the entity name.
+         */
+        public String getEntity() {
+            return entity;
+        }
+
+        /**
+         * Gets the property path.
+         *
+         * @return the property path or {@code null} for the entity finding.
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        /**
+         * Gets the message.
+         *
+         * @return the message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public String toString() {
+            return "[" + rule + "] " + entity + (property == null ? "" : "." + property) + ": " + message;
+        }
+    }
+}
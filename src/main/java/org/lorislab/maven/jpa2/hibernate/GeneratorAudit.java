@@ -0,0 +1,427 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.dialect.DB2Dialect;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.SQLServer2012Dialect;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.id.factory.IdentifierGeneratorFactory;
+import org.hibernate.id.factory.spi.MutableIdentifierGeneratorFactory;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.RootClass;
+import org.hibernate.service.ServiceRegistry;
+import org.lorislab.maven.jpa2.ddl.Statement;
+import org.lorislab.maven.jpa2.ddl.StatementWriter;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The audit of the identifier generators and the JDBC batching of the
+ * persistence unit. The identifier generators of the root entities are
+ * created for the target dialect and the generators which block the insert
+ * batching or need one round trip per insert are reported. The sequences are
+ * written with the increment of the pooled optimizer and the dialect cache
+ * clause, the increment of the sequence has to match the allocation size of
+ * the generator.
+ *
+ * @author Andrej Petras
+ */
+public class GeneratorAudit {
+
+    /**
+     * The sequence script file name.
+     */
+    public static final String SCRIPT_FILE = "pooled-sequences.sql";
+
+    /**
+     * The audit report file name.
+     */
+    public static final String REPORT_FILE = "generator-audit.json";
+
+    /**
+     * The identity generator issue.
+     */
+    public static final String IDENTITY = "identity";
+
+    /**
+     * The not pooled sequence issue.
+     */
+    public static final String NOT_POOLED = "not-pooled";
+
+    /**
+     * The table generator issue.
+     */
+    public static final String TABLE = "table";
+
+    /**
+     * The sequence emulated by the table issue.
+     */
+    public static final String SEQUENCE_TABLE = "sequence-table";
+
+    /**
+     * The JDBC batch size property.
+     */
+    private static final String BATCH_SIZE = "hibernate.jdbc.batch_size";
+
+    /**
+     * The order inserts property.
+     */
+    private static final String ORDER_INSERTS = "hibernate.order_inserts";
+
+    /**
+     * The recommended increment of the not pooled sequences. The default
+     * allocation size of the JPA sequence generator.
+     */
+    private static final int POOLED_INCREMENT = 50;
+
+    /**
+     * The mapping metadata.
+     */
+    private final MetadataImplementor metadata;
+
+    /**
+     * The target dialect.
+     */
+    private final Dialect dialect;
+
+    /**
+     * The settings of the persistence unit.
+     */
+    private final Map<?, ?> settings;
+
+    /**
+     * The identifier generator factory of the persistence unit.
+     */
+    private final IdentifierGeneratorFactory generatorFactory;
+
+    /**
+     * The constructor.
+     *
+     * @param bootstrap the Hibernate bootstrap.
+     */
+    public GeneratorAudit(HibernateBootstrap bootstrap) {
+        this.metadata = bootstrap.getMetadata();
+        this.dialect = bootstrap.getDialect();
+        ServiceRegistry registry = metadata.getMetadataBuildingOptions().getServiceRegistry();
+        this.settings = registry.getService(ConfigurationService.class).getSettings();
+        // the same factory as the deprecated Mapping.getIdentifierGeneratorFactory()
+        this.generatorFactory = registry.getService(MutableIdentifierGeneratorFactory.class);
+    }
+
+    /**
+     * Audits the identifier generators of the root entities.
+     *
+     * @return the identifier generators of the entities.
+     */
+    public List<Generator> audit() {
+        List<Generator> result = new ArrayList<>();
+        for (PersistentClass entity : metadata.getEntityBindings()) {
+            if (!(entity instanceof RootClass) || entity.getIdentifier() == null) {
+                continue;
+            }
+            IdentifierGenerator generator = entity.getIdentifier().createIdentifierGenerator(
+                    generatorFactory, dialect, null, null, (RootClass) entity);
+            result.add(create(entity.getEntityName(), generator));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the JDBC batch size of the persistence unit.
+     *
+     * @return the JDBC batch size or 0 if the batching is disabled.
+     */
+    public int getBatchSize() {
+        Object value = settings.get(BATCH_SIZE);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the inserts are ordered by the entity for the
+     * JDBC batching.
+     *
+     * @return the order inserts flag.
+     */
+    public boolean isOrderInserts() {
+        Object value = settings.get(ORDER_INSERTS);
+        return value != null && Boolean.parseBoolean(value.toString().trim());
+    }
+
+    /**
+     * Audits the generators and writes the sequence script and the report to
+     * the directory.
+     *
+     * @param dir the output directory.
+     * @param delimiter the SQL delimiter.
+     * @return the identifier generators of the entities.
+     * @throws IOException if the files could not be written.
+     */
+    public List<Generator> write(Path dir, String delimiter) throws IOException {
+        List<Generator> result = audit();
+        Files.createDirectories(dir);
+        try (StatementWriter writer = new StatementWriter(dir.resolve(SCRIPT_FILE), Charset.defaultCharset(), delimiter)) {
+            long index = 0;
+            Set<String> sequences = new HashSet<>();
+            for (Generator generator : result) {
+                if (!generator.isSequence() || !sequences.add(generator.getName())) {
+                    continue;
+                }
+                int increment = generator.getIncrementSize() > 1 ? generator.getIncrementSize() : POOLED_INCREMENT;
+                for (String sql : dialect.getCreateSequenceStrings(generator.getName(), generator.getInitialValue(), increment)) {
+                    Statement statement = new Statement(SCRIPT_FILE, ++index, sql + getCacheClause(increment));
+                    statement.getComments().add(generator.getEntity() + " allocationSize = " + increment
+                            + (increment != generator.getIncrementSize() ? " (current " + generator.getIncrementSize() + ")" : ""));
+                    writer.write(statement);
+                }
+            }
+        }
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(dir.resolve(REPORT_FILE), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("dialect", dialect.getClass().getName());
+            json.property("batchSize", getBatchSize());
+            json.property("orderInserts", isOrderInserts());
+            json.name("entities").beginArray();
+            for (Generator generator : result) {
+                json.beginObject();
+                json.property("entity", generator.getEntity());
+                json.property("generator", generator.getStrategy());
+                json.property("name", generator.getName());
+                json.property("incrementSize", generator.getIncrementSize());
+                json.property("optimizer", generator.getOptimizer());
+                json.name("issues").beginArray();
+                for (String issue : generator.getIssues()) {
+                    json.value(issue);
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return result;
+    }
+
+    /**
+     * Gets the cache clause of the sequence for the dialect.
+     *
+     * @param increment the increment of the sequence.
+     * @return the cache clause or the empty string if the dialect does not
+     * support the sequence cache.
+     */
+    private String getCacheClause(int increment) {
+        if (dialect instanceof Oracle8iDialect || dialect instanceof PostgreSQL81Dialect || dialect instanceof DB2Dialect
+                || dialect instanceof H2Dialect || dialect instanceof SQLServer2012Dialect) {
+            return " cache " + increment;
+        }
+        return "";
+    }
+
+    /**
+     * Creates the audit of the identifier generator.
+     *
+     * @param entity the entity name.
+     * @param generator the identifier generator.
+     * @return the audit of the identifier generator.
+     */
+    private static Generator create(String entity, IdentifierGenerator generator) {
+        Generator result = new Generator(entity, generator.getClass().getName());
+        if (generator instanceof PostInsertIdentifierGenerator) {
+            result.issues.add(IDENTITY);
+        } else if (generator instanceof SequenceStyleGenerator) {
+            SequenceStyleGenerator tmp = (SequenceStyleGenerator) generator;
+            DatabaseStructure structure = tmp.getDatabaseStructure();
+            result.name = structure.getName();
+            result.initialValue = structure.getInitialValue();
+            result.incrementSize = structure.getIncrementSize();
+            result.optimizer = tmp.getOptimizer() == null ? null : tmp.getOptimizer().getClass().getSimpleName();
+            result.sequence = structure instanceof SequenceStructure;
+            if (!result.sequence) {
+                result.issues.add(SEQUENCE_TABLE);
+            }
+            if (result.incrementSize <= 1) {
+                result.issues.add(NOT_POOLED);
+            }
+        } else if (generator instanceof TableGenerator) {
+            TableGenerator tmp = (TableGenerator) generator;
+            result.name = tmp.getTableName() + "." + tmp.getSegmentValue();
+            result.initialValue = tmp.getInitialValue();
+            result.incrementSize = tmp.getIncrementSize();
+            result.optimizer = tmp.getOptimizer() == null ? null : tmp.getOptimizer().getClass().getSimpleName();
+            result.issues.add(TABLE);
+            if (result.incrementSize <= 1) {
+                result.issues.add(NOT_POOLED);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The identifier generator of the entity.
+     */
+    public static class Generator {
+
+        /**
+         * The entity name.
+         */
+        private final String entity;
+
+        /**
+         * The generator class name.
+         */
+        private final String strategy;
+
+        /**
+         * The sequence or the table name.
+         */
+        private String name;
+
+        /**
+         * The initial value.
+         */
+        private int initialValue = 1;
+
+        /**
+         * The increment size.
+         */
+        private int incrementSize;
+
+        /**
+         * The optimizer name.
+         */
+        private String optimizer;
+
+        /**
+         * The database sequence flag.
+         */
+        private boolean sequence;
+
+        /**
+         * The issues of the generator.
+         */
+        private final List<String> issues = new ArrayList<>();
+
+        /**
+         * The constructor.
+         *
+         * @param entity the entity name.
+         * @param strategy the generator class name.
+         */
+        Generator(String entity, String strategy) {
+            this.entity = entity;
+            this.strategy = strategy;
+        }
+
+        /**
+         * Gets the entity name.
+         *
+         * @return the entity name.
+         */
+        public String getEntity() {
+            return entity;
+        }
+
+        /**
+         * Gets the generator class name.
+         *
+         * @return the generator class name.
+         */
+        public String getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * Gets the sequence or the table name.
+         *
+         * @return the sequence or the table name or {@code null}.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the initial value.
+         *
+         * @return the initial value.
+         */
+        public int getInitialValue() {
+            return initialValue;
+        }
+
+        /**
+         * Gets the increment size.
+         *
+         * @return the increment size or 0 for the other generators.
+         */
+        public int getIncrementSize() {
+            return incrementSize;
+        }
+
+        /**
+         * Gets the optimizer name.
+         *
+         * @return the optimizer name or {@code null}.
+         */
+        public String getOptimizer() {
+            return optimizer;
+        }
+
+        /**
+         * Returns {@code true} for the database sequence.
+         *
+         * @return the database sequence flag.
+         */
+        public boolean isSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets the issues of the generator.
+         *
+         * @return the issues of the generator.
+         */
+        public List<String> getIssues() {
+            return Collections.unmodifiableList(issues);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Version;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.dialect.internal.StandardDialectResolver;
+import org.hibernate.engine.jdbc.dialect.spi.DialectResolutionInfo;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
+import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
+import org.hibernate.jpa.boot.spi.Bootstrap;
+
+/**
+ * The offline Hibernate bootstrap of the persistence unit. The metadata of
+ * the persistence unit is built for the dialect resolved from the database
+ * product name and version without any JDBC connection.
+ *
+ * @author Andrej Petras
+ */
+public class HibernateBootstrap implements Closeable {
+
+    /**
+     * The supported Hibernate versions.
+     */
+    private static final String SUPPORTED_VERSIONS = "5.0.x";
+
+    /**
+     * The private method {@code metadata()} of the Hibernate 5.0 builder or
+     * {@code null} if the Hibernate version is not supported.
+     */
+    private static final Method METADATA = findMetadataMethod();
+
+    /**
+     * The entity manager factory builder.
+     */
+    private final EntityManagerFactoryBuilderImpl builder;
+
+    /**
+     * The metadata of the persistence unit.
+     */
+    private MetadataImplementor metadata;
+
+    /**
+     * The constructor. The thread context class loader has to be the
+     * class loader of the project.
+     *
+     * @param persistenceUnit the persistence unit.
+     * @param properties the offline properties created by the
+     * {@link #createOfflineProperties(java.util.Map, java.lang.String, java.lang.String, java.lang.String)}.
+     * @param cl the class loader of the project.
+     * @throws IllegalStateException if the Hibernate version is not supported.
+     */
+    public HibernateBootstrap(String persistenceUnit, Map<String, Object> properties, ClassLoader cl) {
+        if (METADATA == null) {
+            throw new IllegalStateException("The offline generation supports Hibernate " + SUPPORTED_VERSIONS
+                    + ", the plugin classpath contains Hibernate " + Version.getVersionString() + ".");
+        }
+        ParsedPersistenceXmlDescriptor descriptor = null;
+        List<ParsedPersistenceXmlDescriptor> units = PersistenceXmlParser.locatePersistenceUnits(properties);
+        for (ParsedPersistenceXmlDescriptor unit : units) {
+            if (persistenceUnit.equals(unit.getName())) {
+                descriptor = unit;
+                break;
+            }
+        }
+        if (descriptor == null) {
+            throw new IllegalStateException("Missing the persistence unit " + persistenceUnit + " in the persistence.xml");
+        }
+        builder = (EntityManagerFactoryBuilderImpl) Bootstrap.getEntityManagerFactoryBuilder(descriptor, properties, cl);
+    }
+
+    /**
+     * Finds the private method {@code metadata()} of the Hibernate 5.0
+     * builder. The builder has no public method which builds the metadata
+     * without the entity manager factory.
+     *
+     * @return the method or {@code null} if the builder has no such method.
+     */
+    private static Method findMetadataMethod() {
+        try {
+            Method result = EntityManagerFactoryBuilderImpl.class.getDeclaredMethod("metadata");
+            if (!MetadataImplementor.class.isAssignableFrom(result.getReturnType())) {
+                return null;
+            }
+            result.setAccessible(true);
+            return result;
+        } catch (NoSuchMethodException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds the metadata of the persistence unit by the private method
+     * {@code metadata()} of the Hibernate 5.0 builder.
+     *
+     * @param builder the entity manager factory builder.
+     * @return the metadata of the persistence unit.
+     */
+    private static MetadataImplementor buildMetadata(EntityManagerFactoryBuilderImpl builder) {
+        MetadataImplementor result = builder.getMetadata();
+        if (result != null) {
+            return result;
+        }
+        try {
+            return (MetadataImplementor) METADATA.invoke(builder);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("Error building the metadata of the persistence unit.", ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("The offline generation supports Hibernate " + SUPPORTED_VERSIONS
+                    + ", the plugin classpath contains Hibernate " + Version.getVersionString() + ".", ex);
+        }
+    }
+
+    /**
+     * Gets the metadata of the persistence unit. The metadata is built on the
+     * first call.
+     *
+     * @return the metadata of the persistence unit.
+     */
+    public MetadataImplementor getMetadata() {
+        if (metadata == null) {
+            metadata = buildMetadata(builder);
+        }
+        return metadata;
+    }
+
+    /**
+     * Gets the dialect of the target database.
+     *
+     * @return the dialect of the target database.
+     */
+    public Dialect getDialect() {
+        return getMetadata().getMetadataBuildingOptions().getServiceRegistry().getService(JdbcEnvironment.class).getDialect();
+    }
+
+    /**
+     * Releases the Hibernate services.
+     */
+    @Override
+    public void close() {
+        builder.cancel();
+    }
+
+    /**
+     * Creates the properties for the offline bootstrap. The JDBC connection
+     * properties are removed and the dialect is resolved from the database
+     * product name and version.
+     *
+     * @param properties the generator properties.
+     * @param databaseProductName the database product name.
+     * @param databaseMajorVersion the database major version.
+     * @param databaseMinorVersion the database minor version.
+     * @return the offline properties.
+     */
+    public static Map<String, Object> createOfflineProperties(Map<String, Object> properties, String databaseProductName, String databaseMajorVersion, String databaseMinorVersion) {
+        Map<String, Object> result = new HashMap<>(properties);
+        result.remove("javax.persistence.jdbc.driver");
+        result.remove("javax.persistence.jdbc.url");
+        result.remove("javax.persistence.jdbc.user");
+        result.remove("javax.persistence.jdbc.password");
+        result.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
+        result.put("hibernate.connection.provider_class", OfflineConnectionProvider.class.getName());
+        result.put("hibernate.hbm2ddl.import_files", "");
+        result.put("hibernate.dialect", resolveDialect(databaseProductName, databaseMajorVersion, databaseMinorVersion).getClass().getName());
+        return result;
+    }
+
+    /**
+     * Resolves the Hibernate dialect for the database product name and
+     * version.
+     *
+     * @param databaseProductName the database product name.
+     * @param databaseMajorVersion the database major version.
+     * @param databaseMinorVersion the database minor version.
+     * @return the Hibernate dialect.
+     */
+    public static Dialect resolveDialect(final String databaseProductName, final String databaseMajorVersion, final String databaseMinorVersion) {
+        Dialect result = StandardDialectResolver.INSTANCE.resolveDialect(new DialectResolutionInfo() {
+            @Override
+            public String getDatabaseName() {
+                return databaseProductName;
+            }
+
+            @Override
+            public int getDatabaseMajorVersion() {
+                return toVersion(databaseMajorVersion);
+            }
+
+            @Override
+            public int getDatabaseMinorVersion() {
+                return toVersion(databaseMinorVersion);
+            }
+
+            @Override
+            public String getDriverName() {
+                return null;
+            }
+
+            @Override
+            public int getDriverMajorVersion() {
+                return NO_VERSION;
+            }
+
+            @Override
+            public int getDriverMinorVersion() {
+                return NO_VERSION;
+            }
+        });
+        if (result == null) {
+            throw new IllegalStateException("Could not resolve the Hibernate dialect for the database " + databaseProductName);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the version to the number.
+     *
+     * @param version the version.
+     * @return the version number or {@link DialectResolutionInfo#NO_VERSION}.
+     */
+    private static int toVersion(String version) {
+        if (version == null || version.isEmpty()) {
+            return DialectResolutionInfo.NO_VERSION;
+        }
+        return Integer.parseInt(version.trim());
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Constraint;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.IndexedCollection;
+import org.hibernate.mapping.Selectable;
+import org.hibernate.mapping.Table;
+import org.hibernate.mapping.UniqueKey;
+import org.lorislab.maven.jpa2.ddl.Statement;
+import org.lorislab.maven.jpa2.ddl.StatementWriter;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The advisor of the missing foreign key indexes. The advisor inspects the
+ * mapping metadata of the persistence unit and finds the foreign key
+ * columns, the join table columns and the order columns of the lists which
+ * are not the leading columns of the primary key, an index or an unique
+ * key. The missing indexes are created by the index exporter of the target
+ * dialect.
+ *
+ * @author Andrej Petras
+ */
+public class IndexAdvisor {
+
+    /**
+     * The index script file name.
+     */
+    public static final String SCRIPT_FILE = "indexes.sql";
+
+    /**
+     * The advisor report file name.
+     */
+    public static final String REPORT_FILE = "index-advisor.json";
+
+    /**
+     * The foreign key reason.
+     */
+    public static final String FOREIGN_KEY = "foreign-key";
+
+    /**
+     * The join table reason.
+     */
+    public static final String JOIN_TABLE = "join-table";
+
+    /**
+     * The order column reason.
+     */
+    public static final String ORDER_COLUMN = "order-column";
+
+    /**
+     * The index name prefix.
+     */
+    private static final String PREFIX = "IX";
+
+    /**
+     * The mapping metadata.
+     */
+    private final MetadataImplementor metadata;
+
+    /**
+     * The target dialect.
+     */
+    private final Dialect dialect;
+
+    /**
+     * The existing and advised indexes by the table.
+     */
+    private final Map<Table, List<List<String>>> indexes = new HashMap<>();
+
+    /**
+     * The number of the checked foreign keys.
+     */
+    private int foreignKeys;
+
+    /**
+     * The number of the checked order columns.
+     */
+    private int orderColumns;
+
+    /**
+     * The constructor.
+     *
+     * @param bootstrap the Hibernate bootstrap.
+     */
+    public IndexAdvisor(HibernateBootstrap bootstrap) {
+        this.metadata = bootstrap.getMetadata();
+        this.dialect = bootstrap.getDialect();
+    }
+
+    /**
+     * Finds the missing indexes. The order columns are checked first, the
+     * index of the order column covers the foreign key of the collection.
+     *
+     * @return the list of the missing indexes.
+     */
+    public List<Advice> analyze() {
+        List<Advice> result = new ArrayList<>();
+        Set<Table> joinTables = new HashSet<>();
+        for (Collection collection : metadata.getCollectionBindings()) {
+            Table table = collection.getCollectionTable();
+            if (!collection.isOneToMany()) {
+                joinTables.add(table);
+            }
+            if (collection instanceof org.hibernate.mapping.List && isPhysical(table)) {
+                List<Column> columns = columns(collection.getKey().getColumnIterator());
+                List<Column> order = columns(((IndexedCollection) collection).getIndex().getColumnIterator());
+                if (columns != null && order != null) {
+                    orderColumns++;
+                    columns.addAll(order);
+                    add(result, table, columns, ORDER_COLUMN, collection.getRole());
+                }
+            }
+        }
+        for (Table table : metadata.collectTableMappings()) {
+            if (!isPhysical(table)) {
+                continue;
+            }
+            Iterator<?> it = table.getForeignKeyIterator();
+            while (it.hasNext()) {
+                ForeignKey fk = (ForeignKey) it.next();
+                if (!fk.isPhysicalConstraint()) {
+                    continue;
+                }
+                foreignKeys++;
+                List<Column> columns = new ArrayList<>();
+                for (Object column : fk.getColumns()) {
+                    columns.add((Column) column);
+                }
+                add(result, table, columns, joinTables.contains(table) ? JOIN_TABLE : FOREIGN_KEY, fk.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Analyzes the metadata and writes the index script and the report to
+     * the directory.
+     *
+     * @param dir the output directory.
+     * @param delimiter the SQL delimiter.
+     * @return the list of the missing indexes.
+     * @throws IOException if the files could not be written.
+     */
+    public List<Advice> write(Path dir, String delimiter) throws IOException {
+        List<Advice> result = analyze();
+        Files.createDirectories(dir);
+        try (StatementWriter writer = new StatementWriter(dir.resolve(SCRIPT_FILE), Charset.defaultCharset(), delimiter)) {
+            long index = 0;
+            for (Advice advice : result) {
+                for (String sql : advice.getSql()) {
+                    Statement statement = new Statement(SCRIPT_FILE, ++index, sql);
+                    statement.getComments().add(advice.getReason() + " " + advice.getSource() + " " + advice.getTable() + advice.getColumns());
+                    writer.write(statement);
+                }
+            }
+        }
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(dir.resolve(REPORT_FILE), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("dialect", dialect.getClass().getName());
+            json.property("foreignKeys", foreignKeys);
+            json.property("orderColumns", orderColumns);
+            json.name("missingIndexes").beginArray();
+            for (Advice advice : result) {
+                json.beginObject();
+                json.property("table", advice.getTable());
+                json.name("columns").beginArray();
+                for (String column : advice.getColumns()) {
+                    json.value(column);
+                }
+                json.endArray();
+                json.property("reason", advice.getReason());
+                json.property("source", advice.getSource());
+                json.property("index", advice.getIndex());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the advice if the columns are not covered by an index of the
+     * table.
+     *
+     * @param result the list of the advices.
+     * @param table the table.
+     * @param columns the columns.
+     * @param reason the reason.
+     * @param source the foreign key or the collection role.
+     */
+    private void add(List<Advice> result, Table table, List<Column> columns, String reason, String source) {
+        List<String> names = names(columns);
+        if (names.isEmpty() || isCovered(table, names)) {
+            return;
+        }
+        Index index = new Index();
+        index.setTable(table);
+        index.setName(Constraint.generateName(PREFIX, table, columns));
+        for (Column column : columns) {
+            index.addColumn(column);
+        }
+        String[] sql = dialect.getIndexExporter().getSqlCreateStrings(index, metadata);
+        List<String> tmp = new ArrayList<>();
+        for (Column column : columns) {
+            tmp.add(column.getName());
+        }
+        result.add(new Advice(table.getName(), tmp, reason, source, index.getName(), sql));
+        getIndexes(table).add(names);
+    }
+
+    /**
+     * Checks if the columns are the leading columns of the primary key, an
+     * index or an unique key of the table.
+     *
+     * @param table the table.
+     * @param columns the normalized column names.
+     * @return {@code true} if the columns are covered.
+     */
+    private boolean isCovered(Table table, List<String> columns) {
+        Set<String> tmp = new HashSet<>(columns);
+        for (List<String> index : getIndexes(table)) {
+            if (index.size() >= columns.size() && new HashSet<>(index.subList(0, columns.size())).equals(tmp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the existing and advised indexes of the table.
+     *
+     * @param table the table.
+     * @return the indexes of the table.
+     */
+    private List<List<String>> getIndexes(Table table) {
+        List<List<String>> result = indexes.get(table);
+        if (result == null) {
+            result = new ArrayList<>();
+            if (table.getPrimaryKey() != null) {
+                result.add(names(table.getPrimaryKey().getColumns()));
+            }
+            Iterator<Index> it = table.getIndexIterator();
+            while (it.hasNext()) {
+                result.add(names(columns(it.next().getColumnIterator())));
+            }
+            Iterator<UniqueKey> uk = table.getUniqueKeyIterator();
+            while (uk.hasNext()) {
+                result.add(names(uk.next().getColumns()));
+            }
+            indexes.put(table, result);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the table is created by the schema generation.
+     *
+     * @param table the table.
+     * @return {@code true} for the physical table.
+     */
+    private static boolean isPhysical(Table table) {
+        return table != null && table.isPhysicalTable() && !table.isAbstractUnionTable();
+    }
+
+    /**
+     * Gets the columns of the iterator.
+     *
+     * @param it the iterator of the columns and formulas.
+     * @return the list of the columns or {@code null} if the iterator contains
+     * a formula.
+     */
+    private static List<Column> columns(Iterator<?> it) {
+        List<Column> result = new ArrayList<>();
+        while (it.hasNext()) {
+            Object item = it.next();
+            if (!(item instanceof Column)) {
+                return null;
+            }
+            result.add((Column) item);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the normalized names of the columns.
+     *
+     * @param columns the columns.
+     * @return the normalized names of the columns.
+     */
+    private static List<String> names(List<?> columns) {
+        List<String> result = new ArrayList<>();
+        if (columns != null) {
+            for (Object column : columns) {
+                if (column instanceof Selectable) {
+                    result.add(((Selectable) column).getText().toLowerCase(Locale.ENGLISH));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The missing index.
+     */
+    public static class Advice {
+
+        /**
+         * The table name.
+         */
+        private final String table;
+
+        /**
+         * The column names.
+         */
+        private final List<String> columns;
+
+        /**
+         * The reason.
+         */
+        private final String reason;
+
+        /**
+         * The foreign key name or the collection role.
+         */
+        private final String source;
+
+        /**
+         * The index name.
+         */
+        private final String index;
+
+        /**
+         * The create index statements.
+         */
+        private final String[] sql;
+
+        /**
+         * The constructor.
+         *
+         * @param table the table name.
+         * @param columns the column names.
+         * @param reason the reason.
+         * @param source the foreign key name or the collection role.
+         * @param index the index name.
+         * @param sql the create index statements.
+         */
+        Advice(String table, List<String> columns, String reason, String source, String index, String[] sql) {
+            this.table = table;
+            this.columns = columns;
+            this.reason = reason;
+            this.source = source;
+            this.index = index;
+            this.sql = sql;
+        }
+
+        /**
+         * Gets the table name.
+         *
+         * @return the table name.
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Gets the column names.
+         *
+         * @return the column names.
+         */
+        public List<String> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        /**
+         * Gets the reason: foreign-key, join-table or order-column.
+         *
+         * @return the reason.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * Gets the foreign key name or the collection role.
+         *
+         * @return the source of the advice.
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Gets the index name.
+         *
+         * @return the index name.
+         */
+        public String getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the create index statements of the target dialect.
+         *
+         * @return the create index statements.
+         */
+        public String[] getSql() {
+            return sql.clone();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.hibernate.boot.archive.internal.UrlInputStreamAccess;
+import org.hibernate.boot.archive.scan.internal.ClassDescriptorImpl;
+import org.hibernate.boot.archive.scan.internal.MappingFileDescriptorImpl;
+import org.hibernate.boot.archive.scan.internal.PackageDescriptorImpl;
+import org.hibernate.boot.archive.scan.internal.ScanResultImpl;
+import org.hibernate.boot.archive.scan.spi.ClassDescriptor;
+import org.hibernate.boot.archive.scan.spi.MappingFileDescriptor;
+import org.hibernate.boot.archive.scan.spi.PackageDescriptor;
+import org.hibernate.boot.archive.scan.spi.ScanEnvironment;
+import org.hibernate.boot.archive.scan.spi.ScanOptions;
+import org.hibernate.boot.archive.scan.spi.ScanParameters;
+import org.hibernate.boot.archive.scan.spi.ScanResult;
+import org.hibernate.boot.archive.scan.spi.Scanner;
+import org.lorislab.maven.jpa2.index.EntityIndex;
+import org.lorislab.maven.jpa2.index.EntityIndexEntry;
+
+/**
+ * The Hibernate scanner of the entity index. The scanner returns the entries
+ * of the {@link EntityIndex} instead of the scanning of the persistence unit
+ * archives. The scan options of the persistence unit are applied to the
+ * index entries.
+ *
+ * @author Andrej Petras
+ */
+public class IndexScanner implements Scanner {
+
+    /**
+     * The Hibernate scanner property.
+     */
+    public static final String SCANNER = "hibernate.archive.scanner";
+
+    /**
+     * The entity index.
+     */
+    private final EntityIndex index;
+
+    /**
+     * The constructor.
+     *
+     * @param index the entity index.
+     */
+    public IndexScanner(EntityIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public ScanResult scan(ScanEnvironment environment, ScanOptions options, ScanParameters parameters) {
+        Set<PackageDescriptor> packages = new HashSet<>();
+        Set<ClassDescriptor> classes = new HashSet<>();
+        Set<MappingFileDescriptor> mappingFiles = new HashSet<>();
+
+        for (EntityIndexEntry entry : index.getEntries()) {
+            if (entry.getCategory() == EntityIndexEntry.Category.MAPPING_FILE) {
+                // the default orm.xml is always part of the persistence unit,
+                // the deprecated option has no replacement in Hibernate 5.0
+                if (!entry.getName().endsWith(".hbm.xml") || options.canDetectHibernateMappingFiles()) {
+                    mappingFiles.add(new MappingFileDescriptorImpl(entry.getName(), new UrlInputStreamAccess(index.getURL(entry))));
+                }
+                continue;
+            }
+            boolean detect = entry.isRoot() ? options.canDetectUnlistedClassesInRoot() : options.canDetectUnlistedClassesInNonRoot();
+            if (!detect) {
+                continue;
+            }
+            if (entry.getCategory() == EntityIndexEntry.Category.PACKAGE) {
+                packages.add(new PackageDescriptorImpl(entry.getName(), new UrlInputStreamAccess(index.getURL(entry))));
+            } else {
+                ClassDescriptor.Categorization categorization = entry.isManagedClass() ? ClassDescriptor.Categorization.MODEL : ClassDescriptor.Categorization.CONVERTER;
+                classes.add(new ClassDescriptorImpl(entry.getName(), categorization, new UrlInputStreamAccess(index.getURL(entry))));
+            }
+        }
+        return new ScanResultImpl(packages, classes, mappingFiles);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return "IndexScanner[" + index.getRoot() + "]";
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+
+/**
+ * The connection provider for the offline mode. The provider does not open
+ * any JDBC connection.
+ *
+ * @author Andrej Petras
+ */
+public class OfflineConnectionProvider implements ConnectionProvider {
+
+    /**
+     * The serial UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        throw new SQLException("The JDBC connection is not available in the offline mode.");
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        // no connection
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType) || OfflineConnectionProvider.class.isAssignableFrom(unwrapType);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (isUnwrappableAs(unwrapType)) {
+            return (T) this;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.hbm2ddl.Target;
+
+/**
+ * The offline schema export. The scripts are written by the Hibernate schema
+ * export directly from the metadata without any JDBC connection.
+ *
+ * @author Andrej Petras
+ */
+public final class OfflineSchemaExport {
+
+    /**
+     * The default constructor.
+     */
+    private OfflineSchemaExport() {
+        // empty constructor
+    }
+
+    /**
+     * Exports the schema scripts of the bootstrapped persistence unit.
+     *
+     * @param bootstrap the Hibernate bootstrap.
+     * @param scriptAction the script action.
+     * @param dropFile the drop script file.
+     * @param createFile the create script file.
+     * @param delimiter the SQL delimiter.
+     */
+    public static void export(HibernateBootstrap bootstrap, String scriptAction, Path dropFile, Path createFile, String delimiter) {
+        SchemaExport export = new SchemaExport(bootstrap.getMetadata());
+        export.setDelimiter(delimiter);
+        export.setFormat(false);
+        if ("drop".equals(scriptAction) || "drop-and-create".equals(scriptAction)) {
+            execute(export, SchemaExport.Type.DROP, dropFile);
+        }
+        if ("create".equals(scriptAction) || "drop-and-create".equals(scriptAction)) {
+            execute(export, SchemaExport.Type.CREATE, createFile);
+        }
+    }
+
+    /**
+     * Executes the schema export to the file.
+     *
+     * @param export the schema export.
+     * @param type the type of the export.
+     * @param file the output file.
+     */
+    private static void execute(SchemaExport export, SchemaExport.Type type, Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException ex) {
+            throw new RuntimeException("Error creating the directory for the file " + file, ex);
+        }
+        export.setOutputFile(file.toString());
+        // the target none writes only to the output file
+        export.execute(Target.NONE, type);
+        List<?> errors = export.getExceptions();
+        if (errors != null && !errors.isEmpty()) {
+            throw new RuntimeException("Error exporting the schema to the file " + file, (Throwable) errors.get(0));
+        }
+    }
+}
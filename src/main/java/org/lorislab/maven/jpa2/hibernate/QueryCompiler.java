@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.hibernate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Filter;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.NamedQueryDefinition;
+import org.hibernate.engine.spi.NamedSQLQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * The compiler of the named queries of the persistence unit. The session
+ * factory is built offline for the dialect of the bootstrap without the
+ * startup check of the named queries, every named query is translated to SQL
+ * by the query plan cache of the session factory. The errors of the
+ * translation are collected for every query.
+ *
+ * @author Andrej Petras
+ */
+public class QueryCompiler implements Closeable {
+
+    /**
+     * The offline session factory.
+     */
+    private final SessionFactoryImplementor factory;
+
+    /**
+     * The Hibernate bootstrap of the persistence unit.
+     */
+    private final HibernateBootstrap bootstrap;
+
+    /**
+     * The constructor.
+     *
+     * @param bootstrap the Hibernate bootstrap created with the properties of
+     * the {@link #createProperties(java.util.Map)}.
+     */
+    public QueryCompiler(HibernateBootstrap bootstrap) {
+        this.bootstrap = bootstrap;
+        this.factory = (SessionFactoryImplementor) bootstrap.getMetadata().buildSessionFactory();
+    }
+
+    /**
+     * Creates the properties of the bootstrap for the query compiler. The
+     * startup check of the named queries, the schema export and the second
+     * level cache of the session factory are disabled, the queries are
+     * compiled one by one.
+     *
+     * @param properties the offline properties.
+     * @return the properties of the query compiler.
+     */
+    public static Map<String, Object> createProperties(Map<String, Object> properties) {
+        properties.put(AvailableSettings.QUERY_STARTUP_CHECKING, "false");
+        properties.put(AvailableSettings.HBM2DDL_AUTO, "");
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+        return properties;
+    }
+
+    /**
+     * Compiles the named queries ordered by the name. The native queries are
+     * not translated.
+     *
+     * @return the compiled queries.
+     */
+    public List<CompiledQuery> compile() {
+        List<CompiledQuery> result = new ArrayList<>();
+        for (NamedQueryDefinition definition : bootstrap.getMetadata().getNamedQueryDefinitions()) {
+            CompiledQuery query = new CompiledQuery(definition.getName(), definition.getQueryString(), false);
+            try {
+                String[] sql = factory.getQueryPlanCache().getHQLQueryPlan(definition.getQueryString(), false,
+                        Collections.<String, Filter>emptyMap()).getSqlStrings();
+                query.sql.addAll(Arrays.asList(sql));
+            } catch (HibernateException | IllegalArgumentException ex) {
+                query.error = ex.getMessage();
+            }
+            result.add(query);
+        }
+        for (NamedSQLQueryDefinition definition : bootstrap.getMetadata().getNamedNativeQueryDefinitions()) {
+            CompiledQuery query = new CompiledQuery(definition.getName(), definition.getQueryString(), true);
+            query.sql.add(definition.getQueryString());
+            result.add(query);
+        }
+        Collections.sort(result, new Comparator<CompiledQuery>() {
+            @Override
+            public int compare(CompiledQuery o1, CompiledQuery o2) {
+                return o1.name.compareTo(o2.name);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Closes the session factory.
+     */
+    @Override
+    public void close() {
+        factory.close();
+    }
+
+    /**
+     * The compiled named query.
+     */
+    public static class CompiledQuery {
+
+        /**
+         * The query name.
+         */
+        private final String name;
+
+        /**
+         * The query string.
+         */
+        private final String query;
+
+        /**
+         * The native query flag.
+         */
+        private final boolean nativeQuery;
+
+        /**
+         * The SQL statements of the query.
+         */
+        private final List<String> sql = new ArrayList<>();
+
+        /**
+         * The translation error or {@code null}.
+         */
+        private String error;
+
+        /**
+         * The constructor.
+         *
+         * @param name the query name.
+         * @param query the query string.
+         * @param nativeQuery the native query flag.
+         */
+        CompiledQuery(String name, String query, boolean nativeQuery) {
+            this.name = name;
+            this.query = query;
+            this.nativeQuery = nativeQuery;
+        }
+
+        /**
+         * Gets the query name.
+         *
+         * @return the query name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the query string.
+         *
+         * @return the query string.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Returns {@code true} for the native query.
+         *
+         * @return the native query flag.
+         */
+        public boolean isNativeQuery() {
+            return nativeQuery;
+        }
+
+        /**
+         * Gets the SQL statements of the query. The polymorphic query has one
+         * statement for every entity.
+         *
+         * @return the SQL statements of the query.
+         */
+        public List<String> getSql() {
+            return Collections.unmodifiableList(sql);
+        }
+
+        /**
+         * Gets the translation error.
+         *
+         * @return the translation error or {@code null}.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Returns {@code true} if the query is translated without the error.
+         *
+         * @return {@code true} for the valid query.
+         */
+        public boolean isValid() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.index;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The class file information read by the {@link ClassFileReader}.
+ *
+ * @author Andrej Petras
+ */
+public class ClassFileInfo {
+
+    /**
+     * The class name.
+     */
+    private final String name;
+
+    /**
+     * The super class name.
+     */
+    private final String superName;
+
+    /**
+     * The runtime visible annotations of the class.
+     */
+    private final Set<String> annotations = new LinkedHashSet<>();
+
+    /**
+     * The classes referenced by the class.
+     */
+    private final Set<String> references = new LinkedHashSet<>();
+
+    /**
+     * The constructor.
+     *
+     * @param name the class name.
+     * @param superName the super class name.
+     */
+    public ClassFileInfo(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    /**
+     * Gets the class name.
+     *
+     * @return the class name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the super class name.
+     *
+     * @return the super class name or {@code null} for the
+     * {@code java.lang.Object} class.
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * Gets the class names of the runtime visible annotations of the class.
+     *
+     * @return the set of the annotation class names.
+     */
+    public Set<String> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Gets the names of the classes referenced by the class. The references
+     * contain the super class, the interfaces, the types of the fields and
+     * methods including the generic types, the annotations and the classes
+     * used in the code.
+     *
+     * @return the set of the referenced class names.
+     */
+    public Set<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * Returns {@code true} if the class is annotated with the annotation.
+     *
+     * @param annotation the annotation class name.
+     * @return {@code true} if the class is annotated with the annotation.
+     */
+    public boolean hasAnnotation(String annotation) {
+        return annotations.contains(annotation);
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The class file reader. The reader reads the constant pool, the type
+ * descriptors and the runtime visible annotations of the class directly from
+ * the class file without loading the class.
+ *
+ * @author Andrej Petras
+ */
+public final class ClassFileReader {
+
+    /**
+     * The class file magic number.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * The runtime visible annotations attribute.
+     */
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    /**
+     * The generic signature attribute.
+     */
+    private static final String SIGNATURE = "Signature";
+
+    /**
+     * The UTF8 constant pool tag.
+     */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /**
+     * The integer constant pool tag.
+     */
+    private static final int CONSTANT_INTEGER = 3;
+
+    /**
+     * The float constant pool tag.
+     */
+    private static final int CONSTANT_FLOAT = 4;
+
+    /**
+     * The long constant pool tag.
+     */
+    private static final int CONSTANT_LONG = 5;
+
+    /**
+     * The double constant pool tag.
+     */
+    private static final int CONSTANT_DOUBLE = 6;
+
+    /**
+     * The class constant pool tag.
+     */
+    private static final int CONSTANT_CLASS = 7;
+
+    /**
+     * The string constant pool tag.
+     */
+    private static final int CONSTANT_STRING = 8;
+
+    /**
+     * The fieldref constant pool tag.
+     */
+    private static final int CONSTANT_FIELDREF = 9;
+
+    /**
+     * The methodref constant pool tag.
+     */
+    private static final int CONSTANT_METHODREF = 10;
+
+    /**
+     * The interface methodref constant pool tag.
+     */
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    /**
+     * The name and type constant pool tag.
+     */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * The method handle constant pool tag.
+     */
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+
+    /**
+     * The method type constant pool tag.
+     */
+    private static final int CONSTANT_METHOD_TYPE = 16;
+
+    /**
+     * The dynamic constant pool tag.
+     */
+    private static final int CONSTANT_DYNAMIC = 17;
+
+    /**
+     * The invoke dynamic constant pool tag.
+     */
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+
+    /**
+     * The module constant pool tag.
+     */
+    private static final int CONSTANT_MODULE = 19;
+
+    /**
+     * The package constant pool tag.
+     */
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * The data input of the class file.
+     */
+    private final DataInputStream in;
+
+    /**
+     * The UTF8 constants of the constant pool.
+     */
+    private String[] strings;
+
+    /**
+     * The name index of the class constants of the constant pool.
+     */
+    private int[] classes;
+
+    /**
+     * The constructor.
+     *
+     * @param in the class file input stream.
+     */
+    private ClassFileReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Reads the class file.
+     *
+     * @param in the class file input stream.
+     * @return the class file information.
+     * @throws IOException if the class file could not be read.
+     */
+    public static ClassFileInfo read(InputStream in) throws IOException {
+        return new ClassFileReader(in).read();
+    }
+
+    /**
+     * Reads the class file.
+     *
+     * @return the class file information.
+     * @throws IOException if the class file could not be read.
+     */
+    private ClassFileInfo read() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not valid class file.");
+        }
+        // minor and major version
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        readConstantPool();
+
+        // access flags
+        in.readUnsignedShort();
+        String name = getClassName(in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        ClassFileInfo result = new ClassFileInfo(name, superIndex == 0 ? null : getClassName(superIndex));
+
+        // the interfaces are in the class constants
+        skip(2 * in.readUnsignedShort());
+        readMembers(result);
+        readMembers(result);
+        readAttributes(result, true);
+
+        for (int i = 1; i < classes.length; i++) {
+            if (classes[i] != 0) {
+                String tmp = strings[classes[i]];
+                if (tmp.startsWith("[")) {
+                    addTypes(result, tmp);
+                } else {
+                    addReference(result, tmp);
+                }
+            }
+        }
+        result.getReferences().remove(name);
+        return result;
+    }
+
+    /**
+     * Reads the constant pool. Only the UTF8 and class constants are kept.
+     *
+     * @throws IOException if the class file could not be read.
+     */
+    private void readConstantPool() throws IOException {
+        int count = in.readUnsignedShort();
+        strings = new String[count];
+        classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    strings[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classes[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skip(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // the long and double constants take two entries
+                    skip(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Not supported constant pool tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Reads the fields or methods of the class.
+     *
+     * @param result the class file information.
+     * @throws IOException if the class file could not be read.
+     */
+    private void readMembers(ClassFileInfo result) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // access flags and name
+            skip(4);
+            addTypes(result, strings[in.readUnsignedShort()]);
+            readAttributes(result, false);
+        }
+    }
+
+    /**
+     * Reads the attributes of the class, field or method.
+     *
+     * @param result the class file information.
+     * @param type {@code true} for the class attributes.
+     * @throws IOException if the class file could not be read.
+     */
+    private void readAttributes(ClassFileInfo result, boolean type) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String attribute = strings[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attribute)) {
+                int size = in.readUnsignedShort();
+                for (int j = 0; j < size; j++) {
+                    String annotation = strings[in.readUnsignedShort()];
+                    if (type) {
+                        result.getAnnotations().add(toClassName(annotation));
+                    }
+                    addTypes(result, annotation);
+                    readElementValuePairs(result);
+                }
+            } else if (SIGNATURE.equals(attribute)) {
+                addTypes(result, strings[in.readUnsignedShort()]);
+            } else {
+                skip(length);
+            }
+        }
+    }
+
+    /**
+     * Reads the element value pairs of the annotation.
+     *
+     * @param result the class file information.
+     * @throws IOException if the class file could not be read.
+     */
+    private void readElementValuePairs(ClassFileInfo result) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            skip(2);
+            readElementValue(result);
+        }
+    }
+
+    /**
+     * Reads the element value of the annotation. Only the referenced types
+     * are kept.
+     *
+     * @param result the class file information.
+     * @throws IOException if the class file could not be read.
+     */
+    private void readElementValue(ClassFileInfo result) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                addTypes(result, strings[in.readUnsignedShort()]);
+                skip(2);
+                break;
+            case 'c':
+                addTypes(result, strings[in.readUnsignedShort()]);
+                break;
+            case '@':
+                addTypes(result, strings[in.readUnsignedShort()]);
+                readElementValuePairs(result);
+                break;
+            case '[':
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    readElementValue(result);
+                }
+                break;
+            default:
+                // constant value
+                skip(2);
+        }
+    }
+
+    /**
+     * Adds the class types of the type descriptor or generic signature to the
+     * references. The formal type parameters of the signature are skipped.
+     *
+     * @param result the class file information.
+     * @param signature the type descriptor or generic signature.
+     */
+    private static void addTypes(ClassFileInfo result, String signature) {
+        int length = signature.length();
+        int i = 0;
+        if (length > 0 && signature.charAt(0) == '<') {
+            int depth = 0;
+            do {
+                char c = signature.charAt(i++);
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>') {
+                    depth--;
+                }
+            } while (depth > 0 && i < length);
+        }
+        while (i < length) {
+            char c = signature.charAt(i);
+            if (c == 'L') {
+                int end = i + 1;
+                while (end < length && signature.charAt(end) != ';' && signature.charAt(end) != '<') {
+                    end++;
+                }
+                addReference(result, signature.substring(i + 1, end));
+                i = end;
+            } else if (c == 'T' || c == '.') {
+                // the type variable or the inner class of the generic type
+                while (i < length && signature.charAt(i) != ';' && signature.charAt(i) != '<') {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Adds the internal class name to the references.
+     *
+     * @param result the class file information.
+     * @param internalName the internal class name.
+     */
+    private static void addReference(ClassFileInfo result, String internalName) {
+        if (!internalName.isEmpty()) {
+            result.getReferences().add(internalName.replace('/', '.'));
+        }
+    }
+
+    /**
+     * Skips the bytes of the class file.
+     *
+     * @param length the number of bytes.
+     * @throws IOException if the class file could not be read.
+     */
+    private void skip(int length) throws IOException {
+        int tmp = length;
+        while (tmp > 0) {
+            int skipped = in.skipBytes(tmp);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of the class file.");
+            }
+            tmp = tmp - skipped;
+        }
+    }
+
+    /**
+     * Gets the class name of the class constant.
+     *
+     * @param index the index of the class constant.
+     * @return the class name.
+     */
+    private String getClassName(int index) {
+        return strings[classes[index]].replace('/', '.');
+    }
+
+    /**
+     * Converts the type descriptor to the class name.
+     *
+     * @param descriptor the type descriptor, for example
+     * {@code Ljavax/persistence/Entity;}
+     * @return the class name.
+     */
+    private static String toClassName(String descriptor) {
+        String tmp = descriptor;
+        if (tmp.startsWith("L") && tmp.endsWith(";")) {
+            tmp = tmp.substring(1, tmp.length() - 1);
+        }
+        return tmp.replace('/', '.');
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The classpath pruner. The archives without any JPA relevant content are
+ * removed from the classpath of the persistence unit. The archive is kept if
+ * it is the jar file of the persistence unit, contains the persistence.xml,
+ * the mapping files or the persistence provider service, or if it contains
+ * the class referenced by the managed classes. The references are resolved
+ * transitively from the class files without loading the classes.
+ *
+ * @author Andrej Petras
+ */
+public final class ClasspathPruner {
+
+    /**
+     * The persistence provider service file.
+     */
+    public static final String PROVIDER_SERVICE = "META-INF/services/javax.persistence.spi.PersistenceProvider";
+
+    /**
+     * The persistence.xml file.
+     */
+    private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+
+    /**
+     * The default JPA mapping file.
+     */
+    private static final String ORM_XML = "META-INF/orm.xml";
+
+    /**
+     * The hibernate mapping file suffix.
+     */
+    private static final String HBM_XML = ".hbm.xml";
+
+    /**
+     * The class file suffix.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * The classpath entries.
+     */
+    private final List<Path> classpath;
+
+    /**
+     * The kept classpath entries.
+     */
+    private final Set<Path> kept = new HashSet<>();
+
+    /**
+     * The open archives.
+     */
+    private final Map<Path, ZipFile> archives = new HashMap<>();
+
+    /**
+     * The archives of the class files.
+     */
+    private final Map<String, Path> resources = new HashMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param classpath the classpath entries.
+     */
+    private ClasspathPruner(List<Path> classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Prunes the classpath of the persistence unit. The directories are
+     * always kept.
+     *
+     * @param classpath the de-duplicated classpath entries.
+     * @param jarFiles the jar files of the persistence unit.
+     * @param mappingFiles the mapping files of the persistence unit.
+     * @param classNames the managed classes and converters of the persistence
+     * unit.
+     * @return the pruned classpath entries in the original order.
+     */
+    public static List<Path> prune(List<Path> classpath, Collection<Path> jarFiles, Collection<String> mappingFiles, Collection<String> classNames) {
+        ClasspathPruner pruner = new ClasspathPruner(classpath);
+        try {
+            pruner.index(jarFiles, mappingFiles);
+            pruner.resolve(classNames);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error pruning the classpath.", ex);
+        } finally {
+            pruner.close();
+        }
+        List<Path> result = new ArrayList<>();
+        for (Path path : classpath) {
+            if (pruner.kept.contains(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the class files of the classpath entries and keeps the
+     * directories and the archives with the JPA resources.
+     *
+     * @param jarFiles the jar files of the persistence unit.
+     * @param mappingFiles the mapping files of the persistence unit.
+     * @throws IOException if the archive could not be read.
+     */
+    private void index(Collection<Path> jarFiles, Collection<String> mappingFiles) throws IOException {
+        for (Path path : classpath) {
+            if (Files.isDirectory(path)) {
+                kept.add(path);
+            } else if (Files.isRegularFile(path)) {
+                ZipFile zip = new ZipFile(path.toFile());
+                archives.put(path, zip);
+                if (jarFiles.contains(path)) {
+                    kept.add(path);
+                }
+                Enumeration<? extends ZipEntry> items = zip.entries();
+                while (items.hasMoreElements()) {
+                    String name = items.nextElement().getName();
+                    if (name.endsWith(CLASS_SUFFIX)) {
+                        // the first archive on the classpath wins
+                        if (!resources.containsKey(name)) {
+                            resources.put(name, path);
+                        }
+                    } else if (PERSISTENCE_XML.equals(name) || ORM_XML.equals(name) || PROVIDER_SERVICE.equals(name)
+                            || name.endsWith(HBM_XML) || mappingFiles.contains(name)) {
+                        kept.add(path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the classes transitively referenced by the managed classes and
+     * keeps their archives.
+     *
+     * @param classNames the managed classes and converters.
+     * @throws IOException if the class file could not be read.
+     */
+    private void resolve(Collection<String> classNames) throws IOException {
+        Set<String> visited = new HashSet<>(classNames);
+        Deque<String> queue = new ArrayDeque<>(new LinkedHashSet<>(classNames));
+        while (!queue.isEmpty()) {
+            ClassFileInfo info = read(queue.poll());
+            if (info != null) {
+                for (String reference : info.getReferences()) {
+                    if (visited.add(reference)) {
+                        queue.add(reference);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the class file from the classpath and keeps its archive.
+     *
+     * @param className the class name.
+     * @return the class file information or {@code null} if the class is not
+     * on the classpath.
+     * @throws IOException if the class file could not be read.
+     */
+    private ClassFileInfo read(String className) throws IOException {
+        String name = className.replace('.', '/') + CLASS_SUFFIX;
+        for (Path path : classpath) {
+            if (Files.isDirectory(path)) {
+                Path file = path.resolve(name);
+                if (Files.isRegularFile(file)) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        return ClassFileReader.read(in);
+                    }
+                }
+            } else if (path.equals(resources.get(name))) {
+                kept.add(path);
+                ZipFile zip = archives.get(path);
+                try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+                    return ClassFileReader.read(in);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes the open archives.
+     */
+    private void close() {
+        for (ZipFile zip : archives.values()) {
+            try {
+                zip.close();
+            } catch (IOException ex) {
+                // ignore the error, the archive is only read
+            }
+        }
+        archives.clear();
+    }
+}
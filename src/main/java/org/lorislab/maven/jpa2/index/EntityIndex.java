@@ -0,0 +1,366 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entity index of the persistence unit. The index contains the entities,
+ * embeddable classes, mapped super classes, converters, packages and mapping
+ * files of the root of the persistence unit and of the jar files. The class
+ * files are read by the {@link ClassFileReader} without loading the classes.
+ *
+ * @author Andrej Petras
+ */
+public class EntityIndex {
+
+    /**
+     * The entity annotation.
+     */
+    private static final String ENTITY = "javax.persistence.Entity";
+
+    /**
+     * The embeddable annotation.
+     */
+    private static final String EMBEDDABLE = "javax.persistence.Embeddable";
+
+    /**
+     * The mapped super class annotation.
+     */
+    private static final String MAPPED_SUPERCLASS = "javax.persistence.MappedSuperclass";
+
+    /**
+     * The converter annotation.
+     */
+    private static final String CONVERTER = "javax.persistence.Converter";
+
+    /**
+     * The default JPA mapping file.
+     */
+    private static final String ORM_XML = "META-INF/orm.xml";
+
+    /**
+     * The hibernate mapping file suffix.
+     */
+    private static final String HBM_XML = ".hbm.xml";
+
+    /**
+     * The class file suffix.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * The package info class file.
+     */
+    private static final String PACKAGE_INFO = "package-info.class";
+
+    /**
+     * The index file header.
+     */
+    private static final String HEADER = "# jpa2-maven-plugin entity index";
+
+    /**
+     * The root of the persistence unit.
+     */
+    private final Path root;
+
+    /**
+     * The jar files of the persistence unit.
+     */
+    private final List<Path> archives;
+
+    /**
+     * The index entries.
+     */
+    private final List<EntityIndexEntry> entries;
+
+    /**
+     * The constructor.
+     *
+     * @param root the root of the persistence unit.
+     * @param archives the jar files of the persistence unit.
+     * @param entries the index entries.
+     */
+    private EntityIndex(Path root, List<Path> archives, List<EntityIndexEntry> entries) {
+        this.root = root;
+        this.archives = archives;
+        this.entries = entries;
+    }
+
+    /**
+     * Creates the entity index of the persistence unit.
+     *
+     * @param root the root directory of the persistence unit.
+     * @param archives the jar files of the persistence unit.
+     * @return the entity index.
+     */
+    public static EntityIndex create(Path root, List<Path> archives) {
+        List<EntityIndexEntry> result = new ArrayList<>();
+        indexDirectory(root, null, result);
+        for (Path archive : archives) {
+            if (Files.isDirectory(archive)) {
+                indexDirectory(archive, archive, result);
+            } else {
+                indexArchive(archive, result);
+            }
+        }
+        Collections.sort(result);
+        return new EntityIndex(root, new ArrayList<>(archives), result);
+    }
+
+    /**
+     * Loads the entity index from the index file.
+     *
+     * @param root the root directory of the persistence unit.
+     * @param file the index file.
+     * @return the entity index.
+     */
+    public static EntityIndex load(Path root, Path file) {
+        List<EntityIndexEntry> result = new ArrayList<>();
+        List<Path> archives = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] items = line.split("\t");
+                Path archive = items.length > 2 ? Paths.get(items[2]) : null;
+                if (archive != null && !archives.contains(archive)) {
+                    archives.add(archive);
+                }
+                result.add(new EntityIndexEntry(EntityIndexEntry.Category.valueOf(items[0]), items[1], archive));
+            }
+        } catch (IOException | RuntimeException ex) {
+            throw new RuntimeException("Error reading the entity index " + file, ex);
+        }
+        return new EntityIndex(root, archives, result);
+    }
+
+    /**
+     * Saves the entity index to the index file. The file is not changed if
+     * the index is not changed.
+     *
+     * @param file the index file.
+     */
+    public void save(Path file) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n');
+        for (EntityIndexEntry entry : entries) {
+            sb.append(entry.getCategory()).append('\t').append(entry.getName());
+            if (!entry.isRoot()) {
+                sb.append('\t').append(entry.getArchive());
+            }
+            sb.append('\n');
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            if (Files.isRegularFile(file) && Arrays.equals(data, Files.readAllBytes(file))) {
+                return;
+            }
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, data);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error writing the entity index " + file, ex);
+        }
+    }
+
+    /**
+     * Gets the root directory of the persistence unit.
+     *
+     * @return the root directory of the persistence unit.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the jar files of the persistence unit.
+     *
+     * @return the list of the jar files.
+     */
+    public List<Path> getArchives() {
+        return Collections.unmodifiableList(archives);
+    }
+
+    /**
+     * Gets the index entries.
+     *
+     * @return the list of the index entries.
+     */
+    public List<EntityIndexEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Gets the names of the managed classes and converters.
+     *
+     * @return the list of the class names.
+     */
+    public List<String> getClassNames() {
+        List<String> result = new ArrayList<>();
+        for (EntityIndexEntry entry : entries) {
+            if (entry.isManagedClass() || entry.getCategory() == EntityIndexEntry.Category.CONVERTER) {
+                result.add(entry.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the URL of the index entry.
+     *
+     * @param entry the index entry.
+     * @return the URL of the index entry.
+     */
+    public URL getURL(EntityIndexEntry entry) {
+        try {
+            if (entry.isRoot()) {
+                return root.resolve(entry.getResourceName()).toUri().toURL();
+            }
+            if (Files.isDirectory(entry.getArchive())) {
+                return entry.getArchive().resolve(entry.getResourceName()).toUri().toURL();
+            }
+            return new URL("jar:" + entry.getArchive().toUri() + "!/" + entry.getResourceName());
+        } catch (IOException ex) {
+            throw new RuntimeException("Error creating the URL of the index entry " + entry, ex);
+        }
+    }
+
+    /**
+     * Indexes the directory.
+     *
+     * @param dir the directory.
+     * @param archive the archive of the entries or {@code null} for the root
+     * of the persistence unit.
+     * @param result the list of the index entries.
+     */
+    private static void indexDirectory(Path dir, Path archive, List<EntityIndexEntry> result) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(dir)) {
+            Iterator<Path> iter = stream.iterator();
+            while (iter.hasNext()) {
+                Path path = iter.next();
+                if (Files.isRegularFile(path)) {
+                    String name = dir.relativize(path).toString().replace('\\', '/');
+                    if (name.endsWith(CLASS_SUFFIX)) {
+                        try (InputStream in = Files.newInputStream(path)) {
+                            indexClass(name, in, archive, result);
+                        }
+                    } else {
+                        indexResource(name, archive, result);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Error indexing the directory " + dir, ex);
+        }
+    }
+
+    /**
+     * Indexes the archive.
+     *
+     * @param archive the archive.
+     * @param result the list of the index entries.
+     */
+    private static void indexArchive(Path archive, List<EntityIndexEntry> result) {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            Enumeration<? extends ZipEntry> items = zip.entries();
+            while (items.hasMoreElements()) {
+                ZipEntry item = items.nextElement();
+                if (!item.isDirectory()) {
+                    String name = item.getName();
+                    if (name.endsWith(CLASS_SUFFIX)) {
+                        try (InputStream in = zip.getInputStream(item)) {
+                            indexClass(name, in, archive, result);
+                        }
+                    } else {
+                        indexResource(name, archive, result);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Error indexing the archive " + archive, ex);
+        }
+    }
+
+    /**
+     * Indexes the class file.
+     *
+     * @param name the resource name of the class file.
+     * @param in the class file input stream.
+     * @param archive the archive of the class file.
+     * @param result the list of the index entries.
+     * @throws IOException if the class file could not be read.
+     */
+    private static void indexClass(String name, InputStream in, Path archive, List<EntityIndexEntry> result) throws IOException {
+        if (name.endsWith(PACKAGE_INFO)) {
+            int index = name.lastIndexOf('/');
+            if (index > 0) {
+                result.add(new EntityIndexEntry(EntityIndexEntry.Category.PACKAGE, name.substring(0, index).replace('/', '.'), archive));
+            }
+            return;
+        }
+        if (name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+            return;
+        }
+        ClassFileInfo info = ClassFileReader.read(in);
+        EntityIndexEntry.Category category = null;
+        if (info.hasAnnotation(ENTITY)) {
+            category = EntityIndexEntry.Category.ENTITY;
+        } else if (info.hasAnnotation(EMBEDDABLE)) {
+            category = EntityIndexEntry.Category.EMBEDDABLE;
+        } else if (info.hasAnnotation(MAPPED_SUPERCLASS)) {
+            category = EntityIndexEntry.Category.MAPPED_SUPERCLASS;
+        } else if (info.hasAnnotation(CONVERTER)) {
+            category = EntityIndexEntry.Category.CONVERTER;
+        }
+        if (category != null) {
+            result.add(new EntityIndexEntry(category, info.getName(), archive));
+        }
+    }
+
+    /**
+     * Indexes the mapping file.
+     *
+     * @param name the resource name.
+     * @param archive the archive of the resource.
+     * @param result the list of the index entries.
+     */
+    private static void indexResource(String name, Path archive, List<EntityIndexEntry> result) {
+        if (ORM_XML.equals(name) || name.endsWith(HBM_XML)) {
+            result.add(new EntityIndexEntry(EntityIndexEntry.Category.MAPPING_FILE, name, archive));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.index;
+
+import java.nio.file.Path;
+
+/**
+ * The entry of the entity index.
+ *
+ * @author Andrej Petras
+ */
+public class EntityIndexEntry implements Comparable<EntityIndexEntry> {
+
+    /**
+     * The category of the entry.
+     */
+    public enum Category {
+
+        /**
+         * The class annotated with the {@code javax.persistence.Entity}.
+         */
+        ENTITY,
+        /**
+         * The class annotated with the {@code javax.persistence.Embeddable}.
+         */
+        EMBEDDABLE,
+        /**
+         * The class annotated with the
+         * {@code javax.persistence.MappedSuperclass}.
+         */
+        MAPPED_SUPERCLASS,
+        /**
+         * The class annotated with the {@code javax.persistence.Converter}.
+         */
+        CONVERTER,
+        /**
+         * The package with the {@code package-info} class.
+         */
+        PACKAGE,
+        /**
+         * The {@code META-INF/orm.xml} or the {@code *.hbm.xml} mapping file.
+         */
+        MAPPING_FILE;
+    }
+
+    /**
+     * The category of the entry.
+     */
+    private final Category category;
+
+    /**
+     * The class, package or mapping file name.
+     */
+    private final String name;
+
+    /**
+     * The archive of the entry or {@code null} for the root of the
+     * persistence unit.
+     */
+    private final Path archive;
+
+    /**
+     * The constructor.
+     *
+     * @param category the category of the entry.
+     * @param name the class, package or mapping file name.
+     * @param archive the archive of the entry or {@code null} for the root of
+     * the persistence unit.
+     */
+    public EntityIndexEntry(Category category, String name, Path archive) {
+        this.category = category;
+        this.name = name;
+        this.archive = archive;
+    }
+
+    /**
+     * Gets the category of the entry.
+     *
+     * @return the category of the entry.
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the class, package or mapping file name.
+     *
+     * @return the class, package or mapping file name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the archive of the entry.
+     *
+     * @return the archive of the entry or {@code null} for the root of the
+     * persistence unit.
+     */
+    public Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * Returns {@code true} if the entry is in the root of the persistence
+     * unit.
+     *
+     * @return {@code true} if the entry is in the root of the persistence
+     * unit.
+     */
+    public boolean isRoot() {
+        return archive == null;
+    }
+
+    /**
+     * Returns {@code true} if the entry is the managed class of the
+     * persistence unit.
+     *
+     * @return {@code true} if the entry is the managed class.
+     */
+    public boolean isManagedClass() {
+        return category == Category.ENTITY || category == Category.EMBEDDABLE || category == Category.MAPPED_SUPERCLASS;
+    }
+
+    /**
+     * Gets the resource name of the entry in the archive.
+     *
+     * @return the resource name of the entry.
+     */
+    public String getResourceName() {
+        switch (category) {
+            case MAPPING_FILE:
+                return name;
+            case PACKAGE:
+                return name.replace('.', '/') + "/package-info.class";
+            default:
+                return name.replace('.', '/') + ".class";
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int compareTo(EntityIndexEntry other) {
+        String tmp1 = archive == null ? "" : archive.toString();
+        String tmp2 = other.archive == null ? "" : other.archive.toString();
+        int result = tmp1.compareTo(tmp2);
+        if (result == 0) {
+            result = name.compareTo(other.name);
+        }
+        if (result == 0) {
+            result = category.compareTo(other.category);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return category + " " + name + (archive == null ? "" : " " + archive);
+    }
+}
@@ -36,9 +36,13 @@ public abstract class PersistenceModel<T> {
     public void loadPersistence(Path path) {
         persistence = XMLUtil.loadObject(path, clazz); 
     }
+
+    public T getPersistence() {
+        return persistence;
+    }
     
     public List<String> getPersistenceUnits() {
-        return getPersistenceUnits(persistence);
+        return getPersistenceUnits(getPersistence());
     }
     
     protected abstract List<String> getPersistenceUnits(T persistence);
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Andrej_Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.lorislab.maven.jpa2.persistence.jpa21.Persistence;
+import org.lorislab.maven.jpa2.util.XMLUtil;
+
+/**
+ * The streaming persistence model. The version and the persistence units are
+ * read in one StAX pass. The JAXB model is loaded only if the full object
+ * graph is needed.
+ *
+ * @author Andrej_Petras
+ */
+public class PersistenceStreamModel extends PersistenceModel<Persistence> {
+
+    /**
+     * The supported version of the persistence.xml.
+     */
+    private static final String SUPPORTED_VERSION = new PersistenceModel21().getVersion();
+
+    /**
+     * The persistence.xml file.
+     */
+    private Path path;
+
+    /**
+     * The version of the persistence.xml.
+     */
+    private String version;
+
+    /**
+     * The persistence units.
+     */
+    private final Map<String, PersistenceUnitDefinition> units = new LinkedHashMap<>();
+
+    /**
+     * The JAXB persistence model.
+     */
+    private PersistenceModel21 model;
+
+    /**
+     * The default constructor.
+     */
+    public PersistenceStreamModel() {
+        super(Persistence.class);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void loadPersistence(Path path) {
+        this.path = path;
+        units.clear();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+            XMLStreamReader reader = XMLUtil.createXMLStreamReader(inputStream);
+            try {
+                read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Error reading the persistence.xml " + path, ex);
+        }
+    }
+
+    /**
+     * Reads the persistence.xml. The version is checked at the
+     * {@code persistence} element and the elements of the persistence unit
+     * are checked to be inside of the {@code persistence-unit} element.
+     *
+     * @param reader the XML stream reader.
+     * @throws XMLStreamException if the reading fails or the persistence.xml
+     * is not valid.
+     */
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        PersistenceUnitDefinition unit = null;
+        for (int event; (event = reader.next()) != XMLStreamConstants.END_DOCUMENT;) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String tmp = reader.getLocalName();
+                switch (tmp) {
+                    case "persistence":
+                        version = reader.getAttributeValue(null, "version");
+                        if (!SUPPORTED_VERSION.equals(version)) {
+                            throw new XMLStreamException("Missing the persistence.xml modifier for the version: " + version, reader.getLocation());
+                        }
+                        break;
+                    case "persistence-unit":
+                        unit = new PersistenceUnitDefinition(reader.getAttributeValue(null, "name"), reader.getAttributeValue(null, "transaction-type"));
+                        break;
+                    case "provider":
+                        checkUnit(reader, unit).setProvider(text(reader));
+                        break;
+                    case "class":
+                        checkUnit(reader, unit).getClasses().add(text(reader));
+                        break;
+                    case "mapping-file":
+                        checkUnit(reader, unit).getMappingFiles().add(text(reader));
+                        break;
+                    case "jar-file":
+                        checkUnit(reader, unit).getJarFiles().add(text(reader));
+                        break;
+                    case "exclude-unlisted-classes":
+                        checkUnit(reader, unit);
+                        String value = text(reader);
+                        unit.setExcludeUnlistedClasses(value.isEmpty() || Boolean.valueOf(value));
+                        break;
+                    case "shared-cache-mode":
+                        checkUnit(reader, unit).setSharedCacheMode(text(reader));
+                        break;
+                    case "validation-mode":
+                        checkUnit(reader, unit).setValidationMode(text(reader));
+                        break;
+                    case "property":
+                        checkUnit(reader, unit).getProperties().put(reader.getAttributeValue(null, "name"), reader.getAttributeValue(null, "value"));
+                        break;
+                    default:
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "persistence-unit".equals(reader.getLocalName())) {
+                units.put(checkUnit(reader, unit).getName(), unit);
+                unit = null;
+            }
+        }
+    }
+
+    /**
+     * Checks that the current element is inside of the
+     * {@code persistence-unit} element.
+     *
+     * @param reader the XML stream reader.
+     * @param unit the current persistence unit or {@code null}.
+     * @return the current persistence unit.
+     * @throws XMLStreamException if the element is outside of the
+     * {@code persistence-unit} element.
+     */
+    private static PersistenceUnitDefinition checkUnit(XMLStreamReader reader, PersistenceUnitDefinition unit) throws XMLStreamException {
+        if (unit == null) {
+            throw new XMLStreamException("The element " + reader.getLocalName() + " is outside of the persistence-unit element.", reader.getLocation());
+        }
+        return unit;
+    }
+
+    /**
+     * Reads the trimmed element text.
+     *
+     * @param reader the XML stream reader.
+     * @return the trimmed element text.
+     * @throws XMLStreamException if the reading fails.
+     */
+    private static String text(XMLStreamReader reader) throws XMLStreamException {
+        return reader.getElementText().trim();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<String> getPersistenceUnits() {
+        return new ArrayList<>(units.keySet());
+    }
+
+    /**
+     * Gets the persistence unit definition.
+     *
+     * @param name the name of the persistence unit.
+     * @return the persistence unit definition or {@code null} if the
+     * persistence.xml does not contain the persistence unit.
+     */
+    public PersistenceUnitDefinition getPersistenceUnit(String name) {
+        return units.get(name);
+    }
+
+    /**
+     * Gets all persistence unit definitions.
+     *
+     * @return the list of the persistence unit definitions.
+     */
+    public List<PersistenceUnitDefinition> getPersistenceUnitDefinitions() {
+        return Collections.unmodifiableList(new ArrayList<>(units.values()));
+    }
+
+    /**
+     * Gets the full JAXB object graph of the persistence.xml. The JAXB model
+     * is loaded at the first call.
+     *
+     * @return the persistence object.
+     */
+    @Override
+    public synchronized Persistence getPersistence() {
+        if (model == null) {
+            PersistenceModel21 tmp = new PersistenceModel21();
+            tmp.loadPersistence(path);
+            model = tmp;
+        }
+        return model.getPersistence();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected List<String> getPersistenceUnits(Persistence persistence) {
+        return getPersistenceUnits();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Andrej_Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The persistence unit definition from the persistence.xml.
+ *
+ * @author Andrej_Petras
+ */
+public class PersistenceUnitDefinition {
+
+    /**
+     * The name of the persistence unit.
+     */
+    private final String name;
+
+    /**
+     * The transaction type.
+     */
+    private final String transactionType;
+
+    /**
+     * The persistence provider.
+     */
+    private String provider;
+
+    /**
+     * The list of the managed classes.
+     */
+    private final List<String> classes = new ArrayList<>();
+
+    /**
+     * The list of the mapping files.
+     */
+    private final List<String> mappingFiles = new ArrayList<>();
+
+    /**
+     * The list of the jar files.
+     */
+    private final List<String> jarFiles = new ArrayList<>();
+
+    /**
+     * The exclude unlisted classes flag.
+     */
+    private Boolean excludeUnlistedClasses;
+
+    /**
+     * The shared cache mode.
+     */
+    private String sharedCacheMode;
+
+    /**
+     * The validation mode.
+     */
+    private String validationMode;
+
+    /**
+     * The properties.
+     */
+    private final Map<String, String> properties = new LinkedHashMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param name the name of the persistence unit.
+     * @param transactionType the transaction type.
+     */
+    public PersistenceUnitDefinition(String name, String transactionType) {
+        this.name = name;
+        this.transactionType = transactionType;
+    }
+
+    /**
+     * Gets the name of the persistence unit.
+     *
+     * @return the name of the persistence unit.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the transaction type.
+     *
+     * @return the transaction type.
+     */
+    public String getTransactionType() {
+        return transactionType;
+    }
+
+    /**
+     * Gets the persistence provider.
+     *
+     * @return the persistence provider.
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * Sets the persistence provider.
+     *
+     * @param provider the persistence provider.
+     */
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Gets the list of the managed classes.
+     *
+     * @return the list of the managed classes.
+     */
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets the list of the mapping files.
+     *
+     * @return the list of the mapping files.
+     */
+    public List<String> getMappingFiles() {
+        return mappingFiles;
+    }
+
+    /**
+     * Gets the list of the jar files.
+     *
+     * @return the list of the jar files.
+     */
+    public List<String> getJarFiles() {
+        return jarFiles;
+    }
+
+    /**
+     * Gets the exclude unlisted classes flag.
+     *
+     * @return the exclude unlisted classes flag.
+     */
+    public Boolean getExcludeUnlistedClasses() {
+        return excludeUnlistedClasses;
+    }
+
+    /**
+     * Sets the exclude unlisted classes flag.
+     *
+     * @param excludeUnlistedClasses the exclude unlisted classes flag.
+     */
+    public void setExcludeUnlistedClasses(Boolean excludeUnlistedClasses) {
+        this.excludeUnlistedClasses = excludeUnlistedClasses;
+    }
+
+    /**
+     * Gets the shared cache mode.
+     *
+     * @return the shared cache mode.
+     */
+    public String getSharedCacheMode() {
+        return sharedCacheMode;
+    }
+
+    /**
+     * Sets the shared cache mode.
+     *
+     * @param sharedCacheMode the shared cache mode.
+     */
+    public void setSharedCacheMode(String sharedCacheMode) {
+        this.sharedCacheMode = sharedCacheMode;
+    }
+
+    /**
+     * Gets the validation mode.
+     *
+     * @return the validation mode.
+     */
+    public String getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * Sets the validation mode.
+     *
+     * @param validationMode the validation mode.
+     */
+    public void setValidationMode(String validationMode) {
+        this.validationMode = validationMode;
+    }
+
+    /**
+     * Gets the properties.
+     *
+     * @return the properties.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.report;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Java Flight Recorder events of the generation phases. The plugin is
+ * compiled for the JDK without the {@code jdk.jfr} API, the event type is
+ * created by the {@code jdk.jfr.EventFactory} loaded by reflection. The
+ * events are disabled on the JVM without the flight recorder.
+ *
+ * @author Andrej Petras
+ */
+public final class FlightRecorderEvents {
+
+    /**
+     * The event name.
+     */
+    public static final String EVENT_NAME = "org.lorislab.jpa2.GenerationPhase";
+
+    /**
+     * The event fields: phase, unit, database, allocatedBytes, loadedClasses.
+     */
+    private static final String[] FIELDS = {"phase", "unit", "database", "allocatedBytes", "loadedClasses"};
+
+    /**
+     * The event field types.
+     */
+    private static final Class<?>[] TYPES = {String.class, String.class, String.class, long.class, long.class};
+
+    /**
+     * The event factory or {@code null} if the flight recorder is not
+     * available.
+     */
+    private static final Object FACTORY;
+
+    /**
+     * The new event method of the factory.
+     */
+    private static final Method NEW_EVENT;
+
+    /**
+     * The begin method of the event.
+     */
+    private static final Method BEGIN;
+
+    /**
+     * The end method of the event.
+     */
+    private static final Method END;
+
+    /**
+     * The set field method of the event.
+     */
+    private static final Method SET;
+
+    /**
+     * The commit method of the event.
+     */
+    private static final Method COMMIT;
+
+    static {
+        Object factory = null;
+        Method newEvent = null;
+        Method begin = null;
+        Method end = null;
+        Method set = null;
+        Method commit = null;
+        try {
+            ClassLoader cl = FlightRecorderEvents.class.getClassLoader();
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", true, cl);
+            Class<?> eventClass = Class.forName("jdk.jfr.Event", true, cl);
+            Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement", true, cl);
+            Class<?> valueClass = Class.forName("jdk.jfr.ValueDescriptor", true, cl);
+            Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+            Constructor<?> value = valueClass.getConstructor(Class.class, String.class);
+
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name", true, cl), EVENT_NAME));
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label", true, cl), "JPA2 Generation Phase"));
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category", true, cl), new String[]{"JPA2", "Schema Generation"}));
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < FIELDS.length; i++) {
+                values.add(value.newInstance(TYPES[i], FIELDS[i]));
+            }
+
+            factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, values);
+            newEvent = factoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            end = eventClass.getMethod("end");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+        } catch (Throwable ex) {
+            factory = null;
+        }
+        FACTORY = factory;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SET = set;
+        COMMIT = commit;
+    }
+
+    /**
+     * The default constructor.
+     */
+    private FlightRecorderEvents() {
+        // empty constructor
+    }
+
+    /**
+     * Checks if the flight recorder events are available.
+     *
+     * @return {@code true} if the flight recorder events are available.
+     */
+    public static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * Creates and begins the phase event.
+     *
+     * @return the event or {@code null} if the flight recorder is not
+     * available.
+     */
+    static Object begin() {
+        if (FACTORY == null) {
+            return null;
+        }
+        try {
+            Object result = NEW_EVENT.invoke(FACTORY);
+            BEGIN.invoke(result);
+            return result;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends and commits the phase event.
+     *
+     * @param event the event created by the {@link #begin()}.
+     * @param values the values of the event fields.
+     */
+    static void commit(Object event, Object... values) {
+        if (event == null) {
+            return;
+        }
+        try {
+            END.invoke(event);
+            for (int i = 0; i < values.length && i < FIELDS.length; i++) {
+                SET.invoke(event, i, values[i]);
+            }
+            COMMIT.invoke(event);
+        } catch (Exception ex) {
+            // the event is not recorded
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.lorislab.maven.jpa2.ddl.RowFootprint;
+
+/**
+ * The limits of the row footprint of the generated schema. The footprint of
+ * the create script of the persistence unit and the database is checked
+ * against the maximum values.
+ *
+ * @author Andrej Petras
+ */
+public class FootprintLimits {
+
+    /**
+     * The maximal width of the column in bytes. The wider columns are
+     * flagged as oversized.
+     */
+    private int maxColumnWidth = 2000;
+
+    /**
+     * The maximum of the maximal row width of the tables in bytes.
+     */
+    private Long maxRowWidth;
+
+    /**
+     * The maximum of the average row width of the tables in bytes.
+     */
+    private Long maxAverageRowWidth;
+
+    /**
+     * The maximum number of the large object columns.
+     */
+    private Long maxLobColumns;
+
+    /**
+     * The maximum number of the oversized columns.
+     */
+    private Long maxOversizedColumns;
+
+    /**
+     * The maximum number of the string columns with the default length.
+     */
+    private Long maxDefaultLengthColumns;
+
+    /**
+     * Fail the build if the limits are exceeded, otherwise only warn.
+     */
+    private boolean fail = true;
+
+    /**
+     * Gets the maximal width of the column.
+     *
+     * @return the maximal width of the column in bytes.
+     */
+    public int getMaxColumnWidth() {
+        return maxColumnWidth;
+    }
+
+    /**
+     * Sets the maximal width of the column.
+     *
+     * @param maxColumnWidth the maximal width of the column in bytes.
+     */
+    public void setMaxColumnWidth(int maxColumnWidth) {
+        this.maxColumnWidth = maxColumnWidth;
+    }
+
+    /**
+     * Gets the maximum of the maximal row width.
+     *
+     * @return the maximum of the maximal row width or {@code null}.
+     */
+    public Long getMaxRowWidth() {
+        return maxRowWidth;
+    }
+
+    /**
+     * Sets the maximum of the maximal row width.
+     *
+     * @param maxRowWidth the maximum of the maximal row width.
+     */
+    public void setMaxRowWidth(Long maxRowWidth) {
+        this.maxRowWidth = maxRowWidth;
+    }
+
+    /**
+     * Gets the maximum of the average row width.
+     *
+     * @return the maximum of the average row width or {@code null}.
+     */
+    public Long getMaxAverageRowWidth() {
+        return maxAverageRowWidth;
+    }
+
+    /**
+     * Sets the maximum of the average row width.
+     *
+     * @param maxAverageRowWidth the maximum of the average row width.
+     */
+    public void setMaxAverageRowWidth(Long maxAverageRowWidth) {
+        this.maxAverageRowWidth = maxAverageRowWidth;
+    }
+
+    /**
+     * Gets the maximum number of the large object columns.
+     *
+     * @return the maximum number of the large object columns or
+     * {@code null}.
+     */
+    public Long getMaxLobColumns() {
+        return maxLobColumns;
+    }
+
+    /**
+     * Sets the maximum number of the large object columns.
+     *
+     * @param maxLobColumns the maximum number of the large object columns.
+     */
+    public void setMaxLobColumns(Long maxLobColumns) {
+        this.maxLobColumns = maxLobColumns;
+    }
+
+    /**
+     * Gets the maximum number of the oversized columns.
+     *
+     * @return the maximum number of the oversized columns or {@code null}.
+     */
+    public Long getMaxOversizedColumns() {
+        return maxOversizedColumns;
+    }
+
+    /**
+     * Sets the maximum number of the oversized columns.
+     *
+     * @param maxOversizedColumns the maximum number of the oversized columns.
+     */
+    public void setMaxOversizedColumns(Long maxOversizedColumns) {
+        this.maxOversizedColumns = maxOversizedColumns;
+    }
+
+    /**
+     * Gets the maximum number of the string columns with the default length.
+     *
+     * @return the maximum number of the columns with the default length or
+     * {@code null}.
+     */
+    public Long getMaxDefaultLengthColumns() {
+        return maxDefaultLengthColumns;
+    }
+
+    /**
+     * Sets the maximum number of the string columns with the default length.
+     *
+     * @param maxDefaultLengthColumns the maximum number of the columns with
+     * the default length.
+     */
+    public void setMaxDefaultLengthColumns(Long maxDefaultLengthColumns) {
+        this.maxDefaultLengthColumns = maxDefaultLengthColumns;
+    }
+
+    /**
+     * Gets the fail flag.
+     *
+     * @return {@code true} to fail the build if the limits are exceeded.
+     */
+    public boolean isFail() {
+        return fail;
+    }
+
+    /**
+     * Sets the fail flag.
+     *
+     * @param fail {@code true} to fail the build if the limits are exceeded.
+     */
+    public void setFail(boolean fail) {
+        this.fail = fail;
+    }
+
+    /**
+     * Checks the footprint against the limits.
+     *
+     * @param name the name of the persistence unit and the database.
+     * @param footprint the row footprint of the create script.
+     * @return the list of the violations.
+     */
+    public List<String> check(String name, RowFootprint footprint) {
+        List<String> result = new ArrayList<>();
+        check(result, name, "maximal row width", footprint.getMaxRowWidth(), maxRowWidth);
+        check(result, name, "average row width", footprint.getMaxAverageRowWidth(), maxAverageRowWidth);
+        check(result, name, "number of the LOB columns", footprint.getColumns(RowFootprint.LOB), maxLobColumns);
+        check(result, name, "number of the oversized columns", footprint.getColumns(RowFootprint.OVERSIZED), maxOversizedColumns);
+        check(result, name, "number of the default length columns", footprint.getColumns(RowFootprint.DEFAULT_LENGTH), maxDefaultLengthColumns);
+        return result;
+    }
+
+    /**
+     * Checks the value against the maximum.
+     *
+     * @param result the list of the violations.
+     * @param name the name of the persistence unit and the database.
+     * @param label the value label.
+     * @param value the value.
+     * @param max the maximum value or {@code null}.
+     */
+    private static void check(List<String> result, String name, String label, long value, Long max) {
+        if (max != null && value > max) {
+            result.add("The " + label + " " + value + " of the " + name + " exceeds the limit " + max);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return "footprint[maxColumnWidth=" + maxColumnWidth + ", maxRowWidth=" + maxRowWidth
+                + ", maxAverageRowWidth=" + maxAverageRowWidth + ", maxLobColumns=" + maxLobColumns
+                + ", maxOversizedColumns=" + maxOversizedColumns + ", maxDefaultLengthColumns=" + maxDefaultLengthColumns + "]";
+    }
+}
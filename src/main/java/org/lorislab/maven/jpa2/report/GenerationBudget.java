@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.report;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The performance budget of the schema generation. The measured values of
+ * the {@link GenerationReport} are checked against the absolute maximum
+ * values and against the stored baseline with the tolerance.
+ *
+ * @author Andrej Petras
+ */
+public class GenerationBudget {
+
+    /**
+     * The total time metric.
+     */
+    public static final String TOTAL_TIME = "totalTime";
+
+    /**
+     * The bootstrap time metric.
+     */
+    public static final String BOOTSTRAP_TIME = "bootstrapTime";
+
+    /**
+     * The peak heap metric.
+     */
+    public static final String PEAK_HEAP = "peakHeap";
+
+    /**
+     * The loaded classes metric.
+     */
+    public static final String LOADED_CLASSES = "loadedClasses";
+
+    /**
+     * The maximum total time in milliseconds.
+     */
+    private Long maxTotalTime;
+
+    /**
+     * The maximum bootstrap time in milliseconds.
+     */
+    private Long maxBootstrapTime;
+
+    /**
+     * The maximum peak heap usage in MB.
+     */
+    private Long maxPeakHeap;
+
+    /**
+     * The maximum number of the loaded classes.
+     */
+    private Long maxLoadedClasses;
+
+    /**
+     * The baseline file.
+     */
+    private String baselineFile;
+
+    /**
+     * The tolerance to the baseline in percent.
+     */
+    private int tolerance = 20;
+
+    /**
+     * Fail the build if the budget is exceeded, otherwise only warn.
+     */
+    private boolean fail = true;
+
+    /**
+     * Gets the maximum total time in milliseconds.
+     *
+     * @return the maximum total time or {@code null}.
+     */
+    public Long getMaxTotalTime() {
+        return maxTotalTime;
+    }
+
+    /**
+     * Sets the maximum total time in milliseconds.
+     *
+     * @param maxTotalTime the maximum total time.
+     */
+    public void setMaxTotalTime(Long maxTotalTime) {
+        this.maxTotalTime = maxTotalTime;
+    }
+
+    /**
+     * Gets the maximum bootstrap time in milliseconds.
+     *
+     * @return the maximum bootstrap time or {@code null}.
+     */
+    public Long getMaxBootstrapTime() {
+        return maxBootstrapTime;
+    }
+
+    /**
+     * Sets the maximum bootstrap time in milliseconds.
+     *
+     * @param maxBootstrapTime the maximum bootstrap time.
+     */
+    public void setMaxBootstrapTime(Long maxBootstrapTime) {
+        this.maxBootstrapTime = maxBootstrapTime;
+    }
+
+    /**
+     * Gets the maximum peak heap usage in MB.
+     *
+     * @return the maximum peak heap usage or {@code null}.
+     */
+    public Long getMaxPeakHeap() {
+        return maxPeakHeap;
+    }
+
+    /**
+     * Sets the maximum peak heap usage in MB.
+     *
+     * @param maxPeakHeap the maximum peak heap usage.
+     */
+    public void setMaxPeakHeap(Long maxPeakHeap) {
+        this.maxPeakHeap = maxPeakHeap;
+    }
+
+    /**
+     * Gets the maximum number of the loaded classes.
+     *
+     * @return the maximum number of the loaded classes or {@code null}.
+     */
+    public Long getMaxLoadedClasses() {
+        return maxLoadedClasses;
+    }
+
+    /**
+     * Sets the maximum number of the loaded classes.
+     *
+     * @param maxLoadedClasses the maximum number of the loaded classes.
+     */
+    public void setMaxLoadedClasses(Long maxLoadedClasses) {
+        this.maxLoadedClasses = maxLoadedClasses;
+    }
+
+    /**
+     * Gets the baseline file.
+     *
+     * @return the baseline file or {@code null}.
+     */
+    public String getBaselineFile() {
+        return baselineFile;
+    }
+
+    /**
+     * Sets the baseline file.
+     *
+     * @param baselineFile the baseline file.
+     */
+    public void setBaselineFile(String baselineFile) {
+        this.baselineFile = baselineFile;
+    }
+
+    /**
+     * Gets the tolerance to the baseline in percent.
+     *
+     * @return the tolerance in percent.
+     */
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Sets the tolerance to the baseline in percent.
+     *
+     * @param tolerance the tolerance in percent.
+     */
+    public void setTolerance(int tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Gets the fail flag.
+     *
+     * @return {@code true} to fail the build if the budget is exceeded.
+     */
+    public boolean isFail() {
+        return fail;
+    }
+
+    /**
+     * Sets the fail flag.
+     *
+     * @param fail {@code true} to fail the build if the budget is exceeded.
+     */
+    public void setFail(boolean fail) {
+        this.fail = fail;
+    }
+
+    /**
+     * Gets the measured values of the report. The peak heap and the loaded
+     * classes are measured for the whole JVM and are missing if the report
+     * is not scoped.
+     *
+     * @param report the generation report.
+     * @return the measured values.
+     */
+    public static Properties getValues(GenerationReport report) {
+        Properties result = new Properties();
+        result.setProperty(TOTAL_TIME, Long.toString(report.getTotalTime()));
+        result.setProperty(BOOTSTRAP_TIME, Long.toString(report.getBootstrapTime()));
+        if (report.isScoped()) {
+            result.setProperty(PEAK_HEAP, Long.toString(report.getPeakHeap() / (1024 * 1024)));
+            result.setProperty(LOADED_CLASSES, Long.toString(report.getLoadedClasses()));
+        }
+        return result;
+    }
+
+    /**
+     * Checks the report against the budget and the baseline.
+     *
+     * @param report the generation report.
+     * @param baseline the baseline values or {@code null}.
+     * @return the list of the violations.
+     */
+    public List<String> check(GenerationReport report, Properties baseline) {
+        Properties values = getValues(report);
+        List<String> result = new ArrayList<>();
+        check(result, "total time", "ms", values, TOTAL_TIME, maxTotalTime, baseline);
+        check(result, "bootstrap time", "ms", values, BOOTSTRAP_TIME, maxBootstrapTime, baseline);
+        check(result, "peak heap", "MB", values, PEAK_HEAP, maxPeakHeap, baseline);
+        check(result, "loaded classes", "", values, LOADED_CLASSES, maxLoadedClasses, baseline);
+        return result;
+    }
+
+    /**
+     * Checks the measured value against the maximum and the baseline. The
+     * missing measured value is not checked.
+     *
+     * @param result the list of the violations.
+     * @param label the metric label.
+     * @param unit the metric unit.
+     * @param values the measured values.
+     * @param key the metric key.
+     * @param max the maximum value or {@code null}.
+     * @param baseline the baseline values or {@code null}.
+     */
+    private void check(List<String> result, String label, String unit, Properties values, String key, Long max, Properties baseline) {
+        String tmp = values.getProperty(key);
+        if (tmp == null) {
+            return;
+        }
+        long value = Long.parseLong(tmp);
+        String suffix = unit.isEmpty() ? "" : " " + unit;
+        if (max != null && value > max) {
+            result.add("The " + label + " " + value + suffix + " exceeds the budget " + max + suffix);
+        }
+        if (baseline != null && baseline.getProperty(key) != null) {
+            long base = Long.parseLong(baseline.getProperty(key).trim());
+            long limit = base + base * tolerance / 100;
+            if (value > limit) {
+                result.add("The " + label + " " + value + suffix + " exceeds the baseline " + base + suffix + " by more than " + tolerance + "%");
+            }
+        }
+    }
+
+    /**
+     * Loads the baseline file.
+     *
+     * @param file the baseline file.
+     * @return the baseline values or {@code null} if the file does not
+     * exist.
+     * @throws IOException if the baseline file could not be read.
+     */
+    public static Properties loadBaseline(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            result.load(in);
+        }
+        return result;
+    }
+
+    /**
+     * Saves the measured values of the report as the baseline.
+     *
+     * @param file the baseline file.
+     * @param report the generation report.
+     * @throws IOException if the baseline file could not be written.
+     */
+    public static void saveBaseline(Path file, GenerationReport report) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            getValues(report).store(out, "jpa2-maven-plugin generation baseline");
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.report;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The measured phase of the schema generation. The phase measures the wall
+ * time and the bytes allocated by the current thread and the number of the
+ * classes loaded by the JVM. The phase is started by the
+ * {@link GenerationReport#start(java.lang.String, java.lang.String, java.lang.String)}
+ * and stopped by the {@link #stop()} in the same thread, usually in the
+ * {@code finally} block.
+ *
+ * @author Andrej Petras
+ */
+public class GenerationPhase {
+
+    /**
+     * The thread MX bean.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The class loading MX bean.
+     */
+    private static final ClassLoadingMXBean CLASSES = ManagementFactory.getClassLoadingMXBean();
+
+    /**
+     * The report of the phase.
+     */
+    private final GenerationReport report;
+
+    /**
+     * The phase name.
+     */
+    private final String name;
+
+    /**
+     * The persistence unit or {@code null}.
+     */
+    private final String unit;
+
+    /**
+     * The target database or {@code null}.
+     */
+    private final String database;
+
+    /**
+     * The start time in nanoseconds.
+     */
+    private final long startTime;
+
+    /**
+     * The allocated bytes of the thread at the start.
+     */
+    private final long startAllocated;
+
+    /**
+     * The total loaded classes at the start.
+     */
+    private final long startClasses;
+
+    /**
+     * The flight recorder event.
+     */
+    private final Object event;
+
+    /**
+     * The wall time in nanoseconds.
+     */
+    private long time = -1;
+
+    /**
+     * The allocated bytes or {@code -1} if not supported by the JVM.
+     */
+    private long allocatedBytes = -1;
+
+    /**
+     * The number of the loaded classes.
+     */
+    private long loadedClasses;
+
+    /**
+     * The constructor.
+     *
+     * @param report the report of the phase.
+     * @param name the phase name.
+     * @param unit the persistence unit or {@code null}.
+     * @param database the target database or {@code null}.
+     */
+    GenerationPhase(GenerationReport report, String name, String unit, String database) {
+        this.report = report;
+        this.name = name;
+        this.unit = unit;
+        this.database = database;
+        this.event = FlightRecorderEvents.begin();
+        this.startClasses = CLASSES.getTotalLoadedClassCount();
+        this.startAllocated = getThreadAllocatedBytes();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops the phase and adds the phase to the report.
+     */
+    public void stop() {
+        if (time >= 0) {
+            return;
+        }
+        time = System.nanoTime() - startTime;
+        long allocated = getThreadAllocatedBytes();
+        if (allocated >= 0 && startAllocated >= 0) {
+            allocatedBytes = allocated - startAllocated;
+        }
+        loadedClasses = CLASSES.getTotalLoadedClassCount() - startClasses;
+        FlightRecorderEvents.commit(event, name, unit, database, allocatedBytes, loadedClasses);
+        report.add(this);
+    }
+
+    /**
+     * Gets the phase name.
+     *
+     * @return the phase name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the persistence unit.
+     *
+     * @return the persistence unit or {@code null}.
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Gets the target database.
+     *
+     * @return the target database or {@code null}.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * Gets the wall time in nanoseconds.
+     *
+     * @return the wall time in nanoseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the bytes allocated by the thread of the phase.
+     *
+     * @return the allocated bytes or {@code -1} if not supported by the JVM.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Gets the number of the classes loaded by the JVM during the phase.
+     *
+     * @return the number of the loaded classes.
+     */
+    public long getLoadedClasses() {
+        return loadedClasses;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread.
+     *
+     * @return the allocated bytes or {@code -1} if not supported by the JVM.
+     */
+    private static long getThreadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean tmp = (com.sun.management.ThreadMXBean) THREADS;
+            if (tmp.isThreadAllocatedMemorySupported() && tmp.isThreadAllocatedMemoryEnabled()) {
+                return tmp.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.report;
+
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.lorislab.maven.jpa2.util.JsonWriter;
+
+/**
+ * The performance report of the schema generation. The report collects the
+ * measured phases of the generation, the total time, the number of the
+ * loaded classes and the peak heap usage. The report is written as JSON and
+ * summarized in one line. The loaded classes and the peak heap usage are
+ * measured for the whole JVM, in the parallel build they include the other
+ * modules running at the same time.
+ *
+ * @author Andrej Petras
+ */
+public class GenerationReport {
+
+    /**
+     * The report file name.
+     */
+    public static final String FILE_NAME = "generation-report.json";
+
+    /**
+     * The persistence.xml phase.
+     */
+    public static final String PERSISTENCE = "persistence";
+
+    /**
+     * The classpath phase.
+     */
+    public static final String CLASSPATH = "classpath";
+
+    /**
+     * The entity index phase.
+     */
+    public static final String INDEX = "index";
+
+    /**
+     * The class loader phase.
+     */
+    public static final String CLASS_LOADER = "classloader";
+
+    /**
+     * The Hibernate bootstrap phase.
+     */
+    public static final String BOOTSTRAP = "bootstrap";
+
+    /**
+     * The metadata building phase.
+     */
+    public static final String METADATA = "metadata";
+
+    /**
+     * The script writing phase.
+     */
+    public static final String SCRIPTS = "scripts";
+
+    /**
+     * The JPA schema generation phase. The provider bootstrap, the metadata
+     * building and the script writing are not separated.
+     */
+    public static final String GENERATION = "generation";
+
+    /**
+     * The forked generation phase.
+     */
+    public static final String FORK = "fork";
+
+    /**
+     * The script pipeline phase.
+     */
+    public static final String PIPELINE = "pipeline";
+
+    /**
+     * The index advisor phase.
+     */
+    public static final String ADVISOR = "advisor";
+
+    /**
+     * The identifier generator audit phase.
+     */
+    public static final String AUDIT = "audit";
+
+    /**
+     * The class loading MX bean.
+     */
+    private static final ClassLoadingMXBean CLASSES = ManagementFactory.getClassLoadingMXBean();
+
+    /**
+     * The number of the running reports of the JVM.
+     */
+    private static int running;
+
+    /**
+     * The number of the started reports of the JVM.
+     */
+    private static long started;
+
+    /**
+     * The start time in milliseconds.
+     */
+    private final long startDate = System.currentTimeMillis();
+
+    /**
+     * The start time in nanoseconds.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The total loaded classes at the start.
+     */
+    private final long startClasses = CLASSES.getTotalLoadedClassCount();
+
+    /**
+     * The finished phases.
+     */
+    private final List<GenerationPhase> phases = new ArrayList<>();
+
+    /**
+     * The total time in nanoseconds.
+     */
+    private long totalTime = -1;
+
+    /**
+     * The total number of the loaded classes.
+     */
+    private long loadedClasses;
+
+    /**
+     * The peak heap usage of the MAVEN JVM at the stop of the report.
+     */
+    private long peakHeap = -1;
+
+    /**
+     * The peak heap usage of the forked generator JVM.
+     */
+    private long forkedPeakHeap = -1;
+
+    /**
+     * The number of the started reports of the JVM at the start of this
+     * report.
+     */
+    private final long startCount;
+
+    /**
+     * The JVM-wide measurement covers only this report.
+     */
+    private boolean scoped;
+
+    /**
+     * The constructor. The peak heap usage is reset if no other report of
+     * the JVM is running, the peak of the parallel reports covers all of
+     * them.
+     */
+    public GenerationReport() {
+        synchronized (GenerationReport.class) {
+            if (running == 0) {
+                resetHeapPeakUsage();
+            }
+            scoped = running == 0;
+            running++;
+            started++;
+            startCount = started;
+        }
+    }
+
+    /**
+     * Starts the phase.
+     *
+     * @param name the phase name.
+     * @param unit the persistence unit or {@code null}.
+     * @param database the target database or {@code null}.
+     * @return the started phase.
+     */
+    public GenerationPhase start(String name, String unit, String database) {
+        return new GenerationPhase(this, name, unit, database);
+    }
+
+    /**
+     * Adds the finished phase.
+     *
+     * @param phase the finished phase.
+     */
+    synchronized void add(GenerationPhase phase) {
+        phases.add(phase);
+    }
+
+    /**
+     * Stops the report.
+     */
+    public synchronized void stop() {
+        if (totalTime < 0) {
+            totalTime = System.nanoTime() - startTime;
+            loadedClasses = CLASSES.getTotalLoadedClassCount() - startClasses;
+            peakHeap = getHeapPeakUsage();
+            synchronized (GenerationReport.class) {
+                running--;
+                scoped = scoped && started == startCount;
+            }
+        }
+    }
+
+    /**
+     * Checks if the peak heap usage and the loaded classes of the JVM cover
+     * only this report. The measurement is not scoped if another report of
+     * the JVM was running at the same time, for example in the parallel
+     * build.
+     *
+     * @return {@code true} if no other report was running.
+     */
+    public synchronized boolean isScoped() {
+        if (totalTime < 0) {
+            synchronized (GenerationReport.class) {
+                return scoped && started == startCount;
+            }
+        }
+        return scoped;
+    }
+
+    /**
+     * Reports the peak heap usage of the forked generator JVM.
+     *
+     * @param peakHeap the peak heap usage in bytes.
+     */
+    public synchronized void addForkedPeakHeap(long peakHeap) {
+        forkedPeakHeap = Math.max(forkedPeakHeap, peakHeap);
+    }
+
+    /**
+     * Gets the finished phases.
+     *
+     * @return the finished phases.
+     */
+    public synchronized List<GenerationPhase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    /**
+     * Gets the total time in milliseconds.
+     *
+     * @return the total time in milliseconds.
+     */
+    public synchronized long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalTime < 0 ? System.nanoTime() - startTime : totalTime);
+    }
+
+    /**
+     * Gets the sum of the times of the phases with the name in milliseconds.
+     *
+     * @param name the phase name.
+     * @return the sum of the times in milliseconds.
+     */
+    public long getTime(String name) {
+        long result = 0;
+        for (GenerationPhase phase : getPhases()) {
+            if (name.equals(phase.getName())) {
+                result = result + phase.getTime();
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(result);
+    }
+
+    /**
+     * Gets the bootstrap time in milliseconds. The bootstrap time is the sum
+     * of the Hibernate bootstrap and the metadata building phases. The JPA
+     * generation and the forked generation do not separate the bootstrap,
+     * the whole generation phase is counted. The phase times of the parallel
+     * tasks are summed.
+     *
+     * @return the bootstrap time in milliseconds.
+     */
+    public long getBootstrapTime() {
+        return getTime(BOOTSTRAP) + getTime(METADATA) + getTime(GENERATION) + getTime(FORK);
+    }
+
+    /**
+     * Checks if any schema was generated. The up-to-date build without the
+     * generation has only the preparation phases.
+     *
+     * @return {@code true} if any schema was generated.
+     */
+    public boolean isGenerated() {
+        for (GenerationPhase phase : getPhases()) {
+            String name = phase.getName();
+            if (BOOTSTRAP.equals(name) || GENERATION.equals(name) || FORK.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the sum of the bytes allocated by the phases.
+     *
+     * @return the allocated bytes.
+     */
+    public long getAllocatedBytes() {
+        long result = 0;
+        for (GenerationPhase phase : getPhases()) {
+            if (phase.getAllocatedBytes() > 0) {
+                result = result + phase.getAllocatedBytes();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of the classes loaded by the JVM during the
+     * generation.
+     *
+     * @return the number of the loaded classes.
+     */
+    public synchronized long getLoadedClasses() {
+        return totalTime < 0 ? CLASSES.getTotalLoadedClassCount() - startClasses : loadedClasses;
+    }
+
+    /**
+     * Gets the peak heap usage since the start of the report. The peak heap
+     * usage is the maximum of the MAVEN JVM and the forked generator JVM.
+     *
+     * @return the peak heap usage in bytes.
+     */
+    public synchronized long getPeakHeap() {
+        return Math.max(totalTime < 0 ? getHeapPeakUsage() : peakHeap, forkedPeakHeap);
+    }
+
+    /**
+     * Gets the peak usage of all heap memory pools of the current JVM.
+     *
+     * @return the peak heap usage in bytes.
+     */
+    public static long getHeapPeakUsage() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                result = result + pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resets the peak usage of all heap memory pools of the current JVM to
+     * the current usage.
+     */
+    public static void resetHeapPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Gets the one line summary of the report.
+     *
+     * @return the summary of the report.
+     */
+    public String getSummary() {
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (GenerationPhase phase : getPhases()) {
+            Long tmp = times.get(phase.getName());
+            times.put(phase.getName(), (tmp == null ? 0 : tmp) + phase.getTime());
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Schema generation ").append(getTotalTime()).append(" ms");
+        for (Map.Entry<String, Long> e : times.entrySet()) {
+            sb.append(", ").append(e.getKey()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(e.getValue())).append(" ms");
+        }
+        sb.append(", allocated ").append(getAllocatedBytes() / (1024 * 1024)).append(" MB");
+        sb.append(", loaded classes ").append(getLoadedClasses());
+        sb.append(", peak heap ").append(getPeakHeap() / (1024 * 1024)).append(" MB");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JSON report.
+     *
+     * @param file the report file.
+     * @param project the project identifier.
+     * @throws IOException if the report could not be written.
+     */
+    public void write(Path file, String project) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.property("project", project);
+            json.property("timestamp", format.format(new Date(startDate)));
+            json.property("totalTime", getTotalTime());
+            json.property("allocatedBytes", getAllocatedBytes());
+            json.property("loadedClasses", getLoadedClasses());
+            json.property("peakHeap", getPeakHeap());
+            json.property("flightRecorder", FlightRecorderEvents.isAvailable());
+            json.name("phases").beginArray();
+            for (GenerationPhase phase : getPhases()) {
+                json.beginObject();
+                json.property("name", phase.getName());
+                json.property("unit", phase.getUnit());
+                json.property("database", phase.getDatabase());
+                json.property("time", TimeUnit.NANOSECONDS.toMillis(phase.getTime()));
+                json.property("timeNanos", phase.getTime());
+                json.property("allocatedBytes", phase.getAllocatedBytes());
+                json.property("loadedClasses", phase.getLoadedClasses());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 Andrej_Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * The fingerprint of the schema generation input.
+ *
+ * @author Andrej_Petras
+ */
+public final class Fingerprint {
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The buffer size.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The message digest.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * The buffer for the file content.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The default constructor.
+     */
+    public Fingerprint() {
+        digest = createDigest();
+    }
+
+    /**
+     * Adds the value to the fingerprint.
+     *
+     * @param name the name of the value.
+     * @param value the value.
+     * @return the fingerprint.
+     */
+    public Fingerprint add(String name, Object value) {
+        update(name);
+        update(value == null ? "<null>" : value.toString());
+        return this;
+    }
+
+    /**
+     * Adds the map of values to the fingerprint sorted by the key.
+     *
+     * @param values the map of values.
+     * @return the fingerprint.
+     */
+    public Fingerprint add(Map<?, ?> values) {
+        if (values != null) {
+            Map<String, Object> tmp = new TreeMap<>();
+            for (Map.Entry<?, ?> e : values.entrySet()) {
+                tmp.put(String.valueOf(e.getKey()), e.getValue());
+            }
+            for (Map.Entry<String, Object> e : tmp.entrySet()) {
+                add(e.getKey(), e.getValue());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds the file content to the fingerprint. The directory is added with
+     * the relative path and content of all files in the directory. The
+     * missing file is added only with the path.
+     *
+     * @param path the file or directory.
+     * @return the fingerprint.
+     */
+    public Fingerprint addContent(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return add("missing", path);
+        }
+        if (Files.isDirectory(path)) {
+            for (Path file : listFiles(path)) {
+                update(path.relativize(file).toString().replace('\\', '/'));
+                updateContent(file);
+            }
+        } else {
+            update(path.getFileName().toString());
+            updateContent(path);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the file path, size and last modified time to the fingerprint.
+     * This is used for the large files like the dependency archives.
+     *
+     * @param path the file.
+     * @return the fingerprint.
+     */
+    public Fingerprint addStamp(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return add("missing", path);
+        }
+        if (Files.isDirectory(path)) {
+            return addContent(path);
+        }
+        try {
+            add(path.toString(), Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException ex) {
+            throw new RuntimeException("Error reading the file attributes " + path, ex);
+        }
+        return this;
+    }
+
+    /**
+     * Builds the fingerprint.
+     *
+     * @return the hex string of the fingerprint.
+     */
+    public String build() {
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Gets the hash of the file content.
+     *
+     * @param path the file.
+     * @return the hex string of the file hash or {@code null} if the file
+     * does not exists.
+     */
+    public static String hash(Path path) {
+        if (path == null || !Files.isRegularFile(path)) {
+            return null;
+        }
+        Fingerprint tmp = new Fingerprint();
+        tmp.updateContent(path);
+        return tmp.build();
+    }
+
+    /**
+     * Updates the digest with the string value.
+     *
+     * @param value the value.
+     */
+    private void update(String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Updates the digest with the file content.
+     *
+     * @param path the file.
+     */
+    private void updateContent(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Error reading the file " + path, ex);
+        }
+    }
+
+    /**
+     * Lists all files in the directory sorted by the path.
+     *
+     * @param dir the directory.
+     * @return the sorted list of files.
+     */
+    private static List<Path> listFiles(Path dir) {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(dir)) {
+            Iterator<Path> iter = stream.iterator();
+            while (iter.hasNext()) {
+                Path path = iter.next();
+                if (Files.isRegularFile(path)) {
+                    result.add(path);
+                }
+            }
+            Collections.sort(result);
+            return result;
+        } catch (IOException ex) {
+            throw new RuntimeException("Error reading the directory " + dir, ex);
+        }
+    }
+
+    /**
+     * Creates the message digest.
+     *
+     * @return the message digest.
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Missing the digest algorithm " + ALGORITHM, ex);
+        }
+    }
+
+    /**
+     * Converts the bytes to the hex string.
+     *
+     * @param data the bytes.
+     * @return the hex string.
+     */
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
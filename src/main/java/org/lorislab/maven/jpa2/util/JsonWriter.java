@@ -0,0 +1,335 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The streaming JSON writer of the plugin reports. The writer writes one
+ * value per line with the indentation of the nesting level.
+ *
+ * @author Andrej Petras
+ */
+public class JsonWriter implements Closeable {
+
+    /**
+     * The indentation.
+     */
+    private static final String INDENT = "  ";
+
+    /**
+     * The output writer.
+     */
+    private final Writer writer;
+
+    /**
+     * The stack of the value counters of the open objects and arrays.
+     */
+    private final Deque<int[]> stack = new ArrayDeque<>();
+
+    /**
+     * The name was written and the value is expected.
+     */
+    private boolean name;
+
+    /**
+     * The constructor.
+     *
+     * @param writer the output writer.
+     */
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Begins the object.
+     *
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter beginObject() throws IOException {
+        return begin('{');
+    }
+
+    /**
+     * Ends the object.
+     *
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    /**
+     * Begins the array.
+     *
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter beginArray() throws IOException {
+        return begin('[');
+    }
+
+    /**
+     * Ends the array.
+     *
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    /**
+     * Writes the name of the object member.
+     *
+     * @param value the name.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter name(String value) throws IOException {
+        separator();
+        string(value);
+        writer.write(": ");
+        name = true;
+        return this;
+    }
+
+    /**
+     * Writes the string value.
+     *
+     * @param value the value or {@code null}.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter value(String value) throws IOException {
+        separator();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the number value.
+     *
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the number value. The not finite number is written as
+     * {@code null}.
+     *
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter value(double value) throws IOException {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writer.write("null");
+        } else {
+            writer.write(Double.toString(value));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the boolean value.
+     *
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        writer.write(Boolean.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the name and the string value of the object member.
+     *
+     * @param name the name.
+     * @param value the value or {@code null}.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter property(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes the name and the number value of the object member.
+     *
+     * @param name the name.
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter property(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes the name and the number value of the object member.
+     *
+     * @param name the name.
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter property(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes the name and the boolean value of the object member.
+     *
+     * @param name the name.
+     * @param value the value.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    public JsonWriter property(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * Flushes and closes the output writer.
+     *
+     * @throws IOException if the closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.write(System.lineSeparator());
+        writer.close();
+    }
+
+    /**
+     * Begins the object or the array.
+     *
+     * @param c the begin character.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    private JsonWriter begin(char c) throws IOException {
+        separator();
+        writer.write(c);
+        stack.push(new int[1]);
+        return this;
+    }
+
+    /**
+     * Ends the object or the array.
+     *
+     * @param c the end character.
+     * @return the JSON writer.
+     * @throws IOException if the writing fails.
+     */
+    private JsonWriter end(char c) throws IOException {
+        int[] count = stack.pop();
+        if (count[0] > 0) {
+            newLine();
+        }
+        writer.write(c);
+        return this;
+    }
+
+    /**
+     * Writes the separator before the next value.
+     *
+     * @throws IOException if the writing fails.
+     */
+    private void separator() throws IOException {
+        if (name) {
+            name = false;
+            return;
+        }
+        int[] count = stack.peek();
+        if (count == null) {
+            return;
+        }
+        if (count[0] > 0) {
+            writer.write(',');
+        }
+        count[0]++;
+        newLine();
+    }
+
+    /**
+     * Writes the new line and the indentation.
+     *
+     * @throws IOException if the writing fails.
+     */
+    private void newLine() throws IOException {
+        writer.write(System.lineSeparator());
+        for (int i = 0; i < stack.size(); i++) {
+            writer.write(INDENT);
+        }
+    }
+
+    /**
+     * Writes the escaped string.
+     *
+     * @param value the string.
+     * @throws IOException if the writing fails.
+     */
+    private void string(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -15,14 +15,23 @@
  */
 package org.lorislab.maven.jpa2.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 /**
@@ -32,6 +41,31 @@ import javax.xml.stream.XMLStreamReader;
  */
 public final class XMLUtil {
 
+    /**
+     * The XML input factory.
+     */
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    /**
+     * The maximum number of pooled marshallers and unmarshallers per class.
+     */
+    private static final int POOL_SIZE = 8;
+
+    /**
+     * The JAXB context cache.
+     */
+    private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    /**
+     * The unmarshaller pool.
+     */
+    private static final ConcurrentMap<Class<?>, BlockingQueue<Unmarshaller>> UNMARSHALLERS = new ConcurrentHashMap<>();
+
+    /**
+     * The marshaller pool.
+     */
+    private static final ConcurrentMap<Class<?>, BlockingQueue<Marshaller>> MARSHALLERS = new ConcurrentHashMap<>();
+
     /**
      * The default constructor.
      */
@@ -46,19 +80,19 @@ public final class XMLUtil {
      * @return the corresponding version of the XML.
      */
     public static String getXMLVersion(final Path path) {
-        try (InputStream inputStream = Files.newInputStream(path)) {
-            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
-            for (int event; (event = reader.next()) != XMLStreamConstants.END_DOCUMENT;) {
-                if (event == XMLStreamConstants.START_ELEMENT) {
-                    String tmp = reader.getLocalName();
-                    if ("persistence".equals(tmp)) {
-                        for (int i = 0; i < reader.getAttributeCount(); i++) {
-                            if ("version".equals(reader.getAttributeName(i).toString())) {
-                                return reader.getAttributeValue(i);
-                            }                            
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+            XMLStreamReader reader = createXMLStreamReader(inputStream);
+            try {
+                for (int event; (event = reader.next()) != XMLStreamConstants.END_DOCUMENT;) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String tmp = reader.getLocalName();
+                        if ("persistence".equals(tmp)) {
+                            return reader.getAttributeValue(null, "version");
                         }
                     }
                 }
+            } finally {
+                reader.close();
             }
         } catch (Exception ex) {
             throw new RuntimeException("Error reading the persistence.xml version.", ex);
@@ -66,6 +100,17 @@ public final class XMLUtil {
         return null;
     }
 
+    /**
+     * Creates the XML stream reader with the shared XML input factory.
+     *
+     * @param inputStream the input stream.
+     * @return the XML stream reader.
+     * @throws XMLStreamException if the creation of the reader fails.
+     */
+    public static XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(inputStream);
+    }
+
     /**
      * Saves the object to the file.
      *
@@ -79,11 +124,16 @@ public final class XMLUtil {
             throw new RuntimeException("The path to file or object is null!");
         }
 
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(object.getClass());
-            Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            jaxbMarshaller.marshal(object, path.toFile());
+        Class<?> clazz = object.getClass();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            BlockingQueue<Marshaller> pool = getPool(MARSHALLERS, clazz);
+            Marshaller jaxbMarshaller = pool.poll();
+            if (jaxbMarshaller == null) {
+                jaxbMarshaller = getContext(clazz).createMarshaller();
+                jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            }
+            jaxbMarshaller.marshal(object, out);
+            pool.offer(jaxbMarshaller);
         } catch (Exception ex) {
             throw new RuntimeException("Error saving the object to path " + path.toString(), ex);
         }
@@ -103,13 +153,56 @@ public final class XMLUtil {
             throw new RuntimeException("The path to file or class is null!");
         }
 
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            result = (T) jaxbUnmarshaller.unmarshal(path.toFile());
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            BlockingQueue<Unmarshaller> pool = getPool(UNMARSHALLERS, clazz);
+            Unmarshaller jaxbUnmarshaller = pool.poll();
+            if (jaxbUnmarshaller == null) {
+                jaxbUnmarshaller = getContext(clazz).createUnmarshaller();
+            }
+            result = clazz.cast(jaxbUnmarshaller.unmarshal(in));
+            pool.offer(jaxbUnmarshaller);
         } catch (Exception ex) {
             throw new RuntimeException("Error loading the xml from path " + path.toString(), ex);
         }
         return result;
     }
+
+    /**
+     * Gets the cached JAXB context for the class.
+     *
+     * @param clazz the class.
+     * @return the JAXB context.
+     * @throws JAXBException if the creation of the JAXB context fails.
+     */
+    private static JAXBContext getContext(Class<?> clazz) throws JAXBException {
+        JAXBContext result = CONTEXTS.get(clazz);
+        if (result == null) {
+            result = JAXBContext.newInstance(clazz);
+            JAXBContext tmp = CONTEXTS.putIfAbsent(clazz, result);
+            if (tmp != null) {
+                result = tmp;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the pool of the marshallers or unmarshallers for the class.
+     *
+     * @param <E> the type of the pooled object.
+     * @param pools the pools.
+     * @param clazz the class.
+     * @return the pool for the class.
+     */
+    private static <E> BlockingQueue<E> getPool(ConcurrentMap<Class<?>, BlockingQueue<E>> pools, Class<?> clazz) {
+        BlockingQueue<E> result = pools.get(clazz);
+        if (result == null) {
+            result = new ArrayBlockingQueue<>(POOL_SIZE);
+            BlockingQueue<E> tmp = pools.putIfAbsent(clazz, result);
+            if (tmp != null) {
+                result = tmp;
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The apply of the generated create and drop scripts to the HSQLDB database.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaApplyMojoTest {
+
+    /**
+     * The JDBC URL of the test database.
+     */
+    private static final String URL = "jdbc:hsqldb:mem:jpa2apply";
+
+    /**
+     * The create script.
+     */
+    private static final String CREATE = "create sequence ORDER_SEQ start with 1 increment by 50;\n"
+            + "create table Customer (id bigint not null, name varchar(255), primary key (id));\n"
+            + "create table PurchaseOrder (id bigint not null, customer_id bigint, primary key (id));\n"
+            + "alter table PurchaseOrder add constraint FK_ORDER_CUSTOMER foreign key (customer_id) references Customer;\n";
+
+    /**
+     * The drop script.
+     */
+    private static final String DROP = "alter table PurchaseOrder drop constraint FK_ORDER_CUSTOMER;\n"
+            + "drop table Customer if exists;\n"
+            + "drop table PurchaseOrder if exists;\n"
+            + "drop sequence ORDER_SEQ if exists;\n";
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The connection of the test database.
+     */
+    private Connection connection;
+
+    /**
+     * Opens the test database.
+     *
+     * @throws SQLException if the database could not be opened.
+     */
+    @Before
+    public void before() throws SQLException {
+        connection = DriverManager.getConnection(URL, "SA", "");
+    }
+
+    /**
+     * Shuts down the test database.
+     *
+     * @throws SQLException if the database could not be closed.
+     */
+    @After
+    public void after() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        connection.close();
+    }
+
+    /**
+     * Tests the create and drop scripts in the default directory of the
+     * generate goal.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testApply() throws Exception {
+        Path output = folder.newFolder("generated-schema").toPath();
+        Path dir = output.resolve("demo").resolve("hsql database engine");
+        write(dir, CREATE, DROP);
+
+        createMojo(output, false).execute();
+        Assert.assertTrue(exists("CUSTOMER"));
+        Assert.assertTrue(exists("PURCHASEORDER"));
+        Assert.assertTrue(Files.isRegularFile(dir.resolve(SchemaApplyMojo.REPORT_FILE)));
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into Customer (id, name) values (1, 'test')");
+        }
+        createMojo(output, true).execute();
+        Assert.assertTrue(exists("CUSTOMER"));
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("select count(*) from Customer")) {
+            rs.next();
+            Assert.assertEquals("The drop script is not applied.", 0, rs.getInt(1));
+        }
+    }
+
+    /**
+     * Tests the scripts with one statement per line without the delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testApplyLineScripts() throws Exception {
+        Path output = folder.newFolder("generated-schema").toPath();
+        write(output.resolve("demo").resolve("hsql database engine"), CREATE.replace(";", ""), DROP.replace(";", ""));
+
+        createMojo(output, true).execute();
+        Assert.assertTrue(exists("CUSTOMER"));
+        Assert.assertTrue(exists("PURCHASEORDER"));
+    }
+
+    /**
+     * Creates the apply mojo for the scripts of the persistence unit demo.
+     *
+     * @param output the output directory of the generate goal.
+     * @param drop the drop flag.
+     * @return the apply mojo.
+     * @throws Exception if the mojo could not be created.
+     */
+    private SchemaApplyMojo createMojo(Path output, boolean drop) throws Exception {
+        SchemaApplyMojo mojo = new SchemaApplyMojo();
+        mojo.setLog(new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(CharSequence content) {
+                // quiet log
+            }
+        });
+        TestProject.set(mojo, "url", URL);
+        TestProject.set(mojo, "user", "SA");
+        TestProject.set(mojo, "password", "");
+        TestProject.set(mojo, "outputDirectory", output.toString());
+        TestProject.set(mojo, "persistenceUnit", "demo");
+        TestProject.set(mojo, "databaseProductName", "HSQL Database Engine");
+        TestProject.set(mojo, "databaseProductDir", true);
+        TestProject.set(mojo, "dropTargetFile", "drop.sql");
+        TestProject.set(mojo, "createTargetFile", "create.sql");
+        TestProject.set(mojo, "delimiter", ";");
+        TestProject.set(mojo, "drop", drop);
+        TestProject.set(mojo, "threads", 2);
+        TestProject.set(mojo, "batchSize", 20);
+        return mojo;
+    }
+
+    /**
+     * Writes the create and drop scripts.
+     *
+     * @param dir the script directory.
+     * @param create the create script.
+     * @param drop the drop script.
+     * @throws Exception if the scripts could not be written.
+     */
+    private static void write(Path dir, String create, String drop) throws Exception {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("create.sql"), create.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("drop.sql"), drop.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks if the table exists in the test database.
+     *
+     * @param table the table name.
+     * @return {@code true} if the table exists.
+     * @throws SQLException if the check fails.
+     */
+    private boolean exists(String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The generation in the warm generator daemon. The daemon is started in the
+ * temporary daemon directory and stops after the short idle timeout.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaGeneratorMojoDaemonTest {
+
+    /**
+     * The idle timeout of the test daemon in seconds.
+     */
+    private static final int IDLE_TIMEOUT = 10;
+
+    /**
+     * The persistence.xml of the test project.
+     */
+    private static final String PERSISTENCE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<persistence version=\"2.1\" xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\">\n"
+            + "  <persistence-unit name=\"daemon\" transaction-type=\"RESOURCE_LOCAL\">\n"
+            + "    <provider>org.hibernate.jpa.HibernatePersistenceProvider</provider>\n"
+            + "  </persistence-unit>\n"
+            + "</persistence>\n";
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The test project.
+     */
+    private TestProject project;
+
+    /**
+     * The daemon directory.
+     */
+    private Path daemonDirectory;
+
+    /**
+     * Creates the test project.
+     *
+     * @throws Exception if the project could not be created.
+     */
+    @Before
+    public void before() throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("daemon.Customer", "package daemon;\n"
+                + "@javax.persistence.Entity public class Customer {\n"
+                + "  @javax.persistence.Id private Long id;\n"
+                + "  private String name;\n"
+                + "}\n");
+        project = TestProject.create(folder.newFolder("project").toPath(), PERSISTENCE, sources);
+        Assume.assumeNotNull(project);
+        daemonDirectory = folder.newFolder("daemon").toPath();
+    }
+
+    /**
+     * Tests the reuse of the running daemon by the next execution.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testReuse() throws Exception {
+        execute();
+        Properties first = readDaemonFile();
+        execute();
+        Properties second = readDaemonFile();
+
+        Assert.assertEquals("The daemon was not reused.", first.getProperty("token"), second.getProperty("token"));
+        Assert.assertEquals("The daemon was not reused.", first.getProperty("port"), second.getProperty("port"));
+        Assert.assertTrue(Files.isRegularFile(getCreateFile()));
+    }
+
+    /**
+     * Tests the request with the wrong access token. The daemon closes the
+     * connection without any response and serves the next request.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testBadToken() throws Exception {
+        execute();
+        Properties daemon = readDaemonFile();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon.getProperty("port")))) {
+            socket.setSoTimeout(10000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("bad-token");
+            out.flush();
+            Assert.assertEquals("The daemon responded to the wrong token.", -1, socket.getInputStream().read());
+        }
+
+        Files.delete(getCreateFile());
+        execute();
+        Assert.assertEquals("The daemon was not reused.", daemon.getProperty("token"), readDaemonFile().getProperty("token"));
+        Assert.assertTrue(Files.isRegularFile(getCreateFile()));
+    }
+
+    /**
+     * Tests the daemon which closes the connection before the response. The
+     * request is sent to the new daemon.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testStoppedDaemon() throws Exception {
+        execute();
+        Path file = getDaemonFile();
+        Properties daemon = readDaemonFile();
+
+        try (final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            server.accept().close();
+                        }
+                    } catch (IOException ex) {
+                        // the server socket is closed
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            Properties stopped = new Properties();
+            stopped.putAll(daemon);
+            stopped.setProperty("port", Integer.toString(server.getLocalPort()));
+            try (OutputStream out = Files.newOutputStream(file)) {
+                stopped.store(out, null);
+            }
+
+            Files.delete(getCreateFile());
+            execute();
+        }
+        Assert.assertNotEquals("The new daemon was not started.", daemon.getProperty("token"), readDaemonFile().getProperty("token"));
+        Assert.assertTrue(Files.isRegularFile(getCreateFile()));
+    }
+
+    /**
+     * Executes the schema generator in the daemon.
+     *
+     * @throws Exception if the execution fails.
+     */
+    private void execute() throws Exception {
+        SchemaGeneratorMojo mojo = project.createMojo(SchemaGeneratorMojo.class);
+        TestProject.set(mojo, "databaseProductName", "HSQL Database Engine");
+        TestProject.set(mojo, "scriptAction", "drop-and-create");
+        TestProject.set(mojo, "outputTargetDir", "generated-schema");
+        TestProject.set(mojo, "dropTargetFile", "drop.sql");
+        TestProject.set(mojo, "createTargetFile", "create.sql");
+        TestProject.set(mojo, "delimiter", ";");
+        TestProject.set(mojo, "databaseProductDir", true);
+        TestProject.set(mojo, "incremental", false);
+        TestProject.set(mojo, "offline", true);
+        TestProject.set(mojo, "generationReport", false);
+        TestProject.set(mojo, "daemon", true);
+        TestProject.set(mojo, "daemonIdleTimeout", IDLE_TIMEOUT);
+        TestProject.set(mojo, "daemonResponseTimeout", 60);
+        TestProject.set(mojo, "daemonDirectory", daemonDirectory.toString());
+        TestProject.set(mojo, "forkMaxHeap", "256m");
+        TestProject.set(mojo, "forkJavaExecutable", Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        mojo.execute();
+    }
+
+    /**
+     * Gets the create script of the test project.
+     *
+     * @return the create script.
+     */
+    private Path getCreateFile() {
+        return Paths.get(project.getProject().getBuild().getDirectory()).resolve("generated-schema")
+                .resolve("hsql database engine").resolve("create.sql");
+    }
+
+    /**
+     * Gets the daemon file in the daemon directory.
+     *
+     * @return the daemon file.
+     * @throws IOException if the daemon directory could not be read.
+     */
+    private Path getDaemonFile() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(daemonDirectory, "*.properties")) {
+            for (Path file : files) {
+                return file;
+            }
+        }
+        throw new AssertionError("Missing the daemon file in " + daemonDirectory);
+    }
+
+    /**
+     * Reads the daemon file.
+     *
+     * @return the daemon properties.
+     * @throws IOException if the daemon file could not be read.
+     */
+    private Properties readDaemonFile() throws IOException {
+        Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(getDaemonFile())) {
+            result.load(in);
+        }
+        return result;
+    }
+}
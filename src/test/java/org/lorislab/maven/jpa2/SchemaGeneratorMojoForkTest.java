@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The round trip of the schema generation in the forked generator JVM. The
+ * jobs are written to the argument file, generated in the child JVM and the
+ * scripts are processed by the mojo.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaGeneratorMojoForkTest {
+
+    /**
+     * The persistence.xml of the test project.
+     */
+    private static final String PERSISTENCE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<persistence version=\"2.1\" xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\">\n"
+            + "  <persistence-unit name=\"fork\" transaction-type=\"RESOURCE_LOCAL\">\n"
+            + "    <provider>org.hibernate.jpa.HibernatePersistenceProvider</provider>\n"
+            + "  </persistence-unit>\n"
+            + "</persistence>\n";
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The test project.
+     */
+    private TestProject project;
+
+    /**
+     * Creates the test project.
+     *
+     * @throws Exception if the project could not be created.
+     */
+    @Before
+    public void before() throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("fork.Customer", "package fork;\n"
+                + "@javax.persistence.Entity public class Customer {\n"
+                + "  @javax.persistence.Id private Long id;\n"
+                + "  private String name;\n"
+                + "}\n");
+        sources.put("fork.PurchaseOrder", "package fork;\n"
+                + "@javax.persistence.Entity public class PurchaseOrder {\n"
+                + "  @javax.persistence.Id private Long id;\n"
+                + "  @javax.persistence.ManyToOne private Customer customer;\n"
+                + "}\n");
+        project = TestProject.create(folder.getRoot().toPath(), PERSISTENCE, sources);
+        Assume.assumeNotNull(project);
+    }
+
+    /**
+     * Tests the offline generation in the forked JVM.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testForkOffline() throws Exception {
+        SchemaGeneratorMojo mojo = createMojo(true);
+        mojo.execute();
+
+        Path dir = getOutput().resolve("hsql database engine");
+        String create = read(dir.resolve("create.sql"));
+        Assert.assertTrue(create, create.contains("create table Customer"));
+        Assert.assertTrue(create, create.contains("create table PurchaseOrder"));
+        Assert.assertTrue(create, create.contains("foreign key (customer_id) references Customer;"));
+        String drop = read(dir.resolve("drop.sql"));
+        Assert.assertTrue(drop, drop.contains("drop table Customer"));
+    }
+
+    /**
+     * Tests the JPA schema generation in the forked JVM. The scripts are
+     * written with one statement per line.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testForkJpa() throws Exception {
+        SchemaGeneratorMojo mojo = createMojo(false);
+        mojo.execute();
+
+        String create = read(getOutput().resolve("hsql database engine").resolve("create.sql"));
+        Assert.assertTrue(create, create.contains("create table Customer"));
+        Assert.assertTrue(create, create.contains("create table PurchaseOrder"));
+    }
+
+    /**
+     * Tests the failure of the generation in the forked JVM. The persistence
+     * unit is missing in the persistence.xml of the child JVM.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testForkFailure() throws Exception {
+        SchemaGeneratorMojo mojo = createMojo(true);
+        TestProject.set(mojo, "persistenceUnit", "missing");
+        try {
+            mojo.execute();
+            Assert.fail("The generation of the missing persistence unit did not fail.");
+        } catch (MojoExecutionException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Creates the mojo of the forked generation.
+     *
+     * @param offline the offline generation flag.
+     * @return the mojo.
+     * @throws Exception if the mojo could not be created.
+     */
+    private SchemaGeneratorMojo createMojo(boolean offline) throws Exception {
+        SchemaGeneratorMojo mojo = project.createMojo(SchemaGeneratorMojo.class);
+        TestProject.set(mojo, "databaseProductName", "HSQL Database Engine");
+        TestProject.set(mojo, "scriptAction", "drop-and-create");
+        TestProject.set(mojo, "outputTargetDir", "generated-schema");
+        TestProject.set(mojo, "dropTargetFile", "drop.sql");
+        TestProject.set(mojo, "createTargetFile", "create.sql");
+        TestProject.set(mojo, "delimiter", ";");
+        TestProject.set(mojo, "databaseProductDir", true);
+        TestProject.set(mojo, "incremental", false);
+        TestProject.set(mojo, "offline", offline);
+        TestProject.set(mojo, "generationReport", false);
+        TestProject.set(mojo, "fork", true);
+        TestProject.set(mojo, "forkMaxHeap", "256m");
+        TestProject.set(mojo, "forkJavaExecutable", Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        return mojo;
+    }
+
+    /**
+     * Gets the output directory of the generated scripts.
+     *
+     * @return the output directory.
+     */
+    private Path getOutput() {
+        return Paths.get(project.getProject().getBuild().getDirectory()).resolve("generated-schema");
+    }
+
+    /**
+     * Reads the script.
+     *
+     * @param file the script file.
+     * @return the script content.
+     * @throws Exception if the script could not be read.
+     */
+    private static String read(Path file) throws Exception {
+        Assert.assertTrue("Missing the script " + file, Files.isRegularFile(file));
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
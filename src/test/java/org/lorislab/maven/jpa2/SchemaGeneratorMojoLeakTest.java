@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The class loader leak test of the schema generator. The mojo is executed
+ * hundreds of times and the metaspace after the executions has to stay
+ * bounded. The class loaders of the executions have to be closed and
+ * released, the classes of the project have to be unloaded.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaGeneratorMojoLeakTest {
+
+    /**
+     * The number of the warm-up executions.
+     */
+    private static final int WARMUP = 20;
+
+    /**
+     * The number of the measured executions.
+     */
+    private static final int EXECUTIONS = Integer.getInteger("jpa2.leakTest.executions", 200);
+
+    /**
+     * The maximal growth of the used metaspace after the warm-up.
+     */
+    private static final long MAX_GROWTH = 8L * 1024 * 1024;
+
+    /**
+     * The persistence.xml of the test project.
+     */
+    private static final String PERSISTENCE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<persistence version=\"2.1\" xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\">\n"
+            + "  <persistence-unit name=\"leak\" transaction-type=\"RESOURCE_LOCAL\">\n"
+            + "    <provider>org.hibernate.jpa.HibernatePersistenceProvider</provider>\n"
+            + "  </persistence-unit>\n"
+            + "</persistence>\n";
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The test project.
+     */
+    private TestProject project;
+
+    /**
+     * Creates the test project.
+     *
+     * @throws Exception if the project could not be created.
+     */
+    @Before
+    public void before() throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("leak.Customer", "package leak;\n"
+                + "@javax.persistence.Entity public class Customer {\n"
+                + "  @javax.persistence.Id private Long id;\n"
+                + "  private String name;\n"
+                + "}\n");
+        sources.put("leak.PurchaseOrder", "package leak;\n"
+                + "@javax.persistence.Entity public class PurchaseOrder {\n"
+                + "  @javax.persistence.Id private Long id;\n"
+                + "  @javax.persistence.ManyToOne(fetch = javax.persistence.FetchType.LAZY) private Customer customer;\n"
+                + "}\n");
+        project = TestProject.create(folder.getRoot().toPath(), PERSISTENCE, sources);
+        Assume.assumeNotNull(project);
+    }
+
+    /**
+     * Tests the bounded metaspace of the repeated executions.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testBoundedMetaspace() throws Exception {
+        MemoryPoolMXBean metaspace = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                metaspace = pool;
+            }
+        }
+        Assume.assumeNotNull(metaspace);
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+
+        for (int i = 0; i < WARMUP; i++) {
+            execute();
+        }
+        long before = getUsed(metaspace);
+        long unloaded = classes.getUnloadedClassCount();
+
+        for (int i = 0; i < EXECUTIONS; i++) {
+            execute();
+        }
+        long after = getUsed(metaspace);
+
+        Assert.assertTrue("The classes of the project were not unloaded after " + EXECUTIONS + " executions.",
+                classes.getUnloadedClassCount() - unloaded >= EXECUTIONS);
+        Assert.assertTrue("The metaspace grows by " + (after - before) + " bytes after " + EXECUTIONS + " executions.",
+                after - before < MAX_GROWTH);
+    }
+
+    /**
+     * Executes the schema generator.
+     *
+     * @throws Exception if the execution fails.
+     */
+    private void execute() throws Exception {
+        SchemaGeneratorMojo mojo = project.createMojo(SchemaGeneratorMojo.class);
+        TestProject.set(mojo, "databaseProductName", "HSQL Database Engine");
+        TestProject.set(mojo, "scriptAction", "drop-and-create");
+        TestProject.set(mojo, "outputTargetDir", "generated-schema");
+        TestProject.set(mojo, "dropTargetFile", "drop.sql");
+        TestProject.set(mojo, "createTargetFile", "create.sql");
+        TestProject.set(mojo, "delimiter", ";");
+        TestProject.set(mojo, "databaseProductDir", true);
+        TestProject.set(mojo, "incremental", false);
+        TestProject.set(mojo, "offline", true);
+        TestProject.set(mojo, "generationReport", false);
+        mojo.execute();
+    }
+
+    /**
+     * Gets the used metaspace after the garbage collection.
+     *
+     * @param metaspace the metaspace pool.
+     * @return the used metaspace.
+     */
+    private static long getUsed(MemoryPoolMXBean metaspace) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return metaspace.getUsage().getUsed();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.Entity;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * The test MAVEN project. The entity sources are compiled to the build output
+ * directory outside of the test classpath and the persistence.xml is written
+ * to the META-INF directory. The classes of the project are loaded only by
+ * the class loader of the mojo execution.
+ *
+ * @author Andrej Petras
+ */
+public class TestProject {
+
+    /**
+     * The Hibernate logger with the warning level. The reference keeps the
+     * level of the logger.
+     */
+    private static final Logger HIBERNATE = Logger.getLogger("org.hibernate");
+
+    static {
+        HIBERNATE.setLevel(Level.WARNING);
+    }
+
+    /**
+     * The MAVEN project.
+     */
+    private final MavenProject project;
+
+    /**
+     * The constructor.
+     *
+     * @param project the MAVEN project.
+     */
+    private TestProject(MavenProject project) {
+        this.project = project;
+    }
+
+    /**
+     * Creates the test project.
+     *
+     * @param dir the project directory.
+     * @param persistence the persistence.xml content.
+     * @param sources the entity sources by the class name.
+     * @return the test project or {@code null} if the Java compiler is not
+     * available.
+     * @throws IOException if the project could not be created.
+     */
+    public static TestProject create(Path dir, String persistence, Map<String, String> sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        Path target = dir.resolve("target");
+        Path classes = target.resolve("classes");
+        Path src = dir.resolve("src");
+        List<String> args = new ArrayList<>(Arrays.asList("-nowarn", "-d", classes.toString(), "-classpath",
+                new File(Entity.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath()));
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            Path file = src.resolve(source.getKey().replace('.', '/') + ".java");
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+            args.add(file.toString());
+        }
+        Files.createDirectories(classes.resolve("META-INF"));
+        Files.write(classes.resolve("META-INF").resolve("persistence.xml"), persistence.getBytes(StandardCharsets.UTF_8));
+        if (compiler.run(null, null, null, args.toArray(new String[args.size()])) != 0) {
+            throw new IOException("Error compiling the sources of the test project " + dir);
+        }
+
+        MavenProject project = new MavenProject();
+        project.setFile(dir.resolve("pom.xml").toFile());
+        project.getBuild().setDirectory(target.toString());
+        project.getBuild().setOutputDirectory(classes.toString());
+        return new TestProject(project);
+    }
+
+    /**
+     * Gets the MAVEN project.
+     *
+     * @return the MAVEN project.
+     */
+    public MavenProject getProject() {
+        return project;
+    }
+
+    /**
+     * Creates the mojo of the test project with the quiet log.
+     *
+     * @param <T> the mojo type.
+     * @param clazz the mojo class.
+     * @return the mojo.
+     * @throws Exception if the mojo could not be created.
+     */
+    public <T extends Mojo> T createMojo(Class<T> clazz) throws Exception {
+        T result = clazz.newInstance();
+        result.setLog(new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(CharSequence content) {
+                // quiet log
+            }
+        });
+        set(result, "project", project);
+        return result;
+    }
+
+    /**
+     * Sets the parameter of the mojo.
+     *
+     * @param mojo the mojo.
+     * @param name the parameter name.
+     * @param value the parameter value.
+     * @throws Exception if the parameter does not exist.
+     */
+    public static void set(Object mojo, String name, Object value) throws Exception {
+        Class<?> clazz = mojo.getClass();
+        while (clazz != null) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException ex) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
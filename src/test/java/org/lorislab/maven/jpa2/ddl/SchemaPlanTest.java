@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The schema plan test with the foreign key cycle between the product and
+ * the supplier.
+ *
+ * @author Andrej Petras
+ */
+public class SchemaPlanTest {
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the cycle, the levels and the order of the dependency graph.
+     */
+    @Test
+    public void testDependencyGraph() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency("Product", "Supplier");
+        graph.addDependency("SUPPLIER", "product");
+        graph.addDependency("Product", "Category");
+        Assert.assertEquals(list("Product", "Supplier", "Category"), graph.getNodes());
+        Assert.assertEquals(list(list("Product", "Supplier")), graph.getCycles());
+        Assert.assertEquals(list(list("Category")), graph.getLevels());
+        Assert.assertEquals(list("Category", "Product", "Supplier"), graph.getOrder());
+
+        graph.removeDependency("supplier", "PRODUCT");
+        Assert.assertTrue(graph.getCycles().isEmpty());
+        Assert.assertEquals(list(list("Supplier", "Category"), list("Product")), graph.getLevels());
+    }
+
+    /**
+     * Tests the plan of the create script. The foreign keys of the cycle are
+     * deferred after all tables.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCreate() throws Exception {
+        SchemaPlan plan = SchemaPlan.create(write("create.sql",
+                "create table Category (id bigint not null, primary key (id));",
+                "create table Product (id bigint not null, category_id bigint, supplier_id bigint, primary key (id));",
+                "create table Supplier (id bigint not null, product_id bigint, primary key (id));",
+                "alter table Product add constraint FK_PRODUCT_CATEGORY foreign key (category_id) references Category;",
+                "alter table Product add constraint FK_PRODUCT_SUPPLIER foreign key (supplier_id) references Supplier;",
+                "alter table Supplier add constraint FK_SUPPLIER_PRODUCT foreign key (product_id) references Product;"), ";");
+
+        Assert.assertEquals(6, plan.getStatements());
+        Assert.assertEquals(list(list("Product", "Supplier")), plan.getCycles());
+        Assert.assertEquals(list(
+                "false table:Category[1] table:Supplier[3]",
+                "false table:Product[2, 4]",
+                "true constraint:FK_PRODUCT_SUPPLIER[5] constraint:FK_SUPPLIER_PRODUCT[6]"),
+                levels(plan));
+    }
+
+    /**
+     * Tests the plan of the drop script. The tables are dropped in the
+     * reverse levels of the create plan after all foreign keys.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testDrop() throws Exception {
+        SchemaPlan create = SchemaPlan.create(write("create.sql",
+                "create table Category (id bigint not null, primary key (id));",
+                "create table Product (id bigint not null, category_id bigint, supplier_id bigint, primary key (id));",
+                "create table Supplier (id bigint not null, product_id bigint, primary key (id));",
+                "alter table Product add constraint FK_PRODUCT_CATEGORY foreign key (category_id) references Category;",
+                "alter table Product add constraint FK_PRODUCT_SUPPLIER foreign key (supplier_id) references Supplier;",
+                "alter table Supplier add constraint FK_SUPPLIER_PRODUCT foreign key (product_id) references Product;"), ";");
+        SchemaPlan plan = SchemaPlan.drop(write("drop.sql",
+                "alter table Product drop constraint FK_PRODUCT_CATEGORY;",
+                "alter table Product drop constraint FK_PRODUCT_SUPPLIER;",
+                "alter table Supplier drop constraint FK_SUPPLIER_PRODUCT;",
+                "drop table Category if exists;",
+                "drop table Product if exists;",
+                "drop table Supplier if exists;"), ";", create);
+
+        Assert.assertEquals(list(list("Product", "Supplier")), plan.getCycles());
+        Assert.assertEquals(list(
+                "false constraint:FK_PRODUCT_CATEGORY[1] constraint:FK_PRODUCT_SUPPLIER[2] constraint:FK_SUPPLIER_PRODUCT[3]",
+                "false table:Product[5]",
+                "false table:Category[4] table:Supplier[6]"),
+                levels(plan));
+    }
+
+    /**
+     * Describes the levels of the plan.
+     *
+     * @param plan the plan.
+     * @return the description of the levels.
+     */
+    private static List<String> levels(SchemaPlan plan) {
+        List<String> result = new ArrayList<>();
+        for (SchemaPlan.Level level : plan.getLevels()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(level.isDeferred());
+            for (SchemaPlan.Group group : level.getGroups()) {
+                sb.append(' ').append(group.getType()).append(':').append(group.getName()).append(group.getStatements());
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Writes the script to the temporary folder.
+     *
+     * @param name the file name.
+     * @param statements the statements of the script.
+     * @return the script file.
+     * @throws IOException if the file could not be written.
+     */
+    private Path write(String name, String... statements) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, list(statements), Charset.defaultCharset());
+        return file;
+    }
+
+    /**
+     * Creates the list of the values.
+     *
+     * @param <T> the type of the values.
+     * @param values the values.
+     * @return the list of the values.
+     */
+    @SafeVarargs
+    private static <T> List<T> list(T... values) {
+        List<T> result = new ArrayList<>();
+        for (T value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}
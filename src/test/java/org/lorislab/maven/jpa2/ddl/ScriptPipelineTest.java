@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The script pipeline test.
+ *
+ * @author Andrej Petras
+ */
+public class ScriptPipelineTest {
+
+    /**
+     * The test script.
+     */
+    private static final String SCRIPT = "create table A (id bigint);\n"
+            + "create table B (id bigint);\n"
+            + "alter table B add constraint FK1 foreign key (id) references A;\n";
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the filter stage.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testFilter() throws Exception {
+        ScriptStage stage = stage(ScriptStage.FILTER, "^ALTER TABLE");
+        Path script = write();
+        Assert.assertEquals(list(script), process(stage, script));
+        Assert.assertEquals(list("create table A (id bigint);", "create table B (id bigint);"), read(script));
+    }
+
+    /**
+     * Tests the rewrite stage.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testRewrite() throws Exception {
+        ScriptStage stage = stage(ScriptStage.REWRITE, "bigint");
+        stage.setReplacement("numeric(19)");
+        Path script = write();
+        Assert.assertEquals(list(script), process(stage, script));
+        Assert.assertEquals(list("create table A (id numeric(19));", "create table B (id numeric(19));",
+                "alter table B add constraint FK1 foreign key (id) references A;"), read(script));
+    }
+
+    /**
+     * Tests the annotate stage.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testAnnotate() throws Exception {
+        ScriptStage stage = stage(ScriptStage.ANNOTATE, "foreign key");
+        stage.setComment("{script}:{index}");
+        Path script = write();
+        Assert.assertEquals(list(script), process(stage, script));
+        Assert.assertEquals(list("create table A (id bigint);", "create table B (id bigint);",
+                "-- create.sql:3", "alter table B add constraint FK1 foreign key (id) references A;"), read(script));
+    }
+
+    /**
+     * Tests the split stage.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testSplit() throws Exception {
+        ScriptStage stage = stage(ScriptStage.SPLIT, "foreign key");
+        stage.setFile("fk.sql");
+        Path script = write();
+        Path split = script.resolveSibling("create-fk.sql");
+        Assert.assertEquals(list(script, split), process(stage, script));
+        Assert.assertEquals(list("create table A (id bigint);", "create table B (id bigint);"), read(script));
+        Assert.assertEquals(list("alter table B add constraint FK1 foreign key (id) references A;"), read(split));
+    }
+
+    /**
+     * Creates the stage configuration.
+     *
+     * @param type the type of the stage.
+     * @param pattern the pattern.
+     * @return the stage configuration.
+     */
+    private static ScriptStage stage(String type, String pattern) {
+        ScriptStage stage = new ScriptStage();
+        stage.setType(type);
+        stage.setPattern(pattern);
+        return stage;
+    }
+
+    /**
+     * Processes the script by the pipeline with the stage.
+     *
+     * @param stage the stage configuration.
+     * @param script the script file.
+     * @return the list of the written files.
+     * @throws IOException if the processing fails.
+     */
+    private static List<Path> process(ScriptStage stage, Path script) throws IOException {
+        return ScriptPipeline.create(Collections.singletonList(stage), ";").process(script);
+    }
+
+    /**
+     * Writes the test script to the temporary folder.
+     *
+     * @return the script file.
+     * @throws IOException if the file could not be written.
+     */
+    private Path write() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("create.sql");
+        Files.write(file, SCRIPT.getBytes(Charset.defaultCharset()));
+        return file;
+    }
+
+    /**
+     * Reads the lines of the file.
+     *
+     * @param file the file.
+     * @return the lines of the file.
+     * @throws IOException if the file could not be read.
+     */
+    private static List<String> read(Path file) throws IOException {
+        return Files.readAllLines(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates the list of the values.
+     *
+     * @param <T> the type of the values.
+     * @param values the values.
+     * @return the list of the values.
+     */
+    @SafeVarargs
+    private static <T> List<T> list(T... values) {
+        List<T> result = new ArrayList<>();
+        for (T value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}
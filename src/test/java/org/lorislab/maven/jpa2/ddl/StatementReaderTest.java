@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Andrej Petras.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lorislab.maven.jpa2.ddl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The statement reader test.
+ *
+ * @author Andrej Petras
+ */
+public class StatementReaderTest {
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the last statement without the delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testLastStatementWithoutDelimiter() throws Exception {
+        Assert.assertEquals(list("a", "b"), read("a;\nb", ";"));
+    }
+
+    /**
+     * Tests the statements, the comments and the delimiter in the literals.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testComments() throws Exception {
+        Path file = write("-- first\ncreate table A (x varchar(10) default ';');\n/* ; */ drop table B;\n");
+        try (StatementReader reader = new StatementReader(file, StandardCharsets.UTF_8, ";")) {
+            Statement first = reader.next();
+            Assert.assertEquals("create table A (x varchar(10) default ';')", first.getSql());
+            Assert.assertEquals(list("first"), first.getComments());
+            Assert.assertEquals("/* ; */ drop table B", reader.next().getSql());
+            Assert.assertNull(reader.next());
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Tests the script larger than the buffer with the multi-byte characters
+     * on the buffer boundary.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testLargeScript() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            String sql = "comment on table T" + i + " is 'ä€" + i + "'";
+            expected.add(sql);
+            sb.append(sql).append(";\n");
+        }
+        sb.setLength(sb.length() - 2);
+        Assert.assertEquals(expected, read(sb.toString(), ";"));
+    }
+
+    /**
+     * Tests the statements terminated by the new line.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testLineDelimiter() throws Exception {
+        Assert.assertEquals(list("create table A (x int)", "drop table B"),
+                read("create table A (x int)\r\n\ndrop table B\n", "\n"));
+    }
+
+    /**
+     * Tests the resolved delimiter of the scripts with and without the SQL
+     * delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testResolveDelimiter() throws Exception {
+        Assert.assertEquals(";", StatementReader.resolveDelimiter(write("create table A (x int);\ndrop table B;\n"), StandardCharsets.UTF_8, ";"));
+        Assert.assertEquals(StatementReader.LINE_DELIMITER, StatementReader.resolveDelimiter(write("create table A (x int)\ndrop table B\n"), StandardCharsets.UTF_8, ";"));
+    }
+
+    /**
+     * Tests the written statements with the line delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testWriteLineDelimiter() throws Exception {
+        Path file = folder.newFile().toPath();
+        try (StatementWriter writer = new StatementWriter(file, StandardCharsets.UTF_8, StatementReader.LINE_DELIMITER)) {
+            writer.write(new Statement("test.sql", 1, "create table A (x int)"));
+            writer.write(new Statement("test.sql", 2, "drop table B"));
+        }
+        Assert.assertEquals(list("create table A (x int)", "drop table B"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests the empty delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyDelimiter() throws Exception {
+        read("a;b", "");
+    }
+
+    /**
+     * Tests the missing delimiter.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullDelimiter() throws Exception {
+        read("a;b", null);
+    }
+
+    /**
+     * Reads the SQL of the statements of the script.
+     *
+     * @param script the script.
+     * @param delimiter the delimiter.
+     * @return the SQL of the statements.
+     * @throws IOException if the script could not be read.
+     */
+    private List<String> read(String script, String delimiter) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (StatementReader reader = new StatementReader(write(script), StandardCharsets.UTF_8, delimiter)) {
+            Statement statement;
+            while ((statement = reader.next()) != null) {
+                result.add(statement.getSql());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the script to the temporary file.
+     *
+     * @param script the script.
+     * @return the script file.
+     * @throws IOException if the file could not be written.
+     */
+    private Path write(String script) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Creates the list of the values.
+     *
+     * @param values the values.
+     * @return the list of the values.
+     */
+    private static List<String> list(String... values) {
+        List<String> result = new ArrayList<>();
+        for (String value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}